@@ -0,0 +1,177 @@
+ /**
+  * Opportunistic Connectivity Management Simulator
+  *
+  * Copyright (C) 2007 Hossein Falaki
+  */
+
+package ocms.bench;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Random;
+
+import ocms.dataset.TraceGenerator;
+import ocms.util.Configuration;
+
+
+/**
+  * Fixtures shared by the benchmarks.
+  * Writes synthetic traces and user data files in the text formats of
+  * {@link ocms.dataset.DataSet} and {@link ocms.user.UIDataSet}, and builds
+  * simulation scenarios that use them.
+  *
+  * The benchmarks are built and run with 'make bench' (see the Makefile).
+  *
+  * @author     Hossein Falaki
+  */
+public class BenchSupport
+{
+    /** The time step of the synthetic traces */
+    public static final int TIMESTEP                        = 60;
+
+    /** Names of the scheduler types of the simulator */
+    public static final String[] SCHEDULERS = {"OPTIMAL", "STEPOPTIMAL", "DUMB", "EB", "LB", "STATIC", "USERSTATIC"};
+
+
+    /**
+      * Writes a synthetic trace (see {@link TraceGenerator}).
+      * The device changes location with a probability of 5% per sample.
+      *
+      * @param      file            the trace file
+      * @param      lines           number of samples
+      * @param      aps             number of distinct access points
+      * @param      cells           number of distinct GSM cells
+      * @param      seed            seed of the random generator
+      * @throws     IOException     if the file cannot be written
+      */
+    public static void writeTrace(File file, int lines, int aps, int cells, long seed) throws IOException
+    {
+        new TraceGenerator(aps, cells, 0.05, seed).write(file.getPath(), lines);
+    }
+
+    /**
+      * Writes a synthetic user interaction file.
+      * The user turns the device on and off every 10 to 60 minutes.
+      *
+      * @param      file            the user data file
+      * @param      duration        the duration in seconds
+      * @param      seed            seed of the random generator
+      * @throws     IOException     if the file cannot be written
+      */
+    public static void writeUser(File file, int duration, long seed) throws IOException
+    {
+        Random random = new Random(seed);
+        BufferedWriter output = new BufferedWriter( new FileWriter(file) );
+        boolean on = false;
+
+        try
+        {
+            for (int time = 600; time < duration; time += 600 + random.nextInt(3000))
+            {
+                on = !on;
+                output.write(time + (on ? " on" : " off"));
+                output.newLine();
+            }
+        }
+        finally
+        {
+            output.close();
+        }
+    }
+
+    /**
+      * Returns a simulation scenario over the given trace.
+      * Logging is disabled. The scenario has one WiFi and one GSM interface,
+      * and the keys of all the scheduler types.
+      *
+      * @param      trace           the trace file
+      * @param      user            the user data file
+      * @param      scheduler       the scheduler type
+      * @return                     the scenario
+      * @throws     IOException     if the temporary log file cannot be created
+      */
+    public static Configuration scenario(File trace, File user, String scheduler) throws IOException
+    {
+        File log = File.createTempFile("ocms-bench", ".log");
+        log.deleteOnExit();
+
+        Configuration config = new Configuration();
+        config.add("start_time", "" + 5*TIMESTEP);
+        config.add("end_time", "0");
+        config.add("log_level", "OFF");
+        config.add("logfile_name", log.getPath());
+        config.add("STO", "OFF");
+        config.add("dataset", trace.getPath());
+        config.add("dataset_timestep", "" + TIMESTEP);
+        config.add("user", user.getPath());
+        config.add("scheduler_type", scheduler);
+
+        config.add("interface_num", "2");
+        config.add("interface_0", "wifi1");
+        config.add("interface_1", "gsm1");
+        config.add("gsm1_type", "GSM");
+        addWiFi(config, "wifi1");
+
+        for (String type : SCHEDULERS)
+        {
+            config.add(type + "_interface", "wifi1");
+            config.add(type + "_goal", "0");
+        }
+        config.add("OPTIMAL_energysens", "1");
+        config.add("OPTIMAL_delaysens", "0");
+        config.add("STEPOPTIMAL_energysens", "0");
+        config.add("STEPOPTIMAL_delaysens", "0");
+        config.add("EB_maxbackoff", "86400");
+        config.add("LB_initialbackoff", "300");
+        config.add("LB_backoffstep", "0");
+        config.add("LB_randomize", "true");
+        config.add("STATIC_gsminterface", "gsm1");
+        config.add("STATIC_interval", "300");
+        config.add("STATIC_randomize", "true");
+        config.add("USERSTATIC_interval", "300");
+
+        return config;
+    }
+
+    /**
+      * Adds the keys of a WiFi interface to the scenario.
+      *
+      * @param      config          the scenario
+      * @param      name            name of the interface
+      */
+    public static void addWiFi(Configuration config, String name)
+    {
+        config.add(name + "_type", "WIFI");
+        config.add(name + "_datasendrate", "24576");
+        config.add(name + "_datarecvrate", "24576");
+        config.add(name + "_off_to_disc", "8000");
+        config.add(name + "_disc_to_off", "2000");
+        config.add(name + "_disc_to_con", "8000");
+        config.add(name + "_con_to_disc", "0");
+        config.add(name + "_disc_run", "100");
+        config.add(name + "_con_run", "150");
+        config.add(name + "_discscan_run", "675");
+        config.add(name + "_conscan_run", "675");
+        config.add(name + "_tx_run", "150");
+        config.add(name + "_rx_run", "150");
+        config.add(name + "_discscan_time", "0");
+        config.add(name + "_conscan_time", "0");
+        config.add(name + "_association_time", "0");
+    }
+
+    /**
+      * Returns a temporary file that is deleted when the JVM exits.
+      *
+      * @param      suffix          the suffix of the file name
+      * @return                     the file
+      * @throws     IOException     if the file cannot be created
+      */
+    public static File tempFile(String suffix) throws IOException
+    {
+        File file = File.createTempFile("ocms-bench", suffix);
+        file.deleteOnExit();
+        return file;
+    }
+}
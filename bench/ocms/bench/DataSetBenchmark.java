@@ -0,0 +1,69 @@
+ /**
+  * Opportunistic Connectivity Management Simulator
+  *
+  * Copyright (C) 2007 Hossein Falaki
+  */
+
+package ocms.bench;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ocms.dataset.DataSet;
+
+
+/**
+  * Loading text traces with {@link DataSet}.
+  * One operation is the load of a whole trace.
+  *
+  * @author     Hossein Falaki
+  */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g"})
+public class DataSetBenchmark
+{
+    /** Number of samples of the trace */
+    @Param({"10000", "100000", "1000000"})
+    public int lines;
+
+    /** The trace file */
+    File trace;
+
+
+    /**
+      * Writes the trace.
+      */
+    @Setup
+    public void setup() throws Exception
+    {
+        trace = BenchSupport.tempFile(".trace");
+        BenchSupport.writeTrace(trace, lines, 5000, 500, 1);
+    }
+
+    /**
+      * Loads the trace.
+      *
+      * @return                     the data set
+      */
+    @Benchmark
+    public DataSet load() throws Exception
+    {
+        return new DataSet(trace.getPath(), BenchSupport.TIMESTEP);
+    }
+}
@@ -0,0 +1,169 @@
+ /**
+  * Opportunistic Connectivity Management Simulator
+  *
+  * Copyright (C) 2007 Hossein Falaki
+  */
+
+package ocms.bench;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ocms.eventqueue.Event;
+import ocms.eventqueue.EventConsumer;
+import ocms.eventqueue.EventList;
+import ocms.eventqueue.EventPool;
+import ocms.eventqueue.EventQueue;
+
+
+/**
+  * Throughput of the {@link EventQueue} and its {@link EventList}s.
+  * <ul>
+  *     <li>run: a number of self-scheduling event chains (like the NIC and
+  *     scheduler wrappers) are run through the queue; one operation is one
+  *     dispatched event</li>
+  *     <li>hold: the classic hold model on the event list; one operation is
+  *     a poll followed by an add at a random later time</li>
+  * </ul>
+  *
+  * @author     Hossein Falaki
+  */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EventQueueBenchmark
+{
+    /** Number of events dispatched by each run (at least the number of pending events) */
+    private static final int EVENTS                 = 100000;
+
+    /** The type of the event list */
+    @Param({"HEAP", "CALENDAR"})
+    public String type;
+
+    /** Number of pending events */
+    @Param({"16", "1024", "65536"})
+    public int pending;
+
+    /** The event list of the hold benchmark */
+    EventList list;
+
+    /** The pool of the hold benchmark */
+    EventPool pool;
+
+    /** Random increments of the hold benchmark */
+    double[] increments;
+
+    /** Position in the increments */
+    int position;
+
+
+    /**
+      * An event consumer that schedules the next event of its chain.
+      */
+    static class Chain implements EventConsumer
+    {
+        /** Number of events to be scheduled in total */
+        int events;
+
+        /** Number of events scheduled */
+        int scheduled;
+
+        /** Time between two events of a chain */
+        double period;
+
+        public void handleEvent(Event event, EventQueue eventqueue)
+        {
+            if (scheduled >= events)
+                return;
+            scheduled++;
+
+            try
+            {
+                eventqueue.enqueue( eventqueue.obtain(event.getTime() + period, Event.COMMAND, this, this) );
+            }
+            catch (Exception e)
+            {
+                throw new RuntimeException(e);
+            }
+        }
+
+        public String getName()
+        {
+            return "Chain";
+        }
+    }
+
+    /**
+      * Fills the event list of the hold benchmark.
+      */
+    @Setup
+    public void setup() throws Exception
+    {
+        Random random = new Random(1);
+
+        increments = new double[4096];
+        for (int i = 0; i < increments.length; i++)
+            increments[i] = -Math.log(1 - random.nextDouble())*60;
+
+        list = EventQueue.createList(type);
+        pool = new EventPool();
+        for (int i = 0; i < pending; i++)
+            list.add( pool.obtain(random.nextDouble()*60*pending, Event.COMMAND, null, null) );
+    }
+
+    /**
+      * Runs the event chains through the queue.
+      *
+      * @return                     number of dispatched events
+      */
+    @Benchmark
+    @OperationsPerInvocation(EVENTS)
+    public double run() throws Exception
+    {
+        EventQueue queue = new EventQueue(Double.MAX_VALUE, EventQueue.createList(type));
+        Chain chain = new Chain();
+        chain.events = EVENTS;
+        chain.scheduled = pending;
+        chain.period = pending;
+
+        /* The chains are staggered by one time unit, so the enqueued times never decrease */
+        for (int i = 0; i < pending; i++)
+            queue.enqueue( queue.obtain(i, Event.COMMAND, chain, chain) );
+
+        queue.run();
+        return queue.getTime();
+    }
+
+    /**
+      * One hold operation on the event list.
+      *
+      * @return                     time of the polled event
+      */
+    @Benchmark
+    public double hold()
+    {
+        Event event = list.poll();
+        double time = event.getTime();
+        pool.recycle(event);
+
+        position = (position + 1) & (increments.length - 1);
+        list.add( pool.obtain(time + increments[position], Event.COMMAND, null, null) );
+        return time;
+    }
+}
@@ -0,0 +1,169 @@
+ /**
+  * Opportunistic Connectivity Management Simulator
+  *
+  * Copyright (C) 2007 Hossein Falaki
+  */
+
+package ocms.bench;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ocms.dataset.BinaryTrace;
+import ocms.dataset.DataSet;
+import ocms.dataset.Tuple;
+import ocms.medium.DenseWiFiMedium;
+import ocms.medium.MappedWiFiMedium;
+import ocms.medium.MediumException;
+import ocms.medium.WiFiMedium;
+
+
+/**
+  * Queries to the WiFi media: {@link WiFiMedium#checkAvailability},
+  * {@link WiFiMedium#scan} and {@link WiFiMedium#signal}.
+  * The queries are at random times of the trace. Half of the availability
+  * checks are for access points that are visible at the time.
+  *
+  * @author     Hossein Falaki
+  */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MediumBenchmark
+{
+    /** Number of queries prepared (a power of two) */
+    private static final int QUERIES                = 4096;
+
+    /** The implementation of the medium */
+    @Param({"HASH", "DENSE", "MAPPED"})
+    public String medium;
+
+    /** Number of samples of the trace */
+    @Param({"10000"})
+    public int lines;
+
+    /** The medium under test */
+    WiFiMedium wifimedium;
+
+    /** Times of the queries */
+    double[] times;
+
+    /** BSSIDs of the availability checks */
+    String[] bssids;
+
+    /** Times of the signal queries */
+    double[] signaltimes;
+
+    /** BSSIDs of the signal queries (visible at the time) */
+    String[] signalbssids;
+
+    /** Position in the queries */
+    int position;
+
+
+    /**
+      * Builds the medium and the queries.
+      */
+    @Setup
+    public void setup() throws Exception
+    {
+        File trace = BenchSupport.tempFile(".trace");
+        BenchSupport.writeTrace(trace, lines, 500, 100, 1);
+
+        DataSet dataset = new DataSet(trace.getPath(), BenchSupport.TIMESTEP);
+        if (medium.equals("DENSE"))
+            wifimedium = new DenseWiFiMedium(dataset, "bench");
+        else if (medium.equals("MAPPED"))
+        {
+            File binary = BenchSupport.tempFile(".btrace");
+            BinaryTrace.write(new DataSet(trace.getPath(), 1), binary.getPath());
+            wifimedium = new MappedWiFiMedium(new BinaryTrace(binary.getPath()), BenchSupport.TIMESTEP, null, "bench");
+        }
+        else
+            wifimedium = new WiFiMedium(dataset, "bench");
+
+        Random random = new Random(2);
+        times = new double[QUERIES];
+        bssids = new String[QUERIES];
+        ArrayList<Double> visibletimes = new ArrayList<Double>();
+        ArrayList<String> visible = new ArrayList<String>();
+
+        for (int i = 0; i < QUERIES; i++)
+        {
+            times[i] = wifimedium.getStartTime() + random.nextDouble()*(wifimedium.getEndTime() - wifimedium.getStartTime());
+            bssids[i] = "00:16:b6:" + Integer.toHexString(0x10000 + random.nextInt(500)).substring(1);
+
+            Set<Tuple<String, Integer>> scan = wifimedium.scan(times[i]);
+            if ( (scan != null) && (scan.size() > 0) )
+            {
+                String bssid = scan.iterator().next().getKey();
+                visibletimes.add(times[i]);
+                visible.add(bssid);
+                if (random.nextBoolean())
+                    bssids[i] = bssid;
+            }
+        }
+
+        signaltimes = new double[QUERIES];
+        signalbssids = new String[QUERIES];
+        for (int i = 0; i < QUERIES; i++)
+        {
+            signaltimes[i] = visibletimes.get(i % visibletimes.size());
+            signalbssids[i] = visible.get(i % visible.size());
+        }
+    }
+
+    /**
+      * Checks the availability of an access point.
+      *
+      * @return                     the availability
+      */
+    @Benchmark
+    public boolean checkAvailability()
+    {
+        position = (position + 1) & (QUERIES - 1);
+        return wifimedium.checkAvailability(bssids[position], times[position]);
+    }
+
+    /**
+      * Scans the medium.
+      *
+      * @return                     the visible access points
+      */
+    @Benchmark
+    public Set<Tuple<String, Integer>> scan()
+    {
+        position = (position + 1) & (QUERIES - 1);
+        return wifimedium.scan(times[position]);
+    }
+
+    /**
+      * Returns the signal of a visible access point.
+      *
+      * @return                     the signal strength
+      */
+    @Benchmark
+    public Integer signal() throws MediumException
+    {
+        position = (position + 1) & (QUERIES - 1);
+        return wifimedium.signal(signalbssids[position], signaltimes[position]);
+    }
+}
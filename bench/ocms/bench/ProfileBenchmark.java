@@ -0,0 +1,120 @@
+ /**
+  * Opportunistic Connectivity Management Simulator
+  *
+  * Copyright (C) 2007 Hossein Falaki
+  */
+
+package ocms.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ocms.util.IndexedProfile;
+import ocms.util.Profile;
+import ocms.util.ProfileException;
+
+
+/**
+  * State changes of a {@link Profile} with the states of the WiFi power profile.
+  * The states are visited in the order of a typical connection: off, disconnected,
+  * scanning, disconnected, connected, transmitting, connected, disconnected.
+  * The same states are changed by name and by index (see {@link IndexedProfile}).
+  *
+  * @author     Hossein Falaki
+  */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProfileBenchmark
+{
+    /** The visited states */
+    private static final String[] CYCLE = {"state0", "state1", "state3", "state1", "state2", "state5",
+                                           "state2", "state1"};
+
+    /** Indices of the visited states */
+    private static final int[] INDICES = {0, 1, 3, 1, 2, 5, 2, 1};
+
+    /** The profile */
+    Profile profile;
+
+    /** The indexed profile */
+    IndexedProfile indexed;
+
+    /** Position in the cycle */
+    int position;
+
+    /** Time of the profile */
+    double time;
+
+
+    /**
+      * Builds the profile.
+      */
+    @Setup
+    public void setup() throws ProfileException
+    {
+        int[] running = {0, 100, 150, 675, 675, 150, 150};
+
+        profile = new Profile("bench", "Joule");
+        for (int i = 0; i < running.length; i++)
+            profile.registerState("state" + i, running[i], 0);
+
+        profile.setTransitionCost("state0", "state1", 8000);
+        profile.setTransitionCost("state1", "state0", 2000);
+        profile.setTransitionCost("state1", "state2", 8000);
+        profile.initialize("state0", 0);
+
+        indexed = new IndexedProfile(new String[] {"bench"}, new String[] {"Joule"});
+        for (int i = 0; i < running.length; i++)
+        {
+            indexed.addState("state" + i);
+            indexed.setRunningCost(0, i, running[i]);
+        }
+
+        indexed.setTransitionCost(0, 0, 1, 8000);
+        indexed.setTransitionCost(0, 1, 0, 2000);
+        indexed.setTransitionCost(0, 1, 2, 8000);
+        indexed.initialize(0, 0);
+    }
+
+    /**
+      * Changes the state of the profile.
+      *
+      * @return                     the cost of the profile
+      */
+    @Benchmark
+    public double changeState() throws ProfileException
+    {
+        position = (position + 1) % CYCLE.length;
+        time += 60;
+        profile.changeState(CYCLE[position], time);
+        return profile.getCost();
+    }
+
+    /**
+      * Changes the state of the indexed profile.
+      *
+      * @return                     the cost of the profile
+      */
+    @Benchmark
+    public double changeIndexedState() throws ProfileException
+    {
+        position = (position + 1) % INDICES.length;
+        time += 60;
+        indexed.changeState(INDICES[position], time);
+        return indexed.getCost(0);
+    }
+}
@@ -0,0 +1,93 @@
+ /**
+  * Opportunistic Connectivity Management Simulator
+  *
+  * Copyright (C) 2007 Hossein Falaki
+  */
+
+package ocms.bench;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ocms.simulator.Simulator;
+import ocms.util.Configuration;
+import ocms.util.Log;
+
+
+/**
+  * The schedulers, queried by the simulator over a synthetic trace.
+  * The context arrays of {@link ocms.schedulers.Scheduler#query} depend on the
+  * state of the interfaces, so the queries are made by a whole simulation.
+  * One operation is one simulation.
+  * The DUMB scheduler is left out, since it does not finish.
+  *
+  * @author     Hossein Falaki
+  */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SchedulerBenchmark
+{
+    /** The scheduler type */
+    @Param({"OPTIMAL", "STEPOPTIMAL", "EB", "LB", "STATIC", "USERSTATIC"})
+    public String scheduler;
+
+    /** Number of samples of the trace */
+    @Param({"3000"})
+    public int lines;
+
+    /** The scenario */
+    Configuration config;
+
+
+    /**
+      * Writes the trace and the user data.
+      */
+    @Setup
+    public void setup() throws Exception
+    {
+        File trace = BenchSupport.tempFile(".trace");
+        File user = BenchSupport.tempFile(".data");
+        BenchSupport.writeTrace(trace, lines, 500, 100, 1);
+        BenchSupport.writeUser(user, lines*BenchSupport.TIMESTEP, 1);
+        config = BenchSupport.scenario(trace, user, scheduler);
+    }
+
+    /**
+      * Unbinds the log of the simulations from the benchmark thread.
+      */
+    @TearDown
+    public void tearDown()
+    {
+        Log.unbind();
+    }
+
+    /**
+      * Runs a simulation.
+      *
+      * @return                     the data sent by the WiFi interface
+      */
+    @Benchmark
+    public double simulate()
+    {
+        Simulator simulator = new Simulator( new Configuration(config) );
+        simulator.run();
+        return simulator.getSentData();
+    }
+}
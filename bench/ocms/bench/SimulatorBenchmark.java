@@ -0,0 +1,389 @@
+ /**
+  * Opportunistic Connectivity Management Simulator
+  *
+  * Copyright (C) 2007 Hossein Falaki
+  */
+
+package ocms.bench;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Scanner;
+
+import ocms.dataset.TraceGenerator;
+import ocms.simulator.Simulator;
+import ocms.util.Configuration;
+import ocms.util.Log;
+
+
+/**
+  * End to end throughput of the simulator.
+  * Generates a synthetic trace with {@link TraceGenerator} and runs a complete
+  * simulation over it for each scheduler type, one after the other. For each
+  * simulation it reports:
+  * <ul>
+  *     <li><b>startup:</b> the time taken to construct the {@link Simulator}, that is
+  *             reading the scenario, loading the trace and building the media</li>
+  *     <li><b>run:</b> the time taken by {@link Simulator#run}</li>
+  *     <li><b>events/s:</b> events dispatched by the event queue per second of run time</li>
+  *     <li><b>simulated/wall:</b> simulated seconds per second of run time</li>
+  *     <li><b>peak heap:</b> the sum of the peak usage of the heap memory pools during
+  *             the simulation</li>
+  * </ul>
+  *
+  * An optional benchmark file may be passed to the main method. Its keys override
+  * the keys of the scenario (e.g. <i>medium_type</i> or <i>eventqueue_type</i>), and
+  * the following keys control the benchmark:
+  * <ul>
+  *     <li><b>bench_duration:</b> duration of the trace in seconds (one week by default)</li>
+  *     <li><b>bench_timestep:</b> time step of the trace in seconds (60 by default)</li>
+  *     <li><b>bench_aps, bench_cells:</b> number of distinct APs and cells (500 and 100)</li>
+  *     <li><b>bench_churn:</b> probability of changing location at each sample (0.05)</li>
+  *     <li><b>bench_seed:</b> seed of the trace (1)</li>
+  *     <li><b>bench_schedulers:</b> comma separated list of scheduler types (all of them)</li>
+  *     <li><b>bench_timeout:</b> the time limit of each simulation in seconds, or 0 for no
+  *             limit (300 by default)</li>
+  *     <li><b>bench_output:</b> the file the table is written to (the standard output
+  *             by default)</li>
+  *     <li><b>bench_baseline:</b> the table of an earlier run. The benchmark exits with
+  *             status 1 if the events/s of a scheduler falls below the baseline by more
+  *             than <i>bench_tolerance</i> (0.2 by default)</li>
+  * </ul>
+  * The simulations run on a separate thread that is abandoned when it exceeds the
+  * time limit, and reported as not finished. The simulations after an abandoned one
+  * are skipped, since the abandoned thread would still be using the processor. The
+  * DUMB scheduler does not finish on some traces, so it runs last by default.
+  *
+  * The benchmark is run with 'make macrobench' (see the Makefile).
+  *
+  * @author     Hossein Falaki
+  */
+public class SimulatorBenchmark
+{
+    /** The prefix of the keys of the benchmark */
+    private static final String BENCH               = "bench_";
+
+    /** The default list of scheduler types */
+    private static final String SCHEDULERS          = "OPTIMAL, STEPOPTIMAL, EB, LB, STATIC, USERSTATIC, DUMB";
+
+    /** The benchmark settings */
+    Configuration settings;
+
+    /** Time limit of each simulation in milliseconds */
+    long timeout;
+
+
+    /**
+      * The result of a single simulation.
+      */
+    private static class Result
+    {
+        /** The scheduler type */
+        String scheduler;
+
+        /** Time taken to construct the simulator in milliseconds */
+        long startup;
+
+        /** Time taken to run the simulation in milliseconds */
+        long run;
+
+        /** Number of dispatched events */
+        long events;
+
+        /** Simulated time in seconds */
+        double simulated;
+
+        /** Peak heap usage in bytes */
+        long heap;
+
+        /** The reason the simulation failed, or null */
+        String error;
+
+        /** True if the simulation was abandoned */
+        boolean abandoned;
+
+        /**
+          * Returns the events dispatched per second of run time.
+          *
+          * @return                 events per second
+          */
+        double eventRate()
+        {
+            return events*1000.0/Math.max(1, run);
+        }
+    }
+
+
+    /**
+      * The main method of the benchmark.
+      *
+      * @param      argv            the optional benchmark file
+      */
+    public static void main(String[] argv) throws Exception
+    {
+        Configuration settings;
+        if (argv.length > 0)
+            settings = new Configuration(argv[0]);
+        else
+            settings = new Configuration();
+
+        System.exit( new SimulatorBenchmark(settings).run() ? 0 : 1 );
+    }
+
+    /**
+      * Constructs the benchmark.
+      *
+      * @param      settings        the benchmark settings
+      */
+    public SimulatorBenchmark(Configuration settings)
+    {
+        this.settings = settings;
+        timeout = 1000L*getInt("bench_timeout", 300);
+    }
+
+    /**
+      * Returns an integer setting.
+      *
+      * @param      key             the key of the setting
+      * @param      value           the default value
+      * @return                     the setting
+      */
+    private int getInt(String key, int value)
+    {
+        return settings.hasKey(key) ? settings.getInt(key) : value;
+    }
+
+    /**
+      * Returns a real setting.
+      *
+      * @param      key             the key of the setting
+      * @param      value           the default value
+      * @return                     the setting
+      */
+    private double getDouble(String key, double value)
+    {
+        return settings.hasKey(key) ? settings.getDouble(key) : value;
+    }
+
+    /**
+      * Runs the benchmark and writes the table.
+      *
+      * @return                     false if a scheduler is slower than the baseline
+      * @throws     IOException     if the trace or the table cannot be written
+      */
+    public boolean run() throws IOException
+    {
+        int duration = getInt("bench_duration", 7*24*3600);
+        int timestep = getInt("bench_timestep", BenchSupport.TIMESTEP);
+
+        File trace = BenchSupport.tempFile(".trace");
+        File user = BenchSupport.tempFile(".data");
+        TraceGenerator generator = new TraceGenerator( getInt("bench_aps", 500), getInt("bench_cells", 100)
+                , getDouble("bench_churn", 0.05), getInt("bench_seed", 1) );
+        int samples = generator.write(trace.getPath(), duration, timestep);
+        BenchSupport.writeUser(user, duration, getInt("bench_seed", 1));
+
+        ArrayList<String> schedulers = new ArrayList<String>();
+        if (settings.hasKey("bench_schedulers"))
+            schedulers = settings.getList("bench_schedulers");
+        else
+        {
+            for (String type : SCHEDULERS.split(","))
+                schedulers.add(type);
+        }
+
+        ArrayList<Result> results = new ArrayList<Result>();
+        boolean abandoned = false;
+        for (String type : schedulers)
+        {
+            type = type.trim();
+            if (type.length() == 0)
+                continue;
+
+            Result result;
+            if (abandoned)
+            {
+                result = new Result();
+                result.scheduler = type;
+                result.error = "skipped after an unfinished simulation";
+            }
+            else
+            {
+                Configuration config = BenchSupport.scenario(trace, user, type);
+                config.add("dataset_timestep", "" + timestep);
+                config.add("start_time", "" + 5*timestep);
+                for (String key : settings.getKeys())
+                {
+                    if (!key.startsWith(BENCH))
+                        config.add(key, settings.get(key));
+                }
+
+                result = simulate(type, config);
+                abandoned = result.abandoned;
+            }
+            results.add(result);
+        }
+
+        PrintWriter output;
+        if (settings.hasKey("bench_output"))
+            output = new PrintWriter( new FileWriter( settings.get("bench_output") ) );
+        else
+            output = new PrintWriter( System.out );
+
+        output.println("# " + samples + " samples, time step " + timestep + " s");
+        output.println("# scheduler\tstartup(ms)\trun(ms)\tevents\tevents/s\tsimulated/wall\tpeakheap(MB)");
+        for (Result result : results)
+        {
+            if (result.error != null)
+            {
+                output.println("# " + result.scheduler + " " + result.error);
+                continue;
+            }
+
+            output.println(result.scheduler + "\t" + result.startup + "\t" + result.run + "\t" + result.events
+                    + "\t" + Math.round(result.eventRate())
+                    + "\t" + Math.round(result.simulated*1000.0/Math.max(1, result.run))
+                    + "\t" + result.heap/(1024*1024) );
+        }
+        output.flush();
+        if (settings.hasKey("bench_output"))
+            output.close();
+
+        if (settings.hasKey("bench_baseline"))
+            return compare(results, settings.get("bench_baseline"), getDouble("bench_tolerance", 0.2));
+
+        return true;
+    }
+
+    /**
+      * Runs a simulation on a separate thread and measures it.
+      *
+      * @param      type            the scheduler type
+      * @param      config          the scenario
+      * @return                     the result of the simulation
+      */
+    private Result simulate(final String type, final Configuration config)
+    {
+        final Result result = new Result();
+        result.scheduler = type;
+
+        Thread thread = new Thread("SimulatorBenchmark-" + type)
+        {
+            public void run()
+            {
+                try
+                {
+                    long start = System.nanoTime();
+                    Simulator simulator = new Simulator(config);
+                    result.startup = (System.nanoTime() - start)/1000000;
+
+                    start = System.nanoTime();
+                    simulator.run();
+                    result.run = (System.nanoTime() - start)/1000000;
+
+                    result.events = simulator.getEventCount();
+                    result.simulated = simulator.getSimulatedTime();
+                }
+                catch (Exception e)
+                {
+                    result.error = "failed: " + e.toString();
+                    e.printStackTrace();
+                }
+                finally
+                {
+                    Log.unbind();
+                }
+            }
+        };
+        thread.setDaemon(true);
+
+        System.gc();
+        ArrayList<MemoryPoolMXBean> pools = new ArrayList<MemoryPoolMXBean>();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans())
+        {
+            if (pool.getType() == MemoryType.HEAP)
+            {
+                pool.resetPeakUsage();
+                pools.add(pool);
+            }
+        }
+
+        thread.start();
+        try
+        {
+            thread.join(timeout);
+        }
+        catch (InterruptedException ie)
+        {
+            Thread.currentThread().interrupt();
+        }
+
+        if (thread.isAlive())
+        {
+            result.abandoned = true;
+            result.error = "did not finish in " + timeout/1000 + " s";
+            return result;
+        }
+
+        for (MemoryPoolMXBean pool : pools)
+            result.heap += pool.getPeakUsage().getUsed();
+
+        return result;
+    }
+
+    /**
+      * Compares the event rates with the table of an earlier run.
+      *
+      * @param      results         the results of this run
+      * @param      baseline        name of the table of the earlier run
+      * @param      tolerance       the accepted relative slow down
+      * @return                     false if a scheduler is slower than the baseline
+      * @throws     IOException     if the baseline cannot be read
+      */
+    private boolean compare(ArrayList<Result> results, String baseline, double tolerance) throws IOException
+    {
+        HashMap<String, Double> rates = new HashMap<String, Double>();
+        Scanner input = new Scanner( new FileReader(baseline) );
+        while ( input.hasNextLine() )
+        {
+            String[] items = input.nextLine().split("\t");
+            if ( (items.length < 5) || items[0].startsWith("#") )
+                continue;
+
+            try
+            {
+                rates.put(items[0], Double.parseDouble(items[4]));
+            }
+            catch (NumberFormatException nfe)
+            {
+                System.err.println("SimulatorBenchmark: Invalid line in " + baseline + ": " + nfe.getMessage());
+            }
+        }
+        input.close();
+
+        boolean passed = true;
+        for (Result result : results)
+        {
+            Double rate = rates.get(result.scheduler);
+            if ( (rate == null) || (result.error != null) )
+                continue;
+
+            if (result.eventRate() < (1 - tolerance)*rate)
+            {
+                System.err.println("SimulatorBenchmark: " + result.scheduler + " dispatched "
+                        + Math.round(result.eventRate()) + " events/s, the baseline is " + Math.round(rate));
+                passed = false;
+            }
+        }
+
+        return passed;
+    }
+}
@@ -0,0 +1,162 @@
+ /**
+  * Opportunistic Connectivity Management Simulator
+  *
+  * Copyright (C) 2007 Hossein Falaki
+  */
+
+package ocms.bench;
+
+import java.io.File;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ocms.dataset.DataSet;
+import ocms.dataset.Tuple;
+import ocms.medium.WiFiMedium;
+import ocms.nic.NICException;
+import ocms.nic.WiFiNIC;
+import ocms.util.Configuration;
+
+
+/**
+  * A pass of a {@link WiFiNIC} over a synthetic trace.
+  * The NIC associates to the first visible access point whenever it is
+  * disconnected, and then
+  * <ul>
+  *     <li>step: steps one sample at a time</li>
+  *     <li>transmit: transmits for up to 12 hours or until the access point is lost</li>
+  * </ul>
+  * until the end of the trace. One operation is one pass.
+  *
+  * @author     Hossein Falaki
+  */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WiFiNICBenchmark
+{
+    /** The longest transmission */
+    private static final double TRANSMISSION        = 12*3600;
+
+    /** The transmission mode of the NIC (see ocms.conf) */
+    @Param({"SKIP", "STEP"})
+    public String mode;
+
+    /** Number of samples of the trace */
+    @Param({"10000"})
+    public int lines;
+
+    /** The medium */
+    WiFiMedium medium;
+
+    /** The configuration view of the NIC */
+    Configuration view;
+
+
+    /**
+      * Builds the medium.
+      */
+    @Setup
+    public void setup() throws Exception
+    {
+        File trace = BenchSupport.tempFile(".trace");
+        BenchSupport.writeTrace(trace, lines, 500, 100, 1);
+        medium = new WiFiMedium( new DataSet(trace.getPath(), BenchSupport.TIMESTEP), "bench");
+
+        Configuration config = new Configuration();
+        BenchSupport.addWiFi(config, "wifi1");
+        config.add("wifi1_transmit_mode", mode);
+        view = config.getView("wifi1");
+    }
+
+    /**
+      * Returns a new NIC at the start of the trace.
+      */
+    private WiFiNIC createNIC() throws NICException
+    {
+        WiFiNIC nic = new WiFiNIC("wifi1", view, medium);
+        nic.initialize(medium.getStartTime());
+        nic.turnOn();
+        return nic;
+    }
+
+    /**
+      * Associates the NIC to the first visible access point.
+      *
+      * @return                     true if the NIC is connected
+      */
+    private boolean connect(WiFiNIC nic)
+    {
+        Set<Tuple<String, Integer>> scan = medium.scan(nic.getTime());
+        if ( (scan == null) || (scan.size() == 0) )
+            return false;
+
+        try
+        {
+            nic.associate( scan.iterator().next().getKey() );
+            return true;
+        }
+        catch (NICException ne)
+        {
+            return false;
+        }
+    }
+
+    /**
+      * Steps the NIC over the trace.
+      *
+      * @return                     the time of the NIC
+      */
+    @Benchmark
+    public double step() throws NICException
+    {
+        WiFiNIC nic = createNIC();
+        double end = medium.getEndTime() - BenchSupport.TIMESTEP;
+
+        while (nic.getTime() < end)
+        {
+            if (nic.getState() != WiFiNIC.CONNECTED)
+                connect(nic);
+            nic.step(nic.getTime() + BenchSupport.TIMESTEP);
+        }
+
+        return nic.getTime();
+    }
+
+    /**
+      * Transmits over the trace.
+      *
+      * @return                     the time of the NIC
+      */
+    @Benchmark
+    public double transmit() throws NICException
+    {
+        WiFiNIC nic = createNIC();
+        double end = medium.getEndTime() - BenchSupport.TIMESTEP;
+
+        while (nic.getTime() < end)
+        {
+            if ( connect(nic) )
+                nic.transmit( Math.min(nic.getTime() + TRANSMISSION, end) );
+            if (nic.getTime() < end)
+                nic.step(nic.getTime() + BenchSupport.TIMESTEP);
+        }
+
+        return nic.getTime();
+    }
+}
@@ -6,7 +6,10 @@
 
 package ocms.algorithms.statistics;
 
+import ocms.dataset.CompactTrace;
 import ocms.dataset.DataSet;
+import ocms.dataset.Identifier;
+import ocms.dataset.ObservationSet;
 import ocms.dataset.Sample;
 
 import java.util.HashSet;
@@ -62,6 +65,27 @@ public class Counter
         }
     }
 
+    /**
+      * Loads and counts the content of the given compact trace.
+      * The samples of a run share their sets, so each run is read once.
+      *
+      * @param      trace           CompactTrace object to be added to the
+      *                             counter
+      */
+    public void load(CompactTrace trace)
+    {
+        for (int run = 0; run < trace.getRunCount(); run++)
+        {
+            ObservationSet gsm = trace.getGSM(run);
+            for (int i = 0; i < gsm.size(); i++)
+                gsmcountset.add( Identifier.toString(gsm.getId(i)) );
+
+            ObservationSet wifi = trace.getWiFi(run);
+            for (int i = 0; i < wifi.size(); i++)
+                wificountset.add( Identifier.toString(wifi.getId(i)) );
+        }
+    }
+
     /**
       * Returns the number of unique GSM IDs in the countset.
       *
@@ -7,15 +7,15 @@
 package ocms.algorithms.statistics;
 
 import ocms.dataset.DataSet;
-import ocms.dataset.Sample;
 
 import java.util.HashMap;
-import java.util.Iterator;
 
 /**
   * Given a DataSet object, finds the frequency of each cell ID or ESSID among all the sample.
   * It provides methods to manipulate samples based on the frequency information in the given 
   * DataSet object.
+  * The counting and the filtering are done by a {@link FrequencyFilter}; to
+  * chain several filters without counting in between, use it directly.
   *
   * @author     Hossein Falaki
   */
@@ -36,6 +36,9 @@ public class Frequency
     /** Maps a cell ID to its count */
     HashMap<String, Integer> freq;
 
+    /** Counts the samples and removes the filtered IDs */
+    FrequencyFilter filter;
+
 
     /**
       * Initializes the Frequency object with a given DataSet object.
@@ -56,45 +59,30 @@ public class Frequency
 
     /**
       * Returns a map of unique cell IDs to their frequency in the given sample set.
+      * The samples are counted by a new {@link FrequencyFilter}, which is also
+      * used by the filters until the next count.
       *
       */
     private void count()
     {
-        freq = new HashMap<String, Integer>();
-        Iterator it = dataset.iterator();
-        Iterator cellit;
-        Sample s;
-        String cellid;
-
-        while (it.hasNext())
-        {
-            s = (Sample)it.next();
-            if (type == WIFI)
-                cellit = (s.getWiFiSet()).iterator();
-            else
-                cellit = (s.getGSMSet()).iterator();
-
-            while (cellit.hasNext())
-            {
-                cellid = (String)cellit.next();
-                if (!freq.containsKey(cellid))
-                    freq.put(cellid, 1);
-                else
-                    freq.put(cellid, freq.get(cellid) + 1);
-            }
-        }
+        filter = new FrequencyFilter(dataset, type);
+        freq = filter.getFreq();
     }
 
     /**
       * Filters the data with both a low pass and a high pass filter.
+      * Both filters use the frequencies of the data set before filtering, and
+      * the samples are rewritten once.
       * 
       * @param      highthreshold       high pass filter threshold
       * @param      lowthreshold        low pass filter threshold
       */
     public void filter(double highthreshold, double lowthreshold)
     {
-        highpass(highthreshold);
-        lowpass(lowthreshold);
+        filter.highpass(highthreshold);
+        filter.lowpass(lowthreshold);
+        filter.apply();
+        freq = filter.getFreq();
 
         /* DEBUGGING 
         int counter;
@@ -115,15 +103,9 @@ public class Frequency
       */
     public void filter(String id)
     {
-        Iterator sIt = dataset.iterator();
-        while (sIt.hasNext())
-        {
-            if (type == GSM)
-                ((Sample)sIt.next()).removeCellID( id );
-            if (type == WIFI)
-                ((Sample)sIt.next()).removeESSID( id );
-        }
-        count();
+        filter.remove(id);
+        filter.apply();
+        freq = filter.getFreq();
     }
 
     /**
@@ -133,25 +115,9 @@ public class Frequency
       */
     public void highpass(double threshold)
     {
-        int total = dataset.size();
-        Iterator sIt;
-
-
-        for (String cellid : freq.keySet() )
-        {
-            sIt = dataset.iterator();
-            if ((double)freq.get(cellid)/total < threshold)
-            {
-                while (sIt.hasNext())
-                {
-                    if (type == GSM)
-                        ((Sample)sIt.next()).removeCellID( cellid );
-                    if (type == WIFI)
-                        ((Sample)sIt.next()).removeESSID( cellid );
-                }
-            }
-        }
-        count();
+        filter.highpass(threshold);
+        filter.apply();
+        freq = filter.getFreq();
     }
 
     /**
@@ -161,24 +127,9 @@ public class Frequency
       */
     public void lowpass(double threshold)
     {
-        int total = dataset.size();
-        Iterator sIt;
-
-        for (String cellid : freq.keySet() )
-        {
-            sIt = dataset.iterator();
-            if ((double)freq.get(cellid)/total > threshold)
-            {
-                while (sIt.hasNext())
-                {
-                    if (type == GSM)
-                        ((Sample)sIt.next()).removeCellID( cellid );
-                    if (type == WIFI)
-                        ((Sample)sIt.next()).removeESSID( cellid );
-                }
-            }
-        }
-        count();
+        filter.lowpass(threshold);
+        filter.apply();
+        freq = filter.getFreq();
     }
 
     /**
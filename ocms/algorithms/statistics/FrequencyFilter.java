@@ -0,0 +1,456 @@
+ /**
+  * Opportunistic Connectivity Management Simulator
+  *
+  * Copyright (C) 2007 Hossein Falaki
+  */
+
+package ocms.algorithms.statistics;
+
+import ocms.dataset.DataSet;
+import ocms.dataset.Identifier;
+import ocms.dataset.Sample;
+import ocms.dataset.Tuple;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+  * Filters the cell IDs or ESSIDs of a DataSet by their frequency in two passes.
+  * The frequencies are counted once, when the filter is constructed. The
+  * filters ({@link #remove}, {@link #highpass} and {@link #lowpass}) only mark
+  * the IDs to be removed, using the counts of the first pass, and
+  * {@link #apply} removes all the marked IDs from the samples in a second pass.
+  * Removing an ID does not change the frequency of the others, so the filters
+  * can be chained without counting again.
+  * <br>
+  * A sample may observe an ID more than once. The filters decide on the ID,
+  * not on an observation, so every observation of a marked ID is removed: a
+  * filtered AP is never visible again, as with
+  * {@link ocms.dataset.BinaryTrace#filterWiFi}.
+  * <br>
+  * Both passes split the samples into chunks that are processed in parallel on
+  * the common fork/join pool. Each chunk counts the {@link Identifier}s of the
+  * IDs into an int array indexed by its own table of the identifiers, and the
+  * counts of the chunks are added up as the chunks are joined.
+  * <br>
+  * The frequency of an ID is the fraction of the samples it appears in.
+  *
+  * @author     Hossein Falaki
+  */
+public class FrequencyFilter
+{
+    /** The minimum number of samples of a chunk */
+    private static final int MIN_CHUNK      = 4096;
+
+    /** The type of the IDs: Frequency.WIFI or Frequency.GSM */
+    int type;
+
+    /** The samples of the data set */
+    Sample[] samples;
+
+    /** The number of samples of a chunk */
+    int chunk;
+
+    /** The identifiers of the IDs and their counts */
+    ChunkCount total;
+
+    /** True for the index of each ID to be removed */
+    boolean[] removed;
+
+    /** True for the index of each ID that has been removed from the samples */
+    boolean[] applied;
+
+
+    /**
+      * Maps the identifiers of the IDs to consecutive indexes, with open addressing.
+      */
+    private static class IdentifierTable
+    {
+        /** The identifier of each slot, Identifier.NONE if the slot is empty */
+        long[] slots = new long[128];
+
+        /** The index of the identifier of each slot */
+        int[] indexes = new int[128];
+
+        /** The identifier of each index */
+        long[] identifiers = new long[64];
+
+        /** Number of identifiers */
+        int size;
+
+        IdentifierTable()
+        {
+            Arrays.fill(slots, Identifier.NONE);
+        }
+
+        /**
+          * Returns the index of an identifier.
+          *
+          * @param      identifier          the identifier
+          * @return                         index of the identifier, or -1 if it is not in the table
+          */
+        int indexOf(long identifier)
+        {
+            int mask = slots.length - 1;
+            for (int slot = hash(identifier) & mask; slots[slot] != Identifier.NONE; slot = (slot + 1) & mask)
+            {
+                if (slots[slot] == identifier)
+                    return indexes[slot];
+            }
+
+            return -1;
+        }
+
+        /**
+          * Returns the index of an identifier, adding it if needed.
+          *
+          * @param      identifier          the identifier
+          * @return                         index of the identifier
+          */
+        int add(long identifier)
+        {
+            int mask = slots.length - 1;
+            int slot = hash(identifier) & mask;
+            for (; slots[slot] != Identifier.NONE; slot = (slot + 1) & mask)
+            {
+                if (slots[slot] == identifier)
+                    return indexes[slot];
+            }
+
+            if (size == identifiers.length)
+                identifiers = Arrays.copyOf(identifiers, 2*size);
+            identifiers[size] = identifier;
+            slots[slot] = identifier;
+            indexes[slot] = size;
+
+            /* The table is kept at most half full */
+            if (2*(size + 1) > slots.length)
+                grow();
+
+            return size++;
+        }
+
+        /**
+          * Doubles the number of slots.
+          */
+        private void grow()
+        {
+            long[] oldslots = slots;
+            int[] oldindexes = indexes;
+
+            slots = new long[2*oldslots.length];
+            indexes = new int[slots.length];
+            Arrays.fill(slots, Identifier.NONE);
+
+            int mask = slots.length - 1;
+            for (int i = 0; i < oldslots.length; i++)
+            {
+                if (oldslots[i] == Identifier.NONE)
+                    continue;
+
+                int slot = hash(oldslots[i]) & mask;
+                while (slots[slot] != Identifier.NONE)
+                    slot = (slot + 1) & mask;
+                slots[slot] = oldslots[i];
+                indexes[slot] = oldindexes[i];
+            }
+        }
+
+        /**
+          * Spreads the bits of an identifier.
+          *
+          * @param      identifier          the identifier
+          * @return                         the hash of the identifier
+          */
+        private static int hash(long identifier)
+        {
+            long h = identifier*0x9E3779B97F4A7C15L;
+            return (int)(h ^ (h >>> 32));
+        }
+    }
+
+
+    /**
+      * The IDs of a chunk of samples and their counts.
+      */
+    private static class ChunkCount
+    {
+        /** The index of each ID in the chunk */
+        IdentifierTable table = new IdentifierTable();
+
+        /** The number of samples each ID appears in */
+        int[] counts = new int[64];
+
+        /** The last sample each ID was counted in */
+        int[] last = new int[64];
+
+        /**
+          * Adds the counts of another chunk.
+          *
+          * @param      other               the counts of the other chunk
+          * @return                         this chunk
+          */
+        ChunkCount merge(ChunkCount other)
+        {
+            for (int i = 0; i < other.table.size; i++)
+            {
+                int index = table.add( other.table.identifiers[i] );
+                if (index == counts.length)
+                    counts = Arrays.copyOf(counts, 2*index);
+                counts[index] += other.counts[i];
+            }
+
+            return this;
+        }
+    }
+
+
+    /**
+      * Counts the IDs of a range of the samples, splitting it if it is large.
+      */
+    private class CountTask extends RecursiveTask<ChunkCount>
+    {
+        /** Index of the first sample */
+        int from;
+
+        /** Index after the last sample */
+        int to;
+
+        CountTask(int from, int to)
+        {
+            this.from = from;
+            this.to = to;
+        }
+
+        protected ChunkCount compute()
+        {
+            if (to - from <= chunk)
+                return countChunk(from, to);
+
+            CountTask first = new CountTask(from, from + (to - from)/2);
+            CountTask second = new CountTask(from + (to - from)/2, to);
+            first.fork();
+            ChunkCount result = second.compute();
+            return first.join().merge(result);
+        }
+    }
+
+
+    /**
+      * Removes a set of IDs from a range of the samples, splitting it if it is large.
+      */
+    private class ApplyTask extends RecursiveTask<Integer>
+    {
+        /** The IDs to be removed */
+        Set<String> ids;
+
+        /** Index of the first sample */
+        int from;
+
+        /** Index after the last sample */
+        int to;
+
+        ApplyTask(Set<String> ids, int from, int to)
+        {
+            this.ids = ids;
+            this.from = from;
+            this.to = to;
+        }
+
+        protected Integer compute()
+        {
+            if (to - from > chunk)
+            {
+                ApplyTask first = new ApplyTask(ids, from, from + (to - from)/2);
+                ApplyTask second = new ApplyTask(ids, from + (to - from)/2, to);
+                first.fork();
+                int result = second.compute();
+                return first.join() + result;
+            }
+
+            int result = 0;
+            for (int i = from; i < to; i++)
+            {
+                if (type == Frequency.WIFI)
+                    result += samples[i].removeESSIDs(ids);
+                else
+                    result += samples[i].removeCellIDs(ids);
+            }
+            return result;
+        }
+    }
+
+
+    /**
+      * Counts the frequency of the IDs of a data set.
+      *
+      * @param      dataset             DataSet object
+      * @param      type                Frequency.WIFI or Frequency.GSM
+      */
+    public FrequencyFilter(DataSet dataset, int type)
+    {
+        this.type = type;
+
+        samples = new Sample[dataset.size()];
+        int count = 0;
+        for (Iterator it = dataset.iterator(); it.hasNext();)
+            samples[count++] = (Sample)it.next();
+
+        /* Small data sets are processed in a single chunk */
+        int threads = Runtime.getRuntime().availableProcessors();
+        chunk = Math.max(MIN_CHUNK, (samples.length + threads - 1)/threads);
+
+        total = ForkJoinPool.commonPool().invoke( new CountTask(0, samples.length) );
+        removed = new boolean[total.table.size];
+        applied = new boolean[total.table.size];
+    }
+
+    /**
+      * Counts the IDs of a chunk of the samples.
+      *
+      * @param      from                index of the first sample of the chunk
+      * @param      to                  index after the last sample of the chunk
+      * @return                         the counts of the chunk
+      */
+    private ChunkCount countChunk(int from, int to)
+    {
+        ChunkCount result = new ChunkCount();
+
+        for (int i = from; i < to; i++)
+        {
+            Set<Tuple<String, Integer>> set = (type == Frequency.WIFI) ?
+                samples[i].getRichWiFiSet() : samples[i].getRichGSMSet();
+
+            for (Tuple<String, Integer> tuple : set)
+            {
+                int size = result.table.size;
+                int index = result.table.add( Identifier.encode(tuple.getKey()) );
+                if (result.table.size > size)
+                {
+                    if (index == result.counts.length)
+                    {
+                        result.counts = Arrays.copyOf(result.counts, 2*index);
+                        result.last = Arrays.copyOf(result.last, 2*index);
+                    }
+                    result.last[index] = -1;
+                }
+
+                /* An ID observed more than once in a sample is counted once */
+                if (result.last[index] != i)
+                {
+                    result.last[index] = i;
+                    result.counts[index]++;
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /**
+      * Marks an ID to be removed.
+      *
+      * @param      id                  the ID to be removed
+      */
+    public void remove(String id)
+    {
+        int index = total.table.indexOf( Identifier.encode(id) );
+        if (index != -1)
+            removed[index] = true;
+    }
+
+    /**
+      * Marks the IDs with frequency lower than the specified threshold to be removed.
+      *
+      * @param      threshold           high pass filter frequency threshold
+      */
+    public void highpass(double threshold)
+    {
+        for (int i = 0; i < removed.length; i++)
+        {
+            if ((double)total.counts[i]/samples.length < threshold)
+                removed[i] = true;
+        }
+    }
+
+    /**
+      * Marks the IDs with frequency higher than the specified threshold to be removed.
+      *
+      * @param      threshold           low pass filter frequency threshold
+      */
+    public void lowpass(double threshold)
+    {
+        for (int i = 0; i < removed.length; i++)
+        {
+            if ((double)total.counts[i]/samples.length > threshold)
+                removed[i] = true;
+        }
+    }
+
+    /**
+      * Removes the marked IDs from the samples of the data set, in parallel chunks.
+      * The counts of the removed IDs are dropped, the others do not change.
+      *
+      * @return                         number of removed observations
+      */
+    public int apply()
+    {
+        HashSet<String> ids = new HashSet<String>();
+        for (int i = 0; i < removed.length; i++)
+        {
+            if ( removed[i] && !applied[i] )
+                ids.add( Identifier.toString(total.table.identifiers[i]) );
+        }
+
+        if (ids.isEmpty())
+            return 0;
+
+        int result = ForkJoinPool.commonPool().invoke( new ApplyTask(ids, 0, samples.length) );
+
+        /* The remaining IDs keep their counts */
+        for (int i = 0; i < removed.length; i++)
+        {
+            if (removed[i])
+            {
+                applied[i] = true;
+                total.counts[i] = 0;
+            }
+        }
+
+        return result;
+    }
+
+    /**
+      * Returns the number of samples an ID appears in.
+      *
+      * @param      id                  the ID
+      * @return                         number of samples, 0 if the ID has been removed
+      */
+    public int getCount(String id)
+    {
+        int index = total.table.indexOf( Identifier.encode(id) );
+        return (index == -1) ? 0 : total.counts[index];
+    }
+
+    /**
+      * Returns the mapping from ID to count.
+      *
+      * @return                         mapping from the IDs of the data set to their count
+      */
+    public HashMap<String, Integer> getFreq()
+    {
+        HashMap<String, Integer> result = new HashMap<String, Integer>(2*removed.length);
+        for (int i = 0; i < removed.length; i++)
+        {
+            if (!applied[i])
+                result.put(Identifier.toString(total.table.identifiers[i]), total.counts[i]);
+        }
+
+        return result;
+    }
+}
@@ -0,0 +1,769 @@
+ /**
+  * Opportunistic Connectivity Management Simulator
+  *
+  * Copyright (C) 2007 Hossein Falaki
+  */
+
+package ocms.dataset;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+
+
+/**
+  * A trace in the compact binary format, memory-mapped from a file.
+  * The format is columnar. WiFi BSSIDs and GSM cell IDs are replaced by indexes
+  * into a dictionary, the timestamps are delta encoded and the signal strengths
+  * are kept in one byte. The file has the following sections:
+  * <ul>
+  *     <li> header: magic number, version, number of samples, dictionary size,
+  *          width of the ID columns (2 or 4 bytes), number of WiFi and GSM
+  *          observations </li>
+  *     <li> dictionary: length (2 bytes) and UTF-8 bytes of each ID </li>
+  *     <li> time column: zig-zag variable length deltas of the sample times </li>
+  *     <li> WiFi and GSM count columns: variable length number of observations
+  *          of each sample </li>
+  *     <li> WiFi ID and signal columns, GSM ID and signal columns </li>
+  * </ul>
+  * The times are the times of the text format (before they are multiplied by
+  * the time step of the data set). The samples are kept in the order of the
+  * text file.
+  *
+  * Only the dictionary and the time and count columns are decoded when the file
+  * is opened. The ID and signal columns are read directly from the mapped buffer.
+  * The file is converted from the text format with the {@link #main} method.
+  *
+  * @author     Hossein Falaki
+  */
+public class BinaryTrace
+{
+    /** The magic number of the binary trace files ("OCMT") */
+    public static final int MAGIC                       = 0x4F434D54;
+
+    /** Version of the format */
+    public static final int VERSION                     = 1;
+
+    /** Name of the trace file */
+    String filename;
+
+    /** The mapped file */
+    ByteBuffer buffer;
+
+    /** The dictionary of IDs */
+    String[] dictionary;
+
+    /** The {@link Identifier}s of the IDs of the dictionary */
+    long[] identifiers;
+
+    /** The identifiers of the dictionary in increasing order */
+    long[] sortedidentifiers;
+
+    /** The index in the dictionary of each of the sorted identifiers */
+    int[] order;
+
+    /** Times of the samples (as in the text format) */
+    int[] times;
+
+    /** Index of the first WiFi observation of each sample (samples + 1 elements) */
+    int[] wifistart;
+
+    /** Index of the first GSM observation of each sample (samples + 1 elements) */
+    int[] gsmstart;
+
+    /** Width of the ID columns in bytes */
+    int idwidth;
+
+    /** Position of the WiFi ID column */
+    int wifiids;
+
+    /** Position of the WiFi signal column */
+    int wifisignals;
+
+    /** Position of the GSM ID column */
+    int gsmids;
+
+    /** Position of the GSM signal column */
+    int gsmsignals;
+
+    /** The distinct sample times in increasing order */
+    int[] slottimes;
+
+    /** The last sample with each of the distinct times */
+    int[] slotsamples;
+
+
+    /**
+      * Converts a text trace to the binary format.
+      * Usage: BinaryTrace text-trace binary-trace
+      *
+      * @param      argv            the text trace file and the binary trace file
+      */
+    public static void main(String[] argv)
+    {
+        if (argv.length < 2)
+        {
+            System.err.println("Usage: BinaryTrace text-trace binary-trace");
+            System.exit(1);
+        }
+
+        try
+        {
+            DataSet dataset = new DataSet(argv[0], 1);
+            write(dataset, argv[1]);
+            System.out.println("Converted " + dataset.size() + " samples of " + argv[0] + " to " + argv[1]);
+        }
+        catch (Exception e)
+        {
+            System.err.println("Error while converting " + argv[0] + ": " + e.toString());
+            e.printStackTrace();
+            System.exit(1);
+        }
+    }
+
+    /**
+      * Opens and maps a binary trace file.
+      *
+      * @param      filename        name of the binary trace file
+      * @throws     IOException     if the file cannot be read or is not a binary trace
+      */
+    public BinaryTrace(String filename) throws IOException
+    {
+        this.filename = filename;
+
+        RandomAccessFile file = new RandomAccessFile(filename, "r");
+        try
+        {
+            FileChannel channel = file.getChannel();
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        finally
+        {
+            /* The mapping stays valid after the file is closed */
+            file.close();
+        }
+
+        if ( (buffer.getInt() != MAGIC) || (buffer.getInt() != VERSION) )
+            throw new IOException(filename + " is not a binary trace");
+
+        int samples = buffer.getInt();
+        int dictsize = buffer.getInt();
+        idwidth = buffer.get();
+        int wifientries = buffer.getInt();
+        int gsmentries = buffer.getInt();
+
+        dictionary = new String[dictsize];
+        identifiers = new long[dictsize];
+        for (int i = 0; i < dictsize; i++)
+        {
+            byte[] bytes = new byte[buffer.getShort() & 0xFFFF];
+            buffer.get(bytes);
+            dictionary[i] = new String(bytes, "UTF-8");
+            identifiers[i] = Identifier.encode(dictionary[i]);
+        }
+        sortIdentifiers();
+
+        times = new int[samples];
+        int time = 0;
+        for (int i = 0; i < samples; i++)
+        {
+            int delta = readVarInt();
+            time += (delta >>> 1) ^ -(delta & 1);
+            times[i] = time;
+        }
+
+        wifistart = new int[samples + 1];
+        for (int i = 0; i < samples; i++)
+            wifistart[i + 1] = wifistart[i] + readVarInt();
+
+        gsmstart = new int[samples + 1];
+        for (int i = 0; i < samples; i++)
+            gsmstart[i + 1] = gsmstart[i] + readVarInt();
+
+        if ( (wifistart[samples] != wifientries) || (gsmstart[samples] != gsmentries) )
+            throw new IOException(filename + " is corrupted");
+
+        wifiids = buffer.position();
+        wifisignals = wifiids + wifientries*idwidth;
+        gsmids = wifisignals + wifientries;
+        gsmsignals = gsmids + gsmentries*idwidth;
+
+        if (gsmsignals + gsmentries > buffer.limit())
+            throw new IOException(filename + " is truncated");
+
+        indexSlots();
+    }
+
+    /**
+      * Returns true if the file is a binary trace.
+      *
+      * @param      filename        name of the file
+      * @return                     true if the file starts with the magic number
+      */
+    public static boolean isBinary(String filename)
+    {
+        try
+        {
+            DataInputStream input = new DataInputStream( new FileInputStream(filename) );
+            try
+            {
+                return input.readInt() == MAGIC;
+            }
+            finally
+            {
+                input.close();
+            }
+        }
+        catch (IOException ioe)
+        {
+            return false;
+        }
+    }
+
+    /**
+      * Writes the data set in the binary format.
+      * The times of the samples are written as they are in the data set, so the
+      * data set should be loaded with a time step of one.
+      *
+      * @param      dataset         the data set to be written
+      * @param      filename        name of the binary trace file
+      * @throws     IOException     if the file cannot be written
+      */
+    public static void write(DataSet dataset, String filename) throws IOException
+    {
+        HashMap<String, Integer> ids = new HashMap<String, Integer>();
+        ArrayList<String> names = new ArrayList<String>();
+        int wifientries = 0;
+        int gsmentries = 0;
+        int clamped = 0;
+
+        for (Iterator it = dataset.iterator(); it.hasNext();)
+        {
+            Sample sample = (Sample)it.next();
+            for (Tuple<String, Integer> wifi : sample.getRichWiFiSet())
+            {
+                addName(ids, names, wifi.getKey());
+                wifientries++;
+            }
+            for (Tuple<String, Integer> gsm : sample.getRichGSMSet())
+            {
+                addName(ids, names, gsm.getKey());
+                gsmentries++;
+            }
+        }
+
+        int width = (names.size() <= 65536) ? 2 : 4;
+
+        DataOutputStream output = new DataOutputStream( new BufferedOutputStream( new FileOutputStream(filename) ) );
+        try
+        {
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            output.writeInt(dataset.size());
+            output.writeInt(names.size());
+            output.writeByte(width);
+            output.writeInt(wifientries);
+            output.writeInt(gsmentries);
+
+            for (String name : names)
+            {
+                byte[] bytes = name.getBytes("UTF-8");
+                if (bytes.length > 65535)
+                    throw new IOException("ID too long: " + name);
+                output.writeShort(bytes.length);
+                output.write(bytes);
+            }
+
+            int previous = 0;
+            for (Iterator it = dataset.iterator(); it.hasNext();)
+            {
+                int time = ((Sample)it.next()).getTime();
+                int delta = time - previous;
+                writeVarInt(output, (delta << 1) ^ (delta >> 31));
+                previous = time;
+            }
+
+            for (Iterator it = dataset.iterator(); it.hasNext();)
+                writeVarInt(output, ((Sample)it.next()).getRichWiFiSet().size());
+
+            for (Iterator it = dataset.iterator(); it.hasNext();)
+                writeVarInt(output, ((Sample)it.next()).getRichGSMSet().size());
+
+            /* The ID and signal columns, WiFi first */
+            for (int type = 0; type < 2; type++)
+            {
+                for (Iterator it = dataset.iterator(); it.hasNext();)
+                {
+                    Sample sample = (Sample)it.next();
+                    for (Tuple<String, Integer> tuple : (type == 0) ? sample.getRichWiFiSet() : sample.getRichGSMSet())
+                    {
+                        int id = ids.get(tuple.getKey());
+                        if (width == 2)
+                            output.writeShort(id);
+                        else
+                            output.writeInt(id);
+                    }
+                }
+
+                for (Iterator it = dataset.iterator(); it.hasNext();)
+                {
+                    Sample sample = (Sample)it.next();
+                    for (Tuple<String, Integer> tuple : (type == 0) ? sample.getRichWiFiSet() : sample.getRichGSMSet())
+                    {
+                        int signal = tuple.getValue();
+                        if ( (signal < Byte.MIN_VALUE) || (signal > Byte.MAX_VALUE) )
+                        {
+                            signal = Math.max(Byte.MIN_VALUE, Math.min(Byte.MAX_VALUE, signal));
+                            clamped++;
+                        }
+                        output.writeByte(signal);
+                    }
+                }
+            }
+        }
+        finally
+        {
+            output.close();
+        }
+
+        if (clamped > 0)
+            System.err.println("BinaryTrace: " + clamped + " signal values of " + dataset.getFileName()
+                    + " did not fit in a byte and were clamped");
+    }
+
+    /**
+      * Adds the samples of the trace to the data set.
+      * The times of the samples are multiplied by the time step of the data set.
+      *
+      * @param      dataset         the data set to be filled
+      */
+    public void fill(DataSet dataset)
+    {
+        int step = dataset.getTimeStep();
+
+        for (int i = 0; i < times.length; i++)
+        {
+            Sample sample = new Sample(times[i]*step);
+            for (int j = wifistart[i]; j < wifistart[i + 1]; j++)
+                sample.addWiFi( new Tuple<String, Integer>(dictionary[wifiId(j)], wifiSignal(j)) );
+            for (int j = gsmstart[i]; j < gsmstart[i + 1]; j++)
+                sample.addGSM( new Tuple<String, Integer>(dictionary[gsmId(j)], gsmSignal(j)) );
+            dataset.add(sample);
+        }
+    }
+
+    /**
+      * Returns the WiFi IDs removed by the filters of the simulator.
+      * This is the equivalent of calling {@link ocms.algorithms.statistics.FrequencyFilter#remove}
+      * for each of the IDs and then {@link ocms.algorithms.statistics.FrequencyFilter#highpass} on the
+      * WiFi IDs of the data set.
+      *
+      * @param      filters         IDs to be removed (may be null)
+      * @param      highpass        the frequency threshold of the high pass filter,
+      *                             or a negative value for no high pass filter
+      * @return                     true for the index of each removed ID
+      */
+    public boolean[] filterWiFi(ArrayList<String> filters, double highpass)
+    {
+        boolean[] removed = new boolean[dictionary.length];
+
+        if (filters != null)
+        {
+            for (String id : filters)
+            {
+                int index = indexOf(id);
+                if (index != -1)
+                    removed[index] = true;
+            }
+        }
+
+        if (highpass < 0)
+            return removed;
+
+        /* Number of samples that each ID appears in */
+        int[] count = new int[dictionary.length];
+        int[] lastsample = new int[dictionary.length];
+        java.util.Arrays.fill(lastsample, -1);
+        for (int i = 0; i < times.length; i++)
+        {
+            for (int j = wifistart[i]; j < wifistart[i + 1]; j++)
+            {
+                int id = wifiId(j);
+                if (lastsample[id] != i)
+                {
+                    lastsample[id] = i;
+                    count[id]++;
+                }
+            }
+        }
+
+        for (int id = 0; id < dictionary.length; id++)
+        {
+            if ( (count[id] > 0) && ((double)count[id]/times.length < highpass) )
+                removed[id] = true;
+        }
+
+        return removed;
+    }
+
+    /**
+      * Returns the sample that is used for the given time, or -1 if there
+      * is no such sample. If several samples have the same time the last
+      * one is used (as in {@link ocms.medium.WiFiMedium#update}).
+      *
+      * @param      time            time of the sample (as in the text format)
+      * @return                     index of the sample or -1
+      */
+    public int findSample(int time)
+    {
+        int low = 0;
+        int high = slottimes.length - 1;
+
+        while (low <= high)
+        {
+            int mid = (low + high) >>> 1;
+            if (slottimes[mid] < time)
+                low = mid + 1;
+            else if (slottimes[mid] > time)
+                high = mid - 1;
+            else
+                return slotsamples[mid];
+        }
+
+        return -1;
+    }
+
+    /**
+      * Returns the number of distinct sample times.
+      *
+      * @return                     number of distinct times
+      */
+    public int getSlotCount()
+    {
+        return slottimes.length;
+    }
+
+    /**
+      * Returns a distinct sample time (as in the text format).
+      * The times are in increasing order.
+      *
+      * @param      slot            index of the time
+      * @return                     the sample time
+      */
+    public int getSlotTime(int slot)
+    {
+        return slottimes[slot];
+    }
+
+    /**
+      * Returns the sample used for a distinct sample time (see {@link #findSample}).
+      *
+      * @param      slot            index of the time
+      * @return                     index of the sample
+      */
+    public int getSlotSample(int slot)
+    {
+        return slotsamples[slot];
+    }
+
+    /**
+      * Returns the index of the ID in the dictionary, or -1 if it is not there.
+      *
+      * @param      id              the WiFi or GSM ID
+      * @return                     index of the ID
+      */
+    public int indexOf(String id)
+    {
+        return indexOf(Identifier.encode(id));
+    }
+
+    /**
+      * Returns the index of an identifier in the dictionary, or -1 if it is not there.
+      *
+      * @param      identifier      the {@link Identifier} of the WiFi or GSM ID
+      * @return                     index of the ID
+      */
+    public int indexOf(long identifier)
+    {
+        int position = Arrays.binarySearch(sortedidentifiers, identifier);
+        if (position < 0)
+            return -1;
+
+        /* An ID that is in the dictionary more than once has its last index */
+        while ( (position + 1 < sortedidentifiers.length) && (sortedidentifiers[position + 1] == identifier) )
+            position++;
+
+        return order[position];
+    }
+
+    /**
+      * Sorts the identifiers of the dictionary for {@link #indexOf(long)}.
+      * The lookup is built once, when the file is opened, and is read without
+      * locks by all the media that share the trace.
+      */
+    private void sortIdentifiers()
+    {
+        Integer[] indexes = new Integer[identifiers.length];
+        for (int i = 0; i < indexes.length; i++)
+            indexes[i] = i;
+
+        /* The sort is stable, equal identifiers stay in dictionary order */
+        Arrays.sort(indexes, new Comparator<Integer>()
+        {
+            public int compare(Integer i1, Integer i2)
+            {
+                return Long.compare(identifiers[i1], identifiers[i2]);
+            }
+        });
+
+        sortedidentifiers = new long[indexes.length];
+        order = new int[indexes.length];
+        for (int i = 0; i < indexes.length; i++)
+        {
+            order[i] = indexes[i];
+            sortedidentifiers[i] = identifiers[indexes[i]];
+        }
+    }
+
+    /**
+      * Returns the ID with the given index in the dictionary.
+      *
+      * @param      index           index of the ID
+      * @return                     the WiFi or GSM ID
+      */
+    public String getName(int index)
+    {
+        return dictionary[index];
+    }
+
+    /**
+      * Returns the identifier of the ID with the given index in the dictionary.
+      *
+      * @param      index           index of the ID
+      * @return                     the {@link Identifier} of the WiFi or GSM ID
+      */
+    public long getIdentifier(int index)
+    {
+        return identifiers[index];
+    }
+
+    /**
+      * Returns the number of samples.
+      *
+      * @return                     number of samples
+      */
+    public int size()
+    {
+        return times.length;
+    }
+
+    /**
+      * Returns the time of a sample (as in the text format).
+      *
+      * @param      sample          index of the sample
+      * @return                     time of the sample
+      */
+    public int getTime(int sample)
+    {
+        return times[sample];
+    }
+
+    /**
+      * Returns the smallest sample time (as in the text format).
+      *
+      * @return                     the first time
+      */
+    public int getFirstTime()
+    {
+        return slottimes.length == 0 ? 0 : slottimes[0];
+    }
+
+    /**
+      * Returns the largest sample time (as in the text format).
+      *
+      * @return                     the last time
+      */
+    public int getLastTime()
+    {
+        return slottimes.length == 0 ? 0 : slottimes[slottimes.length - 1];
+    }
+
+    /**
+      * Returns the index of the first WiFi observation of the sample.
+      * The observations of the sample end at the first observation of the next sample.
+      *
+      * @param      sample          index of the sample (may be equal to the number of samples)
+      * @return                     index of the first observation
+      */
+    public int getWiFiStart(int sample)
+    {
+        return wifistart[sample];
+    }
+
+    /**
+      * Returns the index of the first GSM observation of the sample.
+      * The observations of the sample end at the first observation of the next sample.
+      *
+      * @param      sample          index of the sample (may be equal to the number of samples)
+      * @return                     index of the first observation
+      */
+    public int getGSMStart(int sample)
+    {
+        return gsmstart[sample];
+    }
+
+    /**
+      * Returns the dictionary index of a WiFi observation.
+      *
+      * @param      entry           index of the observation
+      * @return                     dictionary index of its BSSID
+      */
+    public int wifiId(int entry)
+    {
+        return readId(wifiids, entry);
+    }
+
+    /**
+      * Returns the signal strength of a WiFi observation.
+      *
+      * @param      entry           index of the observation
+      * @return                     signal strength
+      */
+    public int wifiSignal(int entry)
+    {
+        return buffer.get(wifisignals + entry);
+    }
+
+    /**
+      * Returns the dictionary index of a GSM observation.
+      *
+      * @param      entry           index of the observation
+      * @return                     dictionary index of its cell ID
+      */
+    public int gsmId(int entry)
+    {
+        return readId(gsmids, entry);
+    }
+
+    /**
+      * Returns the signal strength of a GSM observation.
+      *
+      * @param      entry           index of the observation
+      * @return                     signal strength
+      */
+    public int gsmSignal(int entry)
+    {
+        return buffer.get(gsmsignals + entry);
+    }
+
+    /**
+      * Returns the name of the trace file.
+      *
+      * @return                     name of the file
+      */
+    public String getFileName()
+    {
+        return filename;
+    }
+
+    /**
+      * Reads an ID from an ID column.
+      */
+    private int readId(int column, int entry)
+    {
+        if (idwidth == 2)
+            return buffer.getShort(column + 2*entry) & 0xFFFF;
+        return buffer.getInt(column + 4*entry);
+    }
+
+    /**
+      * Sorts the distinct sample times and finds the last sample of each time.
+      */
+    private void indexSlots()
+    {
+        int n = times.length;
+        long[] order = new long[n];
+
+        /* Sorting (time, sample) pairs keeps the samples of each time in file order */
+        for (int i = 0; i < n; i++)
+            order[i] = ((long)times[i] << 32) | i;
+        java.util.Arrays.sort(order);
+
+        int distinct = 0;
+        for (int i = 0; i < n; i++)
+        {
+            if ( (i == n - 1) || ((int)(order[i] >> 32) != (int)(order[i + 1] >> 32)) )
+                distinct++;
+        }
+
+        slottimes = new int[distinct];
+        slotsamples = new int[distinct];
+        int slot = 0;
+        for (int i = 0; i < n; i++)
+        {
+            if ( (i == n - 1) || ((int)(order[i] >> 32) != (int)(order[i + 1] >> 32)) )
+            {
+                slottimes[slot] = (int)(order[i] >> 32);
+                slotsamples[slot] = (int)order[i];
+                slot++;
+            }
+        }
+    }
+
+    /**
+      * Reads an unsigned variable length integer from the buffer.
+      */
+    private int readVarInt()
+    {
+        int result = 0;
+        int shift = 0;
+        byte b;
+
+        do
+        {
+            b = buffer.get();
+            result |= (b & 0x7F) << shift;
+            shift += 7;
+        }
+        while ( (b & 0x80) != 0 );
+
+        return result;
+    }
+
+    /**
+      * Writes an unsigned variable length integer.
+      */
+    private static void writeVarInt(DataOutputStream output, int value) throws IOException
+    {
+        while ( (value & ~0x7F) != 0 )
+        {
+            output.writeByte( (value & 0x7F) | 0x80 );
+            value >>>= 7;
+        }
+        output.writeByte(value);
+    }
+
+    /**
+      * Adds the name to the dictionary if it is not there.
+      */
+    private static void addName(HashMap<String, Integer> ids, ArrayList<String> names, String name)
+    {
+        if (!ids.containsKey(name))
+        {
+            ids.put(name, names.size());
+            names.add(name);
+        }
+    }
+}
@@ -0,0 +1,535 @@
+ /**
+  * Opportunistic Connectivity Management Simulator
+  *
+  * Copyright (C) 2007 Hossein Falaki
+  */
+
+package ocms.dataset;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Set;
+
+
+/**
+  * A read-only copy of a {@link DataSet} that takes a fraction of its memory.
+  * Each {@link Sample} of a data set keeps two HashSets of {@link Tuple}s, which
+  * is a few hundred bytes per observation. A compact trace keeps the samples in
+  * three steps:
+  * <ul>
+  *     <li> the WiFi and GSM IDs of a sample are {@link ObservationSet}s, with
+  *          the IDs in a sorted long array </li>
+  *     <li> equal sets are kept once: the trace keeps one instance of each
+  *          distinct set, and the samples refer to it </li>
+  *     <li> consecutive samples with the same sets, one time step apart, are
+  *          collapsed into a <i>run</i> of a start time and a length </li>
+  * </ul>
+  * The signal strengths are kept apart, for each sample, in one int array for
+  * WiFi and one for GSM: the signals of the samples of a run follow each other,
+  * starting at the offset of the run. So a run only ends when the visible IDs
+  * change, not when a signal strength does.
+  * <br>
+  * The samples are read with a {@link Cursor}, or found by time with
+  * {@link #findRun}, without allocating.
+  * <br>
+  * If the data set has more than one sample at a time, the last one is kept,
+  * like the media do.
+  *
+  * @author     Hossein Falaki
+  */
+public class CompactTrace
+{
+    /** Estimated number of bytes of each run */
+    private static final long RUN_BYTES                 = 24;
+
+    /** Estimated number of bytes of each distinct set */
+    private static final long SET_BYTES                 = 48;
+
+    /** Estimated number of bytes of each ID of a distinct set */
+    private static final long ID_BYTES                  = 8;
+
+    /** Estimated number of bytes of each signal strength of a sample */
+    private static final long SIGNAL_BYTES              = 4;
+
+    /** The time of the first sample of each run */
+    private int[] starts;
+
+    /** The number of samples of each run */
+    private int[] lengths;
+
+    /** The WiFi set of each run */
+    private ObservationSet[] wifi;
+
+    /** The GSM set of each run */
+    private ObservationSet[] gsm;
+
+    /** Position of the WiFi signal strengths of the first sample of each run */
+    private int[] wifioffsets;
+
+    /** Position of the GSM signal strengths of the first sample of each run */
+    private int[] gsmoffsets;
+
+    /** The WiFi signal strengths of the samples, in the order of their sets */
+    private int[] wifisignals;
+
+    /** The GSM signal strengths of the samples, in the order of their sets */
+    private int[] gsmsignals;
+
+    /** Number of runs */
+    private int runs;
+
+    /** Number of samples */
+    private int samples;
+
+    /** Number of distinct sets */
+    private int distinct;
+
+    /** Number of IDs of the distinct sets */
+    private long ids;
+
+    /** Number of WiFi signal strengths */
+    private int wificount;
+
+    /** Number of GSM signal strengths */
+    private int gsmcount;
+
+    /** The time step of the samples */
+    private int step;
+
+    /** The time of the first sample */
+    private int start;
+
+    /** The time of the last sample */
+    private int end;
+
+
+    /**
+      * Reads the samples of the trace in time order, one at a time.
+      * The cursor does not allocate; the sets it returns are those of the trace.
+      */
+    public class Cursor
+    {
+        /** The current run */
+        private int run;
+
+        /** Index of the current sample in its run */
+        private int offset;
+
+        /**
+          * Constructs a cursor before the first sample.
+          */
+        Cursor()
+        {
+            run = 0;
+            offset = -1;
+        }
+
+        /**
+          * Moves the cursor to the next sample.
+          *
+          * @return                 false if there are no more samples
+          */
+        public boolean next()
+        {
+            if (run >= runs)
+                return false;
+
+            if (++offset < lengths[run])
+                return true;
+
+            offset = 0;
+            return ++run < runs;
+        }
+
+        /**
+          * Returns the time of the current sample.
+          *
+          * @return                 the time of the sample
+          */
+        public int getTime()
+        {
+            return starts[run] + offset*step;
+        }
+
+        /**
+          * Returns the WiFi set of the current sample.
+          *
+          * @return                 the visible access points
+          */
+        public ObservationSet getWiFi()
+        {
+            return wifi[run];
+        }
+
+        /**
+          * Returns the GSM set of the current sample.
+          *
+          * @return                 the visible cells
+          */
+        public ObservationSet getGSM()
+        {
+            return gsm[run];
+        }
+
+        /**
+          * Returns the run of the current sample.
+          *
+          * @return                 index of the run
+          */
+        public int getRun()
+        {
+            return run;
+        }
+    }
+
+
+    /**
+      * Constructs the compact copy of a data set.
+      * The data set is not modified, and may be dropped afterwards.
+      *
+      * @param      dataset         the data set
+      */
+    public CompactTrace(DataSet dataset)
+    {
+        Sample[] sorted = new Sample[dataset.size()];
+        int count = 0;
+        for (Iterator it = dataset.iterator(); it.hasNext();)
+            sorted[count++] = (Sample)it.next();
+
+        /* The sort is stable, so the last of the samples of a time is still the last */
+        Arrays.sort(sorted, new Comparator<Sample>()
+        {
+            public int compare(Sample s1, Sample s2)
+            {
+                return s1.compareTo(s2);
+            }
+        });
+
+        step = dataset.getTimeStep();
+        start = dataset.getStartTime();
+        end = dataset.getEndTime();
+
+        starts = new int[sorted.length];
+        lengths = new int[sorted.length];
+        wifi = new ObservationSet[sorted.length];
+        gsm = new ObservationSet[sorted.length];
+        wifioffsets = new int[sorted.length];
+        gsmoffsets = new int[sorted.length];
+        wifisignals = new int[Math.max(16, sorted.length)];
+        gsmsignals = new int[Math.max(16, sorted.length)];
+        runs = 0;
+        samples = 0;
+
+        HashMap<ObservationSet, ObservationSet> sets = new HashMap<ObservationSet, ObservationSet>();
+
+        for (Sample sample : sorted)
+        {
+            int time = sample.getTime();
+
+            /* A later sample of the same time replaces the last one */
+            if ( (runs > 0) && (starts[runs - 1] + (lengths[runs - 1] - 1)*step == time) )
+            {
+                samples--;
+                wificount -= wifi[runs - 1].size();
+                gsmcount -= gsm[runs - 1].size();
+                if (--lengths[runs - 1] == 0)
+                    runs--;
+            }
+
+            Set<Tuple<String, Integer>> wifituples = sample.getRichWiFiSet();
+            Set<Tuple<String, Integer>> gsmtuples = sample.getRichGSMSet();
+            if (wificount + wifituples.size() > wifisignals.length)
+                wifisignals = Arrays.copyOf(wifisignals, 2*(wificount + wifituples.size()));
+            if (gsmcount + gsmtuples.size() > gsmsignals.length)
+                gsmsignals = Arrays.copyOf(gsmsignals, 2*(gsmcount + gsmtuples.size()));
+
+            ObservationSet wifiset = intern(sets, ObservationSet.of(wifituples, wifisignals, wificount));
+            ObservationSet gsmset = intern(sets, ObservationSet.of(gsmtuples, gsmsignals, gsmcount));
+
+            samples++;
+            if ( (runs > 0) && (wifi[runs - 1] == wifiset) && (gsm[runs - 1] == gsmset)
+                    && (starts[runs - 1] + lengths[runs - 1]*step == time) )
+                lengths[runs - 1]++;
+            else
+            {
+                starts[runs] = time;
+                lengths[runs] = 1;
+                wifi[runs] = wifiset;
+                gsm[runs] = gsmset;
+                wifioffsets[runs] = wificount;
+                gsmoffsets[runs] = gsmcount;
+                runs++;
+            }
+
+            wificount += wifiset.size();
+            gsmcount += gsmset.size();
+        }
+
+        starts = Arrays.copyOf(starts, runs);
+        lengths = Arrays.copyOf(lengths, runs);
+        wifi = Arrays.copyOf(wifi, runs);
+        gsm = Arrays.copyOf(gsm, runs);
+        wifioffsets = Arrays.copyOf(wifioffsets, runs);
+        gsmoffsets = Arrays.copyOf(gsmoffsets, runs);
+        wifisignals = Arrays.copyOf(wifisignals, wificount);
+        gsmsignals = Arrays.copyOf(gsmsignals, gsmcount);
+    }
+
+    /**
+      * Returns the instance of the trace that is equal to a set, adding it if needed.
+      *
+      * @param      sets            the distinct sets of the trace
+      * @param      set             the set
+      * @return                     the shared instance
+      */
+    private ObservationSet intern(HashMap<ObservationSet, ObservationSet> sets, ObservationSet set)
+    {
+        ObservationSet result = sets.get(set);
+        if (result == null)
+        {
+            result = set;
+            sets.put(set, set);
+            distinct++;
+            ids += set.size();
+        }
+
+        return result;
+    }
+
+    /**
+      * Returns the run that contains the sample of a time.
+      *
+      * @param      time            the time of the sample
+      * @return                     index of the run, or -1 if there is no sample at the time
+      */
+    public int findRun(int time)
+    {
+        int low = 0;
+        int high = runs - 1;
+
+        /* The last run that starts at or before the time */
+        while (low <= high)
+        {
+            int middle = (low + high) >>> 1;
+            if (starts[middle] <= time)
+                low = middle + 1;
+            else
+                high = middle - 1;
+        }
+
+        if (high < 0)
+            return -1;
+
+        long offset = (long)time - starts[high];
+        if ( (offset % step != 0) || (offset/step >= lengths[high]) )
+            return -1;
+
+        return high;
+    }
+
+    /**
+      * Returns a cursor before the first sample.
+      *
+      * @return                     the cursor
+      */
+    public Cursor cursor()
+    {
+        return new Cursor();
+    }
+
+    /**
+      * Returns the time of the first sample of a run.
+      *
+      * @param      run             index of the run
+      * @return                     the time of the sample
+      */
+    public int getRunStart(int run)
+    {
+        return starts[run];
+    }
+
+    /**
+      * Returns the number of samples of a run.
+      *
+      * @param      run             index of the run
+      * @return                     number of samples
+      */
+    public int getRunLength(int run)
+    {
+        return lengths[run];
+    }
+
+    /**
+      * Returns the WiFi set of the samples of a run.
+      *
+      * @param      run             index of the run
+      * @return                     the visible access points
+      */
+    public ObservationSet getWiFi(int run)
+    {
+        return wifi[run];
+    }
+
+    /**
+      * Returns the GSM set of the samples of a run.
+      *
+      * @param      run             index of the run
+      * @return                     the visible cells
+      */
+    public ObservationSet getGSM(int run)
+    {
+        return gsm[run];
+    }
+
+    /**
+      * Returns the position of the WiFi signal strengths of a sample.
+      * The signal strength of the i-th ID of the WiFi set of the run is at the
+      * position plus i (see {@link #getWiFiSignal}).
+      *
+      * @param      run             index of the run
+      * @param      time            the time of a sample of the run
+      * @return                     position of the signal strength of the first ID
+      */
+    public int getWiFiOffset(int run, int time)
+    {
+        return wifioffsets[run] + (int)(((long)time - starts[run])/step)*wifi[run].size();
+    }
+
+    /**
+      * Returns the position of the GSM signal strengths of a sample.
+      * The signal strength of the i-th ID of the GSM set of the run is at the
+      * position plus i (see {@link #getGSMSignal}).
+      *
+      * @param      run             index of the run
+      * @param      time            the time of a sample of the run
+      * @return                     position of the signal strength of the first ID
+      */
+    public int getGSMOffset(int run, int time)
+    {
+        return gsmoffsets[run] + (int)(((long)time - starts[run])/step)*gsm[run].size();
+    }
+
+    /**
+      * Returns a WiFi signal strength.
+      *
+      * @param      position        position of the signal strength
+      * @return                     the signal strength
+      */
+    public int getWiFiSignal(int position)
+    {
+        return wifisignals[position];
+    }
+
+    /**
+      * Returns a GSM signal strength.
+      *
+      * @param      position        position of the signal strength
+      * @return                     the signal strength
+      */
+    public int getGSMSignal(int position)
+    {
+        return gsmsignals[position];
+    }
+
+    /**
+      * Returns a read-only set of Tuples of the visible access points of a sample.
+      *
+      * @param      run             index of the run
+      * @param      offset          position of the WiFi signal strengths of the sample
+      * @return                     the set of {@link Tuple}s of the BSSIDs and their signal strengths
+      */
+    public Set<Tuple<String, Integer>> getWiFiTuples(int run, int offset)
+    {
+        return wifi[run].toTuples(wifisignals, offset);
+    }
+
+    /**
+      * Returns a read-only set of Tuples of the visible cells of a sample.
+      *
+      * @param      run             index of the run
+      * @param      offset          position of the GSM signal strengths of the sample
+      * @return                     the set of {@link Tuple}s of the cell IDs and their signal strengths
+      */
+    public Set<Tuple<String, Integer>> getGSMTuples(int run, int offset)
+    {
+        return gsm[run].toTuples(gsmsignals, offset);
+    }
+
+    /**
+      * Returns the number of runs.
+      *
+      * @return                     number of runs
+      */
+    public int getRunCount()
+    {
+        return runs;
+    }
+
+    /**
+      * Returns the number of distinct WiFi and GSM sets.
+      *
+      * @return                     number of distinct sets
+      */
+    public int getDistinctSets()
+    {
+        return distinct;
+    }
+
+    /**
+      * Returns the number of samples.
+      *
+      * @return                     number of samples
+      */
+    public int size()
+    {
+        return samples;
+    }
+
+    /**
+      * Returns the time step of the samples.
+      *
+      * @return                     the time step
+      */
+    public int getTimeStep()
+    {
+        return step;
+    }
+
+    /**
+      * Returns the time of the first sample of the data set.
+      *
+      * @return                     the start time
+      */
+    public int getStartTime()
+    {
+        return start;
+    }
+
+    /**
+      * Returns the time of the last sample of the data set.
+      *
+      * @return                     the end time
+      */
+    public int getEndTime()
+    {
+        return end;
+    }
+
+    /**
+      * Returns the estimated size of the trace on the heap.
+      *
+      * @return                     estimated size in bytes
+      */
+    public long getSize()
+    {
+        return RUN_BYTES*runs + SET_BYTES*distinct + ID_BYTES*ids
+            + SIGNAL_BYTES*((long)wificount + gsmcount);
+    }
+
+    public String toString()
+    {
+        return samples + " samples in " + runs + " runs of " + distinct + " distinct sets";
+    }
+}
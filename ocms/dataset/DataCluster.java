@@ -7,6 +7,7 @@
 package ocms.dataset;
 
 import ocms.util.Block;
+import ocms.util.PresenceIndex;
 import ocms.dataset.Sample;
 import ocms.dataset.Tuple;
 import ocms.algorithms.statistics.Histogram;
@@ -38,6 +39,9 @@ public class DataCluster extends DataSet
     /** Unique integer ID of this data cluster */
     int id;
 
+    /** The presence index of the samples, built on demand */
+    PresenceIndex presence;
+
 
     /**
       * Constructs an empty DataCluster.
@@ -92,6 +96,7 @@ public class DataCluster extends DataSet
 
         /* The final book keeping */
         samples.add((Sample)newsample);
+        presence = null;
         
         /* We also need to discover the start time */
         if (start > time )
@@ -125,46 +130,52 @@ public class DataCluster extends DataSet
 
     /**
       * Finds all the availability time blocks in the samples.
+      * A block starts at a sample with a WiFi access point and ends at the next
+      * sample without one, or at the end of the cluster.
       */
     public void findBlocks()
     {
         blocks = new ArrayList<Block>();
-
-        boolean inblock = false;
-        double bstart = 0;
-        double bend;
         Block newblock;
 
-        // Finds all the availability blocks in the medium and constructs
-        // the blocks 
-        for (Sample s: samples)
-        {
-            if ( (!inblock) && (s.bestWiFi() != null))
-            {
-                inblock = true;
-                bstart = s.getTime();
-            }
-
-            if ((inblock) && (s.bestWiFi() == null))
-            {
-                inblock = false;
-                newblock = new Block(bstart, s.getTime(), this );
-                newblock.setNaturalOrder(Block.STARTTIME);
-                newblock.setOwner(this.getFileName());
-                blocks.add(newblock);
-            }
-        }
-
-        if (inblock == true)
+        /* The samples may have been changed through the DataSet methods */
+        presence = null;
+        double[] found = getPresence().findBlocks(start, end);
+        for (int k = 0; k < found.length; k += 2)
         {
-            newblock = new Block(bstart, end, this );
+            newblock = new Block(found[k], found[k + 1], this );
             newblock.setNaturalOrder(Block.STARTTIME);
+            newblock.setOwner(this.getFileName());
             blocks.add(newblock);
         }
 
         Collections.sort(blocks);
     }
 
+    /**
+      * Returns the index of the samples in which each WiFi access point is present.
+      * The index is built on the first call after the samples have changed.
+      * It gives the availability blocks of an access point or a set of them.
+      *
+      * @return                 the presence index of the cluster
+      */
+    public PresenceIndex getPresence()
+    {
+        if (presence == null)
+        {
+            PresenceIndex.Builder builder = new PresenceIndex.Builder();
+            for (Sample s: samples)
+            {
+                builder.sample(s.getTime());
+                for (Tuple<String, Integer> wifi : s.getRichWiFiSet())
+                    builder.add(wifi.getKey());
+            }
+            presence = new PresenceIndex(builder);
+        }
+
+        return presence;
+    }
+
     /**
       * Returns an array of blocks.
       *
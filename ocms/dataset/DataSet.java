@@ -7,6 +7,7 @@ package ocms.dataset;
 
 import java.io.FileReader;
 import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.util.Scanner;
 import java.util.ArrayList;
 import java.util.Iterator;
@@ -188,6 +189,7 @@ public class DataSet implements Experiment, Iterable
       * Reads the content of the file into the internal mapping data strucutre.
       * In each line of the file the following fields should be tab or space seperated:
       * timestamp number-of-wifi-AP list-of-wifi-APs-and-signal number-of-GSM-IDs list-of-GSM-IDS-and-signal
+      * The file may also be in the binary format of {@link BinaryTrace}.
       *
       * @param filename  name of the to be read into memory
       * @throws FileNotFoundException  if the file does not exist
@@ -196,16 +198,32 @@ public class DataSet implements Experiment, Iterable
     {
         this.filename = filename;
 
-        Scanner input = null;
-
-        try
+        /* Binary traces are materialized for the tools that need the samples */
+        if (BinaryTrace.isBinary(filename))
         {
-            input  = new Scanner(new FileReader(filename));
-            while ( input.hasNextLine() ) 
+            try
+            {
+                new BinaryTrace(filename).fill(this);
+            }
+            catch (IOException ioe)
             {
-                parseLine(input.nextLine());
+                System.out.println("Unexpected exceptioin: " + ioe.toString() +
+                        "\n in Class DataSet while loading " +  filename );
+                ioe.printStackTrace();
             }
-            input.close();
+            return;
+        }
+
+        /* The lines are parsed in parallel, and the errors are reported once */
+        TraceParser parser = new TraceParser(filename, step);
+
+        try
+        {
+            for (Sample sample : parser.parse())
+                add(sample);
+
+            if (parser.getErrorCount() > 0)
+                System.out.println(parser.getReport());
         } 
         catch (Exception e)
         {
@@ -220,8 +238,6 @@ public class DataSet implements Experiment, Iterable
 
 
         }
-
-        input.close();
     }
 
     /**
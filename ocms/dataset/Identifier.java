@@ -0,0 +1,343 @@
+ /**
+  * Opportunistic Connectivity Management Simulator
+  *
+  * Copyright (C) 2007 Hossein Falaki
+  */
+
+package ocms.dataset;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+
+
+/**
+  * Packs the WiFi BSSIDs and GSM cell IDs of the traces into longs.
+  * The indexes of the media, the NICs and the caches compare and hash the packed
+  * identifiers instead of the Strings, and the Strings are rendered again (with
+  * {@link #toString(long)}) only for the output and for the schedulers.
+  * <br>
+  * The two high bits of an identifier are its kind:
+  * <ul>
+  *     <li> {@link #MAC}: a BSSID of six hexadecimal pairs separated by ':' is
+  *          kept in the low 48 bits, with one bit for upper case digits </li>
+  *     <li> {@link #CELL}: a GSM cell ID MCC:MNC:LAC:CID of decimal numbers is
+  *          kept in fields of 10, 10, 16 and 26 bits </li>
+  *     <li> {@link #NAME}: any other ID, or one whose fields do not fit, is kept
+  *          as its index in a dictionary shared by the whole process </li>
+  * </ul>
+  * An ID is only packed if rendering the packed value gives the same String (no
+  * leading zeros in the decimal fields, no mixed case), so two IDs are equal if
+  * and only if their identifiers are equal.
+  *
+  * @author     Hossein Falaki
+  */
+public final class Identifier
+{
+    /** The kind of the packed BSSIDs */
+    public static final int MAC                 = 0;
+
+    /** The kind of the packed GSM cell IDs */
+    public static final int CELL                = 1;
+
+    /** The kind of the IDs in the dictionary */
+    public static final int NAME                = 2;
+
+    /** A value that is not the identifier of any ID */
+    public static final long NONE               = -1L;
+
+    /** Position of the kind */
+    private static final int KIND_SHIFT         = 62;
+
+    /** The bit of the BSSIDs with upper case digits */
+    private static final long UPPER             = 1L << 48;
+
+    /** Widths of the fields of a cell ID */
+    private static final int[] WIDTHS           = {10, 10, 16, 26};
+
+    /** Positions of the fields of a cell ID */
+    private static final int[] SHIFTS           = {52, 42, 26, 0};
+
+    /** The hexadecimal digits */
+    private static final char[] LOWER_DIGITS    = "0123456789abcdef".toCharArray();
+
+    /** The upper case hexadecimal digits */
+    private static final char[] UPPER_DIGITS    = "0123456789ABCDEF".toCharArray();
+
+    /** The index of each ID of the dictionary */
+    private static final ConcurrentHashMap<String, Integer> dictionary = new ConcurrentHashMap<String, Integer>();
+
+    /** The IDs of the dictionary, republished after each new ID */
+    private static volatile String[] names = new String[64];
+
+    /** Number of IDs in the dictionary */
+    private static int count = 0;
+
+
+    /**
+      * No instances, all the methods are static.
+      */
+    private Identifier()
+    {
+    }
+
+    /**
+      * Returns the identifier of an ID.
+      *
+      * @param      id              a BSSID, a GSM cell ID or any other ID
+      * @return                     the packed identifier
+      */
+    public static long encode(String id)
+    {
+        long result = encodeMAC(id);
+        if (result != NONE)
+            return result;
+
+        result = encodeCell(id);
+        if (result != NONE)
+            return result;
+
+        return ((long)NAME << KIND_SHIFT) | intern(id);
+    }
+
+    /**
+      * Returns the sorted identifiers of a collection of IDs.
+      *
+      * @param      ids             the IDs
+      * @return                     their identifiers in increasing order
+      */
+    public static long[] encode(Collection<String> ids)
+    {
+        long[] result = new long[ids.size()];
+        int count = 0;
+        for (String id : ids)
+            result[count++] = encode(id);
+        Arrays.sort(result);
+
+        return result;
+    }
+
+    /**
+      * Renders an identifier as the ID it was encoded from.
+      *
+      * @param      identifier      the identifier
+      * @return                     the ID
+      */
+    public static String toString(long identifier)
+    {
+        switch (kind(identifier))
+        {
+            case MAC:
+                char[] digits = ((identifier & UPPER) != 0) ? UPPER_DIGITS : LOWER_DIGITS;
+                char[] result = new char[17];
+                for (int i = 0; i < 6; i++)
+                {
+                    int octet = (int)(identifier >>> (40 - 8*i)) & 0xFF;
+                    if (i > 0)
+                        result[3*i - 1] = ':';
+                    result[3*i] = digits[octet >>> 4];
+                    result[3*i + 1] = digits[octet & 0xF];
+                }
+                return new String(result);
+
+            case CELL:
+                StringBuilder sb = new StringBuilder(24);
+                for (int i = 0; i < WIDTHS.length; i++)
+                {
+                    if (i > 0)
+                        sb.append(':');
+                    sb.append(getField(identifier, i));
+                }
+                return sb.toString();
+
+            case NAME:
+                return name((int)identifier);
+        }
+
+        throw new IllegalArgumentException("Not an identifier: " + identifier);
+    }
+
+    /**
+      * Returns the kind of an identifier.
+      *
+      * @param      identifier      the identifier
+      * @return                     {@link #MAC}, {@link #CELL} or {@link #NAME}
+      */
+    public static int kind(long identifier)
+    {
+        return (int)(identifier >>> KIND_SHIFT);
+    }
+
+    /**
+      * Returns a field of a packed GSM cell ID.
+      *
+      * @param      identifier      the identifier of a {@link #CELL}
+      * @param      field           0 for MCC, 1 for MNC, 2 for LAC and 3 for CID
+      * @return                     value of the field
+      */
+    public static int getField(long identifier, int field)
+    {
+        return (int)(identifier >>> SHIFTS[field]) & ((1 << WIDTHS[field]) - 1);
+    }
+
+    /**
+      * Returns a ':' separated token of the ID of an identifier.
+      * The fields of the packed cell IDs are read without rendering the ID.
+      *
+      * @param      identifier      the identifier
+      * @param      token           index of the token
+      * @return                     the token, or null if the ID has fewer tokens
+      */
+    public static String getToken(long identifier, int token)
+    {
+        if (kind(identifier) == CELL)
+            return (token < WIDTHS.length) ? Integer.toString( getField(identifier, token) ) : null;
+
+        String[] tokens = toString(identifier).split(":");
+        return (token < tokens.length) ? tokens[token] : null;
+    }
+
+    /**
+      * Packs a BSSID.
+      *
+      * @param      id              the ID
+      * @return                     the identifier, or NONE if the ID is not a BSSID
+      */
+    private static long encodeMAC(String id)
+    {
+        if (id.length() != 17)
+            return NONE;
+
+        long result = 0;
+        int lower = 0;
+        int upper = 0;
+        for (int i = 0; i < 17; i++)
+        {
+            char c = id.charAt(i);
+            if (i % 3 == 2)
+            {
+                if (c != ':')
+                    return NONE;
+                continue;
+            }
+
+            int digit;
+            if ( (c >= '0') && (c <= '9') )
+                digit = c - '0';
+            else if ( (c >= 'a') && (c <= 'f') )
+            {
+                digit = c - 'a' + 10;
+                lower++;
+            }
+            else if ( (c >= 'A') && (c <= 'F') )
+            {
+                digit = c - 'A' + 10;
+                upper++;
+            }
+            else
+                return NONE;
+
+            result = (result << 4) | digit;
+        }
+
+        /* Mixed case would not be rendered back */
+        if ( (lower > 0) && (upper > 0) )
+            return NONE;
+
+        if (upper > 0)
+            result |= UPPER;
+
+        return ((long)MAC << KIND_SHIFT) | result;
+    }
+
+    /**
+      * Packs a GSM cell ID.
+      *
+      * @param      id              the ID
+      * @return                     the identifier, or NONE if the ID is not a cell ID that fits
+      */
+    private static long encodeCell(String id)
+    {
+        long result = 0;
+        int field = 0;
+        int start = 0;
+        int length = id.length();
+
+        for (int i = 0; i <= length; i++)
+        {
+            if ( (i < length) && (id.charAt(i) != ':') )
+                continue;
+
+            if ( (field == WIDTHS.length) || (i == start) || (i - start > 9) )
+                return NONE;
+
+            /* A leading zero would not be rendered back */
+            if ( (id.charAt(start) == '0') && (i - start > 1) )
+                return NONE;
+
+            long value = 0;
+            for (int j = start; j < i; j++)
+            {
+                char c = id.charAt(j);
+                if ( (c < '0') || (c > '9') )
+                    return NONE;
+                value = 10*value + (c - '0');
+            }
+
+            if (value >= (1L << WIDTHS[field]))
+                return NONE;
+
+            result |= value << SHIFTS[field];
+            field++;
+            start = i + 1;
+        }
+
+        if (field != WIDTHS.length)
+            return NONE;
+
+        return ((long)CELL << KIND_SHIFT) | result;
+    }
+
+    /**
+      * Returns the index of an ID in the dictionary, adding it if needed.
+      * Only the IDs that are not in the dictionary yet take the lock.
+      *
+      * @param      id              the ID
+      * @return                     index of the ID
+      */
+    private static int intern(String id)
+    {
+        Integer result = dictionary.get(id);
+        if (result != null)
+            return result;
+
+        synchronized (Identifier.class)
+        {
+            result = dictionary.get(id);
+            if (result != null)
+                return result;
+
+            String[] current = names;
+            if (count == current.length)
+                current = Arrays.copyOf(current, 2*count);
+            current[count] = id;
+
+            /* The ID is published before its index can be found */
+            names = current;
+            dictionary.put(id, count);
+
+            return count++;
+        }
+    }
+
+    /**
+      * Returns the ID at an index of the dictionary.
+      *
+      * @param      index           the index
+      * @return                     the ID
+      */
+    private static String name(int index)
+    {
+        return names[index];
+    }
+}
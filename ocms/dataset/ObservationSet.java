@@ -0,0 +1,180 @@
+ /**
+  * Opportunistic Connectivity Management Simulator
+  *
+  * Copyright (C) 2007 Hossein Falaki
+  */
+
+package ocms.dataset;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+
+/**
+  * An immutable set of the WiFi or GSM IDs observed in a sample.
+  * The IDs are kept as their {@link Identifier}s in a sorted long array, so a
+  * set of a few access points takes a few dozen bytes instead of a HashSet of
+  * {@link Tuple}s. The IDs are read with {@link #getId} without allocating.
+  * <br>
+  * The signal strengths change from one sample to the next even when the
+  * visible IDs do not, so they are not part of the set: {@link #of} returns
+  * them in an array parallel to the IDs, and {@link #toTuples} takes them back.
+  * Two sets with the same IDs are equal, so the sets of a trace can be shared
+  * (see {@link CompactTrace}).
+  *
+  * @author     Hossein Falaki
+  */
+public final class ObservationSet
+{
+    /** The set without observations */
+    public static final ObservationSet EMPTY    = new ObservationSet(new long[0]);
+
+    /** The identifiers of the IDs in increasing order */
+    private final long[] ids;
+
+    /** The hash code of the set */
+    private final int hashcode;
+
+
+    /**
+      * Constructs a set from a sorted array, which is not copied.
+      *
+      * @param      ids             the identifiers in increasing order
+      */
+    private ObservationSet(long[] ids)
+    {
+        this.ids = ids;
+        this.hashcode = Arrays.hashCode(ids);
+    }
+
+    /**
+      * Returns the set of the IDs of a set of Tuples, and their signal strengths.
+      * An ID observed more than once is kept for each observation, ordered by
+      * the signal strength.
+      *
+      * @param      tuples          the IDs and their signal strengths
+      * @param      signals         filled with the signal strength of each ID of
+      *                             the set, from the offset on
+      * @param      offset          position of the signal strength of the first ID
+      * @return                     the set of IDs
+      */
+    public static ObservationSet of(Set<Tuple<String, Integer>> tuples, int[] signals, int offset)
+    {
+        if (tuples.isEmpty())
+            return EMPTY;
+
+        long[] ids = new long[tuples.size()];
+        int count = 0;
+
+        for (Tuple<String, Integer> tuple : tuples)
+        {
+            long id = Identifier.encode(tuple.getKey());
+            int signal = tuple.getValue();
+
+            /* Insertion sort, the sets are small */
+            int i = count++;
+            while ( (i > 0) && ((ids[i - 1] > id) || ((ids[i - 1] == id) && (signals[offset + i - 1] > signal))) )
+            {
+                ids[i] = ids[i - 1];
+                signals[offset + i] = signals[offset + i - 1];
+                i--;
+            }
+
+            ids[i] = id;
+            signals[offset + i] = signal;
+        }
+
+        return new ObservationSet(ids);
+    }
+
+    /**
+      * Returns the number of observations.
+      *
+      * @return                     number of IDs in the set
+      */
+    public int size()
+    {
+        return ids.length;
+    }
+
+    /**
+      * Returns the identifier of an observation.
+      *
+      * @param      index           index of the observation, in increasing identifier order
+      * @return                     the {@link Identifier} of the ID
+      */
+    public long getId(int index)
+    {
+        return ids[index];
+    }
+
+    /**
+      * Returns the index of an ID in the set.
+      * If the ID is observed more than once the last observation, the strongest
+      * one, is returned.
+      *
+      * @param      id              the {@link Identifier} of the ID
+      * @return                     index of the observation, or -1 if the ID is not in the set
+      */
+    public int find(long id)
+    {
+        int index = Arrays.binarySearch(ids, id);
+        if (index < 0)
+            return -1;
+
+        while ( (index + 1 < ids.length) && (ids[index + 1] == id) )
+            index++;
+
+        return index;
+    }
+
+    /**
+      * Returns a read-only set of Tuples of the observations of a sample, for the
+      * schedulers and the output.
+      *
+      * @param      signals         the signal strengths of the samples
+      * @param      offset          position of the signal strength of the first ID
+      *                             of the sample
+      * @return                     the set of {@link Tuple}s of the IDs and their signal strengths
+      */
+    public Set<Tuple<String, Integer>> toTuples(int[] signals, int offset)
+    {
+        Set<Tuple<String, Integer>> result = new HashSet<Tuple<String, Integer>>(2*ids.length);
+        for (int i = 0; i < ids.length; i++)
+            result.add( new Tuple<String, Integer>(Identifier.toString(ids[i]), signals[offset + i]) );
+
+        return Collections.unmodifiableSet(result);
+    }
+
+    public int hashCode()
+    {
+        return hashcode;
+    }
+
+    public boolean equals(Object other)
+    {
+        if (this == other)
+            return true;
+        if ( !(other instanceof ObservationSet) )
+            return false;
+
+        ObservationSet set = (ObservationSet)other;
+        return (hashcode == set.hashcode) && Arrays.equals(ids, set.ids);
+    }
+
+    public String toString()
+    {
+        StringBuffer sb = new StringBuffer("[");
+        for (int i = 0; i < ids.length; i++)
+        {
+            if (i > 0)
+                sb.append(", ");
+            sb.append(Identifier.toString(ids[i]));
+        }
+        sb.append("]");
+
+        return sb.toString();
+    }
+}
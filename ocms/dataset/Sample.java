@@ -12,6 +12,7 @@ import java.util.Iterator;
 
 import ocms.dataset.Tuple;
 import ocms.dataset.DataSet;
+import ocms.dataset.Identifier;
 
 /**
   * Public class sample keeps and manipulates a single sample of experiments.
@@ -222,6 +223,51 @@ public class Sample implements Comparable<Sample>
             wifiset.remove(removal);
     }
 
+    /**
+      * Removes all the observations of the given cell IDs from the sample.
+      *
+      * @param      cellids     GSM cell IDs to be removed from the set
+      * @return                 number of removed observations
+      */
+    public int removeCellIDs(Set<String> cellids)
+    {
+        return remove(gsmset, cellids);
+    }
+
+    /**
+      * Removes all the observations of the given ESSIDs from the sample.
+      *
+      * @param      essids      the ESSIDs to be removed from the sample
+      * @return                 number of removed observations
+      */
+    public int removeESSIDs(Set<String> essids)
+    {
+        return remove(wifiset, essids);
+    }
+
+    /**
+      * Removes the Tuples of the given IDs from a set in one pass.
+      *
+      * @param      set         the WiFi or GSM set of the sample
+      * @param      ids         the IDs to be removed
+      * @return                 number of removed Tuples
+      */
+    private static int remove(HashSet<Tuple<String, Integer>> set, Set<String> ids)
+    {
+        int removed = 0;
+
+        for (Iterator<Tuple<String, Integer>> it = set.iterator(); it.hasNext();)
+        {
+            if (ids.contains( it.next().getKey() ))
+            {
+                it.remove();
+                removed++;
+            }
+        }
+
+        return removed;
+    }
+
 
     /**
       * Compares this sample with the specified sample object for order. 
@@ -261,15 +307,12 @@ public class Sample implements Comparable<Sample>
     public String GPtoString(int type)
     {
         StringBuffer sb = new StringBuffer();
-        String[] tokens;
 
         if (type == DataSet.GNUPLOT_GSM)
         {
+            /* The cell ID is the fourth field of a GSM ID */
             for( Tuple gsmtuple: this.gsmset)
-            {
-                tokens = ((String)gsmtuple.getKey()).split(":");
-                sb.append(time + " " + tokens[3] + "\n");
-            }
+                sb.append(time + " " + Identifier.getToken(Identifier.encode((String)gsmtuple.getKey()), 3) + "\n");
         }
 
         if (type == DataSet.GNUPLOT_WIFI)
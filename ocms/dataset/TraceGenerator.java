@@ -0,0 +1,234 @@
+ /**
+  * Opportunistic Connectivity Management Simulator
+  *
+  * Copyright (C) 2007 Hossein Falaki
+  */
+
+package ocms.dataset;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Random;
+
+
+/**
+  * Generates synthetic traces in the text format of {@link DataSet}.
+  * The device moves between a fixed number of locations. Each location sees
+  * up to four distinct access points and up to three distinct GSM cells, drawn
+  * from the given numbers of APs and cells. The BSSIDs are MAC addresses of the
+  * form 00:16:b6:xx:xx:xx. A fifth of the locations have no WiFi
+  * and a few have no GSM coverage. At each sample the device moves to a random
+  * location with the probability given by the churn rate; the signal strengths
+  * change at every sample.
+  *
+  * The same seed always generates the same trace. The generator can be used
+  * from the command line:
+  * <pre>
+  *     java ocms.dataset.TraceGenerator file duration timestep aps cells churn [seed]
+  * </pre>
+  *
+  * @author     Hossein Falaki
+  */
+public class TraceGenerator
+{
+    /** The default number of locations */
+    public static final int DEFAULT_LOCATIONS               = 1000;
+
+    /** The fraction of the locations without WiFi */
+    private static final double NO_WIFI                     = 0.2;
+
+    /** The fraction of the locations without GSM coverage */
+    private static final double NO_GSM                      = 0.05;
+
+    /** The maximum number of distinct access points */
+    public static final int MAX_APS                         = 0x10000;
+
+    /** Number of distinct access points */
+    int aps;
+
+    /** Number of distinct GSM cells */
+    int cells;
+
+    /** Probability of moving to another location at each sample */
+    double churn;
+
+    /** Number of locations */
+    int locations;
+
+    /** Seed of the random generator */
+    long seed;
+
+
+    /**
+      * The main method of the generator.
+      *
+      * @param      argv            the trace file, the duration in seconds, the time step in seconds,
+      *                             the number of APs, the number of cells, the churn rate and
+      *                             optionally the seed
+      */
+    public static void main(String[] argv)
+    {
+        if (argv.length < 6)
+        {
+            System.err.println("Usage: java ocms.dataset.TraceGenerator file duration timestep aps cells churn [seed]");
+            System.exit(1);
+        }
+
+        try
+        {
+            TraceGenerator generator = new TraceGenerator( Integer.parseInt(argv[3]), Integer.parseInt(argv[4])
+                    , Double.parseDouble(argv[5]), (argv.length > 6) ? Long.parseLong(argv[6]) : 1 );
+            int samples = generator.write(argv[0], Integer.parseInt(argv[1]), Integer.parseInt(argv[2]));
+            System.out.println("TraceGenerator: wrote " + samples + " samples to " + argv[0]);
+        }
+        catch (NumberFormatException nfe)
+        {
+            System.err.println("TraceGenerator: Invalid argument: " + nfe.getMessage());
+            System.exit(1);
+        }
+        catch (IOException ioe)
+        {
+            System.err.println("TraceGenerator: Error while writing " + argv[0] + ": " + ioe.toString());
+            System.exit(1);
+        }
+    }
+
+
+    /**
+      * Constructs a generator with the default number of locations.
+      *
+      * @param      aps             number of distinct access points
+      * @param      cells           number of distinct GSM cells
+      * @param      churn           probability of moving to another location at each sample
+      * @param      seed            seed of the random generator
+      */
+    public TraceGenerator(int aps, int cells, double churn, long seed)
+    {
+        this(aps, cells, churn, DEFAULT_LOCATIONS, seed);
+    }
+
+    /**
+      * Constructs a generator.
+      *
+      * @param      aps             number of distinct access points (at most {@link #MAX_APS})
+      * @param      cells           number of distinct GSM cells
+      * @param      churn           probability of moving to another location at each sample
+      * @param      locations       number of locations
+      * @param      seed            seed of the random generator
+      */
+    public TraceGenerator(int aps, int cells, double churn, int locations, long seed)
+    {
+        this.aps = Math.min(Math.max(1, aps), MAX_APS);
+        this.cells = Math.max(1, cells);
+        this.churn = churn;
+        this.locations = Math.max(1, locations);
+        this.seed = seed;
+    }
+
+    /**
+      * Writes a trace that covers the given duration.
+      * The samples are numbered from zero; the time step should be passed to
+      * the simulator as <i>dataset_timestep</i>.
+      *
+      * @param      filename        name of the trace file
+      * @param      duration        duration of the trace in seconds
+      * @param      timestep        time step of the trace in seconds
+      * @return                     number of samples written
+      * @throws     IOException     if the file cannot be written
+      */
+    public int write(String filename, int duration, int timestep) throws IOException
+    {
+        int samples = duration/Math.max(1, timestep);
+        write(filename, samples);
+        return samples;
+    }
+
+    /**
+      * Writes a trace with the given number of samples.
+      *
+      * @param      filename        name of the trace file
+      * @param      samples         number of samples
+      * @throws     IOException     if the file cannot be written
+      */
+    public void write(String filename, int samples) throws IOException
+    {
+        Random random = new Random(seed);
+        BufferedWriter output = new BufferedWriter( new FileWriter(filename) );
+        StringBuilder line = new StringBuilder();
+        int location = 0;
+
+        try
+        {
+            for (int time = 0; time < samples; time++)
+            {
+                if (random.nextDouble() < churn)
+                    location = random.nextInt(locations);
+
+                line.setLength(0);
+                line.append(time);
+
+                /* The APs and cells of a location only depend on the location */
+                Random place = new Random(location);
+                int[] wifi = draw(place, (place.nextDouble() < NO_WIFI) ? 0 : 1 + place.nextInt(4), aps);
+                line.append(" ").append(wifi.length);
+                for (int i = 0; i < wifi.length; i++)
+                {
+                    line.append(" 00:16:b6");
+                    for (int shift = 16; shift >= 0; shift -= 8)
+                    {
+                        int octet = (wifi[i] >>> shift) & 0xFF;
+                        line.append(':').append( Character.forDigit(octet >>> 4, 16) ).append( Character.forDigit(octet & 0xF, 16) );
+                    }
+                    line.append(" ").append( 10 + random.nextInt(40) );
+                }
+
+                int[] gsm = draw(place, (place.nextDouble() < NO_GSM) ? 0 : 1 + place.nextInt(3), cells);
+                line.append(" ").append(gsm.length);
+                for (int i = 0; i < gsm.length; i++)
+                {
+                    line.append(" 310:410:100:").append( 2000 + gsm[i] );
+                    line.append(" ").append( 5 + random.nextInt(25) );
+                }
+
+                output.write(line.toString());
+                output.newLine();
+            }
+        }
+        finally
+        {
+            output.close();
+        }
+    }
+
+    /**
+      * Draws distinct numbers below a bound, like a scan that never reports an
+      * AP or a cell twice. Uses Floyd's algorithm, a partial Fisher-Yates
+      * shuffle that does not need an array of all the numbers.
+      *
+      * @param      random          the random generator
+      * @param      count           number of numbers to draw
+      * @param      bound           the bound
+      * @return                     min(count, bound) distinct numbers in [0, bound)
+      */
+    private static int[] draw(Random random, int count, int bound)
+    {
+        int[] result = new int[Math.min(count, bound)];
+
+        for (int i = 0, j = bound - result.length; i < result.length; i++, j++)
+        {
+            int value = random.nextInt(j + 1);
+            for (int k = 0; k < i; k++)
+            {
+                if (result[k] == value)
+                {
+                    value = j;
+                    break;
+                }
+            }
+            result[i] = value;
+        }
+
+        return result;
+    }
+}
@@ -0,0 +1,645 @@
+ /**
+  * Opportunistic Connectivity Management Simulator
+  *
+  * Copyright (C) 2007 Hossein Falaki
+  */
+
+package ocms.dataset;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+
+/**
+  * Parses a trace in the text format of {@link DataSet} in parallel.
+  * The file is split into parts that end at a line break, and the parts are
+  * parsed by the tasks of a ForkJoinPool. Each task maps its part of the file
+  * with a FileChannel and reads the tokens of the lines directly from the
+  * mapped bytes: the numbers are parsed into ints without building Strings,
+  * and only the IDs become Strings. The samples of the parts are merged in
+  * time order; samples with the same time stay in the order of the file, so
+  * the last one is still the one used by the media.
+  * <br>
+  * The tokens of a line are separated by spaces or tabs. Lines with fewer
+  * than three tokens are ignored, as in {@link DataSet}. Lines with a bad
+  * time, a bad number of observations or a missing ID or signal strength are
+  * skipped; a bad signal strength is read as 0 and a missing number of GSM
+  * cells as 0. The errors are not printed: the first {@link #MAX_ERRORS} of
+  * them are kept in a report (see {@link #getReport}), and the others are
+  * only counted.
+  *
+  * @author     Hossein Falaki
+  */
+public class TraceParser
+{
+    /** The number of errors kept in the report */
+    public static final int MAX_ERRORS          = 20;
+
+    /** Parts of the file smaller than this number of bytes are parsed by a single task */
+    private static final long CHUNK             = 1L << 22;
+
+    /** The charset of the IDs with non ASCII characters */
+    private static final Charset UTF8           = Charset.forName("UTF-8");
+
+    /** The charset of the ASCII IDs */
+    private static final Charset ASCII          = Charset.forName("ISO-8859-1");
+
+    /** Name of the trace file */
+    String filename;
+
+    /** The time step of the samples */
+    int step;
+
+    /** The channel of the file while it is parsed */
+    FileChannel channel;
+
+    /** Number of errors of the last parse */
+    int errors;
+
+    /** The first errors of the last parse */
+    ArrayList<ParseError> report;
+
+
+    /**
+      * An error at a line of the file.
+      */
+    private static class ParseError
+    {
+        /** Number of the line, from 1 */
+        int line;
+
+        /** Description of the error */
+        String message;
+
+        ParseError(int line, String message)
+        {
+            this.line = line;
+            this.message = message;
+        }
+    }
+
+    /**
+      * The samples and the errors of a part of the file.
+      */
+    private static class Part
+    {
+        /** The samples in time order */
+        ArrayList<Sample> samples = new ArrayList<Sample>();
+
+        /** Number of lines of the part */
+        int lines;
+
+        /** Number of errors of the part */
+        int errors;
+
+        /** The first errors of the part, with line numbers from the start of the part */
+        ArrayList<ParseError> report = new ArrayList<ParseError>();
+
+        /**
+          * Records an error at the current line.
+          */
+        void error(String message)
+        {
+            if (report.size() < MAX_ERRORS)
+                report.add( new ParseError(lines + 1, message) );
+            errors++;
+        }
+    }
+
+    /**
+      * Parses the part of the file between two line breaks, splitting it if it is large.
+      */
+    private class ParseTask extends RecursiveTask<Part>
+    {
+        /** Position of the first byte of the part */
+        long start;
+
+        /** Position after the last byte of the part */
+        long end;
+
+        ParseTask(long start, long end)
+        {
+            this.start = start;
+            this.end = end;
+        }
+
+        protected Part compute()
+        {
+            try
+            {
+                long middle = (end - start > CHUNK) ? nextLine(start + (end - start)/2, end) : end;
+                if (middle >= end)
+                    return parse(start, end);
+
+                ParseTask first = new ParseTask(start, middle);
+                ParseTask second = new ParseTask(middle, end);
+                first.fork();
+                Part part = second.compute();
+                return merge(first.join(), part);
+            }
+            catch (IOException ioe)
+            {
+                throw new RuntimeException(ioe);
+            }
+        }
+    }
+
+    /**
+      * Reads the tokens of a line of a mapped part of the file.
+      */
+    private static class Tokenizer
+    {
+        /** The bytes of the part */
+        ByteBuffer buffer;
+
+        /** Position of the next byte of the line */
+        int position;
+
+        /** Position after the last byte of the line */
+        int limit;
+
+        /** Position of the first byte of the current token */
+        int start;
+
+        /** Position after the last byte of the current token */
+        int end;
+
+        /** Buffer of the bytes of an ID */
+        byte[] bytes = new byte[64];
+
+        Tokenizer(ByteBuffer buffer)
+        {
+            this.buffer = buffer;
+        }
+
+        /**
+          * Starts reading a line.
+          */
+        void reset(int position, int limit)
+        {
+            this.position = position;
+            this.limit = limit;
+        }
+
+        /**
+          * Moves to the next token of the line.
+          *
+          * @return                 false if there are no more tokens
+          */
+        boolean next()
+        {
+            while ( (position < limit) && isSpace(buffer.get(position)) )
+                position++;
+
+            if (position == limit)
+                return false;
+
+            start = position;
+            while ( (position < limit) && !isSpace(buffer.get(position)) )
+                position++;
+            end = position;
+
+            return true;
+        }
+
+        /**
+          * Returns true if there is another token, without moving to it.
+          */
+        boolean hasNext()
+        {
+            int savedposition = position;
+            int savedstart = start;
+            int savedend = end;
+            boolean result = next();
+            position = savedposition;
+            start = savedstart;
+            end = savedend;
+
+            return result;
+        }
+
+        /**
+          * Returns the current token as an int.
+          *
+          * @throws     NumberFormatException   if the token is not a decimal int
+          */
+        int intValue()
+        {
+            return intValue(start, end);
+        }
+
+        /**
+          * Returns a token of the line as an int.
+          *
+          * @param      start           position of the first byte of the token
+          * @param      end             position after the last byte of the token
+          * @throws     NumberFormatException   if the token is not a decimal int
+          */
+        int intValue(int start, int end)
+        {
+            int i = start;
+            boolean negative = false;
+            if ( (buffer.get(i) == '-') || (buffer.get(i) == '+') )
+            {
+                negative = (buffer.get(i) == '-');
+                i++;
+            }
+
+            if (i == end)
+                throw new NumberFormatException("For input string: \"" + stringValue(start, end) + "\"");
+
+            long value = 0;
+            for (; i < end; i++)
+            {
+                int digit = buffer.get(i) - '0';
+                if ( (digit < 0) || (digit > 9) )
+                    throw new NumberFormatException("For input string: \"" + stringValue(start, end) + "\"");
+
+                value = 10*value + digit;
+                if (value > (long)Integer.MAX_VALUE + 1)
+                    throw new NumberFormatException("For input string: \"" + stringValue(start, end) + "\"");
+            }
+
+            if (negative)
+                value = -value;
+            if (value > Integer.MAX_VALUE)
+                throw new NumberFormatException("For input string: \"" + stringValue(start, end) + "\"");
+
+            return (int)value;
+        }
+
+        /**
+          * Returns the current token as a String.
+          */
+        String stringValue()
+        {
+            return stringValue(start, end);
+        }
+
+        /**
+          * Returns a token of the line as a String.
+          */
+        String stringValue(int start, int end)
+        {
+            int length = end - start;
+            if (bytes.length < length)
+                bytes = new byte[2*length];
+
+            boolean ascii = true;
+            for (int i = 0; i < length; i++)
+            {
+                bytes[i] = buffer.get(start + i);
+                if (bytes[i] < 0)
+                    ascii = false;
+            }
+
+            return new String(bytes, 0, length, ascii ? ASCII : UTF8);
+        }
+
+        /**
+          * Returns true for the bytes that separate the tokens.
+          */
+        static boolean isSpace(byte b)
+        {
+            return (b == ' ') || (b == '\t') || (b == '\r');
+        }
+    }
+
+
+    /**
+      * Constructs a parser of a trace file.
+      *
+      * @param      filename        name of the trace file
+      * @param      step            the time step of the samples; the times of the
+      *                             file are multiplied by it
+      */
+    public TraceParser(String filename, int step)
+    {
+        this.filename = filename;
+        this.step = step;
+        report = new ArrayList<ParseError>();
+    }
+
+    /**
+      * Parses the file.
+      *
+      * @return                     the samples of the file in time order
+      * @throws     IOException     if the file cannot be read
+      */
+    public ArrayList<Sample> parse() throws IOException
+    {
+        RandomAccessFile file = new RandomAccessFile(filename, "r");
+        try
+        {
+            channel = file.getChannel();
+            Part part = ForkJoinPool.commonPool().invoke( new ParseTask(0, channel.size()) );
+            errors = part.errors;
+            report = part.report;
+
+            return part.samples;
+        }
+        catch (RuntimeException re)
+        {
+            /* The tasks wrap the I/O errors */
+            for (Throwable cause = re; cause != null; cause = cause.getCause())
+            {
+                if (cause instanceof IOException)
+                    throw (IOException)cause;
+            }
+            throw re;
+        }
+        finally
+        {
+            channel = null;
+            file.close();
+        }
+    }
+
+    /**
+      * Returns the position after the first line break at or after a position.
+      *
+      * @param      position        the position to search from
+      * @param      end             the end of the search
+      * @return                     the position of the next line, or end if there is none
+      * @throws     IOException     if the file cannot be read
+      */
+    private long nextLine(long position, long end) throws IOException
+    {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(4096);
+
+        while (position < end)
+        {
+            buffer.clear();
+            int read = channel.read(buffer, position);
+            if (read <= 0)
+                break;
+
+            for (int i = 0; (i < read) && (position + i < end); i++)
+            {
+                if (buffer.get(i) == '\n')
+                    return position + i + 1;
+            }
+            position += read;
+        }
+
+        return end;
+    }
+
+    /**
+      * Parses the lines of a part of the file.
+      *
+      * @param      start           position of the first byte of the part
+      * @param      end             position after the last byte of the part
+      * @return                     the samples and errors of the part
+      * @throws     IOException     if the file cannot be read
+      */
+    private Part parse(long start, long end) throws IOException
+    {
+        Part part = new Part();
+        if (start == end)
+            return part;
+
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+        Tokenizer tokenizer = new Tokenizer(buffer);
+        boolean sorted = true;
+
+        int position = 0;
+        int limit = buffer.limit();
+        while (position < limit)
+        {
+            int eol = position;
+            while ( (eol < limit) && (buffer.get(eol) != '\n') )
+                eol++;
+
+            tokenizer.reset(position, eol);
+            Sample sample = parseLine(tokenizer, part);
+            if (sample != null)
+            {
+                int size = part.samples.size();
+                if ( (size > 0) && (part.samples.get(size - 1).getTime() > sample.getTime()) )
+                    sorted = false;
+                part.samples.add(sample);
+            }
+
+            part.lines++;
+            position = eol + 1;
+        }
+
+        /* The sort is stable, samples of the same time keep their order */
+        if (!sorted)
+            Collections.sort(part.samples);
+
+        return part;
+    }
+
+    /**
+      * Parses a line of the file.
+      * The format of the line is described in {@link DataSet#load(String)}.
+      *
+      * @param      tokenizer       the tokenizer, at the start of the line
+      * @param      part            the part of the line, for the errors
+      * @return                     the sample of the line, or null if there is none
+      */
+    private Sample parseLine(Tokenizer tokenizer, Part part)
+    {
+        /* A line with fewer than three tokens may be a bogus line */
+        if (!tokenizer.next())
+            return null;
+        int timestart = tokenizer.start;
+        int timeend = tokenizer.end;
+        if ( !tokenizer.next() || !tokenizer.hasNext() )
+            return null;
+
+        int time;
+        try
+        {
+            time = tokenizer.intValue(timestart, timeend);
+        }
+        catch (NumberFormatException nfe)
+        {
+            part.error("NumberFormatException while parsing time: " + nfe.getMessage());
+            return null;
+        }
+
+        int wifinum;
+        try
+        {
+            wifinum = tokenizer.intValue();
+        }
+        catch (NumberFormatException nfe)
+        {
+            part.error("NumberFormatException while parsing wifinum: " + nfe.getMessage());
+            return null;
+        }
+
+        if (wifinum < 0)
+        {
+            part.error("Negative number of WiFi APs: " + wifinum);
+            return null;
+        }
+
+        Sample sample = new Sample(time * step);
+
+        for (int i = 0; i < wifinum; i++)
+        {
+            if (!tokenizer.next())
+            {
+                part.error("Missing WiFi AP " + (i + 1) + " of " + wifinum);
+                return null;
+            }
+            String id = tokenizer.stringValue();
+
+            if (!tokenizer.next())
+            {
+                part.error("Missing signal strength of WiFi AP " + id);
+                return null;
+            }
+            sample.addWiFi( new Tuple<String, Integer>(id, signal(tokenizer, part)) );
+        }
+
+        if (!tokenizer.next())
+        {
+            part.error("Missing number of GSM cells");
+            return sample;
+        }
+
+        int gsmnum;
+        try
+        {
+            gsmnum = tokenizer.intValue();
+        }
+        catch (NumberFormatException nfe)
+        {
+            part.error("NumberFormatException while parsing gsmnum: " + nfe.getMessage());
+            return null;
+        }
+
+        if (gsmnum < 0)
+        {
+            part.error("Negative number of GSM cells: " + gsmnum);
+            return null;
+        }
+
+        for (int i = 0; i < gsmnum; i++)
+        {
+            if (!tokenizer.next())
+            {
+                part.error("Missing GSM cell " + (i + 1) + " of " + gsmnum);
+                return null;
+            }
+            String id = tokenizer.stringValue();
+
+            if (!tokenizer.next())
+            {
+                part.error("Missing signal strength of GSM cell " + id);
+                return null;
+            }
+            sample.addGSM( new Tuple<String, Integer>(id, signal(tokenizer, part)) );
+        }
+
+        return sample;
+    }
+
+    /**
+      * Parses a signal strength, or returns 0 if it is not a number.
+      */
+    private int signal(Tokenizer tokenizer, Part part)
+    {
+        try
+        {
+            return tokenizer.intValue();
+        }
+        catch (NumberFormatException nfe)
+        {
+            part.error("NumberFormatException while parsing signal: " + nfe.getMessage());
+            return 0;
+        }
+    }
+
+    /**
+      * Merges the results of two consecutive parts of the file.
+      *
+      * @param      first           the earlier part
+      * @param      second          the later part
+      * @return                     the merged part
+      */
+    private static Part merge(Part first, Part second)
+    {
+        Part result = new Part();
+        result.lines = first.lines + second.lines;
+        result.errors = first.errors + second.errors;
+
+        result.report.addAll(first.report);
+        for (ParseError error : second.report)
+        {
+            if (result.report.size() == MAX_ERRORS)
+                break;
+            result.report.add( new ParseError(first.lines + error.line, error.message) );
+        }
+
+        ArrayList<Sample> a = first.samples;
+        ArrayList<Sample> b = second.samples;
+        result.samples = new ArrayList<Sample>(a.size() + b.size());
+
+        /* The parts of a trace in time order follow each other */
+        if ( a.isEmpty() || b.isEmpty() || (a.get(a.size() - 1).getTime() <= b.get(0).getTime()) )
+        {
+            result.samples.addAll(a);
+            result.samples.addAll(b);
+            return result;
+        }
+
+        /* Samples of the same time are taken from the earlier part first */
+        int i = 0;
+        int j = 0;
+        while ( (i < a.size()) && (j < b.size()) )
+        {
+            if (b.get(j).getTime() < a.get(i).getTime())
+                result.samples.add( b.get(j++) );
+            else
+                result.samples.add( a.get(i++) );
+        }
+        result.samples.addAll( a.subList(i, a.size()) );
+        result.samples.addAll( b.subList(j, b.size()) );
+
+        return result;
+    }
+
+    /**
+      * Returns the number of errors of the last parse.
+      *
+      * @return                     number of errors
+      */
+    public int getErrorCount()
+    {
+        return errors;
+    }
+
+    /**
+      * Returns a report of the errors of the last parse.
+      * The first {@link #MAX_ERRORS} errors are listed with their line numbers.
+      *
+      * @return                     the report, or an empty String if there were no errors
+      */
+    public String getReport()
+    {
+        if (errors == 0)
+            return "";
+
+        StringBuffer sb = new StringBuffer(errors + " errors while parsing " + filename + ":");
+        for (ParseError error : report)
+            sb.append("\n    line " + error.line + ": " + error.message);
+        if (errors > report.size())
+            sb.append("\n    ... and " + (errors - report.size()) + " more");
+
+        return sb.toString();
+    }
+}
@@ -0,0 +1,394 @@
+ /**
+  * Opportunistic Connectivity Management Simulator
+  *
+  * Copyright (C) 2007 Hossein Falaki
+  */
+
+package ocms.eventqueue;
+
+import ocms.util.Time;
+
+
+
+/**
+  * A calendar queue implementation of the {@link EventList} (R. Brown,
+  * "Calendar queues: a fast O(1) priority queue implementation for the
+  * simulation event set problem", CACM 1988).
+  *
+  * The events are hashed into an array of 'days' (buckets) of equal width
+  * based on their timestamps. Each bucket is a sorted linked list. Dequeuing
+  * walks the buckets in the current 'year' and only falls back to a direct
+  * search when a whole year is empty. The number of buckets and their width
+  * are adapted to the number of pending events.
+  *
+  * The linked list nodes are kept in parallel primitive arrays and are
+  * recycled, so that adding and polling events does not allocate. The
+  * timestamps and the bucket width are in ticks (see {@link ocms.util.Time}).
+  * Events with equal timestamps are returned in the order they were added.
+  *
+  * @author     Hossein Falaki
+  */
+public class CalendarEventList implements EventList
+{
+    /** The minimum number of buckets */
+    private static final int MIN_BUCKETS                    = 4;
+
+    /** The number of events sampled to estimate the bucket width */
+    private static final int WIDTH_SAMPLES                  = 25;
+
+    /** The default bucket width in seconds */
+    private static final double DEFAULT_WIDTH               = 1.0;
+
+    /** A constant for the end of a linked list */
+    private static final int NIL                            = -1;
+
+    /** Timestamps of the nodes in ticks */
+    private long[] ntime;
+
+    /** The 'virtual bucket' (floor(time/width)) of the nodes */
+    private long[] nbucket;
+
+    /** Insertion sequence numbers of the nodes */
+    private long[] nseq;
+
+    /** Events of the nodes */
+    private Event[] nevent;
+
+    /** Next pointers of the nodes */
+    private int[] nnext;
+
+    /** Head of the list of free nodes */
+    private int free;
+
+    /** Heads of the bucket lists */
+    private int[] buckets;
+
+    /** Number of buckets minus one (the number of buckets is a power of two) */
+    private int mask;
+
+    /** Width of each bucket in ticks */
+    private long width;
+
+    /** The virtual bucket of the last polled event */
+    private long lastbucket;
+
+    /** Number of events in the queue */
+    private int size;
+
+    /** The sequence number of the next event */
+    private long nextseq;
+
+    /**
+      * Constructs an empty calendar queue with the default bucket width.
+      */
+    public CalendarEventList()
+    {
+        this(DEFAULT_WIDTH);
+    }
+
+    /**
+      * Constructs an empty calendar queue with the given initial bucket width.
+      * The width will be adapted as events are added.
+      *
+      * @param      width               the initial width of the buckets in seconds
+      */
+    public CalendarEventList(double width)
+    {
+        if ( !(width > 0) )
+            width = DEFAULT_WIDTH;
+
+        this.width = Math.max(1, Time.toTicks(width));
+        buckets = newBuckets(MIN_BUCKETS);
+        mask = MIN_BUCKETS - 1;
+
+        int capacity = 2*MIN_BUCKETS;
+        ntime = new long[capacity];
+        nbucket = new long[capacity];
+        nseq = new long[capacity];
+        nevent = new Event[capacity];
+        nnext = new int[capacity];
+        free = NIL;
+        for (int i = capacity - 1; i >= 0; i--)
+        {
+            nnext[i] = free;
+            free = i;
+        }
+
+        size = 0;
+        nextseq = 0;
+        lastbucket = Long.MIN_VALUE;
+    }
+
+    /**
+      * Adds an event to the calendar.
+      *
+      * @param      event               the event to be added
+      */
+    public void add(Event event)
+    {
+        int node = allocate();
+        ntime[node] = event.getTicks();
+        nseq[node] = nextseq++;
+        nevent[node] = event;
+
+        insert(node);
+        size++;
+
+        if (size > 2*(mask + 1))
+            resize(2*(mask + 1));
+    }
+
+    /**
+      * Removes and returns the event with the smallest timestamp.
+      *
+      * @return                         the head of the calendar or null if it is empty
+      */
+    public Event poll()
+    {
+        if (size == 0)
+            return null;
+
+        int node = removeFirst();
+        Event result = nevent[node];
+        release(node);
+        size--;
+
+        if ( (size < (mask + 1)/2) && (mask + 1 > MIN_BUCKETS) )
+            resize((mask + 1)/2);
+
+        return result;
+    }
+
+    /**
+      * Returns the timestamp of the head of the calendar.
+      *
+      * @return                         the smallest timestamp in the calendar in ticks
+      */
+    public long peekTicks()
+    {
+        return ntime[findFirst()];
+    }
+
+    /**
+      * Returns true if the calendar is empty.
+      *
+      * @return                         true if there is no event in the calendar
+      */
+    public boolean isEmpty()
+    {
+        return size == 0;
+    }
+
+    /**
+      * Returns the number of events in the calendar.
+      *
+      * @return                         number of events in the calendar
+      */
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+      * Inserts the node in the sorted list of its bucket.
+      *
+      * @param      node                index of the node to be inserted
+      */
+    private void insert(int node)
+    {
+        long vb = Math.floorDiv(ntime[node], width);
+        nbucket[node] = vb;
+
+        /* An event before the current position of the calendar moves it back */
+        if (vb < lastbucket)
+            lastbucket = vb;
+
+        int b = (int)(vb & mask);
+        int prev = NIL;
+        int cur = buckets[b];
+        while ( (cur != NIL) && !before(node, cur) )
+        {
+            prev = cur;
+            cur = nnext[cur];
+        }
+
+        nnext[node] = cur;
+        if (prev == NIL)
+            buckets[b] = node;
+        else
+            nnext[prev] = node;
+    }
+
+    /**
+      * Returns the index of the node that should be polled next, and moves
+      * the calendar to its bucket. The calendar should not be empty.
+      *
+      * @return                         index of the head node
+      */
+    private int findFirst()
+    {
+        long vb = lastbucket;
+        int nbuckets = mask + 1;
+
+        /* Walk through one year of buckets starting at the current one */
+        if (vb != Long.MIN_VALUE)
+        {
+            for (int i = 0; i < nbuckets; i++, vb++)
+            {
+                int head = buckets[(int)(vb & mask)];
+                if ( (head != NIL) && (nbucket[head] <= vb) )
+                {
+                    lastbucket = vb;
+                    return head;
+                }
+            }
+        }
+
+        /* The year is empty, search directly for the smallest head */
+        int min = NIL;
+        for (int i = 0; i < nbuckets; i++)
+        {
+            int head = buckets[i];
+            if ( (head != NIL) && ( (min == NIL) || before(head, min) ) )
+                min = head;
+        }
+
+        lastbucket = nbucket[min];
+        return min;
+    }
+
+    /**
+      * Unlinks and returns the head node. The calendar should not be empty.
+      *
+      * @return                         index of the removed node
+      */
+    private int removeFirst()
+    {
+        int node = findFirst();
+        buckets[(int)(nbucket[node] & mask)] = nnext[node];
+        return node;
+    }
+
+    /**
+      * Returns true if the first node should be polled before the second.
+      */
+    private boolean before(int node1, int node2)
+    {
+        if (ntime[node1] < ntime[node2])
+            return true;
+        if (ntime[node1] > ntime[node2])
+            return false;
+        return nseq[node1] < nseq[node2];
+    }
+
+    /**
+      * Changes the number of buckets and re-estimates the bucket width.
+      * All the nodes are taken out in order and inserted again.
+      *
+      * @param      nbuckets            the new number of buckets
+      */
+    private void resize(int nbuckets)
+    {
+        int[] order = new int[size];
+        for (int i = 0; i < size; i++)
+            order[i] = removeFirst();
+
+        /* Estimates the width from the average separation of the first events,
+           ignoring the separations that are much larger than the average */
+        int samples = Math.min(size, WIDTH_SAMPLES);
+        if (samples > 1)
+        {
+            long total = ntime[order[samples - 1]] - ntime[order[0]];
+            double average = (double)total/(samples - 1);
+            long sum = 0;
+            int count = 0;
+            for (int i = 1; i < samples; i++)
+            {
+                long separation = ntime[order[i]] - ntime[order[i - 1]];
+                if (separation <= 2*average)
+                {
+                    sum += separation;
+                    count++;
+                }
+            }
+
+            if ( (count > 0) && (sum > 0) )
+                width = Math.max(1, 3*sum/count);
+        }
+
+        buckets = newBuckets(nbuckets);
+        mask = nbuckets - 1;
+        lastbucket = Long.MIN_VALUE;
+
+        for (int i = 0; i < order.length; i++)
+            insert(order[i]);
+    }
+
+    /**
+      * Returns a free node, growing the node arrays if needed.
+      *
+      * @return                         index of a free node
+      */
+    private int allocate()
+    {
+        if (free == NIL)
+        {
+            int oldcapacity = nevent.length;
+            int capacity = 2*oldcapacity;
+
+            long[] newtime = new long[capacity];
+            long[] newbucket = new long[capacity];
+            long[] newseq = new long[capacity];
+            Event[] newevent = new Event[capacity];
+            int[] newnext = new int[capacity];
+
+            System.arraycopy(ntime, 0, newtime, 0, oldcapacity);
+            System.arraycopy(nbucket, 0, newbucket, 0, oldcapacity);
+            System.arraycopy(nseq, 0, newseq, 0, oldcapacity);
+            System.arraycopy(nevent, 0, newevent, 0, oldcapacity);
+            System.arraycopy(nnext, 0, newnext, 0, oldcapacity);
+
+            ntime = newtime;
+            nbucket = newbucket;
+            nseq = newseq;
+            nevent = newevent;
+            nnext = newnext;
+
+            for (int i = capacity - 1; i >= oldcapacity; i--)
+            {
+                nnext[i] = free;
+                free = i;
+            }
+        }
+
+        int node = free;
+        free = nnext[node];
+        return node;
+    }
+
+    /**
+      * Puts a node back in the free list.
+      *
+      * @param      node                index of the node to be released
+      */
+    private void release(int node)
+    {
+        nevent[node] = null;
+        nnext[node] = free;
+        free = node;
+    }
+
+    /**
+      * Returns a new array of empty buckets.
+      *
+      * @param      nbuckets            number of buckets
+      * @return                         array of empty buckets
+      */
+    private static int[] newBuckets(int nbuckets)
+    {
+        int[] result = new int[nbuckets];
+        for (int i = 0; i < nbuckets; i++)
+            result[i] = NIL;
+        return result;
+    }
+}
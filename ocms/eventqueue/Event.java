@@ -10,6 +10,8 @@ package ocms.eventqueue;
 import java.lang.Comparable;
 import java.util.ArrayList;
 
+import ocms.util.Time;
+
 /**
   * An event used for asynchronous communication between diffent classes through 
   * the EventQueue. 
@@ -18,6 +20,17 @@ import java.util.ArrayList;
   * the event. Essentially it is a protocol between the the event generator and
   * the event consumer. 
   *
+  * The details are kept in typed argument slots. Each slot holds a primitive
+  * int, a primitive double or an object reference, so that the common commands
+  * and replies (NIC type, state, time) do not box their values. The slots can be
+  * read with {@link #getInt}, {@link #getDouble} and {@link #getObject}. The
+  * {@link #getDetails} method still returns the details as an ArrayList for
+  * the consumers that use the old protocol.
+  *
+  * Events obtained from an {@link EventPool} (through {@link EventQueue#obtain})
+  * are recycled by the EventQueue after they are dispatched. A consumer should
+  * not keep a reference to such an event after its handleEvent() returns.
+  *
   * @author     Hossein Falaki
   */
 public class Event implements Comparable
@@ -31,10 +44,22 @@ public class Event implements Comparable
     /** A constant for events related to GSM */
     public static final int GSM                                 = 3;
 
-    /** The timestamp of the event */
-    private Double time;
+    /** A constant for argument slots that keep an int */
+    public static final int INT                                 = 1;
+
+    /** A constant for argument slots that keep a double */
+    public static final int DOUBLE                              = 2;
 
-    /** The details of the event*/
+    /** A constant for argument slots that keep an object reference */
+    public static final int OBJECT                              = 3;
+
+    /** The initial number of argument slots */
+    private static final int DEFAULT_ARGS                       = 4;
+
+    /** The timestamp of the event in ticks (see {@link ocms.util.Time}) */
+    private long ticks;
+
+    /** The details of the event, constructed on demand from the slots */
     private ArrayList details;
 
     /** the destination of the event */
@@ -46,6 +71,27 @@ public class Event implements Comparable
     /** the type of the message */
     private int type;
 
+    /** Number of argument slots in use */
+    private int argc;
+
+    /** The kind of each argument slot */
+    private int[] kinds;
+
+    /** The int values of the argument slots */
+    private int[] ints;
+
+    /** The double values of the argument slots */
+    private double[] doubles;
+
+    /** The object values of the argument slots */
+    private Object[] objects;
+
+    /** True if the event belongs to an EventPool */
+    private boolean pooled;
+
+    /** True if the event is free in its EventPool */
+    boolean released;
+
 
     /**
       * Constructs an event with the given time, destination and details.
@@ -59,22 +105,101 @@ public class Event implements Comparable
       */
     public Event(double time, int type, EventConsumer source, EventConsumer destination, ArrayList details)
     {
-        this.time = time;
-        this.destination = destination;
+        this();
+        set(time, type, source, destination);
+
+        if (details != null)
+        {
+            for (Object item : details)
+                addDetail(item);
+        }
         this.details = details;
-        this.source = source;
+    }
+
+    /**
+      * Constructs an empty event with no details.
+      * Used by the {@link EventPool}.
+      */
+    Event()
+    {
+        kinds = new int[DEFAULT_ARGS];
+        ints = new int[DEFAULT_ARGS];
+        doubles = new double[DEFAULT_ARGS];
+        objects = new Object[DEFAULT_ARGS];
+        argc = 0;
+        pooled = false;
+        released = false;
+    }
+
+    /**
+      * Sets the header of the event and clears its argument slots.
+      *
+      * @param      time            time to be set as the event timestamp
+      * @param      type            type of the event
+      * @param      source          the source of the event
+      * @param      destination     destination of the message
+      */
+    void set(double time, int type, EventConsumer source, EventConsumer destination)
+    {
+        this.ticks = Time.toTicks(time);
         this.type = type;
+        this.source = source;
+        this.destination = destination;
+        clear();
+    }
+
+    /**
+      * Clears the argument slots and releases the references kept by the event.
+      */
+    void clear()
+    {
+        for (int i = 0; i < argc; i++)
+            objects[i] = null;
+
+        argc = 0;
+        details = null;
+    }
+
+    /**
+      * Marks this event as a member of an EventPool.
+      *
+      * @param      pooled          true if the event belongs to a pool
+      */
+    void setPooled(boolean pooled)
+    {
+        this.pooled = pooled;
+    }
+
+    /**
+      * Returns true if this event belongs to an EventPool.
+      *
+      * @return                     true if the event will be recycled after dispatch
+      */
+    public boolean isPooled()
+    {
+        return pooled;
     }
 
 
     /**
-      * Sets the timestamp of the event.
+      * Returns the timestamp of the event.
+      *
+      * @return                     timestamp of the event in seconds
+      */
+    public double getTime()
+    {
+        return Time.toSeconds(ticks);
+    }
+
+    /**
+      * Returns the timestamp of the event in ticks.
+      * The events are ordered by this value.
       *
-      * @return                     new timestamp of the event
+      * @return                     timestamp of the event in ticks
       */
-    public Double getTime()
+    public long getTicks()
     {
-        return time;
+        return ticks;
     }
 
     /**
@@ -110,17 +235,150 @@ public class Event implements Comparable
       */
     public int compareTo(Object event)
     {
-        return time.compareTo( (((Event)event).getTime()) );
+        return Long.compare(ticks, ((Event)event).ticks);
+    }
+
+
+    /**
+      * Appends an int argument to the details of the event.
+      *
+      * @param      value           the value to be appended
+      */
+    public void addInt(int value)
+    {
+        int i = nextSlot(INT);
+        ints[i] = value;
+    }
+
+    /**
+      * Appends a double argument to the details of the event.
+      *
+      * @param      value           the value to be appended
+      */
+    public void addDouble(double value)
+    {
+        int i = nextSlot(DOUBLE);
+        doubles[i] = value;
+    }
+
+    /**
+      * Appends an object argument to the details of the event.
+      *
+      * @param      value           the value to be appended (may be null)
+      */
+    public void addObject(Object value)
+    {
+        int i = nextSlot(OBJECT);
+        objects[i] = value;
+    }
+
+    /**
+      * Appends an element of the old ArrayList protocol to the details of
+      * the event. Integer and Double values are kept in primitive slots.
+      *
+      * @param      item            the element to be appended
+      */
+    public void addDetail(Object item)
+    {
+        if (item instanceof Integer)
+            addInt( (Integer)item );
+        else if (item instanceof Double)
+            addDouble( (Double)item );
+        else
+            addObject(item);
+    }
+
+    /**
+      * Returns the number of arguments of the event.
+      *
+      * @return                     number of arguments
+      */
+    public int getArgCount()
+    {
+        return argc;
+    }
+
+    /**
+      * Returns the kind of an argument slot.
+      * Should be checked against the constants of the {@link Event}.
+      *
+      * @param      index           index of the argument
+      * @return                     kind of the argument
+      */
+    public int getKind(int index)
+    {
+        checkIndex(index);
+        return kinds[index];
+    }
+
+    /**
+      * Returns the value of an int argument.
+      * A double argument is truncated to an int.
+      *
+      * @param      index           index of the argument
+      * @return                     value of the argument
+      */
+    public int getInt(int index)
+    {
+        checkIndex(index);
+        if (kinds[index] == DOUBLE)
+            return (int)doubles[index];
+        if (kinds[index] == OBJECT)
+            return (Integer)objects[index];
+        return ints[index];
+    }
+
+    /**
+      * Returns the value of a double argument.
+      * An int argument is widened to a double.
+      *
+      * @param      index           index of the argument
+      * @return                     value of the argument
+      */
+    public double getDouble(int index)
+    {
+        checkIndex(index);
+        if (kinds[index] == INT)
+            return ints[index];
+        if (kinds[index] == OBJECT)
+            return ((Number)objects[index]).doubleValue();
+        return doubles[index];
+    }
+
+    /**
+      * Returns the value of an argument as an object.
+      * Primitive arguments are boxed.
+      *
+      * @param      index           index of the argument
+      * @return                     value of the argument
+      */
+    public Object getObject(int index)
+    {
+        checkIndex(index);
+        if (kinds[index] == INT)
+            return ints[index];
+        if (kinds[index] == DOUBLE)
+            return doubles[index];
+        return objects[index];
     }
 
 
     /**
       * Returns the details of the event
+      * The ArrayList is constructed from the argument slots the first time
+      * this method is called.
       *
       * @return                     ArrayList containing the details of the event
       */
     public ArrayList getDetails()
     {
+        if (details == null)
+        {
+            ArrayList<Object> result = new ArrayList<Object>(argc);
+            for (int i = 0; i < argc; i++)
+                result.add(getObject(i));
+            details = result;
+        }
         return details;
     }
 
@@ -142,14 +400,65 @@ public class Event implements Comparable
       */
     public String toString()
     {
-        String result = "Event[time=" + time + ", type="+type + ", details="; 
-        if (details != null)
-            result += details.toString();
-        else 
-            result += "null";
-        result += " From " + source.getName() + " To " + destination.getName() + "]";
+        StringBuilder sb = new StringBuilder("Event[time=");
+        sb.append(getTime()).append(", type=").append(type).append(", details=[");
+        for (int i = 0; i < argc; i++)
+        {
+            if (i > 0)
+                sb.append(", ");
+            if (kinds[i] == INT)
+                sb.append(ints[i]);
+            else if (kinds[i] == DOUBLE)
+                sb.append(doubles[i]);
+            else
+                sb.append(objects[i]);
+        }
+        sb.append("] From ").append(source.getName()).append(" To ").append(destination.getName()).append("]");
+
+        return sb.toString();
+    }
+
+    /**
+      * Returns the index of the next free argument slot and sets its kind.
+      * The slot arrays grow if needed.
+      *
+      * @param      kind            kind of the new argument
+      * @return                     index of the new argument
+      */
+    private int nextSlot(int kind)
+    {
+        if (argc == kinds.length)
+        {
+            int capacity = 2*argc;
+            int[] newkinds = new int[capacity];
+            int[] newints = new int[capacity];
+            double[] newdoubles = new double[capacity];
+            Object[] newobjects = new Object[capacity];
+            System.arraycopy(kinds, 0, newkinds, 0, argc);
+            System.arraycopy(ints, 0, newints, 0, argc);
+            System.arraycopy(doubles, 0, newdoubles, 0, argc);
+            System.arraycopy(objects, 0, newobjects, 0, argc);
+            kinds = newkinds;
+            ints = newints;
+            doubles = newdoubles;
+            objects = newobjects;
+        }
+
+        /* Adding an argument invalidates the ArrayList view */
+        details = null;
+        kinds[argc] = kind;
+        return argc++;
+    }
 
-        return result;
+    /**
+      * Throws an IndexOutOfBoundsException if there is no such argument.
+      *
+      * @param      index           index of the argument
+      */
+    private void checkIndex(int index)
+    {
+        if ( (index < 0) || (index >= argc) )
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + argc);
     }
 
 }
@@ -0,0 +1,65 @@
+ /**
+  * Opportunistic Connectivity Management Simulator
+  *
+  * Copyright (C) 2007 Hossein Falaki
+  */
+
+package ocms.eventqueue;
+
+
+
+/**
+  * The interface to be implemented by the data structures that keep the pending
+  * events of the {@link EventQueue}.
+  * An EventList orders the events based on their timestamps. Events with equal
+  * timestamps are returned in the order they were added (FIFO).
+  * The timestamps are kept as primitive values, so that the ordering does not
+  * depend on {@link Event#compareTo}.
+  *
+  * @author     Hossein Falaki
+  */
+public interface EventList
+{
+    /** A constant for the binary heap implementation */
+    public static final String HEAP                 = "HEAP";
+
+    /** A constant for the calendar queue implementation */
+    public static final String CALENDAR             = "CALENDAR";
+
+    /**
+      * Adds an event to the list.
+      *
+      * @param      event           the event to be added
+      */
+    public void add(Event event);
+
+    /**
+      * Removes and returns the event with the smallest timestamp.
+      * Returns null if the list is empty.
+      *
+      * @return                     the head of the list
+      */
+    public Event poll();
+
+    /**
+      * Returns the timestamp of the head of the list without removing it.
+      * The result is undefined if the list is empty.
+      *
+      * @return                     timestamp of the head of the list in ticks
+      */
+    public long peekTicks();
+
+    /**
+      * Returns true if there is no event in the list.
+      *
+      * @return                     true if the list is empty
+      */
+    public boolean isEmpty();
+
+    /**
+      * Returns the number of events in the list.
+      *
+      * @return                     number of events in the list
+      */
+    public int size();
+}
@@ -0,0 +1,117 @@
+ /**
+  * Opportunistic Connectivity Management Simulator
+  *
+  * Copyright (C) 2007 Hossein Falaki
+  */
+
+package ocms.eventqueue;
+
+
+
+/**
+  * A pool of reusable {@link Event} objects.
+  * The free events are kept in a stack. {@link #obtain} pops an event (or
+  * constructs one if the stack is empty) and {@link #recycle} clears the event
+  * and pushes it back. At most 'capacity' free events are kept; the rest are
+  * left to the garbage collector.
+  *
+  * The pool is not thread safe. Each EventQueue has its own pool.
+  *
+  * @author     Hossein Falaki
+  */
+public class EventPool
+{
+    /** The default maximum number of free events */
+    public static final int DEFAULT_CAPACITY                = 1024;
+
+    /** The stack of free events */
+    private Event[] free;
+
+    /** Number of free events in the stack */
+    private int size;
+
+    /** Number of events constructed by the pool */
+    private long created;
+
+    /**
+      * Constructs an empty pool with the default capacity.
+      */
+    public EventPool()
+    {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+      * Constructs an empty pool that keeps at most the given number of free events.
+      *
+      * @param      capacity            maximum number of free events
+      */
+    public EventPool(int capacity)
+    {
+        if (capacity < 1)
+            capacity = 1;
+
+        free = new Event[capacity];
+        size = 0;
+        created = 0;
+    }
+
+    /**
+      * Returns an event with the given header and no details.
+      *
+      * @param      time                timestamp of the event
+      * @param      type                type of the event
+      * @param      source              source of the event
+      * @param      destination         destination of the event
+      * @return                         an empty pooled event
+      */
+    public Event obtain(double time, int type, EventConsumer source, EventConsumer destination)
+    {
+        Event event;
+
+        if (size == 0)
+        {
+            event = new Event();
+            event.setPooled(true);
+            created++;
+        }
+        else
+        {
+            event = free[--size];
+            free[size] = null;
+        }
+
+        event.released = false;
+        event.set(time, type, source, destination);
+        return event;
+    }
+
+    /**
+      * Returns the event to the pool.
+      * Events that have not been obtained from a pool, and events that have
+      * already been recycled, are ignored.
+      *
+      * @param      event               the event to be recycled
+      */
+    public void recycle(Event event)
+    {
+        if ( (event == null) || !event.isPooled() || event.released )
+            return;
+
+        event.set(0, 0, null, null);
+        event.released = true;
+
+        if (size < free.length)
+            free[size++] = event;
+    }
+
+    /**
+      * Returns the number of events constructed by the pool.
+      *
+      * @return                         number of constructed events
+      */
+    public long getCreated()
+    {
+        return created;
+    }
+}
@@ -7,35 +7,46 @@
 package ocms.eventqueue;
 
 
-import java.util.PriorityQueue;
-
+import ocms.util.Journal;
 import ocms.util.Log;
 import ocms.util.Logger;
+import ocms.util.Time;
 
 /**
   * This class implements an eventqueue.
-  * It has a PriorityQueue of {@link Event}s. In a tight loop it removes 
-  * the head of queue and dispatches it to its destination, until the end 
-  * of simulation.
+  * It keeps the pending {@link Event}s in an {@link EventList}. In a tight loop 
+  * it removes the head of queue and dispatches it to its destination, until the end 
+  * of simulation. Events with equal timestamps are dispatched in the order they
+  * have been enqueued.
   *
   * All other components of the simulation may enqueue events for delivery 
-  * through the {@link #enqueue} method.
+  * through the {@link #enqueue} method. Events obtained through {@link #obtain}
+  * are returned to the {@link EventPool} of the queue after they are dispatched.
   *
   * @author     Hossein Falaki
   */
 public class EventQueue implements Logger
 {
-    /** the internal PriorityQueue object */
-    private PriorityQueue<Event> queue;
+    /** the internal list of pending events */
+    private EventList queue;
+
+    /** the when simulation should end, in ticks */
+    private long endtime;
+
+    /** Keeps the notion of 'past', in ticks */
+    private long past;
 
-    /** the when simulation should end */
-    private double endtime;
+    /** To keep track of time, in ticks */
+    private long now;
 
-    /** Keeps the notion of 'past' */
-    private double past;
+    /** The pool of reusable events */
+    private EventPool pool;
 
-    /** To keep track of time */
-    private double now;
+    /** Number of events dispatched so far */
+    private long dispatched;
+
+    /** The journal that records the dispatched events, or null */
+    private Journal journal;
 
     /**
       * Constructs an event queue and sets the end time of the simulation.
@@ -44,11 +55,70 @@ public class EventQueue implements Logger
       */
     public EventQueue(double endtime)
     {
-        queue = new PriorityQueue<Event>();
-        this.endtime = endtime;
-        past = Integer.MIN_VALUE;
+        this(endtime, new HeapEventList());
+    }
+
+    /**
+      * Constructs an event queue with the given list of pending events and
+      * sets the end time of the simulation.
+      *
+      * @param      endtime                 the time when simulation finishes
+      * @param      queue                   the list to keep the pending events
+      */
+    public EventQueue(double endtime, EventList queue)
+    {
+        this.queue = queue;
+        this.endtime = Time.toTicks(endtime);
+        past = Time.toTicks(Integer.MIN_VALUE);
+        pool = new EventPool();
+        dispatched = 0;
+    }
+
+    /**
+      * Constructs an empty EventList of the given type.
+      * The type should be one of the constants of {@link EventList}. 
+      *
+      * @param      type                    type of the event list
+      * @return                             an empty event list
+      * @throws     EventQueueException     if the type is not known
+      */
+    public static EventList createList(String type) throws EventQueueException
+    {
+        if (type.equals(EventList.HEAP))
+            return new HeapEventList();
+
+        if (type.equals(EventList.CALENDAR))
+            return new CalendarEventList();
+
+        throw new EventQueueException("Unknown event queue type " + type);
+    }
+
+
+    /**
+      * Returns an empty event from the pool of the queue.
+      * The event is recycled after it is dispatched. If the event is not
+      * enqueued, the caller should give it back through {@link #recycle}.
+      *
+      * @param      time                    timestamp of the event
+      * @param      type                    type of the event
+      * @param      source                  source of the event
+      * @param      destination             destination of the event
+      * @return                             an empty event
+      */
+    public Event obtain(double time, int type, EventConsumer source, EventConsumer destination)
+    {
+        return pool.obtain(time, type, source, destination);
     }
 
+    /**
+      * Returns an event that has been obtained from this queue to the pool.
+      *
+      * @param      event                   the event to be recycled
+      */
+    public void recycle(Event event)
+    {
+        pool.recycle(event);
+    }
 
     /**
       * Enqueues the event in the queue.
@@ -64,18 +134,18 @@ public class EventQueue implements Logger
             return;
         }
 
-        if  (event.getTime() < past)
+        if  (event.getTicks() < past)
         {
             Log.stdout(this, event.toString());
             throw new EventQueueException("Cannot accept events for a time in the past. \n\t\t It is " + 
-                    past + " now, whereas the event's time is " + event.getTime());
+                    Time.toSeconds(past) + " now, whereas the event's time is " + event.getTime());
         }
 
-        if  (event.getTime() > endtime)
+        if  (event.getTicks() > endtime)
             throw new EventQueueException("Cannot accept events for a time after the end of simulation (" +
-                    endtime + ")");
+                    Time.toSeconds(endtime) + ")");
 
-        past = event.getTime();
+        past = event.getTicks();
 
         queue.add(event);
     }
@@ -93,12 +163,15 @@ public class EventQueue implements Logger
     {
         Event nextevent;
 
-        while( (!queue.isEmpty() ) && (queue.peek().getTime() < endtime) ) 
+        while( (!queue.isEmpty() ) && (queue.peekTicks() < endtime) ) 
         {
             nextevent = queue.poll();
-            now = nextevent.getTime();
+            now = nextevent.getTicks();
+            dispatched++;
+            if (journal != null)
+                journal.event(nextevent);
 
-            Log.paranoid(this, "sending " + nextevent.toString());
+            Log.paranoid(this, "sending {}", nextevent);
             try
             {
                 nextevent.getDest().handleEvent( nextevent, this );
@@ -109,10 +182,33 @@ public class EventQueue implements Logger
                 throw new EventQueueException("Exception while calling handleEvent of " 
                         + nextevent.getDest().getName()  + " on " + nextevent.toString() + ". Details: " + e.toString());
             }
+
+            /* The destination should not keep a reference to the event */
+            pool.recycle(nextevent);
         }
     }
 
 
+    /**
+      * Sets the journal that records the dispatched events.
+      *
+      * @param      journal                 the journal (null for no journal)
+      */
+    public void setJournal(Journal journal)
+    {
+        this.journal = journal;
+    }
+
+    /**
+      * Returns the number of events dispatched by the queue.
+      *
+      * @return                             number of dispatched events
+      */
+    public long getDispatched()
+    {
+        return dispatched;
+    }
+
     /**
       * Returns the name of the EventQueue.
       * 
@@ -130,7 +226,7 @@ public class EventQueue implements Logger
       */
     public double getTime()
     {
-        return now;
+        return Time.toSeconds(now);
     }
 }
 
@@ -0,0 +1,207 @@
+ /**
+  * Opportunistic Connectivity Management Simulator
+  *
+  * Copyright (C) 2007 Hossein Falaki
+  */
+
+package ocms.eventqueue;
+
+
+
+/**
+  * A binary heap implementation of the {@link EventList}.
+  * The heap is kept in three parallel arrays: the timestamps in ticks, the
+  * insertion sequence numbers (used for FIFO ordering of events with equal
+  * timestamps) and the events themselves. Comparisons are integer
+  * comparisons and never box the timestamps.
+  *
+  * @author     Hossein Falaki
+  */
+public class HeapEventList implements EventList
+{
+    /** The default initial capacity of the heap */
+    private static final int DEFAULT_CAPACITY               = 64;
+
+    /** The timestamps of the events in heap order, in ticks */
+    private long[] times;
+
+    /** The insertion sequence numbers of the events in heap order */
+    private long[] seqs;
+
+    /** The events in heap order */
+    private Event[] events;
+
+    /** Number of events in the heap */
+    private int size;
+
+    /** The sequence number of the next event */
+    private long nextseq;
+
+    /**
+      * Constructs an empty heap with the default capacity.
+      */
+    public HeapEventList()
+    {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+      * Constructs an empty heap with the given initial capacity.
+      *
+      * @param      capacity            the initial capacity of the heap
+      */
+    public HeapEventList(int capacity)
+    {
+        if (capacity < 1)
+            capacity = 1;
+
+        times = new long[capacity];
+        seqs = new long[capacity];
+        events = new Event[capacity];
+        size = 0;
+        nextseq = 0;
+    }
+
+    /**
+      * Adds an event to the heap.
+      *
+      * @param      event               the event to be added
+      */
+    public void add(Event event)
+    {
+        if (size == events.length)
+            grow();
+
+        long time = event.getTicks();
+        long seq = nextseq++;
+        int i = size++;
+
+        /* Sift up */
+        while (i > 0)
+        {
+            int parent = (i - 1) >>> 1;
+            if (!less(time, seq, times[parent], seqs[parent]))
+                break;
+
+            times[i] = times[parent];
+            seqs[i] = seqs[parent];
+            events[i] = events[parent];
+            i = parent;
+        }
+
+        times[i] = time;
+        seqs[i] = seq;
+        events[i] = event;
+    }
+
+    /**
+      * Removes and returns the event with the smallest timestamp.
+      *
+      * @return                         the head of the heap or null if it is empty
+      */
+    public Event poll()
+    {
+        if (size == 0)
+            return null;
+
+        Event result = events[0];
+        int last = --size;
+
+        long time = times[last];
+        long seq = seqs[last];
+        Event event = events[last];
+        events[last] = null;
+
+        if (last == 0)
+            return result;
+
+        /* Sift down */
+        int i = 0;
+        int half = last >>> 1;
+        while (i < half)
+        {
+            int child = 2*i + 1;
+            int right = child + 1;
+            if ( (right < last) && less(times[right], seqs[right], times[child], seqs[child]) )
+                child = right;
+
+            if (!less(times[child], seqs[child], time, seq))
+                break;
+
+            times[i] = times[child];
+            seqs[i] = seqs[child];
+            events[i] = events[child];
+            i = child;
+        }
+
+        times[i] = time;
+        seqs[i] = seq;
+        events[i] = event;
+
+        return result;
+    }
+
+    /**
+      * Returns the timestamp of the head of the heap.
+      *
+      * @return                         the smallest timestamp in the heap in ticks
+      */
+    public long peekTicks()
+    {
+        return times[0];
+    }
+
+    /**
+      * Returns true if the heap is empty.
+      *
+      * @return                         true if there is no event in the heap
+      */
+    public boolean isEmpty()
+    {
+        return size == 0;
+    }
+
+    /**
+      * Returns the number of events in the heap.
+      *
+      * @return                         number of events in the heap
+      */
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+      * Compares two (time, sequence) pairs.
+      *
+      * @return                         true if the first pair should be polled first
+      */
+    private static boolean less(long time1, long seq1, long time2, long seq2)
+    {
+        if (time1 < time2)
+            return true;
+        if (time1 > time2)
+            return false;
+        return seq1 < seq2;
+    }
+
+    /**
+      * Doubles the capacity of the internal arrays.
+      */
+    private void grow()
+    {
+        int capacity = events.length * 2;
+
+        long[] newtimes = new long[capacity];
+        long[] newseqs = new long[capacity];
+        Event[] newevents = new Event[capacity];
+
+        System.arraycopy(times, 0, newtimes, 0, size);
+        System.arraycopy(seqs, 0, newseqs, 0, size);
+        System.arraycopy(events, 0, newevents, 0, size);
+
+        times = newtimes;
+        seqs = newseqs;
+        events = newevents;
+    }
+}
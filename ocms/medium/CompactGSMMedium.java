@@ -0,0 +1,212 @@
+ /**
+  * Opportunistic Connectivity Management Simulator
+  *
+  * Copyright (C) 2007 Hossein Falaki
+  */
+
+package ocms.medium;
+
+import java.util.Arrays;
+import java.util.Set;
+
+import ocms.dataset.CompactTrace;
+import ocms.dataset.Identifier;
+import ocms.dataset.ObservationSet;
+import ocms.dataset.Tuple;
+
+/**
+  * A read-only {@link GSMMedium} backed by a {@link CompactTrace}.
+  * The samples are found by a binary search over the runs of the trace, and
+  * {@link #checkAvailability} and {@link #signal} do not allocate. {@link #scan}
+  * builds the set of Tuples of the sample and keeps the last one; it is rebuilt
+  * only when the visible cells or their signal strengths change.
+  *
+  * The medium is frozen from the start and can be shared by several simulations.
+  *
+  * @author     Hossein Falaki
+  */
+public class CompactGSMMedium extends GSMMedium
+{
+    /** The trace */
+    CompactTrace trace;
+
+    /** The result of the last scan */
+    private volatile ScanResult last;
+
+    /**
+      * The result of a scan and the sample it was built from.
+      */
+    private static class ScanResult
+    {
+        /** The set of the trace */
+        ObservationSet observations;
+
+        /** Position of the signal strengths of the sample */
+        int offset;
+
+        /** The visible cells */
+        Set<Tuple<String, Integer>> set;
+
+        ScanResult(ObservationSet observations, int offset, Set<Tuple<String, Integer>> set)
+        {
+            this.observations = observations;
+            this.offset = offset;
+            this.set = set;
+        }
+    }
+
+    /**
+      * Constructs the medium from the trace.
+      *
+      * @param      trace               the compact trace
+      * @param      name                the name to be assigned to this Medium
+      */
+    public CompactGSMMedium(CompactTrace trace, String name)
+    {
+        this.name = name;
+        this.trace = trace;
+        this.timestep = trace.getTimeStep();
+        this.starttime = trace.getStartTime();
+        this.endtime = trace.getEndTime();
+        this.frozen = true;
+    }
+
+    /**
+      * Returns the GSM set of the sample used at the given time, or null if there is none.
+      *
+      * @param      time                the time of the request
+      * @return                         the visible cells
+      */
+    ObservationSet setAt(double time)
+    {
+        int run = trace.findRun( indexOf(time) );
+        if (run == -1)
+            return null;
+
+        return trace.getGSM(run);
+    }
+
+    /**
+      * Returns true if the requested cell ID is available at the requested time.
+      *
+      * @param      gsmid               the cell ID to be checked for availability
+      * @param      time                the time of the request
+      * @return                         true if the requested cell ID is available
+      */
+    public boolean checkAvailability(String gsmid, double time)
+    {
+        ObservationSet set = setAt(time);
+        if (set == null)
+            return true;
+
+        return set.find( Identifier.encode(gsmid) ) != -1;
+    }
+
+    /**
+      * Returns true if the at least one GSM cell is available at the requested time.
+      *
+      * @param      time                the time of the request
+      * @return                         true if at least one GSM cell is available
+      */
+    public boolean checkAvailability(double time)
+    {
+        ObservationSet set = setAt(time);
+        if (set == null)
+            return true;
+
+        return set.size() != 0;
+    }
+
+    /**
+      * Returns a read-only set of all the available GSM cells.
+      *
+      * @param      time                the time of the request
+      * @return                         set of available GSM cells, or null if there
+      *                                 is no sample at the time
+      */
+    public Set<Tuple<String, Integer>> scan(double time)
+    {
+        int sample = indexOf(time);
+        int run = trace.findRun(sample);
+        if (run == -1)
+            return null;
+
+        ObservationSet set = trace.getGSM(run);
+        int offset = trace.getGSMOffset(run, sample);
+
+        ScanResult result = last;
+        if ( (result != null) && (result.observations == set) && sameSignals(result.offset, offset, set.size()) )
+            return result.set;
+
+        result = new ScanResult(set, offset, trace.getGSMTuples(run, offset));
+        last = result;
+        return result.set;
+    }
+
+    /**
+      * Returns true if two samples of the same set have the same signal strengths.
+      *
+      * @param      offset1             position of the signal strengths of the first sample
+      * @param      offset2             position of the signal strengths of the second sample
+      * @param      size                size of the set
+      * @return                         true if the signal strengths are equal
+      */
+    private boolean sameSignals(int offset1, int offset2, int size)
+    {
+        if (offset1 == offset2)
+            return true;
+
+        for (int i = 0; i < size; i++)
+        {
+            if (trace.getGSMSignal(offset1 + i) != trace.getGSMSignal(offset2 + i))
+                return false;
+        }
+
+        return true;
+    }
+
+    /**
+      * Returns the signal strength of an available GSM cell.
+      *
+      * @param      time                the time of the request
+      * @param      gsmid               the requested cell ID
+      * @throws     MediumException     if the cell ID is not available at the time
+      */
+    public Integer signal(String gsmid, double time) throws MediumException
+    {
+        int sample = indexOf(time);
+        int run = trace.findRun(sample);
+
+        /* There is no sample at this time */
+        if (run == -1)
+            return Integer.MIN_VALUE;
+
+        int index = trace.getGSM(run).find( Identifier.encode(gsmid) );
+        if (index == -1)
+            throw new MediumException(this.name + " : The requested GSM cell ID (" + gsmid +
+                    ") is not available at time " + time);
+
+        return trace.getGSMSignal( trace.getGSMOffset(run, sample) + index );
+    }
+
+    /**
+      * Builds the index of the coverage changes from the runs of the trace.
+      * Only the samples on the grid of the medium are used.
+      *
+      * @return                         the coverage index of the medium
+      */
+    CoverageIndex buildCoverage()
+    {
+        int count = 0;
+        int[] uncovered = new int[trace.size()];
+
+        CompactTrace.Cursor cursor = trace.cursor();
+        while (cursor.next())
+        {
+            if ( (cursor.getGSM().size() == 0) && (((long)cursor.getTime() - starttime) % timestep == 0) )
+                uncovered[count++] = cursor.getTime();
+        }
+
+        return new CoverageIndex(Arrays.copyOf(uncovered, count), timestep);
+    }
+}
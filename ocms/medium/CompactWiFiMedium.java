@@ -0,0 +1,241 @@
+ /**
+  * Opportunistic Connectivity Management Simulator
+  *
+  * Copyright (C) 2007 Hossein Falaki
+  */
+
+package ocms.medium;
+
+import java.util.Arrays;
+import java.util.Set;
+
+import ocms.dataset.CompactTrace;
+import ocms.dataset.Identifier;
+import ocms.dataset.ObservationSet;
+import ocms.dataset.Tuple;
+import ocms.util.PresenceIndex;
+
+/**
+  * A read-only {@link WiFiMedium} backed by a {@link CompactTrace}.
+  * The samples are found by a binary search over the runs of the trace, and
+  * {@link #checkAvailability} and {@link #signal} do not allocate. {@link #scan}
+  * builds the set of Tuples of the sample and keeps the last one; it is rebuilt
+  * only when the visible access points or their signal strengths change.
+  *
+  * The medium is frozen from the start and can be shared by several simulations.
+  *
+  * @author     Hossein Falaki
+  */
+public class CompactWiFiMedium extends WiFiMedium
+{
+    /** The trace */
+    CompactTrace trace;
+
+    /** The result of the last scan */
+    private volatile ScanResult last;
+
+    /**
+      * The result of a scan and the sample it was built from.
+      */
+    private static class ScanResult
+    {
+        /** The set of the trace */
+        ObservationSet observations;
+
+        /** Position of the signal strengths of the sample */
+        int offset;
+
+        /** The visible access points */
+        Set<Tuple<String, Integer>> set;
+
+        ScanResult(ObservationSet observations, int offset, Set<Tuple<String, Integer>> set)
+        {
+            this.observations = observations;
+            this.offset = offset;
+            this.set = set;
+        }
+    }
+
+    /**
+      * Constructs the medium from the trace.
+      *
+      * @param      trace               the compact trace
+      * @param      name                the name to be assigned to this Medium
+      */
+    public CompactWiFiMedium(CompactTrace trace, String name)
+    {
+        this.name = name;
+        this.trace = trace;
+        this.timestep = trace.getTimeStep();
+        this.starttime = trace.getStartTime();
+        this.endtime = trace.getEndTime();
+        this.frozen = true;
+    }
+
+    /**
+      * Returns the WiFi set of the sample used at the given time, or null if there is none.
+      *
+      * @param      time                the time of the request
+      * @return                         the visible access points
+      */
+    ObservationSet setAt(double time)
+    {
+        int run = trace.findRun( indexOf(time) );
+        if (run == -1)
+            return null;
+
+        return trace.getWiFi(run);
+    }
+
+    /**
+      * Returns true if the requested BSSID is available at the requested time.
+      *
+      * @param      bssid               the BSSID to be checked for availability
+      * @param      time                the time of the request
+      * @return                         true if the requested BSSID is available
+      */
+    public boolean checkAvailability(String bssid, double time)
+    {
+        return checkAvailability(Identifier.encode(bssid), time);
+    }
+
+    /**
+      * Returns true if the BSSID with the given identifier is available at the requested time.
+      *
+      * @param      identifier          the {@link Identifier} of the BSSID
+      * @param      time                the time of the request
+      * @return                         true if the requested BSSID is available
+      */
+    public boolean checkAvailability(long identifier, double time)
+    {
+        ObservationSet set = setAt(time);
+        if (set == null)
+            return true;
+
+        return set.find(identifier) != -1;
+    }
+
+    /**
+      * Returns a read-only set of all the available WiFi APs.
+      *
+      * @param      time                the time of the request
+      * @return                         set of available WiFi APs, or null if there
+      *                                 is no sample at the time
+      */
+    public Set<Tuple<String, Integer>> scan(double time)
+    {
+        int sample = indexOf(time);
+        int run = trace.findRun(sample);
+        if (run == -1)
+            return null;
+
+        ObservationSet set = trace.getWiFi(run);
+        int offset = trace.getWiFiOffset(run, sample);
+
+        ScanResult result = last;
+        if ( (result != null) && (result.observations == set) && sameSignals(result.offset, offset, set.size()) )
+            return result.set;
+
+        result = new ScanResult(set, offset, trace.getWiFiTuples(run, offset));
+        last = result;
+        return result.set;
+    }
+
+    /**
+      * Returns true if two samples of the same set have the same signal strengths.
+      *
+      * @param      offset1             position of the signal strengths of the first sample
+      * @param      offset2             position of the signal strengths of the second sample
+      * @param      size                size of the set
+      * @return                         true if the signal strengths are equal
+      */
+    private boolean sameSignals(int offset1, int offset2, int size)
+    {
+        if (offset1 == offset2)
+            return true;
+
+        for (int i = 0; i < size; i++)
+        {
+            if (trace.getWiFiSignal(offset1 + i) != trace.getWiFiSignal(offset2 + i))
+                return false;
+        }
+
+        return true;
+    }
+
+    /**
+      * Returns the signal strength of an available WiFi AP.
+      *
+      * @param      time                the time of the request
+      * @param      bssid               the requested BSSID
+      * @throws     MediumException     if the BSSID is not available at the time
+      */
+    public Integer signal(String bssid, double time) throws MediumException
+    {
+        int sample = indexOf(time);
+        int run = trace.findRun(sample);
+
+        /* There is no sample at this time */
+        if (run == -1)
+            return Integer.MIN_VALUE;
+
+        int index = trace.getWiFi(run).find( Identifier.encode(bssid) );
+        if (index == -1)
+            throw new MediumException(this.name + " : The requested BSSID (" + bssid +
+                    ") is not available at time " + time);
+
+        return trace.getWiFiSignal( trace.getWiFiOffset(run, sample) + index );
+    }
+
+    /**
+      * Builds the visibility intervals of the BSSIDs from the trace.
+      * Only the samples on the grid of the medium are used.
+      *
+      * @return                         the visibility index of the medium
+      */
+    VisibilityIndex buildVisibility()
+    {
+        int count = 0;
+        int[] times = new int[trace.size()];
+        VisibilityIndex.Builder builder = new VisibilityIndex.Builder();
+
+        CompactTrace.Cursor cursor = trace.cursor();
+        while (cursor.next())
+        {
+            if ( ((long)cursor.getTime() - starttime) % timestep != 0 )
+                continue;
+
+            ObservationSet set = cursor.getWiFi();
+            for (int j = 0; j < set.size(); j++)
+                builder.add(set.getId(j), count);
+            times[count++] = cursor.getTime();
+        }
+
+        return new VisibilityIndex(Arrays.copyOf(times, count), builder);
+    }
+
+    /**
+      * Builds the presence index of the BSSIDs from the trace.
+      * Only the samples on the grid of the medium are used.
+      *
+      * @return                         the presence index of the medium
+      */
+    PresenceIndex buildPresence()
+    {
+        PresenceIndex.Builder builder = new PresenceIndex.Builder();
+
+        CompactTrace.Cursor cursor = trace.cursor();
+        while (cursor.next())
+        {
+            if ( ((long)cursor.getTime() - starttime) % timestep != 0 )
+                continue;
+
+            builder.sample(cursor.getTime());
+            ObservationSet set = cursor.getWiFi();
+            for (int j = 0; j < set.size(); j++)
+                builder.add(set.getId(j));
+        }
+
+        return new PresenceIndex(builder);
+    }
+}
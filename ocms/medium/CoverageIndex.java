@@ -0,0 +1,127 @@
+ /**
+  * Opportunistic Connectivity Management Simulator
+  *
+  * Copyright (C) 2007 Hossein Falaki
+  */
+
+package ocms.medium;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+
+import ocms.dataset.Tuple;
+
+/**
+  * The times at which the GSM coverage of a medium changes.
+  * A sample without any visible cell is a sample without coverage; a time
+  * without a sample has coverage (as in {@link GSMMedium#checkAvailability(double)}).
+  * The index keeps the sorted runs of consecutive sample points (start + k*step)
+  * without coverage, so the next change of coverage is a binary search.
+  *
+  * @author     Hossein Falaki
+  */
+public class CoverageIndex
+{
+    /** The first sample point of each run without coverage */
+    int[] starts;
+
+    /** The last sample point of each run without coverage */
+    int[] ends;
+
+    /** Time step of the sample points */
+    int step;
+
+
+    /**
+      * Builds the index of an environment.
+      * Only the times on the grid of the medium (start + k*step) are used; the
+      * others are never returned by {@link GSMMedium#indexOf}.
+      *
+      * @param      environment     the mapping from time to the visible cells
+      * @param      start           the start time of the medium
+      * @param      step            the time step of the medium
+      */
+    public CoverageIndex(Map<Integer, Set<Tuple<String, Integer>>> environment, int start, int step)
+    {
+        int count = 0;
+        int[] uncovered = new int[environment.size()];
+        for (Map.Entry<Integer, Set<Tuple<String, Integer>>> entry : environment.entrySet())
+        {
+            if ( ( ((long)entry.getKey() - start) % step == 0 ) && (entry.getValue().size() == 0) )
+                uncovered[count++] = entry.getKey();
+        }
+
+        uncovered = Arrays.copyOf(uncovered, count);
+        Arrays.sort(uncovered);
+        build(uncovered, step);
+    }
+
+    /**
+      * Builds the index from the sample points without coverage.
+      *
+      * @param      uncovered       the sample points without coverage in increasing order
+      * @param      step            the time step of the medium
+      */
+    CoverageIndex(int[] uncovered, int step)
+    {
+        build(uncovered, step);
+    }
+
+    /**
+      * Groups the sample points without coverage into runs.
+      */
+    private void build(int[] uncovered, int step)
+    {
+        this.step = step;
+
+        int runs = 0;
+        for (int i = 0; i < uncovered.length; i++)
+        {
+            if ( (i == 0) || ((long)uncovered[i] - uncovered[i - 1] != step) )
+                runs++;
+        }
+
+        starts = new int[runs];
+        ends = new int[runs];
+        int run = -1;
+        for (int i = 0; i < uncovered.length; i++)
+        {
+            if ( (i == 0) || ((long)uncovered[i] - uncovered[i - 1] != step) )
+                starts[++run] = uncovered[i];
+            ends[run] = uncovered[i];
+        }
+    }
+
+    /**
+      * Returns the first sample point after 'time' at which the coverage is not
+      * the same as at 'time'.
+      *
+      * @param      time            a sample point
+      * @return                     time of the change, or Double.MAX_VALUE if the
+      *                             coverage does not change until the end of the medium
+      */
+    public double nextChange(double time)
+    {
+        /* The number of runs that start at or before 'time' */
+        int low = 0;
+        int high = starts.length;
+        while (low < high)
+        {
+            int mid = (low + high) >>> 1;
+            if (starts[mid] <= time)
+                low = mid + 1;
+            else
+                high = mid;
+        }
+
+        /* In a run without coverage: the coverage comes back after its end */
+        if ( (low > 0) && (ends[low - 1] >= time) )
+            return (double)ends[low - 1] + step;
+
+        if (low == starts.length)
+            return Double.MAX_VALUE;
+
+        return starts[low];
+    }
+}
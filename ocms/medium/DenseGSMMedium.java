@@ -0,0 +1,154 @@
+ /**
+  * Opportunistic Connectivity Management Simulator
+  *
+  * Copyright (C) 2007 Hossein Falaki
+  */
+
+package ocms.medium;
+
+import java.util.Set;
+
+import ocms.dataset.DataSet;
+import ocms.dataset.Tuple;
+
+/**
+  * A {@link GSMMedium} that answers the queries from a {@link SlotIndex}.
+  * The environment is looked up in an array instead of a HashMap, and the
+  * availability of a cell ID is a binary search over the integer IDs of the slot.
+  * The semantics are those of GSMMedium; in particular a time without a
+  * sample is considered to have every cell available.
+  *
+  * The index is rebuilt when the environment changes through this object
+  * ({@link #update}, {@link #setTimeStep} and {@link #freeze}), but not when
+  * the samples of the data set are modified afterwards.
+  *
+  * @author     Hossein Falaki
+  */
+public class DenseGSMMedium extends GSMMedium
+{
+    /** The index of the environment */
+    SlotIndex index;
+
+    /**
+      * Constructs an instance with the provided dataset.
+      *
+      * @param      dataset             the dataset to be used as the environemnt
+      * @param      name                the name to be assigned to this Medium
+      */
+    public DenseGSMMedium(DataSet dataset, String name)
+    {
+        super(dataset, name);
+        index = new SlotIndex(environment, starttime, timestep);
+    }
+
+    /**
+      * Updates the environment with the provided dataset.
+      *
+      * @param      dataset             the dataset to be used to update the envoronment
+      * @throws     UnsupportedOperationException   if the medium is read-only
+      */
+    public void update(DataSet dataset)
+    {
+        super.update(dataset);
+
+        /* Called by the constructor of GSMMedium before the start time is known */
+        if (starttime != null)
+            index = new SlotIndex(environment, starttime, timestep);
+    }
+
+    /**
+      * Returns true if the requested GSM cell ID is available at the requested time.
+      *
+      * @param      gsmid               the GSM cell ID to be checked for availability
+      * @param      time                the time of the request
+      * @return                         true if the requested GSM cell ID is available
+      */
+    public boolean checkAvailability(String gsmid, double time)
+    {
+        int slot = index.slotOf(indexOf(time));
+        if (slot == -1)
+            return true;
+
+        return index.find(slot, gsmid) != -1;
+    }
+
+    /**
+      * Returns true if the at least one GSM cell is available at the requested time.
+      *
+      * @param      time                the time of the request
+      * @return                         true if at least one GSM cell is available
+      */
+    public boolean checkAvailability(double time)
+    {
+        int slot = index.slotOf(indexOf(time));
+        if (slot == -1)
+            return true;
+
+        return index.count(slot) != 0;
+    }
+
+    /**
+      * Returns a set of all the available GSM cells.
+      *
+      * @param      time                the time of the request
+      * @return                         set of available GSM cells
+      */
+    public Set<Tuple<String, Integer>> scan(double time)
+    {
+        int slot = index.slotOf(indexOf(time));
+        if (slot == -1)
+            return null;
+
+        return index.scan(slot);
+    }
+
+    /**
+      * Returns the signal strength of an available GSM cell.
+      *
+      * @param      time                the time of the request
+      * @param      gsmid               the requested GSM cell ID
+      * @throws     MediumException     if the GSM cell ID is not available at the time
+      */
+    public Integer signal(String gsmid, double time) throws MediumException
+    {
+        int slot = index.slotOf(indexOf(time));
+
+        /* There is no sample at this time */
+        if (slot == -1)
+            return Integer.MIN_VALUE;
+
+        int position = index.find(slot, gsmid);
+        if (position == -1)
+            throw new MediumException(this.name + " : The requested GSM cell ID (" + gsmid +
+                    ") is not available at time " + time);
+
+        return index.signal(slot, position);
+    }
+
+    /**
+      * Makes the medium read-only.
+      *
+      */
+    public void freeze()
+    {
+        if (frozen)
+            return;
+
+        super.freeze();
+        index = new SlotIndex(environment, starttime, timestep);
+    }
+
+    /**
+      * Sets the experiment time step.
+      * This method can only be used to increase the time step. If the new
+      * time step is smaller than the current one it will be silently ignored.
+      *
+      * @param      timestep        the new time step
+      * @throws     UnsupportedOperationException   if the medium is read-only
+      */
+    public void setTimeStep(int timestep)
+    {
+        super.setTimeStep(timestep);
+        index = new SlotIndex(environment, starttime, this.timestep);
+    }
+}
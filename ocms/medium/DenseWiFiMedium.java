@@ -0,0 +1,152 @@
+ /**
+  * Opportunistic Connectivity Management Simulator
+  *
+  * Copyright (C) 2007 Hossein Falaki
+  */
+
+package ocms.medium;
+
+import java.util.Set;
+
+import ocms.dataset.DataSet;
+import ocms.dataset.Identifier;
+import ocms.dataset.Tuple;
+
+/**
+  * A {@link WiFiMedium} that answers the queries from a {@link SlotIndex}.
+  * The environment is looked up in an array instead of a HashMap, and the
+  * availability of a BSSID is a binary search over the integer IDs of the slot.
+  * The semantics are those of WiFiMedium; in particular a time without a
+  * sample is considered to have every access point available.
+  *
+  * The index is rebuilt when the environment changes through this object
+  * ({@link #update}, {@link #setTimeStep} and {@link #freeze}), but not when
+  * the samples of the data set are modified afterwards.
+  *
+  * @author     Hossein Falaki
+  */
+public class DenseWiFiMedium extends WiFiMedium
+{
+    /** The index of the environment */
+    SlotIndex index;
+
+    /**
+      * Constructs an instance with the provided dataset.
+      *
+      * @param      dataset             the dataset to be used as the environemnt
+      * @param      name                the name to be assigned to this Medium
+      */
+    public DenseWiFiMedium(DataSet dataset, String name)
+    {
+        super(dataset, name);
+        index = new SlotIndex(environment, starttime, timestep);
+    }
+
+    /**
+      * Updates the environment with the provided dataset.
+      *
+      * @param      dataset             the dataset to be used to update the envoronment
+      * @throws     UnsupportedOperationException   if the medium is read-only
+      */
+    public void update(DataSet dataset)
+    {
+        super.update(dataset);
+
+        /* Called by the constructor of WiFiMedium before the start time is known */
+        if (starttime != null)
+            index = new SlotIndex(environment, starttime, timestep);
+    }
+
+    /**
+      * Returns true if the requested BSSID is available at the requested time.
+      *
+      * @param      bssid               the BSSID to be checked for availability
+      * @param      time                the time of the request
+      * @return                         true if the requested BSSID is available
+      */
+    public boolean checkAvailability(String bssid, double time)
+    {
+        return checkAvailability(Identifier.encode(bssid), time);
+    }
+
+    /**
+      * Returns true if the BSSID with the given identifier is available at the requested time.
+      *
+      * @param      identifier          the {@link Identifier} of the BSSID
+      * @param      time                the time of the request
+      * @return                         true if the requested BSSID is available
+      */
+    public boolean checkAvailability(long identifier, double time)
+    {
+        int slot = index.slotOf(indexOf(time));
+        if (slot == -1)
+            return true;
+
+        return index.find(slot, identifier) != -1;
+    }
+
+    /**
+      * Returns a set of all the available WiFi APs.
+      *
+      * @param      time                the time of the request
+      * @return                         set of available WiFi APs
+      */
+    public Set<Tuple<String, Integer>> scan(double time)
+    {
+        int slot = index.slotOf(indexOf(time));
+        if (slot == -1)
+            return null;
+
+        return index.scan(slot);
+    }
+
+    /**
+      * Returns the signal strength of an available WiFi AP.
+      *
+      * @param      time                the time of the request
+      * @param      bssid               the requested BSSID
+      * @throws     MediumException     if the BSSID is not available at the time
+      */
+    public Integer signal(String bssid, double time) throws MediumException
+    {
+        int slot = index.slotOf(indexOf(time));
+
+        /* There is no sample at this time */
+        if (slot == -1)
+            return Integer.MIN_VALUE;
+
+        int position = index.find(slot, bssid);
+        if (position == -1)
+            throw new MediumException(this.name + " : The requested BSSID (" + bssid +
+                    ") is not available at time " + time);
+
+        return index.signal(slot, position);
+    }
+
+    /**
+      * Makes the medium read-only.
+      *
+      */
+    public void freeze()
+    {
+        if (frozen)
+            return;
+
+        super.freeze();
+        index = new SlotIndex(environment, starttime, timestep);
+    }
+
+    /**
+      * Sets the experiment time step.
+      * This method can only be used to increase the time step. If the new
+      * time step is smaller than the current one it will be silently ignored.
+      *
+      * @param      timestep        the new time step
+      * @throws     UnsupportedOperationException   if the medium is read-only
+      */
+    public void setTimeStep(int timestep)
+    {
+        super.setTimeStep(timestep);
+        index = new SlotIndex(environment, starttime, this.timestep);
+    }
+}
@@ -7,14 +7,15 @@
 package ocms.medium;
 
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Set;
 import java.util.Iterator;
+import java.util.Collections;
 
 import ocms.dataset.Experiment;
 import ocms.dataset.Tuple;
 import ocms.dataset.DataSet;
 import ocms.dataset.Sample;
+import ocms.util.Time;
 
 /**
   * An implementation of the {@link Medium} interface for GSM.
@@ -23,10 +24,10 @@ import ocms.dataset.Sample;
   *
   * @author     Hossein Falaki
   */
-public class GSMMedium implements Medium, Experiment
+public class GSMMedium implements Medium, Experiment, Cloneable
 {
     /** The Mapping from time to Tuples representing the environment */
-    HashMap<Integer, HashSet<Tuple<String,Integer>>> environment;
+    HashMap<Integer, Set<Tuple<String,Integer>>> environment;
 
     /** The name of this WiFi Medium */
     String name;
@@ -40,13 +41,22 @@ public class GSMMedium implements Medium, Experiment
     /** Time of the last sample in the data set */
     Integer endtime;
 
+    /** True if the medium is read-only (see {@link #freeze}) */
+    boolean frozen;
+
+    /** The coverage changes of the medium, built on demand */
+    private volatile CoverageIndex coverage;
+
+    /** The medium whose indexes are used, this medium unless it is a view (see {@link #view}) */
+    private GSMMedium shared = this;
+
     /**
       * Constructs an empty and non-usable instance.
       *
       */
     public GSMMedium()
     {
-        environment = new HashMap<Integer, HashSet<Tuple<String, Integer>>>();
+        environment = new HashMap<Integer, Set<Tuple<String, Integer>>>();
         timestep = 1;
     }
 
@@ -59,7 +69,7 @@ public class GSMMedium implements Medium, Experiment
     public GSMMedium(DataSet dataset, String name)
     {
         this.name = name;
-        environment = new HashMap<Integer, HashSet<Tuple<String, Integer>>>();
+        environment = new HashMap<Integer, Set<Tuple<String, Integer>>>();
         this.update(dataset);
         this.timestep = dataset.getTimeStep();
         this.starttime = dataset.getStartTime();
@@ -70,17 +80,22 @@ public class GSMMedium implements Medium, Experiment
       * Updates the environment with the provided dataset.
       *
       * @param      dataset             the dataset to be used to update the envoronment
+      * @throws     UnsupportedOperationException   if the medium is read-only
       */
     public void update(DataSet dataset)
     {
+        if (frozen)
+            throw new UnsupportedOperationException(name + " is read-only");
         
         Sample sample;
 
         for(Iterator it = dataset.iterator(); it.hasNext();)
         {
             sample = (Sample)it.next();
-            environment.put((Integer)sample.getTime(), (HashSet<Tuple<String, Integer>>)sample.getRichGSMSet());
+            environment.put((Integer)sample.getTime(), sample.getRichGSMSet());
         }
+
+        coverage = null;
     }
 
     /**
@@ -91,9 +106,28 @@ public class GSMMedium implements Medium, Experiment
       */
     public int indexOf(double time)
     {
-        double frac = (time - starttime)%timestep;
-        Double dindex = Math.floor(time - frac);
-        return  dindex.intValue();
+        long sample = sampleOf( Time.toTicks(time) )/Time.RESOLUTION;
+
+        /* Saturates like the conversion of a double */
+        if (sample > Integer.MAX_VALUE)
+            return Integer.MAX_VALUE;
+        if (sample < Integer.MIN_VALUE)
+            return Integer.MIN_VALUE;
+
+        return (int)sample;
+    }
+
+    /**
+      * Returns the sample point associated with a time in ticks.
+      * The sample points are a whole number of seconds, so this is an integer
+      * operation (see {@link Time}).
+      *
+      * @param          ticks           the time in ticks
+      * @return                         the time of the sample point in ticks
+      */
+    public long sampleOf(long ticks)
+    {
+        return Time.floor(ticks, starttime*Time.RESOLUTION, timestep*Time.RESOLUTION);
     }
 
     /**
@@ -135,7 +169,7 @@ public class GSMMedium implements Medium, Experiment
 
     /**
       * Returns a set of all the available GSM cell IDs .
-      * The returned set is a {@link HashSet} of {@link Tuple}s. Each Tuple 
+      * The returned set is a {@link Set} of {@link Tuple}s. Each Tuple 
       * consists of a GSM cell ID string and an integer signal strength value.
       *
       * @param      time                the time of the request
@@ -178,6 +212,38 @@ public class GSMMedium implements Medium, Experiment
         return result;
     }
 
+    /**
+      * Returns the first sample point after 'time' at which the GSM coverage changes.
+      * The coverage at a sample point is the result of {@link #checkAvailability(double)}.
+      * The coverage changes are computed on the first call.
+      *
+      * @param      time                a sample point
+      * @return                         time of the change, or Double.MAX_VALUE if the
+      *                                 coverage does not change until the end of the medium
+      */
+    public double nextCoverageChange(double time)
+    {
+        CoverageIndex index = shared.coverage;
+        if (index == null)
+        {
+            /* Two threads may build the index at the same time, the results are equal */
+            index = shared.buildCoverage();
+            shared.coverage = index;
+        }
+
+        return index.nextChange(time);
+    }
+
+    /**
+      * Builds the index of the coverage changes.
+      *
+      * @return                         the coverage index of the medium
+      */
+    CoverageIndex buildCoverage()
+    {
+        return new CoverageIndex(environment, starttime, timestep);
+    }
+
     /**
       * Returns true if the GSMMedium 'exists' at the specified time.
       * This method should be called before any query to the medium.
@@ -193,6 +259,60 @@ public class GSMMedium implements Medium, Experiment
         return false;
     }
 
+    /**
+      * Makes the medium read-only.
+      * The sets returned by {@link #scan} can not be modified afterwards, and
+      * {@link #update} and {@link #setTimeStep} throw an UnsupportedOperationException.
+      * A frozen medium can be shared by several simulations running at the
+      * same time, as long as the DataSet it was built from is not modified.
+      */
+    public void freeze()
+    {
+        if (frozen)
+            return;
+
+        for (Integer time : environment.keySet())
+            environment.put(time, Collections.unmodifiableSet(environment.get(time)));
+        frozen = true;
+    }
+
+    /**
+      * Returns a read-only view of the medium under another name.
+      * The view shares the samples and the indexes of the medium, so a medium
+      * shared by several simulations can be named after the NIC of each one.
+      *
+      * @param      name                the name of the view
+      * @return                         the view of the medium
+      * @throws     UnsupportedOperationException   if the medium is not read-only
+      */
+    public GSMMedium view(String name)
+    {
+        if (!frozen)
+            throw new UnsupportedOperationException(this.name + " is not read-only");
+
+        GSMMedium view;
+        try
+        {
+            view = (GSMMedium)clone();
+        }
+        catch (CloneNotSupportedException cnse)
+        {
+            throw new InternalError(cnse.toString());
+        }
+        view.name = name;
+        return view;
+    }
+
+    /**
+      * Returns true if the medium is read-only.
+      *
+      * @return                     true if {@link #freeze} has been called
+      */
+    public boolean isFrozen()
+    {
+        return frozen;
+    }
+
     /**
       * Returns the time step of the experiment used to model the environment.
       *
@@ -231,12 +351,18 @@ public class GSMMedium implements Medium, Experiment
       * time step is smaller than the current one it will be silently ignored.
       *
       * @param      timestep        the new time step
+      * @throws     UnsupportedOperationException   if the medium is read-only
       */
     public void setTimeStep(int timestep)
     {
+        if (frozen)
+            throw new UnsupportedOperationException(name + " is read-only");
+
         if (timestep > this.timestep)
             this.timestep = timestep;
 
+        coverage = null;
+
     }
 
 
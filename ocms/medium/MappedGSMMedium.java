@@ -0,0 +1,227 @@
+ /**
+  * Opportunistic Connectivity Management Simulator
+  *
+  * Copyright (C) 2007 Hossein Falaki
+  */
+
+package ocms.medium;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import ocms.dataset.BinaryTrace;
+import ocms.dataset.Identifier;
+import ocms.dataset.Tuple;
+
+/**
+  * A read-only {@link GSMMedium} backed by a memory-mapped {@link BinaryTrace}.
+  * The queries are answered from the columns of the trace, no {@link ocms.dataset.Sample}
+  * objects are constructed. {@link #checkAvailability} and {@link #signal} do not
+  * allocate; {@link #scan} builds the set of the observations of the sample and
+  * keeps the last one.
+  *
+  * The medium is frozen from the start and can be shared by several simulations.
+  *
+  * @author     Hossein Falaki
+  */
+public class MappedGSMMedium extends GSMMedium
+{
+    /** The trace */
+    BinaryTrace trace;
+
+    /** The dictionary indexes of the filtered cell IDs (may be null) */
+    boolean[] removed;
+
+    /** The result of the last scan */
+    private volatile ScanResult last;
+
+    /**
+      * The result of a scan and the sample it was built from.
+      */
+    private static class ScanResult
+    {
+        /** Index of the sample */
+        int sample;
+
+        /** The visible cells */
+        Set<Tuple<String, Integer>> set;
+
+        ScanResult(int sample, Set<Tuple<String, Integer>> set)
+        {
+            this.sample = sample;
+            this.set = set;
+        }
+    }
+
+    /**
+      * Constructs the medium from the trace.
+      *
+      * @param      trace               the binary trace
+      * @param      timestep            time step of the samples of the trace
+      * @param      removed             true for the dictionary index of each filtered cell ID (may be null)
+      * @param      name                the name to be assigned to this Medium
+      */
+    public MappedGSMMedium(BinaryTrace trace, int timestep, boolean[] removed, String name)
+    {
+        this.name = name;
+        this.trace = trace;
+        this.removed = removed;
+        this.timestep = timestep;
+        this.starttime = trace.getFirstTime()*timestep;
+        this.endtime = trace.getLastTime()*timestep;
+        this.frozen = true;
+    }
+
+    /**
+      * Returns the sample used at the given time, or -1 if there is none.
+      *
+      * @param      time                the time of the request
+      * @return                         index of the sample in the trace
+      */
+    int sampleAt(double time)
+    {
+        int index = indexOf(time);
+        if (index % timestep != 0)
+            return -1;
+
+        return trace.findSample(index/timestep);
+    }
+
+    /**
+      * Returns true if the observation has been filtered.
+      */
+    private boolean isRemoved(int entry)
+    {
+        return (removed != null) && removed[trace.gsmId(entry)];
+    }
+
+    /**
+      * Returns the observation of the cell ID in the sample, or -1 if it is not visible.
+      * If the cell ID is observed more than once the last observation is returned.
+      */
+    private int find(int sample, long identifier)
+    {
+        int id = trace.indexOf(identifier);
+        if ( (id == -1) || ((removed != null) && removed[id]) )
+            return -1;
+
+        int result = -1;
+        for (int j = trace.getGSMStart(sample); j < trace.getGSMStart(sample + 1); j++)
+        {
+            if (trace.gsmId(j) == id)
+                result = j;
+        }
+
+        return result;
+    }
+
+    /**
+      * Returns true if the requested cell ID is available at the requested time.
+      *
+      * @param      gsmid               the cell ID to be checked for availability
+      * @param      time                the time of the request
+      * @return                         true if the requested cell ID is available
+      */
+    public boolean checkAvailability(String gsmid, double time)
+    {
+        int sample = sampleAt(time);
+        if (sample == -1)
+            return true;
+
+        return find(sample, Identifier.encode(gsmid)) != -1;
+    }
+
+    /**
+      * Returns true if the at least one GSM cell is available at the requested time.
+      *
+      * @param      time                the time of the request
+      * @return                         true if at least one GSM cell is available
+      */
+    public boolean checkAvailability(double time)
+    {
+        int sample = sampleAt(time);
+        if (sample == -1)
+            return true;
+
+        for (int j = trace.getGSMStart(sample); j < trace.getGSMStart(sample + 1); j++)
+        {
+            if (!isRemoved(j))
+                return true;
+        }
+
+        return false;
+    }
+
+    /**
+      * Returns a read-only set of all the available GSM cells.
+      *
+      * @param      time                the time of the request
+      * @return                         set of available GSM cells, or null if there
+      *                                 is no sample at the time
+      */
+    public Set<Tuple<String, Integer>> scan(double time)
+    {
+        int sample = sampleAt(time);
+        if (sample == -1)
+            return null;
+
+        ScanResult result = last;
+        if ( (result != null) && (result.sample == sample) )
+            return result.set;
+
+        Set<Tuple<String, Integer>> set = new HashSet<Tuple<String, Integer>>();
+        for (int j = trace.getGSMStart(sample); j < trace.getGSMStart(sample + 1); j++)
+        {
+            if (!isRemoved(j))
+                set.add( new Tuple<String, Integer>(trace.getName(trace.gsmId(j)), trace.gsmSignal(j)) );
+        }
+
+        result = new ScanResult(sample, Collections.unmodifiableSet(set));
+        last = result;
+        return result.set;
+    }
+
+    /**
+      * Returns the signal strength of an available GSM cell.
+      *
+      * @param      time                the time of the request
+      * @param      gsmid               the requested cell ID
+      * @throws     MediumException     if the cell ID is not available at the time
+      */
+    public Integer signal(String gsmid, double time) throws MediumException
+    {
+        int sample = sampleAt(time);
+
+        /* There is no sample at this time */
+        if (sample == -1)
+            return Integer.MIN_VALUE;
+
+        int entry = find(sample, Identifier.encode(gsmid));
+        if (entry == -1)
+            throw new MediumException(this.name + " : The requested GSM cell ID (" + gsmid +
+                    ") is not available at time " + time);
+
+        return trace.gsmSignal(entry);
+    }
+
+    /**
+      * Builds the index of the coverage changes from the trace.
+      *
+      * @return                         the coverage index of the medium
+      */
+    CoverageIndex buildCoverage()
+    {
+        int count = 0;
+        int[] uncovered = new int[trace.getSlotCount()];
+
+        for (int i = 0; i < uncovered.length; i++)
+        {
+            if (!checkAvailability( (double)trace.getSlotTime(i)*timestep ))
+                uncovered[count++] = trace.getSlotTime(i)*timestep;
+        }
+
+        return new CoverageIndex(Arrays.copyOf(uncovered, count), timestep);
+    }
+}
@@ -0,0 +1,252 @@
+ /**
+  * Opportunistic Connectivity Management Simulator
+  *
+  * Copyright (C) 2007 Hossein Falaki
+  */
+
+package ocms.medium;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import ocms.dataset.BinaryTrace;
+import ocms.dataset.Identifier;
+import ocms.dataset.Tuple;
+import ocms.util.PresenceIndex;
+
+/**
+  * A read-only {@link WiFiMedium} backed by a memory-mapped {@link BinaryTrace}.
+  * The queries are answered from the columns of the trace, no {@link ocms.dataset.Sample}
+  * objects are constructed. {@link #checkAvailability} and {@link #signal} do not
+  * allocate; {@link #scan} builds the set of the observations of the sample and
+  * keeps the last one.
+  *
+  * The medium is frozen from the start and can be shared by several simulations.
+  *
+  * @author     Hossein Falaki
+  */
+public class MappedWiFiMedium extends WiFiMedium
+{
+    /** The trace */
+    BinaryTrace trace;
+
+    /** The dictionary indexes of the filtered BSSIDs (may be null) */
+    boolean[] removed;
+
+    /** The result of the last scan */
+    private volatile ScanResult last;
+
+    /**
+      * The result of a scan and the sample it was built from.
+      */
+    private static class ScanResult
+    {
+        /** Index of the sample */
+        int sample;
+
+        /** The visible access points */
+        Set<Tuple<String, Integer>> set;
+
+        ScanResult(int sample, Set<Tuple<String, Integer>> set)
+        {
+            this.sample = sample;
+            this.set = set;
+        }
+    }
+
+    /**
+      * Constructs the medium from the trace.
+      *
+      * @param      trace               the binary trace
+      * @param      timestep            time step of the samples of the trace
+      * @param      removed             true for the dictionary index of each filtered BSSID (may be null)
+      * @param      name                the name to be assigned to this Medium
+      */
+    public MappedWiFiMedium(BinaryTrace trace, int timestep, boolean[] removed, String name)
+    {
+        this.name = name;
+        this.trace = trace;
+        this.removed = removed;
+        this.timestep = timestep;
+        this.starttime = trace.getFirstTime()*timestep;
+        this.endtime = trace.getLastTime()*timestep;
+        this.frozen = true;
+    }
+
+    /**
+      * Returns the sample used at the given time, or -1 if there is none.
+      *
+      * @param      time                the time of the request
+      * @return                         index of the sample in the trace
+      */
+    int sampleAt(double time)
+    {
+        int index = indexOf(time);
+        if (index % timestep != 0)
+            return -1;
+
+        return trace.findSample(index/timestep);
+    }
+
+    /**
+      * Returns true if the observation has been filtered.
+      */
+    private boolean isRemoved(int entry)
+    {
+        return (removed != null) && removed[trace.wifiId(entry)];
+    }
+
+    /**
+      * Returns the observation of the BSSID in the sample, or -1 if it is not visible.
+      * If the BSSID is observed more than once the last observation is returned.
+      */
+    private int find(int sample, long identifier)
+    {
+        int id = trace.indexOf(identifier);
+        if ( (id == -1) || ((removed != null) && removed[id]) )
+            return -1;
+
+        int result = -1;
+        for (int j = trace.getWiFiStart(sample); j < trace.getWiFiStart(sample + 1); j++)
+        {
+            if (trace.wifiId(j) == id)
+                result = j;
+        }
+
+        return result;
+    }
+
+    /**
+      * Returns true if the requested BSSID is available at the requested time.
+      *
+      * @param      bssid               the BSSID to be checked for availability
+      * @param      time                the time of the request
+      * @return                         true if the requested BSSID is available
+      */
+    public boolean checkAvailability(String bssid, double time)
+    {
+        return checkAvailability(Identifier.encode(bssid), time);
+    }
+
+    /**
+      * Returns true if the BSSID with the given identifier is available at the requested time.
+      *
+      * @param      identifier          the {@link Identifier} of the BSSID
+      * @param      time                the time of the request
+      * @return                         true if the requested BSSID is available
+      */
+    public boolean checkAvailability(long identifier, double time)
+    {
+        int sample = sampleAt(time);
+        if (sample == -1)
+            return true;
+
+        return find(sample, identifier) != -1;
+    }
+
+    /**
+      * Returns a read-only set of all the available WiFi APs.
+      *
+      * @param      time                the time of the request
+      * @return                         set of available WiFi APs, or null if there
+      *                                 is no sample at the time
+      */
+    public Set<Tuple<String, Integer>> scan(double time)
+    {
+        int sample = sampleAt(time);
+        if (sample == -1)
+            return null;
+
+        ScanResult result = last;
+        if ( (result != null) && (result.sample == sample) )
+            return result.set;
+
+        Set<Tuple<String, Integer>> set = new HashSet<Tuple<String, Integer>>();
+        for (int j = trace.getWiFiStart(sample); j < trace.getWiFiStart(sample + 1); j++)
+        {
+            if (!isRemoved(j))
+                set.add( new Tuple<String, Integer>(trace.getName(trace.wifiId(j)), trace.wifiSignal(j)) );
+        }
+
+        result = new ScanResult(sample, Collections.unmodifiableSet(set));
+        last = result;
+        return result.set;
+    }
+
+    /**
+      * Returns the signal strength of an available WiFi AP.
+      *
+      * @param      time                the time of the request
+      * @param      bssid               the requested BSSID
+      * @throws     MediumException     if the BSSID is not available at the time
+      */
+    public Integer signal(String bssid, double time) throws MediumException
+    {
+        int sample = sampleAt(time);
+
+        /* There is no sample at this time */
+        if (sample == -1)
+            return Integer.MIN_VALUE;
+
+        int entry = find(sample, Identifier.encode(bssid));
+        if (entry == -1)
+            throw new MediumException(this.name + " : The requested BSSID (" + bssid +
+                    ") is not available at time " + time);
+
+        return trace.wifiSignal(entry);
+    }
+
+    /**
+      * Builds the visibility intervals of the BSSIDs from the trace.
+      *
+      * @return                         the visibility index of the medium
+      */
+    VisibilityIndex buildVisibility()
+    {
+        int[] times = new int[trace.getSlotCount()];
+        VisibilityIndex.Builder builder = new VisibilityIndex.Builder();
+
+        for (int i = 0; i < times.length; i++)
+        {
+            times[i] = trace.getSlotTime(i)*timestep;
+
+            int sample = trace.getSlotSample(i);
+            for (int j = trace.getWiFiStart(sample); j < trace.getWiFiStart(sample + 1); j++)
+            {
+                if (!isRemoved(j))
+                    builder.add(trace.getIdentifier(trace.wifiId(j)), i);
+            }
+        }
+
+        return new VisibilityIndex(times, builder);
+    }
+
+    /**
+      * Builds the presence index of the BSSIDs from the trace.
+      * Only the samples on the grid of the medium are used.
+      *
+      * @return                         the presence index of the medium
+      */
+    PresenceIndex buildPresence()
+    {
+        PresenceIndex.Builder builder = new PresenceIndex.Builder();
+
+        for (int i = 0; i < trace.getSlotCount(); i++)
+        {
+            int time = trace.getSlotTime(i)*timestep;
+            if ( ((long)time - starttime) % timestep != 0 )
+                continue;
+
+            builder.sample(time);
+            int sample = trace.getSlotSample(i);
+            for (int j = trace.getWiFiStart(sample); j < trace.getWiFiStart(sample + 1); j++)
+            {
+                if (!isRemoved(j))
+                    builder.add(trace.getIdentifier(trace.wifiId(j)));
+            }
+        }
+
+        return new PresenceIndex(builder);
+    }
+}
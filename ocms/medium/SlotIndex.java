@@ -0,0 +1,206 @@
+ /**
+  * Opportunistic Connectivity Management Simulator
+  *
+  * Copyright (C) 2007 Hossein Falaki
+  */
+
+package ocms.medium;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import ocms.dataset.Identifier;
+import ocms.dataset.Tuple;
+
+/**
+  * An array index of the environment of a medium.
+  * The samples of a data set are on a fixed time grid (start + k*step), therefore
+  * the environment can be kept in an array indexed by k instead of a HashMap
+  * indexed by time. The IDs of the environment are replaced by their packed
+  * {@link Identifier}s, and the IDs visible in each slot are kept in a sorted
+  * long array (with their signal strengths in a parallel array), so checking the
+  * availability of an ID is a binary search.
+  *
+  * The index is a snapshot of the environment: it has to be rebuilt if the
+  * environment changes.
+  *
+  * @author     Hossein Falaki
+  */
+public class SlotIndex
+{
+    /** Time of the slot zero */
+    int start;
+
+    /** Time step of the slots */
+    int step;
+
+    /** The slot of the first element of the arrays */
+    int first;
+
+    /** The identifiers visible in each slot (sorted), null if there is no sample for the slot */
+    long[][] ids;
+
+    /** The signal strengths of the IDs visible in each slot */
+    int[][] signals;
+
+    /** The sets of the environment, for scans */
+    ArrayList<Set<Tuple<String, Integer>>> sets;
+
+
+    /**
+      * Builds the index of an environment.
+      * Times that are not on the grid of the index are never returned by
+      * {@link WiFiMedium#indexOf} and are ignored.
+      *
+      * @param      environment     the mapping from time to the visible IDs
+      * @param      start           the start time of the medium
+      * @param      step            the time step of the medium
+      */
+    public SlotIndex(Map<Integer, Set<Tuple<String, Integer>>> environment, int start, int step)
+    {
+        this.start = start;
+        this.step = step;
+
+        long low = Long.MAX_VALUE;
+        long high = Long.MIN_VALUE;
+        for (Integer time : environment.keySet())
+        {
+            long offset = (long)time - start;
+            if (offset % step != 0)
+                continue;
+            low = Math.min(low, offset/step);
+            high = Math.max(high, offset/step);
+        }
+
+        if (low > high)
+        {
+            first = 0;
+            ids = new long[0][];
+            signals = new int[0][];
+            sets = new ArrayList<Set<Tuple<String, Integer>>>();
+            return;
+        }
+
+        if (high - low + 1 > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("The environment is too sparse for a slot index");
+
+        first = (int)low;
+        int count = (int)(high - low + 1);
+        ids = new long[count][];
+        signals = new int[count][];
+        sets = new ArrayList<Set<Tuple<String, Integer>>>(count);
+        for (int i = 0; i < count; i++)
+            sets.add(null);
+
+        HashMap<Long, Integer> visible = new HashMap<Long, Integer>();
+        for (Map.Entry<Integer, Set<Tuple<String, Integer>>> entry : environment.entrySet())
+        {
+            long offset = (long)entry.getKey() - start;
+            if (offset % step != 0)
+                continue;
+
+            int slot = (int)(offset/step - first);
+            Set<Tuple<String, Integer>> set = entry.getValue();
+            sets.set(slot, set);
+
+            /* The last observation of an ID wins, as in WiFiMedium#signal */
+            visible.clear();
+            for (Tuple<String, Integer> tuple : set)
+                visible.put(Identifier.encode(tuple.getKey()), tuple.getValue());
+
+            long[] slotids = new long[visible.size()];
+            int i = 0;
+            for (Long id : visible.keySet())
+                slotids[i++] = id;
+            Arrays.sort(slotids);
+
+            int[] slotsignals = new int[slotids.length];
+            for (i = 0; i < slotids.length; i++)
+                slotsignals[i] = visible.get(slotids[i]);
+
+            ids[slot] = slotids;
+            signals[slot] = slotsignals;
+        }
+    }
+
+    /**
+      * Returns the slot of a time returned by {@link WiFiMedium#indexOf}.
+      *
+      * @param      index           the time of the sample
+      * @return                     the slot, or -1 if there is no sample at the time
+      */
+    public int slotOf(int index)
+    {
+        long offset = (long)index - start;
+        if (offset % step != 0)
+            return -1;
+
+        long slot = offset/step - first;
+        if ( (slot < 0) || (slot >= ids.length) || (ids[(int)slot] == null) )
+            return -1;
+
+        return (int)slot;
+    }
+
+    /**
+      * Returns the position of the ID in the slot, or -1 if it is not visible.
+      *
+      * @param      slot            the slot
+      * @param      id              the WiFi or GSM ID
+      * @return                     position of the ID in the slot
+      */
+    public int find(int slot, String id)
+    {
+        return find(slot, Identifier.encode(id));
+    }
+
+    /**
+      * Returns the position of an identifier in the slot, or -1 if it is not visible.
+      *
+      * @param      slot            the slot
+      * @param      identifier      the {@link Identifier} of the WiFi or GSM ID
+      * @return                     position of the ID in the slot
+      */
+    public int find(int slot, long identifier)
+    {
+        int position = Arrays.binarySearch(ids[slot], identifier);
+        return (position < 0) ? -1 : position;
+    }
+
+    /**
+      * Returns the signal strength of the ID at a position of the slot.
+      *
+      * @param      slot            the slot
+      * @param      position        the position returned by {@link #find}
+      * @return                     signal strength
+      */
+    public int signal(int slot, int position)
+    {
+        return signals[slot][position];
+    }
+
+    /**
+      * Returns the number of distinct IDs visible in the slot.
+      *
+      * @param      slot            the slot
+      * @return                     number of visible IDs
+      */
+    public int count(int slot)
+    {
+        return ids[slot].length;
+    }
+
+    /**
+      * Returns the set of the environment for the slot.
+      *
+      * @param      slot            the slot
+      * @return                     the visible IDs and their signal strengths
+      */
+    public Set<Tuple<String, Integer>> scan(int slot)
+    {
+        return sets.get(slot);
+    }
+}
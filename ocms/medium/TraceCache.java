@@ -0,0 +1,417 @@
+ /**
+  * Opportunistic Connectivity Management Simulator
+  *
+  * Copyright (C) 2007 Hossein Falaki
+  */
+
+package ocms.medium;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import ocms.dataset.BinaryTrace;
+import ocms.dataset.CompactTrace;
+import ocms.dataset.DataSet;
+import ocms.dataset.Sample;
+import ocms.algorithms.statistics.Frequency;
+import ocms.algorithms.statistics.FrequencyFilter;
+
+
+/**
+  * A process-wide cache of parsed and filtered traces.
+  * Loading a trace reads the data set file, applies the WiFi filters
+  * ({@link FrequencyFilter#remove} and {@link FrequencyFilter#highpass}) and builds
+  * a {@link WiFiMedium} and a {@link GSMMedium} from it. The media are frozen
+  * (see {@link WiFiMedium#freeze}), so they can be shared by all the simulations
+  * that use the same trace with the same time step and filter settings.
+  *
+  * If several threads ask for the same trace at the same time, the trace is
+  * loaded once and the other threads wait for it. The traces are evicted in
+  * least recently used order when the estimated size of the cached traces
+  * exceeds the heap budget of the cache.
+  *
+  * Traces in the binary format (see {@link BinaryTrace}) are memory-mapped and
+  * served by a {@link MappedWiFiMedium} and a {@link MappedGSMMedium}; only their
+  * index counts towards the budget. With the medium type {@link #COMPACT} a text
+  * trace is kept as a {@link CompactTrace} and served by a {@link CompactWiFiMedium}
+  * and a {@link CompactGSMMedium}; the data set is dropped once it is converted.
+  *
+  * @author     Hossein Falaki
+  */
+public class TraceCache
+{
+    /** The media that look the samples up in a hash table */
+    public static final String HASH                         = "HASH";
+
+    /** The media that look the samples up in an array (see {@link DenseWiFiMedium}) */
+    public static final String DENSE                        = "DENSE";
+
+    /** The media backed by a {@link CompactTrace} */
+    public static final String COMPACT                      = "COMPACT";
+
+    /** Estimated number of bytes used by each WiFi or GSM observation */
+    private static final long TUPLE_BYTES                   = 160;
+
+    /** Estimated number of bytes used by each sample */
+    private static final long SAMPLE_BYTES                  = 320;
+
+    /** Estimated number of bytes of the index of each sample of a binary trace */
+    private static final long SAMPLE_INDEX_BYTES            = 24;
+
+    /** The cache of the process */
+    private static final TraceCache instance = new TraceCache();
+
+    /** The traces in least recently used order */
+    private LinkedHashMap<String, FutureTask<Trace>> traces;
+
+    /** The estimated size of the loaded traces */
+    private HashMap<String, Long> sizes;
+
+    /** The estimated size of all the loaded traces */
+    private long total;
+
+    /** The heap budget of the cache in bytes */
+    private long budget;
+
+    /** Number of requests served from the cache */
+    private long hits;
+
+    /** Number of traces loaded */
+    private long misses;
+
+
+    /**
+      * A parsed and filtered trace.
+      * Keeps the read-only media built from the trace.
+      */
+    public static class Trace
+    {
+        /** The WiFi medium of the trace */
+        WiFiMedium wifimedium;
+
+        /** The GSM medium of the trace */
+        GSMMedium gsmmedium;
+
+        /** The estimated size of the trace in bytes */
+        long size;
+
+        /**
+          * Returns the read-only WiFi medium of the trace.
+          * The medium is named after the trace file, see {@link WiFiMedium#view}
+          * to name it after a NIC.
+          *
+          * @return                 the WiFi medium
+          */
+        public WiFiMedium getWiFiMedium()
+        {
+            return wifimedium;
+        }
+
+        /**
+          * Returns the read-only GSM medium of the trace.
+          * The medium is named after the trace file, see {@link GSMMedium#view}
+          * to name it after a NIC.
+          *
+          * @return                 the GSM medium
+          */
+        public GSMMedium getGSMMedium()
+        {
+            return gsmmedium;
+        }
+
+        /**
+          * Returns the estimated size of the trace.
+          *
+          * @return                 estimated size in bytes
+          */
+        public long getSize()
+        {
+            return size;
+        }
+    }
+
+
+    /**
+      * Constructs an empty cache with a budget of a quarter of the maximum heap.
+      */
+    private TraceCache()
+    {
+        traces = new LinkedHashMap<String, FutureTask<Trace>>(16, 0.75f, true);
+        sizes = new HashMap<String, Long>();
+        total = 0;
+        budget = Runtime.getRuntime().maxMemory()/4;
+    }
+
+    /**
+      * Returns the cache of the process.
+      *
+      * @return                     the trace cache
+      */
+    public static TraceCache getInstance()
+    {
+        return instance;
+    }
+
+    /**
+      * Sets the heap budget of the cache.
+      * Traces are evicted if the budget is already exceeded.
+      *
+      * @param      budget          the budget in bytes
+      */
+    public synchronized void setBudget(long budget)
+    {
+        this.budget = budget;
+        evict(null);
+    }
+
+    /**
+      * Returns the trace loaded from the given file with the given settings.
+      * The trace is loaded if it is not in the cache.
+      *
+      * @param      filename        name of the data set file
+      * @param      timestep        time step of the data set
+      * @param      filters         WiFi IDs to be filtered from the data set (may be null)
+      * @param      highpass        the frequency threshold of the WiFi high pass filter,
+      *                             or a negative value for no high pass filter
+      * @param      type            the type of the media: {@link #HASH}, {@link #DENSE} or {@link #COMPACT}
+      * @return                     the trace
+      * @throws     FileNotFoundException   if the data set file does not exist
+      */
+    public Trace get(final String filename, final int timestep, final ArrayList<String> filters,
+            final double highpass, final String type) throws FileNotFoundException
+    {
+        /* The same file under different names is loaded once */
+        String key = canonical(filename) + "|" + timestep + "|" + filters + "|" + highpass + "|" + type;
+        FutureTask<Trace> future;
+        boolean loader = false;
+
+        synchronized (this)
+        {
+            future = traces.get(key);
+            if (future == null)
+            {
+                future = new FutureTask<Trace>( new Callable<Trace>()
+                {
+                    public Trace call() throws FileNotFoundException
+                    {
+                        return load(filename, timestep, filters, highpass, type);
+                    }
+                });
+                traces.put(key, future);
+                loader = true;
+                misses++;
+            }
+            else
+                hits++;
+        }
+
+        /* The trace is loaded outside the lock, other traces may be loaded at the same time */
+        if (loader)
+            future.run();
+
+        Trace trace;
+        try
+        {
+            trace = future.get();
+        }
+        catch (Exception e)
+        {
+            synchronized (this)
+            {
+                if (traces.get(key) == future)
+                    traces.remove(key);
+            }
+
+            Throwable cause = e;
+            if (e instanceof ExecutionException)
+                cause = e.getCause();
+
+            if (cause instanceof FileNotFoundException)
+                throw (FileNotFoundException)cause;
+
+            throw new RuntimeException("Error while loading " + filename + ": " + cause.toString(), cause);
+        }
+
+        if (loader)
+        {
+            synchronized (this)
+            {
+                if (traces.get(key) == future)
+                {
+                    sizes.put(key, trace.size);
+                    total += trace.size;
+                    evict(key);
+                }
+            }
+        }
+
+        return trace;
+    }
+
+    /**
+      * Returns the canonical path of a file, or its absolute path if it cannot be resolved.
+      *
+      * @param      filename        name of the file
+      * @return                     the path of the file
+      */
+    private static String canonical(String filename)
+    {
+        File file = new File(filename);
+        try
+        {
+            return file.getCanonicalPath();
+        }
+        catch (IOException ioe)
+        {
+            return file.getAbsolutePath();
+        }
+    }
+
+    /**
+      * Evicts the least recently used traces until the cache is within its budget.
+      * Traces that are still being loaded, and the given trace, are not evicted.
+      *
+      * @param      keep            key of the trace to be kept (may be null)
+      */
+    private void evict(String keep)
+    {
+        Iterator<Map.Entry<String, FutureTask<Trace>>> it = traces.entrySet().iterator();
+        while ( (total > budget) && it.hasNext() )
+        {
+            Map.Entry<String, FutureTask<Trace>> entry = it.next();
+            String key = entry.getKey();
+            if ( key.equals(keep) || !sizes.containsKey(key) )
+                continue;
+
+            total -= sizes.remove(key);
+            it.remove();
+        }
+    }
+
+    /**
+      * Loads and filters the trace and builds its media.
+      *
+      * @param      filename        name of the data set file
+      * @param      timestep        time step of the data set
+      * @param      filters         WiFi IDs to be filtered from the data set (may be null)
+      * @param      highpass        the frequency threshold of the WiFi high pass filter,
+      *                             or a negative value for no high pass filter
+      * @param      type            the type of the media: {@link #HASH}, {@link #DENSE} or {@link #COMPACT}
+      *                             (ignored for binary traces)
+      * @return                     the trace
+      * @throws     FileNotFoundException   if the data set file does not exist
+      */
+    private Trace load(String filename, int timestep, ArrayList<String> filters, double highpass, String type)
+        throws FileNotFoundException
+    {
+        if ( !(new File(filename)).exists() )
+            throw new FileNotFoundException(filename);
+
+        Trace trace = new Trace();
+
+        if (BinaryTrace.isBinary(filename))
+        {
+            /* The samples stay in the mapped file, only the index is on the heap */
+            BinaryTrace binary;
+            try
+            {
+                binary = new BinaryTrace(filename);
+            }
+            catch (IOException ioe)
+            {
+                throw new RuntimeException("Error while loading " + filename + ": " + ioe.toString(), ioe);
+            }
+
+            trace.wifimedium = new MappedWiFiMedium(binary, timestep, binary.filterWiFi(filters, highpass),
+                    filename + "_WiFiMedium");
+            trace.gsmmedium = new MappedGSMMedium(binary, timestep, null, filename + "_GSMMedium");
+            trace.size = SAMPLE_INDEX_BYTES*binary.size();
+            return trace;
+        }
+
+        DataSet dataset = new DataSet(filename, timestep);
+
+        /* The filters share one count and rewrite the samples once */
+        FrequencyFilter filter = new FrequencyFilter(dataset, Frequency.WIFI);
+        if (filters != null)
+        {
+            for (String id : filters)
+                filter.remove(id);
+        }
+        if (highpass >= 0)
+            filter.highpass(highpass);
+        filter.apply();
+
+        if (COMPACT.equals(type))
+        {
+            /* Only the compact copy is kept, the samples of the data set are dropped */
+            CompactTrace compact = new CompactTrace(dataset);
+            trace.wifimedium = new CompactWiFiMedium(compact, filename + "_WiFiMedium");
+            trace.gsmmedium = new CompactGSMMedium(compact, filename + "_GSMMedium");
+            trace.size = compact.getSize();
+            return trace;
+        }
+
+        if (DENSE.equals(type))
+        {
+            trace.wifimedium = new DenseWiFiMedium(dataset, filename + "_WiFiMedium");
+            trace.gsmmedium = new DenseGSMMedium(dataset, filename + "_GSMMedium");
+        }
+        else
+        {
+            trace.wifimedium = new WiFiMedium(dataset, filename + "_WiFiMedium");
+            trace.gsmmedium = new GSMMedium(dataset, filename + "_GSMMedium");
+        }
+        trace.wifimedium.freeze();
+        trace.gsmmedium.freeze();
+
+        trace.size = 0;
+        for (Iterator it = dataset.iterator(); it.hasNext();)
+        {
+            Sample sample = (Sample)it.next();
+            trace.size += SAMPLE_BYTES
+                + TUPLE_BYTES*(sample.getRichWiFiSet().size() + sample.getRichGSMSet().size());
+        }
+
+        return trace;
+    }
+
+    /**
+      * Returns the number of requests served from the cache.
+      *
+      * @return                     number of cache hits
+      */
+    public synchronized long getHits()
+    {
+        return hits;
+    }
+
+    /**
+      * Returns the number of traces loaded by the cache.
+      *
+      * @return                     number of cache misses
+      */
+    public synchronized long getMisses()
+    {
+        return misses;
+    }
+
+    /**
+      * Returns the estimated size of the cached traces.
+      *
+      * @return                     estimated size in bytes
+      */
+    public synchronized long getSize()
+    {
+        return total;
+    }
+}
@@ -0,0 +1,206 @@
+ /**
+  * Opportunistic Connectivity Management Simulator
+  *
+  * Copyright (C) 2007 Hossein Falaki
+  */
+
+package ocms.medium;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import ocms.dataset.Identifier;
+import ocms.dataset.Tuple;
+
+/**
+  * The intervals in which each ID of a medium is visible.
+  * The samples of the medium are numbered in time order. For every ID the index
+  * keeps the sorted runs of consecutive samples that contain the ID. A time
+  * without a sample is considered to have every ID available (as in
+  * {@link WiFiMedium#checkAvailability}), so an ID is lost at the first sample
+  * after the time that is not in one of its runs. This is found with a binary
+  * search over the runs of the ID. The IDs are kept as their {@link Identifier}s.
+  *
+  * @author     Hossein Falaki
+  */
+public class VisibilityIndex
+{
+    /** The times of the samples in increasing order */
+    int[] times;
+
+    /** The runs of each identifier: first and last sample number of each run, in pairs */
+    HashMap<Long, int[]> runs;
+
+
+    /**
+      * Builds the index of an environment.
+      * Only the times on the grid of the medium (start + k*step) are used; the
+      * others are never returned by {@link WiFiMedium#indexOf}.
+      *
+      * @param      environment     the mapping from time to the visible IDs
+      * @param      start           the start time of the medium
+      * @param      step            the time step of the medium
+      */
+    public VisibilityIndex(Map<Integer, Set<Tuple<String, Integer>>> environment, int start, int step)
+    {
+        int count = 0;
+        int[] keys = new int[environment.size()];
+        for (Integer time : environment.keySet())
+        {
+            if ( ((long)time - start) % step == 0 )
+                keys[count++] = time;
+        }
+        times = Arrays.copyOf(keys, count);
+        Arrays.sort(times);
+
+        Builder builder = new Builder();
+        for (int i = 0; i < times.length; i++)
+        {
+            for (Tuple<String, Integer> tuple : environment.get(times[i]))
+                builder.add(Identifier.encode(tuple.getKey()), i);
+        }
+        runs = builder.build();
+    }
+
+    /**
+      * Builds the index from the sample times and the prepared runs.
+      *
+      * @param      times           the times of the samples in increasing order
+      * @param      builder         the observations of the IDs
+      */
+    VisibilityIndex(int[] times, Builder builder)
+    {
+        this.times = times;
+        runs = builder.build();
+    }
+
+    /**
+      * Returns the time of the first sample at or after 'time' that does not contain the ID.
+      *
+      * @param      id              the WiFi or GSM ID
+      * @param      time            the time to search from
+      * @return                     time of the loss, or Double.MAX_VALUE if the ID is
+      *                             not lost until the end of the medium
+      */
+    public double nextLoss(String id, double time)
+    {
+        return nextLoss(Identifier.encode(id), time);
+    }
+
+    /**
+      * Returns the time of the first sample at or after 'time' that does not contain the ID.
+      *
+      * @param      identifier      the {@link Identifier} of the WiFi or GSM ID
+      * @param      time            the time to search from
+      * @return                     time of the loss, or Double.MAX_VALUE if the ID is
+      *                             not lost until the end of the medium
+      */
+    public double nextLoss(long identifier, double time)
+    {
+        /* The first sample at or after 'time' */
+        int low = 0;
+        int high = times.length;
+        while (low < high)
+        {
+            int mid = (low + high) >>> 1;
+            if (times[mid] < time)
+                low = mid + 1;
+            else
+                high = mid;
+        }
+
+        if (low == times.length)
+            return Double.MAX_VALUE;
+
+        int[] idruns = runs.get(identifier);
+        if (idruns == null)
+            return times[low];
+
+        /* The last run that starts at or before the sample */
+        int first = 0;
+        int last = idruns.length/2 - 1;
+        int run = -1;
+        while (first <= last)
+        {
+            int mid = (first + last) >>> 1;
+            if (idruns[2*mid] <= low)
+            {
+                run = mid;
+                first = mid + 1;
+            }
+            else
+                last = mid - 1;
+        }
+
+        if ( (run == -1) || (idruns[2*run + 1] < low) )
+            return times[low];
+
+        int lost = idruns[2*run + 1] + 1;
+        if (lost == times.length)
+            return Double.MAX_VALUE;
+
+        return times[lost];
+    }
+
+
+    /**
+      * Collects the observations of the IDs, in increasing sample order.
+      */
+    static class Builder
+    {
+        /** The runs of each identifier */
+        HashMap<Long, int[]> runs = new HashMap<Long, int[]>();
+
+        /** Number of elements used in the run array of each identifier */
+        HashMap<Long, Integer> lengths = new HashMap<Long, Integer>();
+
+        /**
+          * Records that the ID is visible in the sample.
+          * The samples should be added in increasing order.
+          *
+          * @param      id              the {@link Identifier} of the WiFi or GSM ID
+          * @param      sample          the sample number
+          */
+        void add(long id, int sample)
+        {
+            int[] idruns = runs.get(id);
+            if (idruns == null)
+            {
+                runs.put(id, new int[] {sample, sample});
+                lengths.put(id, 2);
+                return;
+            }
+
+            int length = lengths.get(id);
+
+            /* The same sample may contain the ID more than once */
+            if (idruns[length - 1] >= sample - 1)
+            {
+                idruns[length - 1] = sample;
+                return;
+            }
+
+            if (length == idruns.length)
+            {
+                idruns = Arrays.copyOf(idruns, 2*length);
+                runs.put(id, idruns);
+            }
+            idruns[length] = sample;
+            idruns[length + 1] = sample;
+            lengths.put(id, length + 2);
+        }
+
+        /**
+          * Returns the runs of each ID, trimmed.
+          */
+        HashMap<Long, int[]> build()
+        {
+            HashMap<Long, int[]> result = new HashMap<Long, int[]>(2*runs.size());
+            for (Map.Entry<Long, int[]> entry : runs.entrySet())
+                result.put(entry.getKey(), Arrays.copyOf(entry.getValue(), lengths.get(entry.getKey())));
+            return result;
+        }
+    }
+}
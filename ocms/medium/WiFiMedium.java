@@ -6,15 +6,20 @@
 
 package ocms.medium;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Set;
 import java.util.Iterator;
+import java.util.Collections;
 
 import ocms.dataset.Experiment;
+import ocms.dataset.Identifier;
 import ocms.dataset.Tuple;
 import ocms.dataset.DataSet;
 import ocms.dataset.Sample;
+import ocms.util.Time;
+import ocms.util.PresenceIndex;
 
 /**
   * An implementation of the {@link Medium} interface for WiFi.
@@ -23,10 +28,10 @@ import ocms.dataset.Sample;
   *
   * @author     Hossein Falaki
   */
-public class WiFiMedium implements Medium, Experiment
+public class WiFiMedium implements Medium, Experiment, Cloneable
 {
     /** The Mapping from time to Tuples representing the environment */
-    HashMap<Integer, HashSet<Tuple<String,Integer>>> environment;
+    HashMap<Integer, Set<Tuple<String,Integer>>> environment;
 
     /** The name of this WiFi Medium */
     String name;
@@ -40,13 +45,28 @@ public class WiFiMedium implements Medium, Experiment
     /** Time of the last sample in the data set */
     Integer endtime;
 
+    /** True if the medium is read-only (see {@link #freeze}) */
+    boolean frozen;
+
+    /** The visibility intervals of the BSSIDs, built on demand */
+    private volatile VisibilityIndex visibility;
+
+    /** The samples in which each BSSID is present, built on demand */
+    private volatile PresenceIndex presence;
+
+    /** The sorted identifiers of the BSSIDs of each sample, built on demand */
+    private volatile HashMap<Integer, long[]> identifiers;
+
+    /** The medium whose indexes are used, this medium unless it is a view (see {@link #view}) */
+    private WiFiMedium shared = this;
+
     /**
       * Constructs an emtpy and non usable instance.
       *
       */
     public WiFiMedium()
     {
-        environment = new HashMap<Integer, HashSet<Tuple<String, Integer>>>();
+        environment = new HashMap<Integer, Set<Tuple<String, Integer>>>();
         timestep = 1;
     }
 
@@ -59,7 +79,7 @@ public class WiFiMedium implements Medium, Experiment
     public WiFiMedium(DataSet dataset, String name)
     {
         this.name = name;
-        environment = new HashMap<Integer, HashSet<Tuple<String, Integer>>>();
+        environment = new HashMap<Integer, Set<Tuple<String, Integer>>>();
         this.update(dataset);
         this.timestep = dataset.getTimeStep();
         this.starttime = dataset.getStartTime();
@@ -70,17 +90,24 @@ public class WiFiMedium implements Medium, Experiment
       * Updates the environment with the provided dataset.
       *
       * @param      dataset             the dataset to be used to update the envoronment
+      * @throws     UnsupportedOperationException   if the medium is read-only
       */
     public void update(DataSet dataset)
     {
+        if (frozen)
+            throw new UnsupportedOperationException(name + " is read-only");
         
         Sample sample;
 
         for(Iterator it = dataset.iterator(); it.hasNext();)
         {
             sample = (Sample)it.next();
-            environment.put((Integer)sample.getTime(), (HashSet<Tuple<String, Integer>>)sample.getRichWiFiSet());
+            environment.put((Integer)sample.getTime(), sample.getRichWiFiSet());
         }
+
+        visibility = null;
+        presence = null;
+        identifiers = null;
     }
 
     /**
@@ -91,9 +118,28 @@ public class WiFiMedium implements Medium, Experiment
       */
     public int indexOf(double time)
     {
-        double frac = (time - starttime)%timestep;
-        Double dindex = Math.floor(time - frac);
-        return  dindex.intValue();
+        long sample = sampleOf( Time.toTicks(time) )/Time.RESOLUTION;
+
+        /* Saturates like the conversion of a double */
+        if (sample > Integer.MAX_VALUE)
+            return Integer.MAX_VALUE;
+        if (sample < Integer.MIN_VALUE)
+            return Integer.MIN_VALUE;
+
+        return (int)sample;
+    }
+
+    /**
+      * Returns the sample point associated with a time in ticks.
+      * The sample points are a whole number of seconds, so this is an integer
+      * operation (see {@link Time}).
+      *
+      * @param          ticks           the time in ticks
+      * @return                         the time of the sample point in ticks
+      */
+    public long sampleOf(long ticks)
+    {
+        return Time.floor(ticks, starttime*Time.RESOLUTION, timestep*Time.RESOLUTION);
     }
 
 
@@ -116,9 +162,56 @@ public class WiFiMedium implements Medium, Experiment
         return false;
     }
 
+    /**
+      * Returns true if the BSSID with the given identifier is available at the requested time.
+      *
+      * @param      identifier          the {@link Identifier} of the BSSID
+      * @param      time                the time of the request
+      * @return                         true if the requested BSSID is available
+      */
+    public boolean checkAvailability(long identifier, double time)
+    {
+        HashMap<Integer, long[]> index = shared.identifiers;
+        if (index == null)
+        {
+            /* Two threads may build the index at the same time, the results are equal */
+            index = shared.buildIdentifiers();
+            shared.identifiers = index;
+        }
+
+        long[] sample = index.get(indexOf(time));
+        if (sample == null)
+            return true;
+
+        return Arrays.binarySearch(sample, identifier) >= 0;
+    }
+
+    /**
+      * Encodes the BSSIDs of each sample of the environment once, so that the
+      * NICs can check the availability of their AP without rendering its
+      * identifier back to a String.
+      *
+      * @return                         the sorted identifiers of each sample
+      */
+    private HashMap<Integer, long[]> buildIdentifiers()
+    {
+        HashMap<Integer, long[]> result = new HashMap<Integer, long[]>(2*environment.size());
+        ArrayList<String> bssids = new ArrayList<String>();
+
+        for (Integer time : environment.keySet())
+        {
+            bssids.clear();
+            for (Tuple<String, Integer> wifi : environment.get(time))
+                bssids.add(wifi.getKey());
+            result.put(time, Identifier.encode(bssids));
+        }
+
+        return result;
+    }
+
     /**
       * Returns a set of all the available WiFi APs.
-      * The returned set is a {@link HashSet} of {@link Tuple}s. Each Tuple 
+      * The returned set is a {@link Set} of {@link Tuple}s. Each Tuple 
       * consists of a BSSID string and an integer signal strength value.
       *
       * @param      time                the time of the request
@@ -161,6 +254,82 @@ public class WiFiMedium implements Medium, Experiment
         return result;
     }
 
+    /**
+      * Returns the first sample time at or after 'time' at which the BSSID is not available.
+      * This is the first time at or after 'time' for which {@link #checkAvailability}
+      * returns false. The visibility intervals of the BSSIDs are computed on the first call.
+      *
+      * @param      bssid               the BSSID
+      * @param      time                the time to search from
+      * @return                         time of the loss, or Double.MAX_VALUE if the
+      *                                 BSSID is not lost until the end of the medium
+      */
+    public double nextLoss(String bssid, double time)
+    {
+        return nextLoss(Identifier.encode(bssid), time);
+    }
+
+    /**
+      * Returns the first sample time at or after 'time' at which the BSSID is not available.
+      *
+      * @param      identifier          the {@link Identifier} of the BSSID
+      * @param      time                the time to search from
+      * @return                         time of the loss, or Double.MAX_VALUE if the
+      *                                 BSSID is not lost until the end of the medium
+      */
+    public double nextLoss(long identifier, double time)
+    {
+        VisibilityIndex index = shared.visibility;
+        if (index == null)
+        {
+            /* Two threads may build the index at the same time, the results are equal */
+            index = shared.buildVisibility();
+            shared.visibility = index;
+        }
+
+        return index.nextLoss(identifier, time);
+    }
+
+    /**
+      * Builds the visibility intervals of the BSSIDs.
+      *
+      * @return                         the visibility index of the medium
+      */
+    VisibilityIndex buildVisibility()
+    {
+        return new VisibilityIndex(environment, starttime, timestep);
+    }
+
+    /**
+      * Returns the index of the samples in which each BSSID is present.
+      * The index is built on the first call, and is used to find the availability
+      * blocks of the medium without scanning it.
+      *
+      * @return                         the presence index of the medium
+      */
+    public PresenceIndex getPresence()
+    {
+        PresenceIndex index = shared.presence;
+        if (index == null)
+        {
+            /* Two threads may build the index at the same time, the results are equal */
+            index = shared.buildPresence();
+            shared.presence = index;
+        }
+
+        return index;
+    }
+
+    /**
+      * Builds the presence index of the BSSIDs.
+      *
+      * @return                         the presence index of the medium
+      */
+    PresenceIndex buildPresence()
+    {
+        return new PresenceIndex(environment, starttime, timestep);
+    }
+
     /**
       * Returns true if the WiFiMedium 'exists' at the specified time.
       * This method should be called before any querry to the medium.
@@ -176,6 +345,60 @@ public class WiFiMedium implements Medium, Experiment
         return false;
     }
 
+    /**
+      * Makes the medium read-only.
+      * The sets returned by {@link #scan} can not be modified afterwards, and
+      * {@link #update} and {@link #setTimeStep} throw an UnsupportedOperationException.
+      * A frozen medium can be shared by several simulations running at the
+      * same time, as long as the DataSet it was built from is not modified.
+      */
+    public void freeze()
+    {
+        if (frozen)
+            return;
+
+        for (Integer time : environment.keySet())
+            environment.put(time, Collections.unmodifiableSet(environment.get(time)));
+        frozen = true;
+    }
+
+    /**
+      * Returns a read-only view of the medium under another name.
+      * The view shares the samples and the indexes of the medium, so a medium
+      * shared by several simulations can be named after the NIC of each one.
+      *
+      * @param      name                the name of the view
+      * @return                         the view of the medium
+      * @throws     UnsupportedOperationException   if the medium is not read-only
+      */
+    public WiFiMedium view(String name)
+    {
+        if (!frozen)
+            throw new UnsupportedOperationException(this.name + " is not read-only");
+
+        WiFiMedium view;
+        try
+        {
+            view = (WiFiMedium)clone();
+        }
+        catch (CloneNotSupportedException cnse)
+        {
+            throw new InternalError(cnse.toString());
+        }
+        view.name = name;
+        return view;
+    }
+
+    /**
+      * Returns true if the medium is read-only.
+      *
+      * @return                     true if {@link #freeze} has been called
+      */
+    public boolean isFrozen()
+    {
+        return frozen;
+    }
+
     /**
       * Returns the time step of the experiment used to model the environment.
       *
@@ -214,12 +437,19 @@ public class WiFiMedium implements Medium, Experiment
       * time step is smaller than the current one it will be silently ignored.
       *
       * @param      timestep        the new time step
+      * @throws     UnsupportedOperationException   if the medium is read-only
       */
     public void setTimeStep(int timestep)
     {
+        if (frozen)
+            throw new UnsupportedOperationException(name + " is read-only");
+
         if (timestep > this.timestep)
             this.timestep = timestep;
 
+        visibility = null;
+        presence = null;
+
     }
 
     /* DEBUG */
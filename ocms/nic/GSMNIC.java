@@ -12,8 +12,10 @@ import java.util.Set;
 import ocms.medium.Medium;
 import ocms.medium.GSMMedium;
 import ocms.util.Configuration;
+import ocms.util.Journal;
 import ocms.util.Logger;
 import ocms.util.Log;
+import ocms.util.Time;
 import ocms.dataset.Tuple;
 
 
@@ -35,8 +37,11 @@ public class GSMNIC implements NIC, Logger
     /** Name of the GSM NIC */
     String name;
 
-    /** Keeps the current time */
-    Double now;
+    /** Keeps the current time, in ticks of {@link ocms.util.Time} (0 until the NIC is initialized) */
+    long now;
+
+    /** The journal of the simulation, or null */
+    Journal journal;
 
 
     /** A constant representing the OFF state */
@@ -90,6 +95,40 @@ public class GSMNIC implements NIC, Logger
         return mystate;
     }
 
+    /** 
+      * Returns the state of the GSMNIC without constructing the state array.
+      * The returned value should be checked against the public static fields of the 
+      * GSMNIC. 
+      *
+      * @return                         the current state of the NIC
+      */
+    public int getState()
+    {
+        return state;
+    }
+
+    /**
+      * Changes the state of the NIC and records the transition in the journal.
+      *
+      * @param      newstate            the new state
+      */
+    private void setState(int newstate)
+    {
+        if ( (journal != null) && (newstate != state) )
+            journal.transition( getTime(), NIC.GSM, name, state, newstate);
+        state = newstate;
+    }
+
+    /**
+      * Sets the journal that records the state transitions of the NIC.
+      *
+      * @param      journal             the journal (null for no journal)
+      */
+    public void setJournal(Journal journal)
+    {
+        this.journal = journal;
+    }
+
     /** 
       * Takes the NIC forward in simulation time until now.
       * Returns true if the step is successful (i.e. could be checked with the medium)
@@ -104,7 +143,7 @@ public class GSMNIC implements NIC, Logger
     {
         boolean result = true;
 
-        Log.paranoid(this, "stepping to " + time);
+        Log.paranoid(this, "stepping to {}", time);
 
         if (!medium.hasTime(time))
         {
@@ -112,10 +151,12 @@ public class GSMNIC implements NIC, Logger
             return false;
         }
 
+        long ticks = Time.toTicks(time);
+
         /* These states do not require checking the medium */
         if (state == OFF) 
         {
-            now = time;
+            now = ticks;
             return true;
         }
 
@@ -123,21 +164,80 @@ public class GSMNIC implements NIC, Logger
 
         /* If 'time' does not pass the next sample point, just move it, knowing that
            the environment does not change between sample points */
-        if ( medium.indexOf(time) < medium.indexOf(now) + medium.getTimeStep() )
-            now = time;
+        long sample = medium.sampleOf(ticks);
+        if ( sample < medium.sampleOf(now) + timeStep() )
+            now = ticks;
+
+        /* Jump between the coverage changes up to the last sample point before 'time' */
+        if ( (state == DISCONNECTED) || (state == CONNECTED) )
+            skip( sample );
 
         /* Now call step() as much as possible */
-        while ( now < medium.indexOf(time) )
+        while ( now < sample )
             result &= step();
 
         /* At this point 'time' does not pass the next sample point, Just move it,
            knowing that the environment does not change between sample points */
-        if ( now < time )
-            now = time;
+        if ( now < ticks )
+            now = ticks;
 
         return result;
     }
 
+    /**
+      * Returns the time step of the medium in ticks.
+      *
+      * @return                         the time step of the medium in ticks
+      */
+    private long timeStep()
+    {
+        return medium.getTimeStep()*Time.RESOLUTION;
+    }
+
+
+    /**
+      * Takes the GSM NIC to a sample point, visiting only the points at which the
+      * coverage changes.
+      * The state at the end is the one that calling {@link #step()} until 'target' would
+      * give, and the transitions are logged at the time they happen. Unlike {@link #step()},
+      * "lost GSM coverage" is logged only when the NIC actually loses coverage, not at
+      * every sample point without coverage.
+      * The caller should make sure that 'target' is in the medium.
+      *
+      * @param      target              the sample point to move to, in ticks
+      */
+    private void skip(long target)
+    {
+        if (now >= target)
+            return;
+
+        /* The next sample point is always visited, since the state depends on it */
+        now = medium.sampleOf(now) + timeStep();
+        boolean covered = medium.checkAvailability(getTime());
+
+        while (true)
+        {
+            if ( covered && (state == DISCONNECTED) )
+            {
+                Log.info(this, "Found GSM coverage");
+                setState(CONNECTED);
+            }
+            else if ( !covered && (state == CONNECTED) )
+            {
+                Log.info(this, "lost GSM coverage");
+                setState(DISCONNECTED);
+            }
+
+            long next = Time.toTicks( medium.nextCoverageChange(getTime()) );
+            if (next > target)
+                break;
+
+            now = next;
+            covered = !covered;
+        }
+
+        now = target;
+    }
 
     /**
     * Takes the GSM NIC one step into the future.
@@ -154,26 +254,26 @@ public class GSMNIC implements NIC, Logger
         /* If 'now' is not at a sample point, first move it to the next sample point.
         No need to check time availability in the medium, because it has been checked
         when 'now' has passed the sample */
-        if ( now != medium.indexOf(now) )
+        if ( now != medium.sampleOf(now) )
         {
-            now = (double)medium.indexOf(now) + medium.getTimeStep();
+            now = medium.sampleOf(now) + timeStep();
 
             /* These states do not require checking the environment */
             if (state == OFF)
                 return true;
 
             if  (state == DISCONNECTED) 
-                if (medium.checkAvailability(now))
+                if (medium.checkAvailability(getTime()))
                 {
                     Log.info(this, "Found GSM coverage");
-                    state = CONNECTED;
+                    setState(CONNECTED);
                     return true;
                 }
 
-            if ( !medium.checkAvailability(now ) )
+            if ( !medium.checkAvailability(getTime()) )
             {
                 Log.info(this, "lost GSM coverage");
-                state = DISCONNECTED;
+                setState(DISCONNECTED);
             }
                 
             return true;
@@ -181,27 +281,27 @@ public class GSMNIC implements NIC, Logger
 
         /* At this point I know that 'now' is at a sample point */
             
-        if (!medium.hasTime( now + medium.getTimeStep() ) )
+        if (!medium.hasTime( Time.toSeconds(now + timeStep()) ) )
             return false;
 
         /* States that do not require looking at the medium */
-        now += medium.getTimeStep();
+        now += timeStep();
         if (state == OFF)
             return true;
 
         if (state == DISCONNECTED)
-            if (medium.checkAvailability(now))
+            if (medium.checkAvailability(getTime()))
             {
                 Log.info(this, "Found GSM coverage");
-                state = CONNECTED;
+                setState(CONNECTED);
                 return true;
             }
 
 
-        if ( !medium.checkAvailability(now) )
+        if ( !medium.checkAvailability(getTime()) )
         {
             Log.info(this, "lost GSM coverage");
-            state = DISCONNECTED;
+            setState(DISCONNECTED);
         }
 
         return true;
@@ -219,12 +319,12 @@ public class GSMNIC implements NIC, Logger
     public double turnOff()
     {
         if (state == OFF)
-            return now;
+            return getTime();
 
-        state = OFF;
+        setState(OFF);
 
         Log.info(this, "disabled");
-        return now;
+        return getTime();
     }
 
     /**
@@ -238,15 +338,15 @@ public class GSMNIC implements NIC, Logger
     public double turnOn()
     {
         if (state != OFF)
-            return now;
+            return getTime();
 
-        if (medium.checkAvailability(now))
-            state = CONNECTED;
+        if (medium.checkAvailability(getTime()))
+            setState(CONNECTED);
         else
-            state = DISCONNECTED;
+            setState(DISCONNECTED);
 
         Log.info(this, "enabled");
-        return now;
+        return getTime();
     }
 
 
@@ -261,7 +361,7 @@ public class GSMNIC implements NIC, Logger
     public double associate(String bssid) throws NICException
     {
         Log.debug(this, "associate() should should not be called!");
-        return now;
+        return getTime();
     }
 
     /**
@@ -274,9 +374,9 @@ public class GSMNIC implements NIC, Logger
     public double disassociate()
     {
         if (state != OFF)
-            state = DISCONNECTED;
+            setState(DISCONNECTED);
 
-        return now;
+        return getTime();
     }
 
 
@@ -292,7 +392,7 @@ public class GSMNIC implements NIC, Logger
     {
         Log.debug(this, "transmit() method is not implemented in the GSM NIC");
         step(endtime);
-        return now;
+        return getTime();
     }
 
 
@@ -313,15 +413,15 @@ public class GSMNIC implements NIC, Logger
         if (state == OFF)
         {
             Log.debug(this, "is off. Cannot scan");
-            return now;
+            return getTime();
         }
 
         Log.info(this, "Scanning");
-        Set<Tuple<String, Integer>> scanresult = medium.scan(now);
+        Set<Tuple<String, Integer>> scanresult = medium.scan(getTime());
 
         if (scanresult != null)
         {
-            Log.paranoid(this, "Scan returned " + scanresult);
+            Log.paranoid(this, "Scan returned {}", scanresult);
 
             for (Tuple id : scanresult)
                 result.add((Object)id);
@@ -331,7 +431,7 @@ public class GSMNIC implements NIC, Logger
             Log.paranoid(this, "Scan returned null");
         }
 
-        return now;
+        return getTime();
     }
 
 
@@ -347,7 +447,7 @@ public class GSMNIC implements NIC, Logger
             throw new NICException(name + ": " + starttime + " is not available " +
                     "in the underlying medium");
 
-        now = starttime;
+        now = Time.toTicks(starttime);
     }
 
     /**
@@ -388,7 +488,7 @@ public class GSMNIC implements NIC, Logger
       */
     public double getTime()
     {
-        return now;
+        return Time.toSeconds(now);
     }
 
     /**
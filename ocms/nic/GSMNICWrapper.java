@@ -6,7 +6,6 @@
 
 package ocms.nic;
 
-import java.util.ArrayList;
 import java.util.HashSet;
 
 import ocms.eventqueue.Event;
@@ -33,6 +32,9 @@ public class GSMNICWrapper implements EventConsumer, Logger
     /** Name of the GSMNICWrapper */
     String name;
 
+    /** The first element of the details of the status events */
+    private static final String GSM = "GSM";
+
     /**
       * Constructs a wrapper object with the given GSM NIC object.
       * And initializes the GSM NIC.
@@ -74,55 +76,68 @@ public class GSMNICWrapper implements EventConsumer, Logger
 
         if (event.getType() != Event.COMMAND )
         {
-            Log.info(this, "do not know how to handle events of type " + event.getType() );
+            Log.info(this, "do not know how to handle events of type {}", event.getType() );
             return;
         }
 
-        Log.paranoid(this, "received " + event.toString());
+        Log.paranoid(this, "received {}", event);
 
-        ArrayList<Object> details = new ArrayList<Object>();
-        details.add("GSM");
+        Event reply = null;
 
         nic.step(event.getTime());
 
-        int command = (Integer)event.getDetails().get(1);
+        int command = event.getInt(1);
 
         if ( command == GSMNIC.OFF )
         {
             /* No other details are needed for this command */
             now = nic.turnOff();
-            Log.debug(this, "Going to step to " + (Double)event.getDetails().get(2));
-            nic.step((Double)event.getDetails().get(2));
+            Log.debug(this, "Going to step to {}", event.getDouble(2));
+            nic.step(event.getDouble(2));
             /* This is just to update now and has no side effect */
             now =  nic.turnOff();
-            details.add(nic.checkState().get(0));
+            reply = eventqueue.obtain(now, Event.STATUS, this, event.getSource());
+            reply.addObject(GSM);
+            reply.addInt(nic.getState());
         }
 
         if ( command ==  GSMNIC.DISCONNECTED )
         {
             /* No other details are needed for this command */
             now = nic.turnOn();
-            details.add(nic.checkState().get(0));
+            reply = eventqueue.obtain(now, Event.STATUS, this, event.getSource());
+            reply.addObject(GSM);
+            reply.addInt(nic.getState());
         }
 
         if ( command == GSMNIC.SCANNING)
         {
             /* No other details are needed for this command */
-            details.add(NIC.GSM);
             HashSet<Object> scanresult = new HashSet<Object>();
             now = nic.scan(scanresult);
-            details.add(scanresult);
+            reply = eventqueue.obtain(now, Event.STATUS, this, event.getSource());
+            reply.addObject(GSM);
+            reply.addInt(NIC.GSM);
+            reply.addObject(scanresult);
+        }
+
+        /* Unknown commands are answered with an empty status */
+        if (reply == null)
+        {
+            reply = eventqueue.obtain(now, Event.STATUS, this, event.getSource());
+            reply.addObject(GSM);
         }
 
 
-        //Log.debug(this, "sending"  + event.getDetails() + " to " + event.getSource().getName() );
+        //Log.debug(this, "sending"  + reply + " to " + event.getSource().getName() );
 
         try
         {
-            eventqueue.enqueue( new Event(now, Event.STATUS, this, event.getSource(), details));
+            eventqueue.enqueue( reply );
         }
         catch (Exception e)
         {
+            eventqueue.recycle(reply);
             System.out.println(name + " could not send reply message. " + e.toString() );
         }
 
@@ -16,9 +16,12 @@ import java.util.Iterator;
 import ocms.util.Log;
 import ocms.util.Logger;
 import ocms.util.Configuration;
+import ocms.util.Journal;
+import ocms.util.Time;
 import ocms.util.ProfileException;
 import ocms.dataset.Tuple;
 import ocms.dataset.DataSet;
+import ocms.dataset.Identifier;
 import ocms.medium.WiFiMedium;
 import ocms.medium.Medium;
 import ocms.nic.NICException;
@@ -56,8 +59,11 @@ public class WiFiNIC implements NIC, Logger
     /** The currently connected BSSID */
     String bssid;
 
-    /** Keeps the current time */
-    Double now;
+    /** The {@link ocms.dataset.Identifier} of the currently connected BSSID */
+    long address;
+
+    /** Keeps the current time, in ticks of {@link ocms.util.Time} */
+    long now;
 
     /** Keeps the transmission rate of the NIC */
     Integer sendrate;
@@ -69,8 +75,14 @@ public class WiFiNIC implements NIC, Logger
     Configuration config;
 
 
-    /** Keeps the transition times of transient states such as SCANNING */
-    HashMap<Integer, Double> transitiontimes;
+    /** Keeps the transition times (in ticks) of transient states such as SCANNING */
+    HashMap<Integer, Long> transitiontimes;
+
+    /** True if transmissions jump to the end of the connection instead of stepping through the medium */
+    boolean skipping;
+
+    /** The journal of the simulation, or null */
+    Journal journal;
 
 
     /** String name of the NIC states */
@@ -86,6 +98,12 @@ public class WiFiNIC implements NIC, Logger
     /** The default receive rate */
     private static final Integer DEFAULT_RECV_RATE          = 9216;
 
+    /** The transmission mode key */
+    private static final String TRANSMIT_MODE               = "transmit_mode";
+
+    /** STEP: transmission mode value that steps through every sample of the medium */
+    private static final String STEP_MODE                   = "STEP";
+
 
 
 
@@ -110,6 +128,8 @@ public class WiFiNIC implements NIC, Logger
     public static final int NOP                 = 8;
     /** A constant used for the transitive state of association */
     public static final int ASSOCIATION        = 9;
+    /** A constant used for sending a {@link ocms.schedulers.CommandPlan} to the NIC wrapper */
+    public static final int PLAN                = 10;
 
     /**
       * Static initializer
@@ -137,8 +157,9 @@ public class WiFiNIC implements NIC, Logger
         name = null;
         medium = null;
         state = OFF;
+        address = Identifier.NONE;
         power = new WiFiProfile();
-        now = (double)Integer.MIN_VALUE;
+        now = Time.toTicks(Integer.MIN_VALUE);
     }
 
     /**
@@ -153,7 +174,8 @@ public class WiFiNIC implements NIC, Logger
         this.name = name;
         this.state = OFF;
         this.bssid = null;
-        this.now = (double)Integer.MIN_VALUE;
+        this.address = Identifier.NONE;
+        this.now = Time.toTicks(Integer.MIN_VALUE);
         this.config = conf;
         this.medium = medium;
 
@@ -169,13 +191,16 @@ public class WiFiNIC implements NIC, Logger
         }
         */
 
-        transitiontimes = new HashMap<Integer, Double>(3);
-        transitiontimes.put( CONNECTED_SCANNING, config.getDouble("conscan_time") );
-        transitiontimes.put( DISC_SCANNING, config.getDouble("discscan_time") );
-        transitiontimes.put( ASSOCIATION, config.getDouble("association_time") );
+        transitiontimes = new HashMap<Integer, Long>(3);
+        transitiontimes.put( CONNECTED_SCANNING, Time.toTicks(config.getDouble("conscan_time")) );
+        transitiontimes.put( DISC_SCANNING, Time.toTicks(config.getDouble("discscan_time")) );
+        transitiontimes.put( ASSOCIATION, Time.toTicks(config.getDouble("association_time")) );
 
         setRate( config.getInt("datasendrate"), config.getInt("datarecvrate") );
 
+        /* The per-step transmission is kept as a reference for regression comparison */
+        skipping = !( config.hasKey(TRANSMIT_MODE) && config.get(TRANSMIT_MODE).equals(STEP_MODE) );
+
         
         /* Instatiating the internal profiles */
         power = new WiFiProfile("WiFi NIC " + name, config);
@@ -194,8 +219,8 @@ public class WiFiNIC implements NIC, Logger
             throw new NICException(name + ": " + starttime + " is not available " +
                     "in the underlying medium");
 
-        now = starttime;
-        power.initialize( now );
+        now = Time.toTicks(starttime);
+        power.initialize( getTime() );
     }
 
     /**
@@ -258,6 +283,16 @@ public class WiFiNIC implements NIC, Logger
             + config.getInt("con_to_disc") + config.getInt("disc_to_off");
     }
 
+    /**
+      * Returns the running cost of transmitting data.
+      *
+      * @return                         the energy cost per second of transmission
+      */
+    public int getTxCost()
+    {
+        return config.getInt("tx_run");
+    }
+
 
 
     /**
@@ -271,17 +306,62 @@ public class WiFiNIC implements NIC, Logger
     {
         ArrayList<Object> mystate = new ArrayList<Object>(2);
         mystate.add(state);
+        mystate.add(getBSSID());
+
+        return mystate;
+    }
+
+    /**
+      * Returns the state of the WiFi NIC without constructing the state array.
+      * The returned value should be checked against the public static fields of the 
+      * WIFINIC class.
+      *
+      * @return                         the current state of the NIC
+      */
+    public int getState()
+    {
+        return state;
+    }
+
+    /**
+      * Changes the state of the NIC and records the transition in the journal.
+      *
+      * @param      newstate            the new state
+      */
+    private void setState(int newstate)
+    {
+        if ( (journal != null) && (newstate != state) )
+            journal.transition(getTime(), NIC.WiFi, name, state, newstate);
+        state = newstate;
+    }
+
+    /**
+      * Sets the journal that records the state transitions of the NIC and
+      * the state changes of its profiles.
+      *
+      * @param      journal             the journal (null for no journal)
+      */
+    public void setJournal(Journal journal)
+    {
+        this.journal = journal;
+        power.setJournal(journal);
+    }
+
+    /**
+      * Returns the BSSID of the access point that the NIC is associated with.
+      * Returns null if the NIC is not associated.
+      *
+      * @return                         BSSID of the current access point or null
+      */
+    public String getBSSID()
+    {
         if ( (state == CONNECTED) || (state == CONNECTED_SCANNING) 
                 || (state == DATA_TX) || (state == DATA_RX)  )
         {
-            mystate.add( bssid );
-        }
-        else
-        {
-            mystate.add(null);
+            return bssid;
         }
 
-        return mystate;
+        return null;
     }
 
     /** 
@@ -294,43 +374,65 @@ public class WiFiNIC implements NIC, Logger
       * @return                         true if the step is successful
       */
     public boolean step(double time) 
+    {
+        return step( Time.toTicks(time) );
+    }
+
+    /** 
+      * Takes the WiFi NIC to a future time in ticks.
+      *
+      * @param      ticks               the time in ticks of {@link ocms.util.Time}
+      * @return                         true if the step is successful
+      */
+    private boolean step(long ticks)
     {
         boolean result = true;
         
-        Log.paranoid(this, "stepping to " + time );
+        Log.paranoid(this, "stepping to {}", Time.toSeconds(ticks) );
 
-        if (!medium.hasTime(time))
+        if (!medium.hasTime( Time.toSeconds(ticks) ))
         {
-            Log.stdout(this, "Error: medium does not have time " + time);
+            Log.stdout(this, "Error: medium does not have time " + Time.toSeconds(ticks));
             return false;
         }
 
         /* These states do not require checking the medium */
         if ( (state == OFF) || (state == DISCONNECTED) || (state == DISC_SCANNING) )
         {
-            now = time;
+            now = ticks;
             return true;
         }
 
-        /* If 'time' does not pass the next sample point, just move it, knowing that
+        /* If 'ticks' does not pass the next sample point, just move it, knowing that
            the environment does not change between sample points */
-        if ( medium.indexOf(time) < medium.indexOf(now) + medium.getTimeStep() )
+        long sample = medium.sampleOf(ticks);
+        if ( sample < medium.sampleOf(now) + timeStep() )
         {
-            now = time;
+            now = ticks;
         }
 
         /* Now call step() as much as possible */
-        while ( now < medium.indexOf(time) )
+        while ( now < sample )
             result &= step();
 
-        /* At this point 'time' does not pass the next sample point, Just move it, 
+        /* At this point 'ticks' does not pass the next sample point, Just move it, 
            knowing that the environment does not change between sample points */
-        if ( now < time )
-            now = time;
+        if ( now < ticks )
+            now = ticks;
 
         return result;
     }
 
+    /**
+      * Returns the time step of the medium in ticks.
+      *
+      * @return                         the time step of the medium in ticks
+      */
+    private long timeStep()
+    {
+        return medium.getTimeStep()*Time.RESOLUTION;
+    }
+
     /**
       * Takes the WiFi NIC one step into the fiture.
       * Returns true if the step is successful (i.e. could be double checked 
@@ -346,21 +448,21 @@ public class WiFiNIC implements NIC, Logger
         /* If 'now' is not at a sample point, first move it to the next sample point.
            No need to check time availability in the medium, because it has been checked
            when 'now' has passed the sample */
-        if ( now != medium.indexOf(now) )
+        if ( now != medium.sampleOf(now) )
         {
-            now = (double)medium.indexOf(now) + medium.getTimeStep();
+            now = medium.sampleOf(now) + timeStep();
 
             /* These states do not require checking the environment */
             if ( (state == OFF) || (state == DISCONNECTED) || (state == DISC_SCANNING) )
                 return true;
 
-            if ( !medium.checkAvailability(bssid, now ) )
+            if ( !medium.checkAvailability(address, getTime() ) )
             {
-                Log.info(this, "lost " + bssid);
+                Log.info(this, "lost {}", bssid);
     
                 try
                 {
-                    power.disconnect(now);
+                    power.disconnect(getTime());
                 }
                 catch (ProfileException pe)
                 {
@@ -368,7 +470,7 @@ public class WiFiNIC implements NIC, Logger
                            " while stepping the time. Details: " + pe.toString() );
                 }
     
-                state = DISCONNECTED;
+                setState(DISCONNECTED);
                 bssid = null;
             }
             return true;
@@ -378,21 +480,21 @@ public class WiFiNIC implements NIC, Logger
         
         /* At this point I know that 'now' is at a sample point */
 
-        if (!medium.hasTime( now + medium.getTimeStep() ) )
+        if (!medium.hasTime( Time.toSeconds(now + timeStep()) ) )
             return false;
 
         /* States that do not require looking at the medium */
-        now += medium.getTimeStep();
+        now += timeStep();
         if ( (state == OFF) || (state == DISCONNECTED) || (state == DISC_SCANNING) )
             return true;
 
-        if ( !medium.checkAvailability(bssid, now) )
+        if ( !medium.checkAvailability(address, getTime()) )
         {
-            Log.info(this, "lost " + bssid);
+            Log.info(this, "lost {}", bssid);
     
             try
             {
-                power.disconnect(now);
+                power.disconnect(getTime());
             }
             catch (ProfileException pe)
             {
@@ -401,7 +503,66 @@ public class WiFiNIC implements NIC, Logger
                         + pe.toString() );
             }
 
-            state = DISCONNECTED;
+            setState(DISCONNECTED);
+            bssid = null;
+        }
+
+        return true;
+    }
+
+    /**
+      * Takes the WiFi NIC to the end of a transmission in one jump.
+      * The NIC moves to the first sample point at which the associated BSSID is lost,
+      * or to the first sample point at or after 'endtime', whichever comes first.
+      * This is where the same number of calls to {@link #step()} would take it, but the
+      * time is found with {@link WiFiMedium#nextLoss} instead of checking every sample.
+      * Returns false, without moving, if the jump would pass the end of the medium; the
+      * caller should then fall back to {@link #step()}.
+      *
+      * @param      endtime             the time in ticks that transmission should stop
+      * @return                         true if the jump is made
+      */
+    private boolean skip(long endtime)
+    {
+        long timestep = timeStep();
+        boolean atsample = ( now == medium.sampleOf(now) );
+        long next = medium.sampleOf(now) + timestep;
+
+        /* The first sample point at or after 'endtime' */
+        long last = Time.NEVER;
+        if (endtime != Time.NEVER)
+        {
+            last = next;
+            if (endtime > next)
+                last = next + (endtime - next + timestep - 1)/timestep*timestep;
+        }
+
+        long loss = Time.toTicks( medium.nextLoss(address, Time.toSeconds(next)) );
+        long target = Math.min(loss, last);
+
+        /* step() checks the medium time of every sample point but the first one if 'now'
+           is not at a sample point */
+        if ( (target == Time.NEVER) || ( !medium.hasTime(Time.toSeconds(target)) && (atsample || (target != next)) ) )
+            return false;
+
+        now = target;
+
+        if (target == loss)
+        {
+            Log.info(this, "lost {}", bssid);
+
+            try
+            {
+                power.disconnect(getTime());
+            }
+            catch (ProfileException pe)
+            {
+                System.out.println(name + ": bad 'disconnect' command sent to NIC Profile" +
+                        " while stepping the time. Details: "
+                        + pe.toString() );
+            }
+
+            setState(DISCONNECTED);
             bssid = null;
         }
 
@@ -418,15 +579,15 @@ public class WiFiNIC implements NIC, Logger
     public double turnOff()
     {
         if ( state == OFF )
-            return now;
+            return getTime();
 
-        state = OFF;
+        setState(OFF);
         bssid = null;
 
         /* Updating the internal profiles */
         try
         {
-            power.turnOff(now);
+            power.turnOff(getTime());
         }
         catch (ProfileException pe)
         {
@@ -436,7 +597,7 @@ public class WiFiNIC implements NIC, Logger
         }
 
         Log.info( this, "disabled");
-        return now;
+        return getTime();
     }
 
     /**
@@ -449,16 +610,16 @@ public class WiFiNIC implements NIC, Logger
     public double  turnOn()
     {
         if (state != OFF)
-            return now;
+            return getTime();
 
-        state = DISCONNECTED;
+        setState(DISCONNECTED);
         bssid = null;
 
 
         /* Updating the internal profiles */
         try
         {
-            power.turnOn(now);
+            power.turnOn(getTime());
         }
         catch (ProfileException pe)
         {
@@ -467,7 +628,7 @@ public class WiFiNIC implements NIC, Logger
         }
 
         Log.info(this, "enabled");
-        return now;
+        return getTime();
     }
 
     /**
@@ -485,26 +646,27 @@ public class WiFiNIC implements NIC, Logger
         if (state == OFF)
             this.turnOn();
 
-        step( now + transitiontimes.get(ASSOCIATION));
+        step( now + transitiontimes.get(ASSOCIATION) );
+        long newaddress = Identifier.encode(newbssid);
 
         /* If the NIC is already connected to the desired AP */
-        if ( (bssid != null) && (this.bssid.equals(newbssid)) )
+        if ( (bssid != null) && (address == newaddress) )
         {
-            Log.debug(this, "Already connected to " + newbssid);
-            return now;
+            Log.debug(this, "Already connected to {}", newbssid);
+            return getTime();
         }
 
 
-        if (!medium.checkAvailability(newbssid, now) )
+        if (!medium.checkAvailability(newaddress, getTime()) )
         {
-            Log.info(this, " associating to " + newbssid + " failed");
-            state = DISCONNECTED;
+            Log.info(this, " associating to {} failed", newbssid);
+            setState(DISCONNECTED);
             throw new NICException("association failed");
         }
 
         try
         {
-            power.connect(now);
+            power.connect(getTime());
         }
         catch (ProfileException pe)
         {
@@ -512,12 +674,13 @@ public class WiFiNIC implements NIC, Logger
                    + "While associating Details: " + pe.toString() );
         }
 
-        state = CONNECTED;
+        setState(CONNECTED);
         this.bssid = newbssid;
+        this.address = newaddress;
 
-        Log.info(this, "associating " + newbssid + " succeeded");
+        Log.info(this, "associating {} succeeded", newbssid);
 
-        return now;
+        return getTime();
     }
 
 
@@ -535,13 +698,13 @@ public class WiFiNIC implements NIC, Logger
         if ( bssid == null ) 
         {
             Log.debug(this, "already disconnected");
-            return now;
+            return getTime();
         }
 
        
         try
         {
-            power.disconnect(now);
+            power.disconnect(getTime());
         }
         catch (ProfileException pe)
         {
@@ -550,11 +713,11 @@ public class WiFiNIC implements NIC, Logger
         }
 
         bssid = null;
-        state = DISCONNECTED;
+        setState(DISCONNECTED);
        
-        Log.info(this, "disassociating from " + bssid );
+        Log.info(this, "disassociating from {}", bssid );
         
-        return now;
+        return getTime();
     }
 
     /**
@@ -570,7 +733,7 @@ public class WiFiNIC implements NIC, Logger
         {
             try
             {
-                power.transmit(now);
+                power.transmit(getTime());
             }
             catch (ProfileException pe)
             {
@@ -578,7 +741,7 @@ public class WiFiNIC implements NIC, Logger
                        + "While starting transmission Details: " + pe.toString() );
             }
 
-            state = DATA_TX;
+            setState(DATA_TX);
             Log.info(this, "Transmission started");
             return true;
         }
@@ -600,7 +763,7 @@ public class WiFiNIC implements NIC, Logger
         {
             try
             {
-                power.connect(now);
+                power.connect(getTime());
             }
             catch (ProfileException pe)
             {
@@ -608,7 +771,7 @@ public class WiFiNIC implements NIC, Logger
                         + "While stopping transmission Details: " + pe.toString() );
             }
 
-            state = CONNECTED;
+            setState(CONNECTED);
             return true;
         }
         return false;
@@ -630,15 +793,17 @@ public class WiFiNIC implements NIC, Logger
         if ( !startTransmission() )
         {
             Log.debug(this, ": Transmission did not start successfully");
-            return now;                   //Transmission did not start successfully
+            return getTime();                   //Transmission did not start successfully
         }
 
-        if( endtime == 0 )
-            endtime = Double.MAX_VALUE;
+        long end = (endtime == 0) ? Time.NEVER : Time.toTicks(endtime);
 
         /* now run step until the connection is lost */
-        while ( (state == DATA_TX) && (now < endtime) )
+        while ( (state == DATA_TX) && (now < end) )
         {
+            if ( skipping && skip(end) )
+                continue;
+
             if (!step())
             {
                 /* This is a bad case, It means the NIC has been commanded
@@ -646,12 +811,12 @@ public class WiFiNIC implements NIC, Logger
                    supported to the medium. Nothing can be done, just give a notice
                    both in the log file and in the standard error. */
                 Log.info(this, "Logical error: Reached the end time in medium. " 
-                        + "Transmission end time should be less than " + now);
+                        + "Transmission end time should be less than {}", getTime());
 
                 System.err.println("Logical error: Reached the end time in medium. " 
-                        + "Simulation end time should be less than " + now 
+                        + "Simulation end time should be less than " + getTime() 
                         + "\n THE RESULTS ARE NOT RELIABLE");
-                return now;
+                return getTime();
             }
         }
 
@@ -661,7 +826,7 @@ public class WiFiNIC implements NIC, Logger
            and puts the NIC in CONNECTED mode again.*/
         stopTransmission();
 
-        return now;
+        return getTime();
         
     }
 
@@ -680,7 +845,7 @@ public class WiFiNIC implements NIC, Logger
         {
             try
             {
-                power.receive(now);
+                power.receive(getTime());
             }
             catch (ProfileException pe)
             {
@@ -688,7 +853,7 @@ public class WiFiNIC implements NIC, Logger
                         + "While starting receive Details: " + pe.toString() );
             }
 
-            state = DATA_RX;
+            setState(DATA_RX);
             return true;
         }
 
@@ -708,7 +873,7 @@ public class WiFiNIC implements NIC, Logger
         {
             try
             {
-                power.connect(now);
+                power.connect(getTime());
             }
             catch (ProfileException pe)
             {
@@ -716,7 +881,7 @@ public class WiFiNIC implements NIC, Logger
                         + "While stopping receive Details: " + pe.toString() );
             }
 
-            state = CONNECTED;
+            setState(CONNECTED);
             return true;
         }
         return false;
@@ -752,12 +917,12 @@ public class WiFiNIC implements NIC, Logger
         else
         {
             Log.debug(this, "Scan resulted in null");
-            return now;
+            return getTime();
         }
 
         try
         {
-            power.scan(now, scantype);
+            power.scan(getTime(), scantype);
         }
         catch (ProfileException pe)
         {
@@ -767,14 +932,14 @@ public class WiFiNIC implements NIC, Logger
 
         Log.info(this, "Scanning");
         step( now + transitiontimes.get( scantype ) );
-        scanresult =  medium.scan(now);
+        scanresult =  medium.scan(getTime());
 
         try
         {
             if (initialstate == CONNECTED)
-                power.connect(now);
+                power.connect(getTime());
             if (initialstate == DISCONNECTED)
-                power.disconnect(now);
+                power.disconnect(getTime());
         }
         catch (ProfileException pe)
         {
@@ -784,7 +949,7 @@ public class WiFiNIC implements NIC, Logger
 
         if ( scanresult != null)
         {
-            Log.paranoid(this, "Scan returned " + scanresult );
+            Log.paranoid(this, "Scan returned {}", scanresult );
     
             for (Iterator it = scanresult.iterator(); it.hasNext();)
             {
@@ -796,7 +961,7 @@ public class WiFiNIC implements NIC, Logger
             Log.paranoid(this, "Scan returned null" );
         }
 
-        return now;
+        return getTime();
     }
 
     /**
@@ -808,7 +973,7 @@ public class WiFiNIC implements NIC, Logger
     {
         Log.debug(this, "NOP");
         step();
-        return now;
+        return getTime();
     }
 
 
@@ -842,7 +1007,7 @@ public class WiFiNIC implements NIC, Logger
       */
     public double getTime()
     {
-        return now;
+        return Time.toSeconds(now);
     }
 
     /**
@@ -855,6 +1020,16 @@ public class WiFiNIC implements NIC, Logger
         return NIC.WiFi;
     }
 
+    /**
+      * Returns the profile that keeps track of the costs of the NIC.
+      *
+      * @return                         the profile of the WiFi NIC
+      */
+    public WiFiProfile getProfile()
+    {
+        return power;
+    }
+
     /**
       * Returns a string representation of the WiFiNIC object.
       * The string includes details of all the profiles that the WiFi NIC
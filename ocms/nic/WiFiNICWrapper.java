@@ -8,12 +8,14 @@ package ocms.nic;
 
 import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.Set;
 
 import ocms.eventqueue.Event;
 import ocms.eventqueue.EventQueue;
 import ocms.eventqueue.EventConsumer;
 import ocms.medium.WiFiMedium;
 import ocms.dataset.Tuple;
+import ocms.schedulers.CommandPlan;
 import ocms.util.Logger;
 import ocms.util.Log;
 
@@ -65,10 +67,16 @@ public class WiFiNICWrapper implements EventConsumer, Logger
       * stat that the NIC should transition to. If this command requires
       * any arguments, they are found in the next elements of the details
       * array. <br>
+      * The arguments of the command are read from the typed slots of the
+      * event ({@link Event#getInt}, {@link Event#getDouble}, {@link Event#getObject}).
       * After the command is executed by the WiFiNIC, an event of type
       * Event.STATUS is sent back. The first element of the details array of this 
       * event should be the current state of the NIC. The time of this event is 
       * set to the current time  of the NIC.
+      * <br>
+      * A WiFiNIC.PLAN command carries a {@link CommandPlan} in the next element,
+      * whose steps are executed until a status does not meet the condition of
+      * its step. Only that status is sent back.
       *
       * @param      event       the event to be handled
       * @param      eventqueue  reference to the caller of this method
@@ -79,50 +87,97 @@ public class WiFiNICWrapper implements EventConsumer, Logger
 
         if (event.getType() != Event.COMMAND )
         {
-            Log.info(this, "do not know how to handle events of type " + event.getType() );
+            Log.info(this, "do not know how to handle events of type {}", event.getType() );
             return;
         }
 
-        Log.paranoid(this, "received " + event.toString());
+        Log.paranoid(this, "received {}", event);
 
-        ArrayList<Object> details = new ArrayList<Object>();
+        Event reply = null;
 
         nic.step(event.getTime());
 
-        int command = (Integer)event.getDetails().get(1);
+        int command = event.getInt(1);
+
+        if ( command == WiFiNIC.PLAN )
+            reply = execute( (CommandPlan)event.getObject(2), eventqueue, event.getSource() );
+        else
+        {
+            /* The end time of OFF and DATA_TX and the BSSID of CONNECTED are the
+             next element of details of the event */
+            double time = 0;
+            Object argument = null;
+            if ( (command == WiFiNIC.OFF) || (command == WiFiNIC.DATA_TX) )
+                time = event.getDouble(2);
+            if ( command == WiFiNIC.CONNECTED )
+                argument = event.getObject(2);
+
+            reply = execute(command, time, argument, eventqueue, event.getSource());
+        }
+
+
+        //Log.debug(this, "sending"  + reply + " to " + event.getSource().getName() );
+
+        try
+        {
+            eventqueue.enqueue( reply );
+        }
+        catch (Exception e)
+        {
+            eventqueue.recycle(reply);
+            System.out.println(name + " could not send reply message. " + e.toString() );
+        }
+
+    }
+
+    /**
+      * Executes a command and returns the status that should be sent back.
+      *
+      * @param      command     the command
+      * @param      time        the end time of OFF and DATA_TX
+      * @param      argument    the BSSID of CONNECTED
+      * @param      eventqueue  the event queue the status is obtained from
+      * @param      dest        the destination of the status
+      * @return                 the status event, not yet enqueued
+      */
+    private Event execute(int command, double time, Object argument, EventQueue eventqueue, EventConsumer dest)
+    {
+        Event reply = null;
 
         if ( command == WiFiNIC.OFF )
         {
             /* No other details are needed for this command */
             now = nic.turnOff();
-            Log.debug(this, "Going to step to " + (Double)event.getDetails().get(2));
-            nic.step((Double)event.getDetails().get(2));
+            Log.debug(this, "Going to step to {}", time);
+            nic.step(time);
             /* This is just to update now and has no side effect */
             now =  nic.turnOff();
-            details.add(nic.checkState().get(0));
+            reply = eventqueue.obtain(now, Event.STATUS, this, dest);
+            reply.addInt(nic.getState());
         }
 
         if ( command ==  WiFiNIC.ON )
         {
             /* No other details are needed for this command */
             now = nic.turnOn();
-            details.add(nic.checkState().get(0));
+            reply = eventqueue.obtain(now, Event.STATUS, this, dest);
+            reply.addInt(nic.getState());
         }
 
         if ( command == WiFiNIC.CONNECTED )
         {
-            /* The BSSID to connect to should be the next element of details 
-             of the event */
             try
             {
-                now = nic.associate((String)event.getDetails().get(2) );
-                details.add(nic.checkState().get(0));
-                details.add(nic.checkState().get(1));
+                now = nic.associate((String)argument );
+                reply = eventqueue.obtain(now, Event.STATUS, this, dest);
+                reply.addInt(nic.getState());
+                reply.addObject(nic.getBSSID());
 
             }
             catch (NICException ne)
             {
-                details.add(nic.ASSOCIATION);
+                reply = eventqueue.obtain(now, Event.STATUS, this, dest);
+                reply.addInt(nic.ASSOCIATION);
             }
         }
 
@@ -130,40 +185,91 @@ public class WiFiNICWrapper implements EventConsumer, Logger
         if ( command == WiFiNIC.DISC_SCANNING)
         {
             /* No other details are needed for this command */
-            details.add(WiFiNIC.DISC_SCANNING);
             HashSet<Object> scanresult = new HashSet<Object>();
             now = nic.scan(scanresult);
-            details.add(scanresult);
+            reply = eventqueue.obtain(now, Event.STATUS, this, dest);
+            reply.addInt(WiFiNIC.DISC_SCANNING);
+            reply.addObject(scanresult);
         }
 
         if (command == WiFiNIC.DATA_TX )
         {
-            /* The end time of data transmission should be the next element of details 
-            of the event */
-            double endtime = (Double) event.getDetails().get(2);
-            now = nic.transmit( endtime );
-            details.add( nic.checkState().get(0));
+            now = nic.transmit( time );
+            reply = eventqueue.obtain(now, Event.STATUS, this, dest);
+            reply.addInt(nic.getState());
         }
 
         if (command == WiFiNIC.NOP )
         {
             now = nic.nop();
-            details.add( nic.checkState().get(0));
+            reply = eventqueue.obtain(now, Event.STATUS, this, dest);
+            reply.addInt(nic.getState());
         }
 
+        /* Unknown commands are answered with an empty status */
+        if (reply == null)
+            reply = eventqueue.obtain(now, Event.STATUS, this, dest);
 
+        return reply;
+    }
 
-        //Log.debug(this, "sending"  + event.getDetails() + " to " + event.getSource().getName() );
+    /**
+      * Executes the steps of a plan and returns the status that should be sent back.
+      * The status of a step that meets its condition is dropped and the next
+      * step is executed at the time of the status, as if the scheduler had
+      * returned it. The wrapper stops at the first status that does not meet
+      * its condition, or at the end time of the plan.
+      *
+      * @param      plan        the plan
+      * @param      eventqueue  the event queue the status is obtained from
+      * @param      dest        the destination of the status
+      * @return                 the status event, not yet enqueued
+      */
+    private Event execute(CommandPlan plan, EventQueue eventqueue, EventConsumer dest)
+    {
+        int step = 0;
 
-        try
-        {
-            eventqueue.enqueue( new Event(now, Event.STATUS, this, event.getSource(), details));
-        }
-        catch (Exception e)
+        while (true)
         {
-            System.out.println(name + " could not send reply message. " + e.toString() );
+            ArrayList command = plan.getCommand(step);
+            int type = (Integer) command.get(1);
+            double time = 0;
+            Object argument = null;
+            if ( type == WiFiNIC.OFF )
+                time = plan.getOffTime(step, now);
+            if ( type == WiFiNIC.DATA_TX )
+                time = (Double) command.get(2);
+            if ( type == WiFiNIC.CONNECTED )
+                argument = command.get(2);
+
+            Log.debug(this, "Plan step {}", command);
+            Event reply = execute(type, time, argument, eventqueue, dest);
+
+            if ( (now >= plan.getEndTime()) || !meets(reply, plan.getCondition(step)) )
+                return reply;
+
+            eventqueue.recycle(reply);
+            nic.step(now);
+            step = plan.getNext(step);
         }
+    }
+
+    /**
+      * Returns true if a status meets the condition of a plan step.
+      *
+      * @param      reply       the status
+      * @param      condition   the condition of the step
+      * @return                 true if the plan should go on
+      */
+    private boolean meets(Event reply, int condition)
+    {
+        if ( (condition == CommandPlan.REPORT) || (reply.getArgCount() == 0) )
+            return false;
+
+        if (condition == CommandPlan.EMPTY)
+            return (reply.getInt(0) == WiFiNIC.DISC_SCANNING) && ((Set)reply.getObject(1)).isEmpty();
 
+        return reply.getInt(0) == condition;
     }
 
     /**
@@ -7,8 +7,10 @@
 
 package ocms.nic;
 
-import ocms.util.Profile;
+import ocms.util.Journal;
+import ocms.util.IndexedProfile;
 import ocms.util.ProfileException;
+import ocms.util.ProfileTimeline;
 import ocms.util.Configuration;
 
 import java.math.MathContext;
@@ -16,22 +18,28 @@ import java.math.BigDecimal;
 
 
 /** 
-  * Wraps a Profile several objects, configures and manges them for a WiFi NIC.
-  * The Profiles are: Power, sent, and received Data
+  * Keeps the costs of a WiFi NIC in an {@link IndexedProfile}.
+  * The profile has three channels: Power, sent, and received Data. Its states
+  * are the states of {@link WiFiNIC}, so each method changes all the channels
+  * in one call. The data channels only count in the DATA_TX and DATA_RX states,
+  * and they are not changed by scanning.
   * 
   *
   * @author Hossein Falaki
   */
 public class WiFiProfile
 {
-    /** The Profile object that keeps track of the power cost */
-    Profile powerprofile;
+    /** The channel that keeps track of the power cost */
+    static final int POWER                      = 0;
 
-    /** The profile object that keeps track of sent data */
-    Profile sentdata;
+    /** The channel that keeps track of sent data */
+    static final int SENT                       = 1;
 
-    /** The profile object that keeps track of received data */
-    Profile receiveddata;
+    /** The channel that keeps track of received data */
+    static final int RECEIVED                   = 2;
+
+    /** The profile that keeps track of the costs */
+    IndexedProfile profile;
 
     /** The name of this WiFi NIC */
     String name;
@@ -50,6 +58,9 @@ public class WiFiProfile
     /** Constant used in the constructor for the default costs */
     private static final int DEFAULT_COST       = 0;
 
+    /** Number of the states of the WiFi NIC */
+    private static final int STATES             = 7;
+
 
     /**
       * Constructs an empty WiFiProfile instance with the no states registered.
@@ -57,9 +68,7 @@ public class WiFiProfile
       */
     public WiFiProfile()
     {
-        powerprofile = new Profile();
-        sentdata = new Profile();
-        receiveddata = new Profile();
+        profile = new IndexedProfile(new String[] {null, null, null}, new String[] {null, null, null});
         name = null;
     }
 
@@ -75,58 +84,49 @@ public class WiFiProfile
     {
         this.name = name;
 
-        /* Constructing and configuring the power profile                           */
-        /* The exception is not passed up, because no exception should occur here.  */
-        powerprofile = new Profile(name + " Power Profile", "Joule");
-        try
-        {
-            powerprofile.registerState(STATE + WiFiNIC.OFF, 0, DEFAULT_COST);
-            powerprofile.registerState(STATE + WiFiNIC.DISCONNECTED, conf.getInt("disc_run"), DEFAULT_COST);
-            powerprofile.registerState(STATE + WiFiNIC.CONNECTED, conf.getInt("con_run") , DEFAULT_COST);
-            powerprofile.registerState(STATE + WiFiNIC.DISC_SCANNING, conf.getInt("discscan_run"), DEFAULT_COST);
-            powerprofile.registerState(STATE + WiFiNIC.CONNECTED_SCANNING, conf.getInt("conscan_run"), DEFAULT_COST);
-            powerprofile.registerState(STATE + WiFiNIC.DATA_TX, conf.getInt("tx_run"), DEFAULT_COST);
-            powerprofile.registerState(STATE + WiFiNIC.DATA_RX, conf.getInt("rx_run"), DEFAULT_COST);
-
-            powerprofile.setTransitionCost( STATE + WiFiNIC.OFF, STATE + WiFiNIC.DISCONNECTED
-                    , conf.getInt("off_to_disc") );
-            powerprofile.setTransitionCost( STATE + WiFiNIC.DISCONNECTED, STATE + WiFiNIC.OFF
-                    , conf.getInt("disc_to_off") );
-            powerprofile.setTransitionCost( STATE + WiFiNIC.DISCONNECTED, STATE + WiFiNIC.CONNECTED
-                    , conf.getInt("disc_to_con") );
-            powerprofile.setTransitionCost( STATE + WiFiNIC.CONNECTED, STATE + WiFiNIC.DISCONNECTED
-                    , conf.getInt("con_to_disc") );
-
-        }
-        catch (Exception e)
-        {
-            System.out.println("WiFiProfile constructor got an exception " + e.toString() + 
-                    " .This might be an implementation problem. Please report this bug to mhfalaki@uwaterloo.ca");
-            e.printStackTrace();
-        }
+        profile = new IndexedProfile(
+                new String[] {name + " Power Profile", name + " Sent Data", name + " Received Data"}
+                , new String[] {"Joule", "Kb", "Kb"} );
 
-        /* Constructing and configuring the sent data profile                       */
-        /* The exception is not passed up, because no exception should occur here.  */
-        sentdata = new Profile(name + " Sent Data", "Kb");
-        try
-        {
-            sentdata.registerState(STATE + WiFiNIC.OFF, 0, 0);
-            sentdata.registerState(STATE + WiFiNIC.DATA_TX, conf.getInt("datasendrate"), 0);
-        }
-        catch (Exception e)
-        {
-            System.out.println("WiFiProfile constructor got an exception " + e.toString() + 
-                    " .This might be an implementation problem. Please report this bug to mhfalaki@uwaterloo.ca");
-            e.printStackTrace();
-        }
+        /* The states are registered in order, so their indices are the WiFiNIC states */
+        for (int state = 0; state < STATES; state++)
+            profile.addState(STATE + state);
 
-        /* Constructing and configuring the received data profile                   */
         /* The exception is not passed up, because no exception should occur here.  */
-        receiveddata = new Profile(name + " Sent Data", "Kb");
         try
         {
-            receiveddata.registerState(STATE + WiFiNIC.OFF, 0, 0);
-            receiveddata.registerState(STATE + WiFiNIC.DATA_RX, conf.getInt("datarecvrate"), 0);
+            /* Configuring the power channel */
+            profile.setRunningCost(POWER, WiFiNIC.DISCONNECTED, conf.getInt("disc_run"));
+            profile.setRunningCost(POWER, WiFiNIC.CONNECTED, conf.getInt("con_run"));
+            profile.setRunningCost(POWER, WiFiNIC.DISC_SCANNING, conf.getInt("discscan_run"));
+            profile.setRunningCost(POWER, WiFiNIC.CONNECTED_SCANNING, conf.getInt("conscan_run"));
+            profile.setRunningCost(POWER, WiFiNIC.DATA_TX, conf.getInt("tx_run"));
+            profile.setRunningCost(POWER, WiFiNIC.DATA_RX, conf.getInt("rx_run"));
+            for (int state = 0; state < STATES; state++)
+                profile.setDefaultCost(POWER, state, DEFAULT_COST);
+
+            profile.setTransitionCost(POWER, WiFiNIC.OFF, WiFiNIC.DISCONNECTED, conf.getInt("off_to_disc"));
+            profile.setTransitionCost(POWER, WiFiNIC.DISCONNECTED, WiFiNIC.OFF, conf.getInt("disc_to_off"));
+            profile.setTransitionCost(POWER, WiFiNIC.DISCONNECTED, WiFiNIC.CONNECTED, conf.getInt("disc_to_con"));
+            profile.setTransitionCost(POWER, WiFiNIC.CONNECTED, WiFiNIC.DISCONNECTED, conf.getInt("con_to_disc"));
+
+            /* Configuring the data channels: they are OFF unless data is transferred */
+            profile.setRunningCost(SENT, WiFiNIC.DATA_TX, conf.getInt("datasendrate"));
+            profile.setRunningCost(RECEIVED, WiFiNIC.DATA_RX, conf.getInt("datarecvrate"));
+            for (int state = 0; state < STATES; state++)
+            {
+                if ( (state == WiFiNIC.DISC_SCANNING) || (state == WiFiNIC.CONNECTED_SCANNING) )
+                {
+                    profile.setTarget(SENT, state, IndexedProfile.KEEP);
+                    profile.setTarget(RECEIVED, state, IndexedProfile.KEEP);
+                    continue;
+                }
+
+                if (state != WiFiNIC.DATA_TX)
+                    profile.setTarget(SENT, state, WiFiNIC.OFF);
+                if (state != WiFiNIC.DATA_RX)
+                    profile.setTarget(RECEIVED, state, WiFiNIC.OFF);
+            }
         }
         catch (Exception e)
         {
@@ -134,8 +134,6 @@ public class WiFiProfile
                     " .This might be an implementation problem. Please report this bug to mhfalaki@uwaterloo.ca");
             e.printStackTrace();
         }
-
-
     }
 
     /**
@@ -147,9 +145,7 @@ public class WiFiProfile
     {
         try
         {
-            powerprofile.initialize(STATE + WiFiNIC.OFF, time);
-            sentdata.initialize(STATE + WiFiNIC.OFF, time);
-            receiveddata.initialize(STATE + WiFiNIC.OFF, time);
+            profile.initialize(WiFiNIC.OFF, time);
         }
         catch (ProfileException pe)
         {
@@ -164,26 +160,22 @@ public class WiFiProfile
       * Initially after turning on the WiFi is in DISCONNECTED state
       *
       * @param      time                the time to turn on the NIC
-      * @throws     ProfileException    passes the possible exceptions from {@link Profile}
+      * @throws     ProfileException    passes the possible exceptions from {@link IndexedProfile}
       */
     public void turnOn(double time) throws ProfileException
     {
-        powerprofile.changeState(STATE + WiFiNIC.DISCONNECTED, time);
-        sentdata.changeState(STATE + WiFiNIC.OFF, time );
-        receiveddata.changeState(STATE + WiFiNIC.OFF, time );
+        profile.changeState(WiFiNIC.DISCONNECTED, time);
     }
 
     /**
       * Turns the WiFi NIC off.
       * 
       * @param      time                the time to turn the NIC off
-      * @throws     ProfileException    passes the possible exceptions from {@link Profile}
+      * @throws     ProfileException    passes the possible exceptions from {@link IndexedProfile}
       */
     public void turnOff(double time) throws ProfileException
     {
-        powerprofile.changeState(STATE + WiFiNIC.OFF, time);
-        sentdata.changeState(STATE + WiFiNIC.OFF, time );
-        receiveddata.changeState(STATE + WiFiNIC.OFF, time );
+        profile.changeState(WiFiNIC.OFF, time);
     }
 
     /**
@@ -192,54 +184,44 @@ public class WiFiProfile
       * the NIC becomes CONNECTED after this call.
       *
       * @param      time                the time to become CONNECTED
-      * @throws     ProfileException    passes the possible exceptions from {@link Profile}
+      * @throws     ProfileException    passes the possible exceptions from {@link IndexedProfile}
       */
     public void connect(double time) throws ProfileException
     {
-        powerprofile.changeState(STATE + WiFiNIC.CONNECTED, time);
-        sentdata.changeState(STATE + WiFiNIC.OFF, time );
-        receiveddata.changeState(STATE + WiFiNIC.OFF, time );
+        profile.changeState(WiFiNIC.CONNECTED, time);
     }
 
     /**
       * Disassociates from any access point it is connected to.
       * 
       * @param      time                the time to get disconnected
-      * @throws     ProfileException    passess the possible exceptions from {@link Profile}
+      * @throws     ProfileException    passess the possible exceptions from {@link IndexedProfile}
       */
     public void disconnect(double time) throws ProfileException
     {
-        powerprofile.changeState(STATE + WiFiNIC.DISCONNECTED, time);
-        sentdata.changeState(STATE + WiFiNIC.OFF, time );
-        receiveddata.changeState(STATE + WiFiNIC.OFF, time );
-
+        profile.changeState(WiFiNIC.DISCONNECTED, time);
     }
 
     /**
       * Transmits data.
       *
       * @param     time                 the time to start transmission 
-      * @throws     ProfileException    passess the possible exceptions from {@link Profile}
+      * @throws     ProfileException    passess the possible exceptions from {@link IndexedProfile}
       */
     public void transmit(double time) throws ProfileException
     {
-        powerprofile.changeState(STATE + WiFiNIC.DATA_TX, time);
-        sentdata.changeState(STATE + WiFiNIC.DATA_TX, time);
-        receiveddata.changeState(STATE + WiFiNIC.OFF, time );
+        profile.changeState(WiFiNIC.DATA_TX, time);
     }
 
     /**
       * Receives data.
       *
       * @param      time                the time to start receiving
-      * @throws     ProfileException    passess the possible exceptions from {@link Profile}
+      * @throws     ProfileException    passess the possible exceptions from {@link IndexedProfile}
       */
     public void receive(double time) throws ProfileException
     {
-        powerprofile.changeState(STATE + WiFiNIC.DATA_RX, time);
-        receiveddata.changeState(STATE + WiFiNIC.DATA_RX, time);
-        sentdata.changeState(STATE + WiFiNIC.OFF, time );
-
+        profile.changeState(WiFiNIC.DATA_RX, time);
     }
 
     /**
@@ -252,15 +234,64 @@ public class WiFiProfile
       *
       * @param      time                the time to start scanning
       * @param      scantype            the type of scanning
-      * @throws     ProfileException    passess the possible exceptions from {@link Profile}
+      * @throws     ProfileException    passess the possible exceptions from {@link IndexedProfile}
       */
     public void scan(double time, int scantype) throws ProfileException
     {
-        if (scantype == WiFiNIC.CONNECTED_SCANNING )
-            powerprofile.changeState(STATE + WiFiNIC.CONNECTED_SCANNING, time );
+        if ( (scantype == WiFiNIC.CONNECTED_SCANNING) || (scantype == WiFiNIC.DISC_SCANNING) )
+            profile.changeState(scantype, time);
+    }
+
+    /**
+      * Returns the amount of data sent up to now.
+      *
+      * @return                 sent data
+      */
+    public double getSentData()
+    {
+        return profile.getCost(SENT);
+    }
+
+    /**
+      * Returns the amount of data received up to now.
+      *
+      * @return                 received data
+      */
+    public double getReceivedData()
+    {
+        return profile.getCost(RECEIVED);
+    }
+
+    /**
+      * Returns the energy consumed up to now.
+      *
+      * @return                 consumed energy
+      */
+    public double getEnergy()
+    {
+        return profile.getCost(POWER);
+    }
+
+    /**
+      * Sets the journal that records the state changes of the profiles.
+      *
+      * @param      journal             the journal (null for no journal)
+      */
+    public void setJournal(Journal journal)
+    {
+        profile.setJournal(journal);
+    }
 
-        if (scantype == WiFiNIC.DISC_SCANNING )
-            powerprofile.changeState(STATE + WiFiNIC.DISC_SCANNING, time );
+    /**
+      * Starts recording the timelines of the power, sent data and received data.
+      *
+      * @param      resolution          the length of the buckets of the timelines in seconds
+      * @return                         the timelines
+      */
+    public ProfileTimeline[] createTimelines(double resolution)
+    {
+        return new ProfileTimeline[] { profile.createTimeline(POWER, resolution)
+            , profile.createTimeline(SENT, resolution), profile.createTimeline(RECEIVED, resolution) };
     }
 
     /**
@@ -270,12 +301,8 @@ public class WiFiProfile
       */
     public String toString()
     {
-        //return " " + powerprofile.getCost() / sentdata.getCost();
-        //return "" + new BigDecimal(sentdata.getCost(), mc) + " " + new BigDecimal( powerprofile.getCost(), mc);
-        return "" + new BigDecimal((sentdata.getCost()), mc) + " " 
-            + new BigDecimal(powerprofile.getCost(), mc);
-        //return "" + (sentdata.getCost()/1048576) + " " + (powerprofile.getCost()/1000000);
-        //return powerprofile.toString() + "\n" + sentdata.toString() + "\n" + receiveddata.toString();
+        return "" + new BigDecimal(profile.getCost(SENT), mc) + " " 
+            + new BigDecimal(profile.getCost(POWER), mc);
     }
 
 
@@ -0,0 +1,238 @@
+ /**
+  * Opportunistic Connectivity Management Simulator
+  *
+  * Copyright (C) 2007 Hossein Falaki
+  */
+
+package ocms.schedulers;
+
+import java.util.ArrayList;
+
+import ocms.nic.NIC;
+import ocms.nic.WiFiNIC;
+
+
+/**
+  * A sequence of commands that a WiFi NIC wrapper executes without querying the scheduler.
+  * Each step is a command in the format returned by {@link Scheduler#query}
+  * and a condition on the status that the NIC reports after the command: the
+  * state the NIC should be in, or {@link #EMPTY} for a scan that found no access
+  * point. If the status meets the condition the wrapper goes on to the next step
+  * of the plan, otherwise it sends the status to the scheduler, which makes the
+  * next decision. The status of the last step (or of a step with the condition
+  * {@link #REPORT}) is always sent to the scheduler.
+  * <br>
+  * A step may go back to an earlier step, so a plan like "OFF until t, then ON,
+  * then scan; if the scan is empty OFF for an interval and ON again" runs until
+  * a scan finds an access point. The wrapper stops at the end time of the plan,
+  * like the event queue does.
+  *
+  * @author     Hossein Falaki
+  */
+public class CommandPlan
+{
+    /** The condition of a step whose status is always sent to the scheduler */
+    public static final int REPORT              = -1;
+
+    /** The condition of a scan that found no access point */
+    public static final int EMPTY               = -2;
+
+    /** The commands of the steps */
+    private ArrayList<ArrayList> commands;
+
+    /** The lengths of the OFF periods of the steps, or NaN if the command has its own end time */
+    private ArrayList<Double> durations;
+
+    /** The conditions of the steps */
+    private ArrayList<Integer> conditions;
+
+    /** The next steps of the steps */
+    private ArrayList<Integer> nexts;
+
+    /** The time after which no command is executed */
+    private double endtime;
+
+
+    /**
+      * Constructs a plan whose first step is a command of the scheduler.
+      *
+      * @param      command         the command, in the format of {@link Scheduler#query}
+      * @param      endtime         end time of the scheduler
+      */
+    public CommandPlan(ArrayList command, double endtime)
+    {
+        this.endtime = endtime;
+        commands = new ArrayList<ArrayList>(4);
+        durations = new ArrayList<Double>(4);
+        conditions = new ArrayList<Integer>(4);
+        nexts = new ArrayList<Integer>(4);
+        add(command);
+    }
+
+    /**
+      * Appends a command to the plan.
+      * The previous step goes on to this one if its status meets the condition.
+      *
+      * @param      condition       the condition of the previous step
+      * @param      command         the command, in the format of {@link Scheduler#query}
+      * @return                     index of the new step
+      */
+    public int then(int condition, ArrayList command)
+    {
+        conditions.set(size() - 1, condition);
+        return add(command);
+    }
+
+    /**
+      * Appends a WiFi command without arguments to the plan.
+      *
+      * @param      condition       the condition of the previous step
+      * @param      command         the command, such as WiFiNIC.ON or WiFiNIC.DISC_SCANNING
+      * @return                     index of the new step
+      */
+    public int then(int condition, int command)
+    {
+        ArrayList<Object> step = new ArrayList<Object>(2);
+        step.add(NIC.WiFi);
+        step.add(command);
+        return then(condition, step);
+    }
+
+    /**
+      * Appends an OFF period of a given length to the plan.
+      * The NIC is turned off until the floor of the time the step starts plus the
+      * duration, or until the end time of the plan if that is earlier.
+      *
+      * @param      condition       the condition of the previous step
+      * @param      duration        length of the OFF period
+      * @return                     index of the new step
+      */
+    public int thenOff(int condition, double duration)
+    {
+        ArrayList<Object> step = new ArrayList<Object>(3);
+        step.add(NIC.WiFi);
+        step.add(WiFiNIC.OFF);
+        step.add(0.0);
+        int index = then(condition, step);
+        durations.set(index, duration);
+        return index;
+    }
+
+    /**
+      * Makes the last step go back to an earlier step if its status meets the condition.
+      *
+      * @param      condition       the condition of the last step
+      * @param      step            index of the step to go back to
+      */
+    public void loop(int condition, int step)
+    {
+        conditions.set(size() - 1, condition);
+        nexts.set(size() - 1, step);
+    }
+
+    /**
+      * Appends a step.
+      *
+      * @param      command         the command of the step
+      * @return                     index of the step
+      */
+    private int add(ArrayList command)
+    {
+        commands.add(command);
+        durations.add(Double.NaN);
+        conditions.add(REPORT);
+        nexts.add(commands.size());
+        return commands.size() - 1;
+    }
+
+    /**
+      * Returns the number of steps.
+      *
+      * @return                     number of steps
+      */
+    public int size()
+    {
+        return commands.size();
+    }
+
+    /**
+      * Returns the command of a step.
+      *
+      * @param      step            index of the step
+      * @return                     the command, in the format of {@link Scheduler#query}
+      */
+    public ArrayList getCommand(int step)
+    {
+        return commands.get(step);
+    }
+
+    /**
+      * Returns the time a step starting at the given time turns the NIC off until.
+      *
+      * @param      step            index of an OFF step
+      * @param      now             the time the step starts
+      * @return                     the end of the OFF period
+      */
+    public double getOffTime(int step, double now)
+    {
+        double duration = durations.get(step);
+        if (Double.isNaN(duration))
+            return (Double) commands.get(step).get(2);
+
+        double time = now + duration;
+        if (time > endtime)
+            time = endtime;
+
+        return Math.floor(time);
+    }
+
+    /**
+      * Returns the condition of a step.
+      *
+      * @param      step            index of the step
+      * @return                     the state the NIC should be in, {@link #EMPTY} or {@link #REPORT}
+      */
+    public int getCondition(int step)
+    {
+        return conditions.get(step);
+    }
+
+    /**
+      * Returns the step that follows a step whose condition is met.
+      *
+      * @param      step            index of the step
+      * @return                     index of the next step, or the number of steps after the last one
+      */
+    public int getNext(int step)
+    {
+        return nexts.get(step);
+    }
+
+    /**
+      * Returns the time after which no command is executed.
+      *
+      * @return                     end time of the plan
+      */
+    public double getEndTime()
+    {
+        return endtime;
+    }
+
+    public String toString()
+    {
+        StringBuffer sb = new StringBuffer("[");
+        for (int i = 0; i < size(); i++)
+        {
+            if (i > 0)
+                sb.append(", ");
+            sb.append(commands.get(i));
+            if ( !Double.isNaN(durations.get(i)) )
+                sb.append(" for " + durations.get(i));
+            if (conditions.get(i) != REPORT)
+                sb.append(" if " + conditions.get(i) + " -> " + nexts.get(i));
+        }
+        sb.append("]");
+
+        return sb.toString();
+    }
+}
@@ -0,0 +1,41 @@
+ /**
+  * Opportunistic Connectivity Management Simulator
+  *
+  * Copyright (C) 2007 Hossein Falaki
+  */
+
+package ocms.schedulers;
+
+import java.util.ArrayList;
+
+
+/**
+  * A scheduler that can plan the commands that follow a decision.
+  * Many decisions of a scheduler are predictable: after turning the NIC off
+  * until some time, a back-off scheduler turns it on and scans. Instead of a
+  * single command, a planning scheduler returns a {@link CommandPlan} that the
+  * NIC wrapper executes without sending a status to the scheduler after every
+  * command, and the scheduler is queried again only when the plan does not
+  * cover the status of the NIC.
+  * <br>
+  * Schedulers that only implement {@link Scheduler#query} are not affected.
+  *
+  * @author     Hossein Falaki
+  */
+public interface PlanningScheduler extends Scheduler
+{
+    /**
+      * Queries the scheduler for a plan.
+      * The context is the same as that of {@link Scheduler#query}, and the first
+      * step of the plan is the command that query would return. The scheduler
+      * should only plan the steps whose commands it would return to the queries
+      * it does not receive, without any change to its own state.
+      *
+      * @param          context             array of the information that might affect
+      *                                     the result of the query
+      * @return                             the plan, with at least one step
+      * @throws         SchedulerException  if the scheduler has not been initialized or
+      *                                     any other problem
+      */
+    public CommandPlan plan(ArrayList context) throws SchedulerException;
+}
@@ -6,7 +6,6 @@
 
 package ocms.schedulers;
 
-import java.util.Iterator;
 import java.util.ArrayList;
 
 
@@ -14,6 +13,7 @@ import ocms.eventqueue.Event;
 import ocms.eventqueue.EventConsumer;
 import ocms.eventqueue.EventQueue;
 import ocms.nic.NIC;
+import ocms.nic.WiFiNIC;
 
 
 
@@ -33,6 +33,12 @@ public class SchedulerWrapper implements EventConsumer
     /** The WiFi NIC wrapper address */
     EventConsumer wifinic;
 
+    /** The context array passed to the scheduler */
+    private ArrayList<Object> context;
+
+    /** If set, the plans of a PlanningScheduler are sent to the WiFi NIC */
+    private boolean planning;
+
     /**
       * Constructs a wrapper object with the given scheduler object.
       *
@@ -45,6 +51,7 @@ public class SchedulerWrapper implements EventConsumer
         this.scheduler = scheduler;
         this.gsmnic = gsmnic;
         this.wifinic = wifinic;
+        this.context = new ArrayList<Object>();
     }
 
     /**
@@ -61,9 +68,28 @@ public class SchedulerWrapper implements EventConsumer
         scheduler.initialize(goal, energysens, delaysens);
     }
 
+    /**
+      * Enables or disables the plans of the scheduler.
+      * If enabled and the scheduler is a {@link PlanningScheduler}, the wrapper
+      * queries it for a {@link CommandPlan} and sends the plans of more than one
+      * step to the WiFi NIC in a WiFiNIC.PLAN command. Plans are disabled by default.
+      *
+      * @param      planning            true to send the plans of the scheduler
+      */
+    public void setPlanning(boolean planning)
+    {
+        this.planning = planning;
+    }
+
     /**
       * Extracts the query parameters from the message and passes it on to the
       * scheduler.
+      * The scheduler receives the time of the event followed by the details of
+      * the event in an ArrayList, and returns the next command in an ArrayList.
+      * The command is copied into the typed slots of a pooled event. The context
+      * array is reused, so the scheduler should not keep a reference to it.
+      * If plans are enabled, a plan of more than one step is sent as the command
+      * WiFiNIC.PLAN followed by the {@link CommandPlan}.
       *
       * @param      event               the event to be handled
       * @param      eventqueue          reference to the caller of this method
@@ -71,26 +97,38 @@ public class SchedulerWrapper implements EventConsumer
     public void handleEvent(Event event, EventQueue eventqueue)
     {
         ArrayList command = null;
-        ArrayList<Object> context= new ArrayList<Object>();
         double nexttime = 0;
         EventConsumer dest;
 
         if (event.getType() == Event.STATUS )
         {
             nexttime = event.getTime();
+
+            /* The context array is reused for all the queries */
+            context.clear();
             context.add(nexttime);
     
-            if ( (event.getDetails() != null) && (event.getDetails().size() != 0 ) )
-            {
-                for (Iterator it=event.getDetails().iterator(); it.hasNext();)
-                {
-                    context.add(it.next());
-                }
-            }
+            for (int i = 0; i < event.getArgCount(); i++)
+                context.add(event.getObject(i));
     
             try
             {
-                command = scheduler.query(context);
+                if ( planning && (scheduler instanceof PlanningScheduler) )
+                {
+                    CommandPlan plan = ((PlanningScheduler)scheduler).plan(context);
+                    if (plan.size() > 1)
+                    {
+                        ArrayList<Object> plancommand = new ArrayList<Object>(3);
+                        plancommand.add(NIC.WiFi);
+                        plancommand.add(WiFiNIC.PLAN);
+                        plancommand.add(plan);
+                        command = plancommand;
+                    }
+                    else
+                        command = plan.getCommand(0);
+                }
+                else
+                    command = scheduler.query(context);
             }
             catch (Exception se)
             {
@@ -106,12 +144,17 @@ public class SchedulerWrapper implements EventConsumer
             else
                 dest = wifinic;
    
+            Event next = eventqueue.obtain( nexttime, Event.COMMAND, (EventConsumer)this, dest);
+            for (int i = 0; i < command.size(); i++)
+                next.addDetail(command.get(i));
+   
             try
             {
-                eventqueue.enqueue( new Event( nexttime, Event.COMMAND, (EventConsumer)this, dest, command));
+                eventqueue.enqueue( next );
             }
             catch (Exception e)
             {
+                eventqueue.recycle(next);
                 System.err.println(getName() + ": Error while sending command to " + event.getSource().getName()
                         + e.toString() );
                 e.printStackTrace();
@@ -0,0 +1,101 @@
+ /**
+  * Opportunistic Connectivity Management Simulator
+  *
+  * Copyright (C) 2007 Hossein Falaki
+  */
+
+package ocms.schedulers.caching;
+
+import java.util.HashMap;
+import java.util.Set;
+
+
+/**
+  * An unbounded cache that only returns the scans of exactly the same set of cells.
+  * The scans are never evicted and there are no near hits. This is the cache
+  * the {@link GSMCachingScheduler} uses unless it is configured otherwise.
+  *
+  * @author     Hossein Falaki
+  */
+public class ExactScanCache implements ScanCache
+{
+    /** mapping from GSM set to AP set */
+    private HashMap<Fingerprint, Set> cache;
+
+    /** Number of hits */
+    private long hits;
+
+    /** Number of misses */
+    private long misses;
+
+
+    /**
+      * Constructs an empty cache.
+      */
+    public ExactScanCache()
+    {
+        cache = new HashMap<Fingerprint, Set>();
+    }
+
+    /**
+      * Returns the cached scan of exactly the same set of cells.
+      *
+      * @param      cells           the visible GSM cell IDs
+      * @return                     the set of {@link ocms.dataset.Tuple}s of the scan, or null on a miss
+      */
+    public Set lookup(Set<String> cells)
+    {
+        Set result = cache.get(new Fingerprint(cells));
+        if (result == null)
+            misses++;
+        else
+            hits++;
+
+        return result;
+    }
+
+    /**
+      * Stores the result of a scan, replacing the previous scan of the same cells.
+      *
+      * @param      cells           the GSM cell IDs visible during the scan
+      * @param      scan            the set of {@link ocms.dataset.Tuple}s of the scan
+      */
+    public void store(Set<String> cells, Set scan)
+    {
+        cache.put(new Fingerprint(cells), scan);
+    }
+
+    public int size()
+    {
+        return cache.size();
+    }
+
+    public long getHits()
+    {
+        return hits;
+    }
+
+    public long getNearHits()
+    {
+        return 0;
+    }
+
+    public long getMisses()
+    {
+        return misses;
+    }
+
+    public long getEvictions()
+    {
+        return 0;
+    }
+
+    public String toString()
+    {
+        StringBuffer sb = new StringBuffer("\n");
+        for( Fingerprint key : cache.keySet())
+            sb.append("Cache: " + key.toString() + "-->" + cache.get(key).toString() + "\n");
+
+        return sb.toString();
+    }
+}
@@ -0,0 +1,65 @@
+ /**
+  * Opportunistic Connectivity Management Simulator
+  *
+  * Copyright (C) 2007 Hossein Falaki
+  */
+
+package ocms.schedulers.caching;
+
+import java.util.Arrays;
+import java.util.Set;
+
+import ocms.dataset.Identifier;
+
+
+/**
+  * A set of GSM cell IDs, used as the key of the scan caches.
+  * The cell IDs are kept as a sorted array of their {@link Identifier}s, so
+  * two fingerprints are compared and hashed without the Strings of the IDs.
+  *
+  * @author     Hossein Falaki
+  */
+class Fingerprint
+{
+    /** The identifiers of the cells in increasing order */
+    long[] cells;
+
+    /** The hash code of the cells */
+    int hashcode;
+
+
+    /**
+      * Constructs the fingerprint of a set of cells.
+      *
+      * @param      cells           the GSM cell IDs
+      */
+    Fingerprint(Set<String> cells)
+    {
+        this.cells = Identifier.encode(cells);
+        this.hashcode = Arrays.hashCode(this.cells);
+    }
+
+    public int hashCode()
+    {
+        return hashcode;
+    }
+
+    public boolean equals(Object other)
+    {
+        return (other instanceof Fingerprint) && Arrays.equals(cells, ((Fingerprint)other).cells);
+    }
+
+    public String toString()
+    {
+        StringBuffer sb = new StringBuffer("[");
+        for (int i = 0; i < cells.length; i++)
+        {
+            if (i > 0)
+                sb.append(", ");
+            sb.append(Identifier.toString(cells[i]));
+        }
+        sb.append("]");
+
+        return sb.toString();
+    }
+}
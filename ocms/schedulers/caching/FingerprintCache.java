@@ -0,0 +1,425 @@
+ /**
+  * Opportunistic Connectivity Management Simulator
+  *
+  * Copyright (C) 2007 Hossein Falaki
+  */
+
+package ocms.schedulers.caching;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+
+
+/**
+  * A bounded cache of WiFi scans that also returns the scans of similar sets of cells.
+  * A set of cells (a {@link Fingerprint}) is kept as the sorted array of the
+  * packed identifiers of the cells. When the cache is full the least recently
+  * used (LRU) or the least frequently used (LFU) scan is evicted.
+  * <br>
+  * If there is no scan of the same fingerprint, the cache looks for the most
+  * similar one: the similarity of two fingerprints is their Jaccard index (the
+  * size of the intersection over the size of the union), and a scan is only
+  * returned if the similarity is at least the threshold. The candidates are found
+  * with locality sensitive hashing: the MinHash signature of every fingerprint is
+  * split into {@link #BANDS} bands of {@link #ROWS} rows, and two fingerprints are
+  * candidates if they agree on all the rows of a band. Two fingerprints with a
+  * similarity of 0.5 agree on a band with a probability of 0.25, so they are
+  * candidates with a probability of 0.99. The similarity of the candidates is
+  * then computed exactly.
+  *
+  * @author     Hossein Falaki
+  */
+public class FingerprintCache implements ScanCache
+{
+    /** LRU: eviction policy value */
+    public static final String LRU              = "LRU";
+
+    /** LFU: eviction policy value */
+    public static final String LFU              = "LFU";
+
+    /** Number of bands of a signature */
+    private static final int BANDS              = 16;
+
+    /** Number of rows of a band */
+    private static final int ROWS               = 2;
+
+    /** The seed of the MinHash functions, so that every run uses the same functions */
+    private static final long SEED              = 0x4F434D53L;
+
+    /** The multipliers of the MinHash functions (odd) */
+    private static final int[] MULTIPLIERS      = new int[BANDS*ROWS];
+
+    /** The increments of the MinHash functions */
+    private static final int[] INCREMENTS       = new int[BANDS*ROWS];
+
+    static
+    {
+        Random random = new Random(SEED);
+        for (int i = 0; i < BANDS*ROWS; i++)
+        {
+            MULTIPLIERS[i] = random.nextInt() | 1;
+            INCREMENTS[i] = random.nextInt();
+        }
+    }
+
+    /** Maximum number of scans, 0 for no limit */
+    private int capacity;
+
+    /** True if the least frequently used scan is evicted */
+    private boolean lfu;
+
+    /** The minimum similarity of a near hit, 1 for no near hits */
+    private double threshold;
+
+    /** The entries by fingerprint */
+    private HashMap<Fingerprint, Entry> entries;
+
+    /** The entries in eviction order */
+    private TreeSet<Entry> order;
+
+    /** The entries by the key of each band, if near hits are enabled */
+    private HashMap<Long, ArrayList<Entry>>[] buckets;
+
+    /** Counts the uses of the entries */
+    private long clock;
+
+    /** Number of hits */
+    private long hits;
+
+    /** Number of near hits */
+    private long nearhits;
+
+    /** Number of misses */
+    private long misses;
+
+    /** Number of evictions */
+    private long evictions;
+
+
+    /**
+      * Constructs an empty cache.
+      *
+      * @param      capacity        maximum number of scans, 0 for no limit
+      * @param      policy          eviction policy: {@link #LRU} or {@link #LFU}
+      * @param      threshold       minimum similarity of a near hit, in (0, 1]; 1 disables near hits
+      * @throws     IllegalArgumentException if the policy or the threshold is not valid
+      */
+    @SuppressWarnings("unchecked")
+    public FingerprintCache(int capacity, String policy, double threshold)
+    {
+        if ( !policy.equals(LRU) && !policy.equals(LFU) )
+            throw new IllegalArgumentException("Unknown eviction policy: " + policy);
+        if ( (threshold <= 0) || (threshold > 1) )
+            throw new IllegalArgumentException("Similarity threshold out of range: " + threshold);
+
+        this.capacity = capacity;
+        this.lfu = policy.equals(LFU);
+        this.threshold = threshold;
+
+        entries = new HashMap<Fingerprint, Entry>();
+        order = new TreeSet<Entry>(new Comparator<Entry>()
+        {
+            public int compare(Entry a, Entry b)
+            {
+                if ( lfu && (a.uses != b.uses) )
+                    return (a.uses < b.uses) ? -1 : 1;
+                if (a.used != b.used)
+                    return (a.used < b.used) ? -1 : 1;
+                return 0;
+            }
+        });
+
+        if (threshold < 1)
+        {
+            buckets = new HashMap[BANDS];
+            for (int i = 0; i < BANDS; i++)
+                buckets[i] = new HashMap<Long, ArrayList<Entry>>();
+        }
+    }
+
+    /**
+      * Returns the cached scan of the same set of cells, or of the most similar one.
+      *
+      * @param      cells           the visible GSM cell IDs
+      * @return                     the set of {@link ocms.dataset.Tuple}s of the scan, or null on a miss
+      */
+    public Set lookup(Set<String> cells)
+    {
+        Fingerprint fingerprint = new Fingerprint(cells);
+        Entry entry = entries.get(fingerprint);
+        if (entry != null)
+        {
+            hits++;
+            touch(entry);
+            return entry.scan;
+        }
+
+        if (buckets != null)
+        {
+            entry = nearest(fingerprint);
+            if (entry != null)
+            {
+                nearhits++;
+                touch(entry);
+                return entry.scan;
+            }
+        }
+
+        misses++;
+        return null;
+    }
+
+    /**
+      * Stores the result of a scan, replacing the previous scan of the same cells.
+      * Evicts a scan if the cache is full.
+      *
+      * @param      cells           the GSM cell IDs visible during the scan
+      * @param      scan            the set of {@link ocms.dataset.Tuple}s of the scan
+      */
+    public void store(Set<String> cells, Set scan)
+    {
+        Fingerprint fingerprint = new Fingerprint(cells);
+        Entry entry = entries.get(fingerprint);
+        if (entry != null)
+        {
+            entry.scan = scan;
+            touch(entry);
+            return;
+        }
+
+        if ( (capacity > 0) && (entries.size() >= capacity) )
+        {
+            remove(order.pollFirst());
+            evictions++;
+        }
+
+        entry = new Entry(fingerprint, scan);
+        entry.used = ++clock;
+        entries.put(fingerprint, entry);
+        order.add(entry);
+
+        if (buckets != null)
+        {
+            entry.bands = bands(fingerprint.cells);
+            for (int i = 0; i < BANDS; i++)
+            {
+                ArrayList<Entry> bucket = buckets[i].get(entry.bands[i]);
+                if (bucket == null)
+                {
+                    bucket = new ArrayList<Entry>(2);
+                    buckets[i].put(entry.bands[i], bucket);
+                }
+                bucket.add(entry);
+            }
+        }
+    }
+
+    /**
+      * Records a use of an entry.
+      *
+      * @param      entry           the entry
+      */
+    private void touch(Entry entry)
+    {
+        order.remove(entry);
+        entry.uses++;
+        entry.used = ++clock;
+        order.add(entry);
+    }
+
+    /**
+      * Removes an entry.
+      *
+      * @param      entry           the entry
+      */
+    private void remove(Entry entry)
+    {
+        entries.remove(entry.fingerprint);
+
+        if (buckets != null)
+        {
+            for (int i = 0; i < BANDS; i++)
+            {
+                ArrayList<Entry> bucket = buckets[i].get(entry.bands[i]);
+                bucket.remove(entry);
+                if (bucket.isEmpty())
+                    buckets[i].remove(entry.bands[i]);
+            }
+        }
+    }
+
+    /**
+      * Returns the most similar entry of the candidates of a fingerprint.
+      *
+      * @param      fingerprint     the fingerprint
+      * @return                     the entry, or null if no candidate is similar enough
+      */
+    private Entry nearest(Fingerprint fingerprint)
+    {
+        long[] keys = bands(fingerprint.cells);
+        Entry result = null;
+        double best = threshold;
+
+        for (int i = 0; i < BANDS; i++)
+        {
+            ArrayList<Entry> bucket = buckets[i].get(keys[i]);
+            if (bucket == null)
+                continue;
+
+            for (int j = 0; j < bucket.size(); j++)
+            {
+                Entry candidate = bucket.get(j);
+                double similarity = similarity(fingerprint.cells, candidate.fingerprint.cells);
+                if ( (similarity > best) || ((similarity == best) && (result == null)) )
+                {
+                    best = similarity;
+                    result = candidate;
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /**
+      * Returns the Jaccard index of two sorted sets of cells.
+      *
+      * @param      a               the first set
+      * @param      b               the second set
+      * @return                     size of the intersection over the size of the union
+      */
+    private static double similarity(long[] a, long[] b)
+    {
+        int common = 0;
+        int i = 0;
+        int j = 0;
+        while ( (i < a.length) && (j < b.length) )
+        {
+            if (a[i] < b[j])
+                i++;
+            else if (a[i] > b[j])
+                j++;
+            else
+            {
+                common++;
+                i++;
+                j++;
+            }
+        }
+
+        return (double)common / (a.length + b.length - common);
+    }
+
+    /**
+      * Returns the keys of the bands of the MinHash signature of a set of cells.
+      *
+      * @param      cells           the identifiers of the cells, not empty
+      * @return                     the key of each band
+      */
+    private static long[] bands(long[] cells)
+    {
+        long[] result = new long[BANDS];
+        for (int band = 0; band < BANDS; band++)
+        {
+            long key = 0;
+            for (int row = 0; row < ROWS; row++)
+            {
+                int function = band*ROWS + row;
+                int min = Integer.MAX_VALUE;
+                for (int i = 0; i < cells.length; i++)
+                {
+                    int cell = (int)(cells[i] ^ (cells[i] >>> 32));
+                    int hash = hash(cell*MULTIPLIERS[function] + INCREMENTS[function]);
+                    if (hash < min)
+                        min = hash;
+                }
+                key = (key << 32) | (min & 0xFFFFFFFFL);
+            }
+            result[band] = key;
+        }
+
+        return result;
+    }
+
+    /**
+      * Mixes the bits of a value.
+      *
+      * @param      value           the value
+      * @return                     the hash of the value
+      */
+    private static int hash(int value)
+    {
+        value ^= value >>> 16;
+        value *= 0x85EBCA6B;
+        value ^= value >>> 13;
+        value *= 0xC2B2AE35;
+        value ^= value >>> 16;
+        return value;
+    }
+
+    public int size()
+    {
+        return entries.size();
+    }
+
+    public long getHits()
+    {
+        return hits;
+    }
+
+    public long getNearHits()
+    {
+        return nearhits;
+    }
+
+    public long getMisses()
+    {
+        return misses;
+    }
+
+    public long getEvictions()
+    {
+        return evictions;
+    }
+
+    public String toString()
+    {
+        StringBuffer sb = new StringBuffer("\n");
+        for (Entry entry : order)
+            sb.append("Cache: " + entry.fingerprint + "-->" + entry.scan.toString() + "\n");
+
+        return sb.toString();
+    }
+
+
+    /**
+      * A cached scan.
+      */
+    private static class Entry
+    {
+        /** The cells visible during the scan */
+        Fingerprint fingerprint;
+
+        /** The set of Tuples of the scan */
+        Set scan;
+
+        /** The keys of the bands of the fingerprint */
+        long[] bands;
+
+        /** Number of uses */
+        long uses;
+
+        /** The clock of the last use or store */
+        long used;
+
+        Entry(Fingerprint fingerprint, Set scan)
+        {
+            this.fingerprint = fingerprint;
+            this.scan = scan;
+        }
+    }
+}
@@ -9,11 +9,11 @@ package ocms.schedulers.caching;
 import java.util.ArrayList;
 import java.util.Set;
 import java.util.Iterator;
-import java.util.HashMap;
 import java.util.HashSet;
 
 
-import ocms.schedulers.Scheduler;
+import ocms.schedulers.PlanningScheduler;
+import ocms.schedulers.CommandPlan;
 import ocms.schedulers.SchedulerException;
 import ocms.dataset.Tuple;
 import ocms.user.User;
@@ -33,10 +33,13 @@ import ocms.nic.GSMNIC;
   * IDs along with each WiFi scan. When it comes to a new WiFi scan, if the 
   * current visible set of cell IDs is the same as one of the recent records,
   * the scheduler uses the scan result from the cache instead.
+  * The cache is a {@link ScanCache}: by default an unbounded {@link ExactScanCache},
+  * or a {@link FingerprintCache} that is bounded and also uses the scans of similar
+  * sets of cell IDs.
   *
   * @author     Hossein Falaki
   */
-public class GSMCachingScheduler implements Scheduler, Logger
+public class GSMCachingScheduler implements PlanningScheduler, Logger
 {
 
     /** A constant for empty gsm cache result */
@@ -70,7 +73,7 @@ public class GSMCachingScheduler implements Scheduler, Logger
     boolean randomize;
 
     /** mapping from GSM set to AP set */
-    HashMap<Set<String>, Set> cache;
+    ScanCache cache;
 
     Set<String> lastgsmset;
 
@@ -87,6 +90,21 @@ public class GSMCachingScheduler implements Scheduler, Logger
       * @param      randomize           indicates if the process should be randomized
       */
     public GSMCachingScheduler(double endtime, double interval, WiFiNIC wifinic, boolean randomize)
+    {
+        this(endtime, interval, wifinic, randomize, new ExactScanCache());
+    }
+
+    /**
+      * Constructs an instance of the scheduler that uses the given cache.
+      *
+      * @param      endtime             end time of simulation
+      * @param      wifinic             the WiFiNIC object that this scheduler should work 
+      *                                 with (for getting cost values)
+      * @param      interval            static scanning interval
+      * @param      randomize           indicates if the process should be randomized
+      * @param      cache               the cache of the WiFi scans
+      */
+    public GSMCachingScheduler(double endtime, double interval, WiFiNIC wifinic, boolean randomize, ScanCache cache)
     {
         now = 0.0;
         this.endtime = endtime;
@@ -98,7 +116,7 @@ public class GSMCachingScheduler implements Scheduler, Logger
         this.interval = interval;
         this.randomize = randomize;
 
-        cache = new HashMap<Set<String>, Set>();
+        this.cache = cache;
 
     }
 
@@ -181,7 +199,7 @@ public class GSMCachingScheduler implements Scheduler, Logger
         double nextscan = 0;
 
         now = (Double) context.get(0);
-        Log.paranoid(this, "Query " + context);
+        Log.paranoid(this, "Query {}", context);
         String cacheResult = null;
         Set apscan;
 
@@ -219,7 +237,7 @@ public class GSMCachingScheduler implements Scheduler, Logger
                     command.add(cacheResult);
                 }
             }
-            Log.debug(this, "Command: " + command);
+            Log.debug(this, "Command: {}", command);
             return command;
         }
 
@@ -275,9 +293,9 @@ public class GSMCachingScheduler implements Scheduler, Logger
         if (niccondition == WiFiNIC.DISC_SCANNING )
         {
             apscan = (Set)context.get(2);
-            Log.debug(this, "WiFi Scan: " + apscan);
+            Log.debug(this, "WiFi Scan: {}", apscan);
             if ( (lastgsmset != null) && (lastgsmset.size() != 0))
-                cache.put(lastgsmset, apscan);
+                cache.store(lastgsmset, apscan);
             else
             {
                 Log.debug(this, "Cache not updated");
@@ -313,11 +331,33 @@ public class GSMCachingScheduler implements Scheduler, Logger
             command.add(WiFiNIC.DISC_SCANNING);
         }
 
-        Log.debug(this, "Command: " + command);
+        Log.debug(this, "Command: {}", command);
         return command;
     }
 
 
+    /**
+      * Returns a plan for the commands that follow a query.
+      * While the goal has not been met, turning the WiFi NIC off is followed
+      * by turning it on. The next step is a GSM scan, so the status of the
+      * WiFi NIC is then sent to the scheduler.
+      *
+      * @param      context             array of the context information
+      * @return                         the plan
+      * @throws     SchedulerException  if the context of the NIC does not follow the protocol
+      */
+    public CommandPlan plan(ArrayList context) throws SchedulerException
+    {
+        ArrayList command = query(context);
+        CommandPlan plan = new CommandPlan(command, endtime);
+
+        if ( (achieved < goal) && !wasconnected && command.get(0).equals(NIC.WiFi)
+                && command.get(1).equals(WiFiNIC.OFF) )
+            plan.then(WiFiNIC.OFF, WiFiNIC.ON);
+
+        return plan;
+    }
+
     /**
       * Returns the Scheduler's notion of time.
       * This is equivalent to the latest time a query was sent
@@ -387,8 +427,9 @@ public class GSMCachingScheduler implements Scheduler, Logger
         for (Object id : gsmresult)
             cellids.add((String)((Tuple)id).getKey());
 
-        Log.paranoid(this, "Cache query: \nCache:" + cellids );
-        Log.paranoid(this, "Cache contents: " + cacheToString());
+        Log.paranoid(this, "Cache query: \nCache:{}", cellids );
+        if ( Log.isEnabled(Log.PARANOID) )
+            Log.paranoid(this, "Cache contents: " + cache.toString());
 
         String result = null;
         if (gsmresult == null)
@@ -397,10 +438,11 @@ public class GSMCachingScheduler implements Scheduler, Logger
 
         lastgsmset = cellids;
 
-        if (cache.containsKey(cellids))
+        Set apscan = cache.lookup(cellids);
+        if (apscan != null)
         {
-            result = findNextAP(cache.get(cellids));
-            Log.debug(this, "Cache hit: " + cache.get(cellids));
+            result = findNextAP(apscan);
+            Log.debug(this, "Cache hit: {}", apscan);
             if (result == null)
                 result = EMPTY;
         }
@@ -412,13 +454,28 @@ public class GSMCachingScheduler implements Scheduler, Logger
         return result;
     }
 
-    private String cacheToString()
+    /**
+      * Returns the cache of the WiFi scans.
+      *
+      * @return                     the cache
+      */
+    public ScanCache getCache()
     {
-        StringBuffer sb = new StringBuffer("\n");
-        for( Set key : cache.keySet())
-            sb.append("Cache: " + key.toString() + "-->" + cache.get(key).toString() + "\n");
+        return cache;
+    }
 
-        return sb.toString();
+    /**
+      * Returns the hit, near hit and miss counts of the cache.
+      *
+      * @return                     the statistics of the cache
+      */
+    public String getCacheStatistics()
+    {
+        return "Cache hits " + cache.getHits()
+                + " near hits " + cache.getNearHits()
+                + " misses " + cache.getMisses()
+                + " evictions " + cache.getEvictions()
+                + " size " + cache.size();
     }
 
 
@@ -0,0 +1,73 @@
+ /**
+  * Opportunistic Connectivity Management Simulator
+  *
+  * Copyright (C) 2007 Hossein Falaki
+  */
+
+package ocms.schedulers.caching;
+
+import java.util.Set;
+
+
+/**
+  * A cache of WiFi scans indexed by the GSM cell tower IDs that were visible
+  * during the scan.
+  * The {@link GSMCachingScheduler} consults the cache before scanning and
+  * stores the result of every scan it orders. The cache counts its hits, near
+  * hits (a scan of a similar but not equal set of cells) and misses.
+  *
+  * @author     Hossein Falaki
+  */
+public interface ScanCache
+{
+    /**
+      * Returns the cached scan of a set of cells.
+      *
+      * @param      cells           the visible GSM cell IDs
+      * @return                     the set of {@link ocms.dataset.Tuple}s of the scan, or null on a miss
+      */
+    public Set lookup(Set<String> cells);
+
+    /**
+      * Stores the result of a scan.
+      *
+      * @param      cells           the GSM cell IDs visible during the scan
+      * @param      scan            the set of {@link ocms.dataset.Tuple}s of the scan
+      */
+    public void store(Set<String> cells, Set scan);
+
+    /**
+      * Returns the number of cached scans.
+      *
+      * @return                     number of cached scans
+      */
+    public int size();
+
+    /**
+      * Returns the number of lookups that found the same set of cells.
+      *
+      * @return                     number of hits
+      */
+    public long getHits();
+
+    /**
+      * Returns the number of lookups that found a similar set of cells.
+      *
+      * @return                     number of near hits
+      */
+    public long getNearHits();
+
+    /**
+      * Returns the number of lookups that found nothing.
+      *
+      * @return                     number of misses
+      */
+    public long getMisses();
+
+    /**
+      * Returns the number of scans removed to make room for new ones.
+      *
+      * @return                     number of evictions
+      */
+    public long getEvictions();
+}
@@ -9,9 +9,11 @@ package ocms.schedulers.heuristic;
 import java.util.ArrayList;
 import java.util.Set;
 import java.util.Iterator;
+import java.util.SplittableRandom;
 
 
-import ocms.schedulers.Scheduler;
+import ocms.schedulers.PlanningScheduler;
+import ocms.schedulers.CommandPlan;
 import ocms.schedulers.SchedulerException;
 import ocms.dataset.Tuple;
 import ocms.user.User;
@@ -26,7 +28,7 @@ import ocms.nic.NIC;
   *
   * @author     Hossein Falaki
   */
-public class EBScheduler implements Scheduler, Logger
+public class EBScheduler implements PlanningScheduler, Logger
 {
     /** Keeps the latest time */
     double now;
@@ -55,6 +57,9 @@ public class EBScheduler implements Scheduler, Logger
     /** The maximum back off time allowed */
     double maxbackoff;
 
+    /** The random source of the back-off times */
+    SplittableRandom random;
+
     /**
       * Constructs an instance of the scheduler that is ready to use.
       * A value of 0 for endtime means maximum possible time. Checks with 
@@ -66,6 +71,23 @@ public class EBScheduler implements Scheduler, Logger
       * @param      maxbackoff          maximum allowed back-off time
       */
     public EBScheduler(double endtime, double maxbackoff, WiFiNIC nic)
+    {
+        this(endtime, maxbackoff, nic, new SplittableRandom());
+    }
+
+    /**
+      * Constructs an instance of the scheduler that draws the back-off times
+      * from the given random source, so that a run can be repeated.
+      * A value of 0 for endtime means maximum possible time. Checks with 
+      * the medium of the NIC to get the correct value for this.
+      *
+      * @param      endtime             end time of simulation
+      * @param      nic                 the WiFiNIC object that this scheduler should work 
+      *                                 with (for getting cost values)
+      * @param      maxbackoff          maximum allowed back-off time
+      * @param      random              the random source of the back-off times
+      */
+    public EBScheduler(double endtime, double maxbackoff, WiFiNIC nic, SplittableRandom random)
     {
         now = 0.0;
         this.endtime = endtime;
@@ -76,6 +98,7 @@ public class EBScheduler implements Scheduler, Logger
         }
 
         achieved = 0.0;
+        this.random = random;
         this.maxbackoff = maxbackoff;
         backoff = 1.0;
     }
@@ -151,7 +174,7 @@ public class EBScheduler implements Scheduler, Logger
         double txtime = 0;
 
         now = (Double) context.get(0);
-        Log.paranoid(this, "Query " + context);
+        Log.paranoid(this, "Query {}", context);
 
         if (context.size() < 2 )
         {
@@ -221,7 +244,8 @@ public class EBScheduler implements Scheduler, Logger
                     backofftime = now + backoff;
                 */
 
-                Log.debug(this, "Backing off until " + backofftime + " backoff: " + backoff + " and maxbackoff: " + maxbackoff );
+                if ( Log.isEnabled(Log.DEBUG) )
+                    Log.debug(this, "Backing off until " + backofftime + " backoff: " + backoff + " and maxbackoff: " + maxbackoff );
                 command.add(WiFiNIC.OFF);
                 command.add(backofftime);
             }
@@ -241,7 +265,7 @@ public class EBScheduler implements Scheduler, Logger
                 command.add(WiFiNIC.NOP);
         }
 
-        Log.debug(this, "Command: " + command);
+        Log.debug(this, "Command: {}", command);
 
         return command;
     }
@@ -273,6 +297,33 @@ public class EBScheduler implements Scheduler, Logger
         return nextap;
     }
 
+    /**
+      * Returns a plan for the commands that follow a query.
+      * While the goal has not been met, turning the NIC off is followed by
+      * turning it on and scanning. The back-off after an empty scan is random,
+      * so the result of the scan is always sent to the scheduler.
+      *
+      * @param      context             array of the context information
+      * @return                         the plan
+      * @throws     SchedulerException  if the context of the NIC does not follow the protocol
+      */
+    public CommandPlan plan(ArrayList context) throws SchedulerException
+    {
+        ArrayList command = query(context);
+        CommandPlan plan = new CommandPlan(command, endtime);
+
+        if ( (achieved >= goal) || wasconnected )
+            return plan;
+
+        int decision = (Integer) command.get(1);
+        if (decision == WiFiNIC.OFF)
+            plan.then(WiFiNIC.OFF, WiFiNIC.ON);
+        if ( (decision == WiFiNIC.OFF) || (decision == WiFiNIC.ON) )
+            plan.then(WiFiNIC.DISCONNECTED, WiFiNIC.DISC_SCANNING);
+
+        return plan;
+    }
+
     /**
       * Returns the Scheduler's notion of time.
       * This is equivalent to the latest time a query was sent
@@ -292,7 +343,7 @@ public class EBScheduler implements Scheduler, Logger
       */
     private double nextbackofftime()
     {
-        double backofftime = now + ((Math.random() * (backoff/2)) + (backoff/2));
+        double backofftime = now + ((random.nextDouble() * (backoff/2)) + (backoff/2));
         if ( backofftime > endtime)
             backofftime = endtime;
 
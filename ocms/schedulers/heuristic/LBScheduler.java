@@ -9,9 +9,11 @@ package ocms.schedulers.heuristic;
 import java.util.ArrayList;
 import java.util.Set;
 import java.util.Iterator;
+import java.util.SplittableRandom;
 
 
-import ocms.schedulers.Scheduler;
+import ocms.schedulers.PlanningScheduler;
+import ocms.schedulers.CommandPlan;
 import ocms.schedulers.SchedulerException;
 import ocms.dataset.Tuple;
 import ocms.user.User;
@@ -26,7 +28,7 @@ import ocms.nic.NIC;
   *
   * @author     Hossein Falaki
   */
-public class LBScheduler implements Scheduler, Logger
+public class LBScheduler implements PlanningScheduler, Logger
 {
     /** Keeps the latest time */
     double now;
@@ -61,6 +63,9 @@ public class LBScheduler implements Scheduler, Logger
     /** If set, the pack off we be randomized */
     boolean randomize;
 
+    /** The random source of the back-off times */
+    SplittableRandom random;
+
 
     /**
       * Constructs an instance of the scheduler that is ready to use.
@@ -75,6 +80,25 @@ public class LBScheduler implements Scheduler, Logger
       * @param      randomize           indicates if the process should be randomized
       */
     public LBScheduler(double endtime, double backoffstep, double initialbackoff, WiFiNIC nic, boolean randomize)
+    {
+        this(endtime, backoffstep, initialbackoff, nic, randomize, new SplittableRandom());
+    }
+
+    /**
+      * Constructs an instance of the scheduler that draws the back-off times
+      * from the given random source, so that a run can be repeated.
+      * A value of 0 for endtime means maximum possible time. Checks with 
+      * the medium of the NIC to get the correct value for this.
+      *
+      * @param      endtime             end time of simulation
+      * @param      nic                 the WiFiNIC object that this scheduler should work 
+      *                                 with (for getting cost values)
+      * @param      backoffstep         value added to the back-off time on every step
+      * @param      initialbackoff      the initial value for back-off
+      * @param      randomize           indicates if the process should be randomized
+      * @param      random              the random source of the back-off times
+      */
+    public LBScheduler(double endtime, double backoffstep, double initialbackoff, WiFiNIC nic, boolean randomize, SplittableRandom random)
     {
         now = 0.0;
         this.endtime = endtime;
@@ -85,6 +109,7 @@ public class LBScheduler implements Scheduler, Logger
         }
 
         achieved = 0.0;
+        this.random = random;
         this.backoffstep = backoffstep;
         this.initialbackoff = initialbackoff;
         this.randomize = randomize;
@@ -162,7 +187,7 @@ public class LBScheduler implements Scheduler, Logger
         double txtime = 0;
 
         now = (Double) context.get(0);
-        Log.paranoid(this, "Query " + context);
+        Log.paranoid(this, "Query {}", context);
 
         if (context.size() < 2 )
         {
@@ -223,7 +248,8 @@ public class LBScheduler implements Scheduler, Logger
                 backoff += backoffstep;
                 backofftime = nextbackofftime();
 
-                Log.debug(this, "Backing off until " + backofftime + " backoff: " + backoff );
+                if ( Log.isEnabled(Log.DEBUG) )
+                    Log.debug(this, "Backing off until " + backofftime + " backoff: " + backoff );
                 command.add(WiFiNIC.OFF);
                 command.add(backofftime);
             }
@@ -243,7 +269,7 @@ public class LBScheduler implements Scheduler, Logger
                 command.add(WiFiNIC.NOP);
         }
 
-        Log.debug(this, "Command: " + command);
+        Log.debug(this, "Command: {}", command);
 
         return command;
     }
@@ -275,6 +301,43 @@ public class LBScheduler implements Scheduler, Logger
         return nextap;
     }
 
+    /**
+      * Returns a plan for the commands that follow a query.
+      * While the goal has not been met, turning the NIC off is followed by
+      * turning it on and scanning. If the back-off is fixed (randomized with a
+      * back-off step of zero) every empty scan is followed by the same OFF
+      * period, so the plan repeats the cycle until a scan finds an AP.
+      *
+      * @param      context             array of the context information
+      * @return                         the plan
+      * @throws     SchedulerException  if the context of the NIC does not follow the protocol
+      */
+    public CommandPlan plan(ArrayList context) throws SchedulerException
+    {
+        ArrayList command = query(context);
+        CommandPlan plan = new CommandPlan(command, endtime);
+
+        if ( (achieved >= goal) || wasconnected )
+            return plan;
+
+        int decision = (Integer) command.get(1);
+        if (decision == WiFiNIC.OFF)
+            plan.then(WiFiNIC.OFF, WiFiNIC.ON);
+        if ( (decision == WiFiNIC.OFF) || (decision == WiFiNIC.ON) )
+            plan.then(WiFiNIC.DISCONNECTED, WiFiNIC.DISC_SCANNING);
+
+        boolean scanning = (decision == WiFiNIC.OFF) || (decision == WiFiNIC.ON) || (decision == WiFiNIC.DISC_SCANNING);
+        if ( scanning && randomize && (backoffstep == 0) && (backoff > 0) )
+        {
+            int off = plan.thenOff(CommandPlan.EMPTY, backoff);
+            plan.then(WiFiNIC.OFF, WiFiNIC.ON);
+            plan.then(WiFiNIC.DISCONNECTED, WiFiNIC.DISC_SCANNING);
+            plan.loop(CommandPlan.EMPTY, off);
+        }
+
+        return plan;
+    }
+
     /**
       * Returns the Scheduler's notion of time.
       * This is equivalent to the latest time a query was sent
@@ -296,7 +359,7 @@ public class LBScheduler implements Scheduler, Logger
     {
         double backofftime = 0;
         if (randomize)
-            backofftime = now + ((Math.random() * backoffstep) + (backoff - backoffstep));
+            backofftime = now + ((random.nextDouble() * backoffstep) + (backoff - backoffstep));
         else
             backoff = now + backoff;
             
@@ -172,7 +172,7 @@ public class UserStaticScheduler implements Scheduler, Logger
         double nextscan = 0;
 
         now = (Double) context.get(0);
-        Log.paranoid(this, "Query " + context);
+        Log.paranoid(this, "Query {}", context);
         Set apscan;
 
 
@@ -237,7 +237,7 @@ public class UserStaticScheduler implements Scheduler, Logger
         if (niccondition == WiFiNIC.DISC_SCANNING )
         {
             apscan = (Set)context.get(2);
-            Log.debug(this, "WiFi Scan: " + apscan);
+            Log.debug(this, "WiFi Scan: {}", apscan);
             String ap = findNextAP(apscan);
             if ( ap == null)
             {
@@ -276,7 +276,7 @@ public class UserStaticScheduler implements Scheduler, Logger
             command.add(WiFiNIC.DISC_SCANNING);
         }
 
-        Log.debug(this, "Command: " + command);
+        Log.debug(this, "Command: {}", command);
         return command;
     }
 
@@ -145,7 +145,7 @@ public class DumbScheduler implements Scheduler, Logger
         double txtime = 0;
 
         now = (Double) context.get(0);
-        Log.paranoid(this, "Query " + context);
+        Log.paranoid(this, "Query {}", context);
 
         if (context.size() < 2 )
         {
@@ -221,7 +221,7 @@ public class DumbScheduler implements Scheduler, Logger
                 command.add(WiFiNIC.NOP);
         }
 
-        Log.debug(this, "Command: " + command);
+        Log.debug(this, "Command: {}", command);
 
         return command;
     }
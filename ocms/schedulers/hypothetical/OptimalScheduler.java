@@ -7,6 +7,9 @@
 package ocms.schedulers.hypothetical;
 
 
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.Set;
 import java.util.HashSet;
@@ -24,6 +27,7 @@ import ocms.nic.NIC;
 import ocms.dataset.Tuple;
 import ocms.util.Log;
 import ocms.util.Block;
+import ocms.util.BlockIndex;
 import ocms.util.Logger;
 import ocms.schedulers.Scheduler;
 import ocms.schedulers.SchedulerException;
@@ -70,12 +74,21 @@ public class OptimalScheduler implements Scheduler, Logger
     /** Energy cost of the NIC */
     double energycost;
 
+    /** Energy cost of the NIC per second of transmission */
+    double txcost;
+
+    /** The file the frontier is written to, or null */
+    String frontierfile;
+
     /** The schedule */
     Block[] schedule;
 
     /** Helps more efficient query processing */
     int lastindex;
 
+    /** The index of the schedule used to find the block of a query */
+    BlockIndex blockindex;
+
     /**
       * Constructs an OptimalScheduler with the provided Medium.
       * After a scheduler is created it should be initialized with a call to
@@ -97,6 +110,7 @@ public class OptimalScheduler implements Scheduler, Logger
         this.starttime = starttime;
         this.bitrate = wifinic.getTxRate();
         this.energycost = wifinic.getFixedCosts();
+        this.txcost = wifinic.getTxCost();
         now = 0.0;
         lastindex = 0;;
     }
@@ -147,37 +161,17 @@ public class OptimalScheduler implements Scheduler, Logger
 
         int stime = medium.indexOf(starttime);
         int etime = medium.indexOf(endtime);
-        int step = medium.getTimeStep();
-
-        boolean inblock = false;
-
-        double bstart = 0;
-        double bend;
 
         /* Finds all the availability blocks in the medium and constructs
-           the blocks */
-        for (int time = stime; time <= etime; time += step)
+           the blocks. The last block ends at etime if no sample ends it. */
+        double[] found = medium.getPresence().findBlocks(stime, etime);
+        for (int k = 0; k < found.length; k += 2)
         {
-            if ( medium.scan(time) != null)
-            {
-                if ( (!inblock) && (medium.scan(time).size() != 0))
-                {
-                    inblock = true;
-                    bstart = time;
-                }
-    
-                if ((inblock) && (medium.scan(time).size() == 0))
-                {
-                    inblock = false;
-                    blockset.add( new Block(bstart, time, energysens*energycost/(time - bstart) + delaysens*bstart) );
-                }
-            }
+            double bstart = found[k];
+            double bend = found[k + 1];
+            blockset.add( new Block(bstart, bend, energysens*energycost/(bend - bstart) + delaysens*bstart) );
         }
 
-        /* For the very last block */
-        if (inblock)
-            blockset.add( new Block(bstart, etime, energysens*energycost/(etime - bstart) + delaysens*bstart) );
-
 
 
 
@@ -213,6 +207,9 @@ public class OptimalScheduler implements Scheduler, Logger
         /* Sorts the blocks based on their length */
         Arrays.sort( blocks );
 
+        if (frontierfile != null)
+            writeFrontier( blocks );
+
 
 
         i = 0;
@@ -237,7 +234,7 @@ public class OptimalScheduler implements Scheduler, Logger
 
         if ( (achieved < goal) && ( i == blockset.size() ))
         {
-            Log.info(this, "Goal " + goal + " is not achievable");
+            Log.info(this, "Goal {} is not achievable", goal);
             Log.stdout(this, "Goal " + goal + " is not achievable");
         }
         else if ( achieved > goal )
@@ -261,11 +258,79 @@ public class OptimalScheduler implements Scheduler, Logger
             schedule[k] = tempschedule[k];
 
         Arrays.sort( schedule );
+        blockindex = new BlockIndex( schedule );
 
         Log.stdout(this, "\nScheduled blocks");
         for (int k=0; k < schedule.length; k++)
             Log.stdout(this, schedule[k].toString());
 
+        /* The estimate of the schedule, to be compared with the result of the simulation */
+        if (frontierfile != null)
+        {
+            double data = 0;
+            double energy = 0;
+            for (int k = 0; k < schedule.length; k++)
+            {
+                data += schedule[k].getLength()*bitrate;
+                energy += energycost + txcost*schedule[k].getLength();
+            }
+            Log.stdout(this, "Estimated data " + new BigDecimal(data, new MathContext(10))
+                    + " energy " + new BigDecimal(energy, new MathContext(10)) );
+        }
+
+    }
+
+    /**
+      * Writes the energy/data frontier of the blocks to the frontier file.
+      * The blocks are taken in the order the schedule takes them, so row <i>k</i>
+      * of the table is the schedule of the smallest goal that takes <i>k</i> blocks:
+      * the prefix sums of the data sent and of the energy spent in the first
+      * <i>k</i> blocks. The energy of a block is estimated as the cost of turning
+      * on, associating and turning off the NIC and the cost of transmitting for
+      * the length of the block. A goal between two rows takes part of the next
+      * block. The estimate of any row can be checked by running the simulation
+      * with its data as the goal.
+      *
+      * @param      blocks              the blocks in the order of their cost
+      */
+    private void writeFrontier(Block[] blocks)
+    {
+        double[] data = new double[blocks.length + 1];
+        double[] energy = new double[blocks.length + 1];
+        for (int k = 0; k < blocks.length; k++)
+        {
+            data[k + 1] = data[k] + blocks[k].getLength()*bitrate;
+            energy[k + 1] = energy[k] + energycost + txcost*blocks[k].getLength();
+        }
+
+        try
+        {
+            PrintWriter output = new PrintWriter( new FileWriter(frontierfile) );
+            output.println("# blocks\tgoal\tenergy\tstart\tlength\tcost");
+            for (int k = 1; k <= blocks.length; k++)
+                output.println(k + "\t" + data[k] + "\t" + energy[k] + "\t" + blocks[k - 1].getStart()
+                        + "\t" + blocks[k - 1].getLength() + "\t" + blocks[k - 1].getCost());
+            output.close();
+
+            Log.stdout(this, "Wrote the frontier of " + blocks.length + " blocks to " + frontierfile);
+        }
+        catch (IOException ioe)
+        {
+            System.err.println(getName() + ": Error in writing the frontier: " + ioe.toString());
+            ioe.printStackTrace();
+        }
+    }
+
+    /**
+      * Sets the file the energy/data frontier is written to.
+      * When it is set, {@link #initialize} writes the frontier of all the goals
+      * and reports the estimate of the schedule of its own goal.
+      *
+      * @param      frontierfile        name of the file, or null
+      */
+    public void setFrontierFile(String frontierfile)
+    {
+        this.frontierfile = frontierfile;
     }
 
     /**
@@ -299,19 +364,18 @@ public class OptimalScheduler implements Scheduler, Logger
 
 
         ArrayList<Object> command = new ArrayList<Object>( 3 );
-        HashSet futurestatus = (HashSet) medium.scan( now );
+        Set futurestatus = medium.scan( now );
         int currentstate = (Integer)context.get(1);
         String ap = null;
         command.add(NIC.WiFi);
 
+        /* The scheduled blocks do not overlap, so only the last block that starts
+         * before now may contain it, and otherwise now is in the gap after it.
+         */
         int index = -1;
-        for (int i = lastindex; i < schedule.length; i++)
-        {
-            if ( (schedule[i].getStart() <= now) && ( schedule[i].getEnd() > now ) )
-            {
-                index = i;
-            }
-        }
+        int found = blockindex.find( now );
+        if ( (found >= lastindex) && blockindex.contains(found, now) )
+            index = found;
 
         if (index != -1)
         {
@@ -355,7 +419,7 @@ public class OptimalScheduler implements Scheduler, Logger
             }
             */
 
-            Log.debug( this, " Query returned " + command );
+            Log.debug( this, " Query returned {}", command );
             return command;
         }
 
@@ -365,7 +429,7 @@ public class OptimalScheduler implements Scheduler, Logger
         if ( now < schedule[0].getStart())
         {
             command.add(schedule[0].getStart());
-            Log.debug( this, " Query returned " + command );
+            Log.debug( this, " Query returned {}", command );
             return command;
         }
 
@@ -373,15 +437,13 @@ public class OptimalScheduler implements Scheduler, Logger
         {
             command.add( endtime);
         }
-        else
+        else if ( (found >= lastindex) && (found < schedule.length - 1) && (now >= blockindex.getEnd(found)) )
         {
-            for (int i = lastindex; i < schedule.length - 1; i++)
-                if ( (now >= schedule[i].getEnd()) && ( now < schedule[i+1].getStart()) )
-                    command.add(schedule[i + 1].getStart());
+            command.add(blockindex.getStart(found + 1));
         }
 
 
-        Log.debug( this, " Query returned " + command );
+        Log.debug( this, " Query returned {}", command );
         return command;
 
     }
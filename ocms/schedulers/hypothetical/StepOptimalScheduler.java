@@ -136,7 +136,7 @@ public class StepOptimalScheduler implements Scheduler, Logger
     {
 
         now = (Double) context.get(0);
-        Log.debug(this, "Query " + context);
+        Log.debug(this, "Query {}", context);
 
         if (!medium.hasTime( now ) ) 
             throw new SchedulerException("The medium is not available at time " + now);
@@ -145,7 +145,7 @@ public class StepOptimalScheduler implements Scheduler, Logger
             throw new SchedulerException("Malformed context array");
 
         int niccondition = (Integer) context.get(1);
-        HashSet futurestatus = (HashSet) medium.scan( now );
+        Set futurestatus = medium.scan( now );
         ArrayList<Object> command = new ArrayList<Object>( 3 );
         command.add(NIC.WiFi);
 
@@ -178,7 +178,7 @@ public class StepOptimalScheduler implements Scheduler, Logger
         }
 
         /* If the user is connected to an AP, just check if it will be available and return DATA_TX */
-        Log.debug( this, "Command " + command );
+        Log.debug( this, "Command {}", command );
         return command;
     }
 
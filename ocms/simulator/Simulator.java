@@ -11,17 +11,29 @@ import java.io.FileWriter;
 import java.io.IOException;
 import java.io.FileNotFoundException;
 import java.util.HashMap;
+import java.util.SplittableRandom;
 import java.util.ArrayList;
 import java.util.Iterator;
 
+import ocms.dataset.BinaryTrace;
+import ocms.dataset.CompactTrace;
 import ocms.dataset.DataSet;
 import ocms.dataset.Sample;
 import ocms.medium.Medium;
 import ocms.medium.WiFiMedium;
 import ocms.medium.GSMMedium;
+import ocms.medium.TraceCache;
+import ocms.medium.MappedWiFiMedium;
+import ocms.medium.MappedGSMMedium;
+import ocms.medium.DenseWiFiMedium;
+import ocms.medium.DenseGSMMedium;
+import ocms.medium.CompactWiFiMedium;
+import ocms.medium.CompactGSMMedium;
 import ocms.util.Configuration;
+import ocms.util.Journal;
 import ocms.util.Log;
 import ocms.util.Logger;
+import ocms.util.ProfileTimeline;
 import ocms.nic.NIC;
 import ocms.nic.WiFiNIC;
 import ocms.nic.GSMNIC;
@@ -36,12 +48,16 @@ import ocms.schedulers.heuristic.EBScheduler;
 import ocms.schedulers.heuristic.LBScheduler;
 import ocms.schedulers.heuristic.UserStaticScheduler;
 import ocms.schedulers.caching.GSMCachingScheduler;
+import ocms.schedulers.caching.ScanCache;
+import ocms.schedulers.caching.ExactScanCache;
+import ocms.schedulers.caching.FingerprintCache;
 import ocms.schedulers.SchedulerException;
 import ocms.eventqueue.EventQueue;
 import ocms.eventqueue.Event;
 import ocms.eventqueue.EventConsumer;
 import ocms.eventqueue.EventQueueException;
 import ocms.algorithms.statistics.Frequency;
+import ocms.algorithms.statistics.FrequencyFilter;
 import ocms.user.UIDataSet;
 
 
@@ -124,6 +140,25 @@ public class Simulator implements Logger
     /** The scheduler GSM interface */
     private final String _GSMINTERFACE      = "_gsminterface";
 
+    /** The file the frontier of the OptimalScheduler is written to */
+    private final String _FRONTIER          = "_frontier";
+
+    /** The maximum number of scans of the GSMCachingScheduler cache */
+    private final String _CACHE_CAPACITY    = "_cache_capacity";
+
+    /** The eviction policy of the GSMCachingScheduler cache (LRU or LFU) */
+    private final String _CACHE_EVICTION    = "_cache_eviction";
+
+    /** The similarity threshold of the near hits of the GSMCachingScheduler cache */
+    private final String _CACHE_SIMILARITY  = "_cache_similarity";
+
+
+    /** The seed of the random streams of the simulation */
+    private final String RANDOM_SEED        = "random_seed";
+
+    /** Executing the command plans of the scheduler in the NIC wrappers (ON or OFF) */
+    private final String COMMAND_PLANS      = "command_plans";
+
 
     /** The start time of simulation */
     private final String START              = "start_time";
@@ -131,6 +166,42 @@ public class Simulator implements Logger
     /** The ending time of the simulation */
     private final String END                = "end_time";
 
+    /** The type of the event queue */
+    private final String EVENTQUEUE_TYPE    = "eventqueue_type";
+
+    /** Printing the results of the WiFi interfaces on standard output (ON or OFF) */
+    private final String PRINT_RESULTS      = "print_results";
+
+    /** Sharing the parsed traces between simulations (ON or OFF) */
+    private final String DATASET_CACHE      = "dataset_cache";
+
+    /** The heap budget of the trace cache in megabytes */
+    private final String DATASET_CACHE_BUDGET = "dataset_cache_budget";
+
+    /** The implementation of the media (HASH, DENSE or COMPACT) */
+    private final String MEDIUM_TYPE        = "medium_type";
+
+    /** HASH: medium type value */
+    private final String HASH               = "HASH";
+
+    /** DENSE: medium type value */
+    private final String DENSE              = "DENSE";
+
+    /** COMPACT: medium type value */
+    private final String COMPACT            = "COMPACT";
+
+    /** The base name of the binary journal files */
+    private final String JOURNAL            = "journal";
+
+    /** The size of the segments of the journal in megabytes */
+    private final String JOURNAL_SEGMENT    = "journal_segment_size";
+
+    /** The file the profile timelines are written to */
+    private final String TIMELINE           = "timeline";
+
+    /** The length of the buckets of the timelines in seconds */
+    private final String TIMELINE_RESOLUTION = "timeline_resolution";
+
     /** The command to the simulator object to finish simulation */
     public final static int FINISH          = 0;
 
@@ -153,6 +224,12 @@ public class Simulator implements Logger
     /** The scheduler object */
     SchedulerWrapper scheduler;
 
+    /** The seed of the random streams of the simulation */
+    long seed;
+
+    /** The GSMCachingScheduler, if it is the scheduler, for reporting its cache */
+    GSMCachingScheduler caching;
+
     /** the EventQueue object */
     EventQueue eq;
 
@@ -167,6 +244,14 @@ public class Simulator implements Logger
 
     UIDataSet userDataSet;
 
+    /** The log of this simulation */
+    Log log;
+
+    /** The journal of this simulation, or null */
+    Journal journal;
+
+    /** The timelines of the profiles of the WiFi interfaces, or null */
+    ArrayList<ProfileTimeline> timelines;
 
 
 
@@ -203,25 +288,43 @@ public class Simulator implements Logger
     /**
       * Constructs a simulation object with the given configuration file.
       * Parses the configuration file and uses its parameters to construct
-      * the simulator object. It constructs an array of interfaces and 
-      * initializes each one with an instance of the right type of NIC
-      * with the corresponding parameters from the simulation scenario.
+      * the simulator object. 
       *
       * @param      configfile      address of the configuration file on the file system.
       */
     public Simulator(String configfile)
+    {
+        this( new Configuration( configfile ) );
+    }
+
+    /**
+      * Constructs a simulation object with the given simulation scenario.
+      * It constructs an array of interfaces and initializes each one with an
+      * instance of the right type of NIC with the corresponding parameters 
+      * from the simulation scenario.
+      * The simulator binds its own {@link Log} to the calling thread. The 
+      * simulator should be run on the same thread, or the thread that runs
+      * it should bind the log again (see {@link #run}).
+      *
+      * @param      config          the simulation scenario. The simulator may add
+      *                             keys to this object.
+      */
+    public Simulator(Configuration config)
     {
         name = "simulator";
         interface_names = new HashMap<String, EventConsumer>();
         interface_types = new HashMap<EventConsumer, Integer>();
-        config =  new Configuration( configfile );
+        this.config =  config;
         nicnum = config.getInt(NIC_NUM);
         String nicname;
         DataSet dataset = null;
-        Frequency freq;
+        FrequencyFilter freq;
         ArrayList<String> filterList;
         WiFiMedium wifimedium;
         GSMMedium gsmmedium;
+        TraceCache.Trace trace = null;
+        BinaryTrace binary = null;
+        CompactTrace compacttrace = null;
 
         if (config.hasKey("user"))
             try
@@ -234,48 +337,107 @@ public class Simulator implements Logger
             }
 
         // Initializing the Log
-        if (config.get("STO").equals("OFF"))
-            Log.disableSto();
-
         int loglevel = Log.OFF;
         if (config.get(LOG_LEVEL).equals("DEBUG") )
-        {
             loglevel = Log.DEBUG;
-            Log.stdout(this, "DEBUG logging enabled");
-        }
         else if (config.get(LOG_LEVEL).equals("PARANOID") )
-        {
             loglevel = Log.PARANOID;
-            Log.stdout(this, "PARANOID logging enabled");
-        }
         else if (config.get(LOG_LEVEL).equals("INFO") )
-        {
             loglevel = Log.INFO;
-            Log.stdout(this,"INFO logging enabled");
-        }
 
+        boolean sto = !config.get("STO").equals("OFF");
 
         try
         {
-            Log.initialize(loglevel, config.get(LOGFILE));
-            Log.stdout(this, "logging to " + config.get(LOGFILE));
+            log = new Log(loglevel, config.get(LOGFILE), sto);
         }
         catch (Exception ioe )
         {
-            System.err.println(name + ": Error in flushing the log file: " + ioe.toString());
+            System.err.println(name + ": Error in opening the log file: " + ioe.toString());
             ioe.printStackTrace();
+            log = new Log();
+            log.setSto(sto);
         }
 
+        /* The log is bound to this thread until the end of run() */
+        Log.bind(log);
+
+        if (loglevel != Log.OFF)
+            Log.stdout(this, config.get(LOG_LEVEL) + " logging enabled");
+        Log.stdout(this, "logging to " + config.get(LOGFILE));
+
 
         interfaces = new EventConsumer[nicnum];
-        try
+
+        String mediumtype = config.hasKey(MEDIUM_TYPE) ? config.get(MEDIUM_TYPE) : HASH;
+        boolean dense = mediumtype.equals(DENSE);
+        boolean compact = mediumtype.equals(COMPACT);
+        if (dense)
+            Log.stdout(this, "Using dense media");
+        if (compact)
+            Log.stdout(this, "Using compact media");
+
+        if ( config.hasKey(DATASET_CACHE) && config.get(DATASET_CACHE).equals("ON") )
         {
-            dataset = new DataSet( config.get("dataset"), config.getInt("dataset_timestep") );
+            /* The media are shared with the other simulations that use the same trace */
+            if (config.hasKey(DATASET_CACHE_BUDGET))
+                TraceCache.getInstance().setBudget( 1048576L*config.getInt(DATASET_CACHE_BUDGET) );
+
+            filterList = null;
+            if (config.hasKey("dataset_filter"))
+                filterList = config.getList("dataset_filter");
+
+            try
+            {
+                trace = TraceCache.getInstance().get( config.get("dataset"), config.getInt("dataset_timestep")
+                        , filterList
+                        , config.hasKey("dataset_filter_highpass_freq") ? config.getDouble("dataset_filter_highpass_freq") : -1
+                        , mediumtype );
+            }
+            catch (FileNotFoundException fnfe)
+            {
+                System.err.println(name + " Data set file dies not exist: " + fnfe.toString() );
+                System.exit(1);
+            }
         }
-        catch (FileNotFoundException fnfe)
+        else
         {
-            System.err.println(name + " Data set file dies not exist: " + fnfe.toString() );
-            System.exit(1);
+            try
+            {
+                if (BinaryTrace.isBinary( config.get("dataset") ))
+                    binary = new BinaryTrace( config.get("dataset") );
+                else
+                    dataset = new DataSet( config.get("dataset"), config.getInt("dataset_timestep") );
+            }
+            catch (FileNotFoundException fnfe)
+            {
+                System.err.println(name + " Data set file dies not exist: " + fnfe.toString() );
+                System.exit(1);
+            }
+            catch (IOException ioe)
+            {
+                System.err.println(name + " Error in loading the binary data set: " + ioe.toString() );
+                System.exit(1);
+            }
+        }
+
+        if (dataset != null)
+        {
+            /* The filters share one count and rewrite the samples once */
+            freq = new FrequencyFilter( dataset, Frequency.WIFI );
+            if (config.hasKey("dataset_filter"))
+            {
+                filterList = config.getList("dataset_filter");
+                for (int filterindex = 0; filterindex < filterList.size(); filterindex++)
+                    freq.remove( filterList.get(filterindex));
+            }
+            if (config.hasKey("dataset_filter_highpass_freq"))
+                freq.highpass( config.getDouble("dataset_filter_highpass_freq"));
+            freq.apply();
+
+            /* The WiFi and GSM media share one compact copy of the filtered data set */
+            if (compact)
+                compacttrace = new CompactTrace(dataset);
         }
 
 
@@ -285,17 +447,26 @@ public class Simulator implements Logger
 
             if ( (config.get(nicname + _TYPE )).equals("WIFI") )
             {
-                freq = new Frequency( dataset, Frequency.WIFI );
-                if (config.hasKey("dataset_filter"))
+                if (trace != null)
+                    wifimedium = trace.getWiFiMedium().view(nicname + "_Medium");
+                else if (binary != null)
                 {
-                    filterList = config.getList("dataset_filter");
-                    for (int filterindex = 0; filterindex < filterList.size(); filterindex++)
-                        freq.filter( filterList.get(filterindex));
+                    filterList = null;
+                    if (config.hasKey("dataset_filter"))
+                        filterList = config.getList("dataset_filter");
+
+                    wifimedium = new MappedWiFiMedium( binary, config.getInt("dataset_timestep")
+                            , binary.filterWiFi( filterList, config.hasKey("dataset_filter_highpass_freq")
+                                ? config.getDouble("dataset_filter_highpass_freq") : -1 )
+                            , nicname + "_Medium");
                 }
-                if (config.hasKey("dataset_filter_highpass_freq"))
-                    freq.highpass( config.getDouble("dataset_filter_highpass_freq"));
+                else if (compact)
+                    wifimedium = new CompactWiFiMedium( compacttrace, nicname + "_Medium");
+                else if (dense)
+                    wifimedium = new DenseWiFiMedium( dataset, nicname + "_Medium");
+                else
+                    wifimedium = new WiFiMedium( dataset, nicname + "_Medium");
     
-                wifimedium = new WiFiMedium( dataset, nicname + "_Medium");
                 interfaces[ i ] = new WiFiNICWrapper (new WiFiNIC( nicname
                         , config.getView(nicname)
                         , wifimedium ));
@@ -307,7 +478,17 @@ public class Simulator implements Logger
             }
             else if ( (config.get(nicname + _TYPE )).equals("GSM") )
             {
-                gsmmedium = new GSMMedium( dataset, nicname + "_Medum");
+                if (trace != null)
+                    gsmmedium = trace.getGSMMedium().view(nicname + "_Medum");
+                else if (binary != null)
+                    gsmmedium = new MappedGSMMedium( binary, config.getInt("dataset_timestep"), null, nicname + "_Medum");
+                else if (compact)
+                    gsmmedium = new CompactGSMMedium( compacttrace, nicname + "_Medum");
+                else if (dense)
+                    gsmmedium = new DenseGSMMedium( dataset, nicname + "_Medum");
+                else
+                    gsmmedium = new GSMMedium( dataset, nicname + "_Medum");
+
                 interfaces[ i ] = new GSMNICWrapper ( new GSMNIC (nicname, gsmmedium));
                 interface_names.put(nicname, interfaces[ i ] );
                 interface_types.put(interfaces[ i ], NIC.GSM );
@@ -317,6 +498,15 @@ public class Simulator implements Logger
 
         }
 
+        /* Every component that needs random values gets its own stream split from the
+           seed, so the simulations of a sweep do not share a generator */
+        if (config.hasKey(RANDOM_SEED))
+            seed = config.getLong(RANDOM_SEED);
+        else
+            seed = new SplittableRandom().nextLong();
+        SplittableRandom random = new SplittableRandom(seed);
+        Log.stdout(this, "random seed " + seed);
+
         /* Creating the scheduler and the scheduler wrapper objects */
         if ( (config.get( SCHEDULER_TYPE )).equals(STEPOPTIMAL) )
         {
@@ -342,11 +532,15 @@ public class Simulator implements Logger
         else if ( (config.get( SCHEDULER_TYPE )).equals(OPTIMAL) )
         {
             Log.stdout(this, "Initializing OptimalScheduler");
-            scheduler = new SchedulerWrapper( new OptimalScheduler (
+            OptimalScheduler optimal = new OptimalScheduler (
                                             ((WiFiNICWrapper)interface_names.get( config.get( OPTIMAL + _INTERFACE ))).getNIC().getMedium()
                                            , config.getDouble(START) 
                                            , config.getDouble(END)
-                                           , ((WiFiNICWrapper)interface_names.get( config.get( OPTIMAL + _INTERFACE ))).getNIC())
+                                           , ((WiFiNICWrapper)interface_names.get( config.get( OPTIMAL + _INTERFACE ))).getNIC());
+            if (config.hasKey(OPTIMAL + _FRONTIER))
+                optimal.setFrontierFile( config.get(OPTIMAL + _FRONTIER) );
+
+            scheduler = new SchedulerWrapper( optimal
                         , (GSMNICWrapper)null
                         , ((WiFiNICWrapper)interface_names.get( config.get( OPTIMAL + _INTERFACE ))) );
 
@@ -356,7 +550,8 @@ public class Simulator implements Logger
             Log.stdout(this, "Initializing EBScheduler");
             scheduler = new SchedulerWrapper( new EBScheduler( config.getDouble(END)
                                             , config.getDouble( EB + "_maxbackoff")
-                                            , ((WiFiNICWrapper)interface_names.get( config.get( EB + _INTERFACE ))).getNIC() )
+                                            , ((WiFiNICWrapper)interface_names.get( config.get( EB + _INTERFACE ))).getNIC()
+                                            , random.split() )
                         , (GSMNICWrapper)null
                         , ((WiFiNICWrapper)interface_names.get( config.get( EB + _INTERFACE ))));
             config.add("EB_energysens", "0");
@@ -370,7 +565,8 @@ public class Simulator implements Logger
                                             , config.getDouble( LB + "_backoffstep")
                                             , config.getDouble( LB + "_initialbackoff")
                                             , ((WiFiNICWrapper)interface_names.get( config.get( EB + _INTERFACE ))).getNIC()
-                                            , config.getBoolean( LB + "_randomize"))
+                                            , config.getBoolean( LB + "_randomize")
+                                            , random.split() )
                        , (GSMNICWrapper)null
                        , ((WiFiNICWrapper)interface_names.get( config.get( EB + _INTERFACE ))) );
             config.add("LB_energysens", "0");
@@ -380,10 +576,33 @@ public class Simulator implements Logger
         else if ( (config.get( SCHEDULER_TYPE )).equals(STATIC) )
         {
             Log.stdout(this, "Initializing GSMCachingScheduler");
-            scheduler = new SchedulerWrapper( new GSMCachingScheduler( config.getDouble(END)
+            ScanCache cache;
+            if ( config.hasKey(STATIC + _CACHE_CAPACITY) || config.hasKey(STATIC + _CACHE_EVICTION)
+                    || config.hasKey(STATIC + _CACHE_SIMILARITY) )
+            {
+                int capacity = 0;
+                String eviction = FingerprintCache.LRU;
+                double similarity = 1.0;
+                if (config.hasKey(STATIC + _CACHE_CAPACITY))
+                    capacity = config.getInt(STATIC + _CACHE_CAPACITY);
+                if (config.hasKey(STATIC + _CACHE_EVICTION))
+                    eviction = config.get(STATIC + _CACHE_EVICTION);
+                if (config.hasKey(STATIC + _CACHE_SIMILARITY))
+                    similarity = config.getDouble(STATIC + _CACHE_SIMILARITY);
+
+                Log.stdout(this, "Using a " + eviction + " fingerprint cache of " + capacity
+                        + " scans and similarity " + similarity);
+                cache = new FingerprintCache(capacity, eviction, similarity);
+            }
+            else
+                cache = new ExactScanCache();
+
+            caching = new GSMCachingScheduler( config.getDouble(END)
                                             , config.getDouble( STATIC + "_interval")
                                             , ((WiFiNICWrapper)interface_names.get( config.get( STATIC + _INTERFACE ))).getNIC()
-                                            , config.getBoolean( STATIC + "_randomize"))
+                                            , config.getBoolean( STATIC + "_randomize")
+                                            , cache);
+            scheduler = new SchedulerWrapper( caching
                         , ((GSMNICWrapper)interface_names.get( config.get( STATIC + _GSMINTERFACE )))
                         , ((WiFiNICWrapper)interface_names.get( config.get( STATIC + _INTERFACE ))));
             config.add("STATIC_energysens", "0");
@@ -412,12 +631,78 @@ public class Simulator implements Logger
                 , config.getDouble( config.get(SCHEDULER_TYPE) + "_energysens")
                 , config.getDouble( config.get(SCHEDULER_TYPE) + "_delaysens") );
 
+        if ( config.hasKey(COMMAND_PLANS) && config.get(COMMAND_PLANS).equals("ON") )
+        {
+            scheduler.setPlanning(true);
+            Log.stdout(this, "Executing command plans in the interfaces");
+        }
+
 
 
         // Creating the EventQueue object
-        eq = new EventQueue(scheduler.getEndTime() );
+        if (config.hasKey(EVENTQUEUE_TYPE))
+        {
+            try
+            {
+                eq = new EventQueue(scheduler.getEndTime(), EventQueue.createList(config.get(EVENTQUEUE_TYPE)));
+                Log.stdout(this, "Using " + config.get(EVENTQUEUE_TYPE) + " event queue");
+            }
+            catch (EventQueueException eqe)
+            {
+                System.err.println(name + ": " + eqe.getMessage() + ". Using the default event queue");
+                eq = new EventQueue(scheduler.getEndTime() );
+            }
+        }
+        else
+            eq = new EventQueue(scheduler.getEndTime() );
+
 
+        // Creating the journal
+        if (config.hasKey(JOURNAL))
+        {
+            try
+            {
+                if (config.hasKey(JOURNAL_SEGMENT))
+                    journal = new Journal( config.get(JOURNAL), 1048576L*config.getInt(JOURNAL_SEGMENT) );
+                else
+                    journal = new Journal( config.get(JOURNAL) );
+
+                eq.setJournal(journal);
+                for (int i = 0; i < nicnum; i++)
+                {
+                    if (interface_types.get(interfaces[i]) == NIC.WiFi)
+                        ((WiFiNICWrapper)interfaces[i]).getNIC().setJournal(journal);
+                    else
+                        ((GSMNICWrapper)interfaces[i]).getNIC().setJournal(journal);
+                }
+                Log.stdout(this, "journaling to " + config.get(JOURNAL));
+            }
+            catch (IOException ioe)
+            {
+                System.err.println(name + ": Error in creating the journal: " + ioe.toString());
+                ioe.printStackTrace();
+                journal = null;
+            }
+        }
 
+        // Recording the timelines of the profiles
+        if (config.hasKey(TIMELINE))
+        {
+            double resolution = ProfileTimeline.DEFAULT_RESOLUTION;
+            if (config.hasKey(TIMELINE_RESOLUTION))
+                resolution = config.getDouble(TIMELINE_RESOLUTION);
+
+            timelines = new ArrayList<ProfileTimeline>();
+            for (int i = 0; i < nicnum; i++)
+            {
+                if (interface_types.get(interfaces[i]) == NIC.WiFi)
+                {
+                    WiFiNIC nic = ((WiFiNICWrapper)interfaces[i]).getNIC();
+                    for (ProfileTimeline timeline : nic.getProfile().createTimelines(resolution))
+                        timelines.add(timeline);
+                }
+            }
+        }
 
     }
 
@@ -442,30 +727,109 @@ public class Simulator implements Logger
     }
 
 
+    /**
+      * Returns the seed of the random streams of the simulation.
+      * Running the scenario with this value of random_seed repeats the simulation.
+      *
+      * @return                 the seed
+      */
+    public long getSeed()
+    {
+        return seed;
+    }
+
+    /**
+      * Returns the total amount of data sent by the WiFi interfaces.
+      * Should be called after {@link #run}.
+      *
+      * @return                 sent data
+      */
+    public double getSentData()
+    {
+        double result = 0;
+
+        for (int i = 0; i < nicnum; i++)
+        {
+            if (interface_types.get(interfaces[i]) == NIC.WiFi)
+                result += ((WiFiNICWrapper)interfaces[i]).getNIC().getProfile().getSentData();
+        }
+
+        return result;
+    }
+
+    /**
+      * Returns the total energy consumed by the WiFi interfaces.
+      * Should be called after {@link #run}.
+      *
+      * @return                 consumed energy
+      */
+    public double getEnergy()
+    {
+        double result = 0;
+
+        for (int i = 0; i < nicnum; i++)
+        {
+            if (interface_types.get(interfaces[i]) == NIC.WiFi)
+                result += ((WiFiNICWrapper)interfaces[i]).getNIC().getProfile().getEnergy();
+        }
+
+        return result;
+    }
+
+    /**
+      * Returns the number of events dispatched by the event queue.
+      * Should be called after {@link #run}.
+      *
+      * @return                 number of dispatched events
+      */
+    public long getEventCount()
+    {
+        return eq.getDispatched();
+    }
+
+    /**
+      * Returns the simulated time.
+      * That is the time between the start of the simulation and the last
+      * dispatched event. Should be called after {@link #run}.
+      *
+      * @return                 simulated time in seconds
+      */
+    public double getSimulatedTime()
+    {
+        if (eq.getDispatched() == 0)
+            return 0.0;
+
+        return eq.getTime() - config.getInt(START);
+    }
+
     /**
       * Runs the simulation.
       * Enqueues the start and end commands in the event queue and starts it.
+      * The log of the simulation is bound to the calling thread while the 
+      * simulation runs, and is closed at the end.
       *
       */
     public void run()
     {
-        ArrayList<Object> turnoncommand = new ArrayList<Object>(2);
+        Log.bind(log);
 
         for (int i = 0; i < nicnum; i++)
         {
             if ( interface_types.get( interfaces[i] ) == NIC.WiFi )
             {
-                turnoncommand.add(NIC.WiFi);
-                turnoncommand.add((Integer) WiFiNIC.ON);
-                try
-                {
-                    eq.enqueue( new Event( (double)config.getInt(START)
+                Event turnoncommand = eq.obtain( (double)config.getInt(START)
                                 , Event.COMMAND
                                 , (EventConsumer)scheduler 
-                                , (EventConsumer)interfaces[i], turnoncommand ));
+                                , (EventConsumer)interfaces[i] );
+                turnoncommand.addInt(NIC.WiFi);
+                turnoncommand.addInt(WiFiNIC.ON);
+                try
+                {
+                    eq.enqueue( turnoncommand );
                 }
                 catch (EventQueueException e)
                 {
+                    eq.recycle(turnoncommand);
                     System.err.println(name + ": Error in communication with the event queue: " + e.toString());
                     e.printStackTrace();
                 }
@@ -484,10 +848,34 @@ public class Simulator implements Logger
         }
 
 
-        for (int i = 0; i < nicnum; i++)
+        if (caching != null)
+            Log.stdout(this, caching.getCacheStatistics());
+
+
+        /* A sweep collects the results itself (see Sweep) */
+        if ( !config.hasKey(PRINT_RESULTS) || !config.get(PRINT_RESULTS).equals("OFF") )
         {
-            if (interface_types.get(interfaces[i]) == NIC.WiFi)
-                System.out.println(interfaces[i].toString());
+            for (int i = 0; i < nicnum; i++)
+            {
+                if (interface_types.get(interfaces[i]) == NIC.WiFi)
+                    System.out.println(interfaces[i].toString());
+            }
+        }
+
+        if (journal != null)
+            journal.close();
+
+        if (timelines != null)
+        {
+            try
+            {
+                ProfileTimeline.write(config.get(TIMELINE), timelines);
+            }
+            catch (IOException ioe)
+            {
+                System.err.println(name + ": Error in writing the timelines: " + ioe.toString());
+                ioe.printStackTrace();
+            }
         }
 
         Log.flush();
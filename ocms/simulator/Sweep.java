@@ -0,0 +1,498 @@
+ /**
+  * Opportunistic Connectivity Management Simulator
+  *
+  * Copyright (C) 2007 Hossein Falaki
+  */
+
+package ocms.simulator;
+
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.reflect.Method;
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.ArrayList;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+import ocms.util.Configuration;
+import ocms.util.Log;
+import ocms.util.Logger;
+
+
+/**
+  * Runs a parameter sweep over a simulation scenario.
+  * The sweep file is a normal simulation scenario with a number of extra keys.
+  * Each key of the form <i>sweep_'key'</i> gives the values of the scenario
+  * key 'key' to be swept. The values are either a comma separated list
+  * (e.g. <code>sweep_scheduler_type = EB, LB, STATIC</code>) or a range of the
+  * form <i>from:to:step</i> (e.g. <code>sweep_EB_maxbackoff = 600:3600:600</code>).
+  * A run is made for every combination of the swept values.
+  * <br>
+  * The following keys control the sweep itself:
+  * <ul>
+  *     <li><b>sweep_threads:</b> the number of simulations run at the same time
+  *             (the number of processors by default)</li>
+  *     <li><b>sweep_executor:</b> FIXED for a fixed size thread pool (default) or
+  *             VIRTUAL for one virtual thread per run, if the JVM supports it</li>
+  *     <li><b>sweep_output:</b> the file the aggregated table is written to
+  *             (the standard output by default)</li>
+  * </ul>
+  * Each run is an independent {@link Simulator} with its own copy of the scenario
+  * and its own log file (the log file name followed by the index of the run),
+  * and its own journal and timeline file if the scenario has them.
+  * The runs share the parsed traces through the {@link ocms.medium.TraceCache},
+  * unless <i>dataset_cache</i> is set to OFF.
+  * Runs whose dataset file does not exist are skipped. The table has one row
+  * per run with the swept values, the random seed of the run (see random_seed in
+  * the scenario), the data sent and the energy consumed by the
+  * WiFi interfaces and the running time of the simulation.
+  *
+  * @author     Hossein Falaki
+  */
+public class Sweep implements Logger
+{
+    /** The prefix of the swept keys */
+    private final String SWEEP              = "sweep_";
+
+    /** Number of threads */
+    private final String THREADS            = "sweep_threads";
+
+    /** The type of the executor */
+    private final String EXECUTOR           = "sweep_executor";
+
+    /** The output file */
+    private final String OUTPUT             = "sweep_output";
+
+    /** FIXED: executor type value */
+    private final String FIXED              = "FIXED";
+
+    /** VIRTUAL: executor type value */
+    private final String VIRTUAL            = "VIRTUAL";
+
+    /** The logfile name */
+    private final String LOGFILE            = "logfile_name";
+
+    /** The journal base name */
+    private final String JOURNAL            = "journal";
+
+    /** The timeline file */
+    private final String TIMELINE           = "timeline";
+
+    /** The frontier file of the OptimalScheduler */
+    private final String FRONTIER           = "OPTIMAL_frontier";
+
+    /** The dataset file */
+    private final String DATASET            = "dataset";
+
+    /** Sharing the parsed traces between simulations */
+    private final String DATASET_CACHE      = "dataset_cache";
+
+    /** Printing the results of each simulation on standard output */
+    private final String PRINT_RESULTS      = "print_results";
+
+    /** The math context object for precision printing */
+    static MathContext mc;
+
+    static
+    {
+        mc = new MathContext(10);
+    }
+
+    /** The base simulation scenario */
+    Configuration config;
+
+    /** The swept keys */
+    ArrayList<String> keys;
+
+    /** The values of each swept key */
+    ArrayList<ArrayList<String>> values;
+
+    /** Number of simulations run at the same time */
+    int threads;
+
+    /** Name of the sweep object */
+    String name;
+
+
+    /**
+      * The result of a single run of the sweep.
+      */
+    private static class Result
+    {
+        /** Index of the run */
+        int index;
+
+        /** Values of the swept keys */
+        String[] assignment;
+
+        /** The seed of the random streams of the run */
+        long seed;
+
+        /** Data sent by the WiFi interfaces */
+        double sent;
+
+        /** Energy consumed by the WiFi interfaces */
+        double energy;
+
+        /** Running time of the simulation in milliseconds */
+        long walltime;
+
+        /** The reason the run failed, or null */
+        String error;
+    }
+
+
+    /**
+      * The main method of the sweep.
+      * The address to the sweep file should be passed to the main method.
+      *
+      * @param      argv            list of orguments passed to the program. The first argument should be
+      *                             the address to the sweep file. The others are ignored.
+      */
+    public static void main(String[] argv)
+    {
+        Sweep sweep = new Sweep( new Configuration(argv[0]) );
+        sweep.run();
+    }
+
+
+    /**
+      * Constructs a sweep over the given simulation scenario.
+      * Extracts the swept keys and their values from the scenario.
+      *
+      * @param      config          the base simulation scenario
+      */
+    public Sweep(Configuration config)
+    {
+        this.config = config;
+        this.name = "sweep";
+        keys = new ArrayList<String>();
+        values = new ArrayList<ArrayList<String>>();
+
+        for (String key : new TreeSet<String>(config.getKeys()) )
+        {
+            if ( !key.startsWith(SWEEP) || key.equals(THREADS) || key.equals(EXECUTOR) || key.equals(OUTPUT) )
+                continue;
+
+            keys.add( key.substring(SWEEP.length()) );
+            values.add( parseValues(key) );
+        }
+
+        if (config.hasKey(THREADS))
+            threads = config.getInt(THREADS);
+        else
+            threads = Runtime.getRuntime().availableProcessors();
+
+        if (threads < 1)
+            threads = 1;
+    }
+
+    /**
+      * Parses the values of a swept key.
+      *
+      * @param      key             the sweep key
+      * @return                     list of the values of the key
+      */
+    private ArrayList<String> parseValues(String key)
+    {
+        ArrayList<String> result = new ArrayList<String>();
+
+        for (String item : config.getList(key))
+        {
+            item = item.trim();
+            if (item.length() == 0)
+                continue;
+
+            String[] range = item.split(":");
+            if (range.length != 3)
+            {
+                result.add(item);
+                continue;
+            }
+
+            try
+            {
+                double from = Double.parseDouble(range[0].trim());
+                double to = Double.parseDouble(range[1].trim());
+                double step = Double.parseDouble(range[2].trim());
+                boolean integer = (range[0].indexOf('.') == -1) && (range[1].indexOf('.') == -1)
+                    && (range[2].indexOf('.') == -1);
+
+                if (step <= 0)
+                {
+                    System.err.println(name + ": Invalid step in " + key + " (" + item + ")");
+                    continue;
+                }
+
+                /* A small tolerance for the rounding errors */
+                int count = (int)Math.floor( (to - from)/step + 1e-9 );
+                for (int i = 0; i <= count; i++)
+                {
+                    double value = from + i*step;
+                    if (integer)
+                        result.add( Long.toString( Math.round(value) ) );
+                    else
+                        result.add( Double.toString(value) );
+                }
+            }
+            catch (NumberFormatException nfe)
+            {
+                result.add(item);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+      * Returns all the combinations of the swept values.
+      *
+      * @return                     list of assignments to the swept keys
+      */
+    private ArrayList<String[]> combinations()
+    {
+        ArrayList<String[]> result = new ArrayList<String[]>();
+        int[] position = new int[keys.size()];
+
+        for (int i = 0; i < keys.size(); i++)
+        {
+            if (values.get(i).size() == 0)
+                return result;
+        }
+
+        while (true)
+        {
+            String[] assignment = new String[keys.size()];
+            for (int i = 0; i < keys.size(); i++)
+                assignment[i] = values.get(i).get(position[i]);
+            result.add(assignment);
+
+            /* Moves to the next combination, the last key changes first */
+            int i = keys.size() - 1;
+            while ( (i >= 0) && (++position[i] == values.get(i).size()) )
+            {
+                position[i] = 0;
+                i--;
+            }
+
+            if (i < 0)
+                return result;
+        }
+    }
+
+    /**
+      * Creates the executor that runs the simulations.
+      *
+      * @return                     the executor
+      */
+    private ExecutorService createExecutor()
+    {
+        if ( config.hasKey(EXECUTOR) && config.get(EXECUTOR).equals(VIRTUAL) )
+        {
+            try
+            {
+                Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+                return (ExecutorService)factory.invoke(null);
+            }
+            catch (Exception e)
+            {
+                System.err.println(name + ": Virtual threads are not supported by this JVM. Using "
+                        + threads + " threads");
+            }
+        }
+        else if ( config.hasKey(EXECUTOR) && !config.get(EXECUTOR).equals(FIXED) )
+        {
+            System.err.println(name + ": Unknown executor type " + config.get(EXECUTOR)
+                    + ". Using " + threads + " threads");
+        }
+
+        return Executors.newFixedThreadPool(threads);
+    }
+
+    /**
+      * Runs a single simulation of the sweep.
+      *
+      * @param      index           index of the run
+      * @param      assignment      values of the swept keys
+      * @return                     the result of the run
+      */
+    private Result runOne(int index, String[] assignment)
+    {
+        Result result = new Result();
+        result.index = index;
+        result.assignment = assignment;
+
+        Configuration runconfig = new Configuration(config);
+        for (int i = 0; i < keys.size(); i++)
+            runconfig.add(keys.get(i), assignment[i]);
+
+        if (runconfig.hasKey(LOGFILE))
+            runconfig.add(LOGFILE, runconfig.get(LOGFILE) + "." + index);
+
+        if (runconfig.hasKey(JOURNAL))
+            runconfig.add(JOURNAL, runconfig.get(JOURNAL) + "." + index);
+
+        if (runconfig.hasKey(TIMELINE))
+            runconfig.add(TIMELINE, runconfig.get(TIMELINE) + "." + index);
+
+        if (runconfig.hasKey(FRONTIER))
+            runconfig.add(FRONTIER, runconfig.get(FRONTIER) + "." + index);
+
+        if (!runconfig.hasKey(DATASET_CACHE))
+            runconfig.add(DATASET_CACHE, "ON");
+
+        /* The results would be interleaved with the rows of the table */
+        runconfig.add(PRINT_RESULTS, "OFF");
+
+        if ( !runconfig.hasKey(DATASET) || !(new File(runconfig.get(DATASET))).exists() )
+        {
+            result.error = "dataset file does not exist (" + runconfig.get(DATASET) + ")";
+            return result;
+        }
+
+        long start = System.currentTimeMillis();
+        try
+        {
+            Simulator simulator = new Simulator(runconfig);
+            simulator.run();
+            result.seed = simulator.getSeed();
+            result.sent = simulator.getSentData();
+            result.energy = simulator.getEnergy();
+        }
+        catch (Exception e)
+        {
+            result.error = e.toString();
+            e.printStackTrace();
+        }
+        finally
+        {
+            /* The thread may be reused for another run */
+            Log.unbind();
+        }
+        result.walltime = System.currentTimeMillis() - start;
+
+        return result;
+    }
+
+    /**
+      * Runs all the simulations of the sweep and writes the aggregated table.
+      *
+      */
+    public void run()
+    {
+        ArrayList<String[]> runs = combinations();
+        ArrayList<Future<Result>> results = new ArrayList<Future<Result>>(runs.size());
+
+        /* Limits the number of simulations in memory when there is one thread per run */
+        final Semaphore permits = new Semaphore(threads);
+
+        Log.stdout(this, "Running " + runs.size() + " simulations on " + threads + " threads");
+
+        ExecutorService executor = createExecutor();
+        for (int i = 0; i < runs.size(); i++)
+        {
+            final int index = i;
+            final String[] assignment = runs.get(i);
+            results.add( executor.submit( new Callable<Result>()
+            {
+                public Result call() throws InterruptedException
+                {
+                    permits.acquire();
+                    try
+                    {
+                        return runOne(index, assignment);
+                    }
+                    finally
+                    {
+                        permits.release();
+                    }
+                }
+            }));
+        }
+        executor.shutdown();
+
+        PrintWriter output;
+        try
+        {
+            if (config.hasKey(OUTPUT))
+                output = new PrintWriter( new FileWriter( config.get(OUTPUT) ) );
+            else
+                output = new PrintWriter( System.out );
+        }
+        catch (IOException ioe)
+        {
+            System.err.println(name + ": Error in opening the output file: " + ioe.toString());
+            output = new PrintWriter( System.out );
+        }
+
+        StringBuilder header = new StringBuilder("# run");
+        for (String key : keys)
+            header.append("\t").append(key);
+        header.append("\tseed\tsent\tenergy\ttime(ms)");
+        output.println(header);
+
+        for (Future<Result> future : results)
+        {
+            Result result;
+            try
+            {
+                result = future.get();
+            }
+            catch (Exception e)
+            {
+                System.err.println(name + ": Error while running the simulation: " + e.toString());
+                e.printStackTrace();
+                continue;
+            }
+
+            if (result.error != null)
+            {
+                output.println("# run " + result.index + " skipped: " + result.error);
+                continue;
+            }
+
+            StringBuilder row = new StringBuilder();
+            row.append(result.index);
+            for (int i = 0; i < result.assignment.length; i++)
+                row.append("\t").append(result.assignment[i]);
+            row.append("\t").append(result.seed);
+            row.append("\t").append(new BigDecimal(result.sent, mc));
+            row.append("\t").append(new BigDecimal(result.energy, mc));
+            row.append("\t").append(result.walltime);
+            output.println(row);
+            output.flush();
+        }
+
+        output.flush();
+        if (config.hasKey(OUTPUT))
+            output.close();
+    }
+
+    /**
+      * Returns the name of this object
+      *
+      * @return                 name of this object
+      */
+    public String getName()
+    {
+        return name;
+    }
+
+    /**
+      * Returns a default time value.
+      *
+      * @return                 always returns zero
+      */
+    public double getTime()
+    {
+        return 0.0;
+    }
+}
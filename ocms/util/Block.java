@@ -30,14 +30,14 @@ public class Block implements Comparable<Block>
 
 
     /** Start and end time of the block */
-    Double starttime;
+    double starttime;
     double endtime;
 
     /** Length of the block */
-    Double length;
+    double length;
 
     /** The cost per time  of this block */
-    Double cost;
+    double cost;
 
     /** Determines the natural order. */
     int naturalorder;
@@ -169,7 +169,7 @@ public class Block implements Comparable<Block>
       *
       * @return                     length of the block 
       */
-    public Double getLength()
+    public double getLength()
     {
         return length;
     }
@@ -180,7 +180,7 @@ public class Block implements Comparable<Block>
       *
       * @return                     cost per time
       */
-    public Double getCost()
+    public double getCost()
     {
         return cost;
     }
@@ -249,14 +249,14 @@ public class Block implements Comparable<Block>
 
         /* I am interested in the longer block first */
         if (naturalorder == LENGTH)
-            return (-1)*length.compareTo(block.getLength());
+            return (-1)*Double.compare(length, block.getLength());
 
         if (naturalorder == COST)
-            return this.getCost().compareTo(block.getCost());
+            return Double.compare(cost, block.getCost());
 
 
         /*The default natural order is STARTTIME */
-        return starttime.compareTo(block.getStart());
+        return Double.compare(starttime, block.getStart());
 
     }
 
@@ -0,0 +1,152 @@
+ /**
+  * Opportunistic Connectivity Management Simulator
+  *
+  * Copyright (C) 2007 Hossein Falaki
+  */
+
+package ocms.util;
+
+
+/**
+  * A sorted index of disjoint {@link Block}s for looking up time.
+  * The start and end times of the blocks are copied to primitive arrays, and
+  * {@link #find} returns the last block that starts at or before a time with a
+  * binary search. A cursor keeps the result of the last lookup, so a lookup
+  * with a later time usually moves the cursor by a block or two without a search.
+  * The blocks should be sorted by start time and should not overlap.
+  *
+  * @author     Hossein Falaki
+  */
+public class BlockIndex
+{
+    /** The number of blocks the cursor is moved before falling back to a binary search */
+    private static final int STEPS                  = 4;
+
+    /** Start times of the blocks */
+    private double[] starts;
+
+    /** End times of the blocks */
+    private double[] ends;
+
+    /** The result of the last lookup */
+    private int cursor;
+
+
+    /**
+      * Builds the index of the blocks.
+      *
+      * @param      blocks          the blocks, sorted by start time
+      */
+    public BlockIndex(Block[] blocks)
+    {
+        starts = new double[blocks.length];
+        ends = new double[blocks.length];
+        for (int i = 0; i < blocks.length; i++)
+        {
+            starts[i] = blocks[i].getStart();
+            ends[i] = blocks[i].getEnd();
+        }
+
+        cursor = -1;
+    }
+
+    /**
+      * Returns the index of the last block that starts at or before the time.
+      * Since the blocks do not overlap, that block is the only one that may
+      * contain the time (see {@link #contains}).
+      *
+      * @param      time            the time
+      * @return                     index of the block, or -1 if all the blocks start after the time
+      */
+    public int find(double time)
+    {
+        int index = cursor;
+
+        if ( (index >= 0) && (starts[index] > time) )
+            index = search(time);
+        else
+        {
+            int steps = 0;
+            while ( (index + 1 < starts.length) && (starts[index + 1] <= time) )
+            {
+                if (++steps > STEPS)
+                {
+                    index = search(time);
+                    break;
+                }
+                index++;
+            }
+        }
+
+        cursor = index;
+        return index;
+    }
+
+    /**
+      * Finds the last block that starts at or before the time with a binary search.
+      *
+      * @param      time            the time
+      * @return                     index of the block, or -1
+      */
+    private int search(double time)
+    {
+        int low = 0;
+        int high = starts.length;
+
+        /* The first block that starts after the time is in [low, high] */
+        while (low < high)
+        {
+            int middle = (low + high) >>> 1;
+            if (starts[middle] <= time)
+                low = middle + 1;
+            else
+                high = middle;
+        }
+
+        return low - 1;
+    }
+
+    /**
+      * Returns true if a block contains the time.
+      *
+      * @param      index           index of the block
+      * @param      time            the time
+      * @return                     true if the block starts at or before the time and ends after it
+      */
+    public boolean contains(int index, double time)
+    {
+        return (starts[index] <= time) && (ends[index] > time);
+    }
+
+    /**
+      * Returns the start time of a block.
+      *
+      * @param      index           index of the block
+      * @return                     the start time
+      */
+    public double getStart(int index)
+    {
+        return starts[index];
+    }
+
+    /**
+      * Returns the end time of a block.
+      *
+      * @param      index           index of the block
+      * @return                     the end time
+      */
+    public double getEnd(int index)
+    {
+        return ends[index];
+    }
+
+    /**
+      * Returns the number of blocks.
+      *
+      * @return                     number of blocks
+      */
+    public int size()
+    {
+        return starts.length;
+    }
+}
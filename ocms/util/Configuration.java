@@ -7,7 +7,9 @@
 package ocms.util;
 
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.ArrayList;
+import java.util.Set;
 import java.util.Scanner;
 import java.io.FileReader;
 
@@ -41,6 +43,17 @@ public class Configuration
         values = new HashMap<String, String>();
     }
 
+    /**
+      * Constructs a copy of the given Configuration.
+      * Changes to the copy do not affect the original object.
+      *
+      * @param      other               the Configuration to be copied
+      */
+    public Configuration(Configuration other)
+    {
+        values = new HashMap<String, String>(other.values);
+    }
+
     /**
       * Constructs an instance of the Configuration.
       * Reads the Simulation scenario and pareses the entire file into the 
@@ -144,6 +157,35 @@ public class Configuration
     }
 
 
+    /**
+      * Parses the value associated with the key as a long integer and returns it.
+      *
+      * @param      key             the key 
+      * @return                     long value 
+      */
+    public Long getLong(String key)
+    {
+        long result = 0;
+
+        if ( values.get(key) == null)
+        {
+            System.err.println("Error in configuration file. No value exists for " + key);
+        }
+
+        try
+        {
+            result = Long.parseLong(values.get(key));
+        }
+        catch (NumberFormatException nfe)
+        {
+            System.err.println("Error: in simulation scenario file. The value of " + key + 
+                    "should be a long integer. I found (" + values.get(key) + ")\n");
+        }
+
+        return result;
+    }
+
+
     /**
       * Parses the value associated with the key as a boolean and returns it.
       *
@@ -256,6 +298,16 @@ public class Configuration
         return returnconf;
     }
 
+    /**
+      * Returns the set of all the keys in the configuration object.
+      *
+      * @return                     a copy of the set of keys
+      */
+    public Set<String> getKeys()
+    {
+        return new HashSet<String>(values.keySet());
+    }
+
     /**
       * Returns true if the key exists in the configuration object.
       *
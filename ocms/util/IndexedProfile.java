@@ -0,0 +1,454 @@
+ /**
+  * Opportunistic Connectivity Management Simulator
+  *
+  * Copyright (C) 2007 Hossein Falaki
+  */
+
+package ocms.util;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+
+
+/**
+  * A profile whose states are numbered.
+  * Like a {@link Profile} it keeps track of the costs of a state machine, but the
+  * states are registered to consecutive indices (see {@link #addState}) and the
+  * costs are kept in arrays: a running cost per state and a matrix of transition
+  * costs. A state change is a few array reads and additions.
+  * <br>
+  * The profile has one or more <i>channels</i>, e.g. the energy and the sent and
+  * received data of a network interface. Each channel has its own costs, its own
+  * current state and its own total cost. A call to {@link #changeState} moves
+  * every channel to its target state for the new state of the machine, so all
+  * the channels are updated in one call. By default the target of each state is
+  * the state itself; {@link #setTarget} maps a state to another state of the
+  * channel, or to {@link #KEEP} to leave the channel in its current state.
+  * <br>
+  * The times of the changes are kept in ticks of {@link Time}, so the time a
+  * channel spends in a state is an exact difference of integers.
+  *
+  * @author     Hossein Falaki
+  */
+public class IndexedProfile
+{
+    /** The target of a channel that stays in its current state */
+    public static final int KEEP                            = -1;
+
+    /** Names of the channels */
+    private String[] channels;
+
+    /** Units of the costs of the channels */
+    private String[] units;
+
+    /** Names of the states */
+    private String[] states;
+
+    /** Number of registered states */
+    private int size;
+
+    /** Running cost of each state of each channel */
+    private double[][] running;
+
+    /** Default transition cost to each state of each channel */
+    private double[][] defaults;
+
+    /** Transition cost between each pair of states of each channel */
+    private double[][][] transition;
+
+    /** True for the transition costs that have been set explicitly */
+    private boolean[][][] explicit;
+
+    /** The target state of each channel for each state of the machine */
+    private int[][] targets;
+
+    /** The current state of each channel */
+    private int[] current;
+
+    /** The time of the last state change of each channel, in ticks */
+    private long[] now;
+
+    /** The total cost of each channel */
+    private double[] cost;
+
+    /** True after the profile has been initialized */
+    private boolean initialized;
+
+    /** The journal of the simulation, or null */
+    private Journal journal;
+
+    /** The timeline of each channel, or null if no channel has a timeline */
+    private ProfileTimeline[] timelines;
+
+    /** The math context object for precision */
+    private static final MathContext mc = new MathContext(20);
+
+
+    /**
+      * Constructs a profile with the given channels and no states.
+      *
+      * @param      channels        names of the channels
+      * @param      units           units of the costs of the channels
+      */
+    public IndexedProfile(String[] channels, String[] units)
+    {
+        int count = channels.length;
+
+        this.channels = channels.clone();
+        this.units = units.clone();
+        states = new String[4];
+        size = 0;
+
+        running = new double[count][states.length];
+        defaults = new double[count][states.length];
+        transition = new double[count][states.length][states.length];
+        explicit = new boolean[count][states.length][states.length];
+        targets = new int[count][states.length];
+
+        current = new int[count];
+        now = new long[count];
+        cost = new double[count];
+        initialized = false;
+    }
+
+    /**
+      * Registers a new state with zero costs in all the channels.
+      *
+      * @param      name            name of the state
+      * @return                     index of the state
+      */
+    public int addState(String name)
+    {
+        if (size == states.length)
+            grow(2*size);
+
+        states[size] = name;
+        for (int c = 0; c < channels.length; c++)
+            targets[c][size] = size;
+
+        return size++;
+    }
+
+    /**
+      * Enlarges the arrays of the states.
+      *
+      * @param      capacity        the new number of states
+      */
+    private void grow(int capacity)
+    {
+        String[] newstates = new String[capacity];
+        System.arraycopy(states, 0, newstates, 0, size);
+        states = newstates;
+
+        for (int c = 0; c < channels.length; c++)
+        {
+            running[c] = copyOf(running[c], capacity);
+            defaults[c] = copyOf(defaults[c], capacity);
+
+            int[] newtargets = new int[capacity];
+            System.arraycopy(targets[c], 0, newtargets, 0, size);
+            targets[c] = newtargets;
+
+            double[][] newtransition = new double[capacity][];
+            boolean[][] newexplicit = new boolean[capacity][];
+            for (int from = 0; from < capacity; from++)
+            {
+                newtransition[from] = (from < size) ? copyOf(transition[c][from], capacity) : new double[capacity];
+                newexplicit[from] = new boolean[capacity];
+                if (from < size)
+                    System.arraycopy(explicit[c][from], 0, newexplicit[from], 0, size);
+            }
+            transition[c] = newtransition;
+            explicit[c] = newexplicit;
+
+            /* The default costs of the existing states apply to the transitions from the new ones */
+            for (int from = size; from < capacity; from++)
+                System.arraycopy(defaults[c], 0, transition[c][from], 0, size);
+        }
+    }
+
+    /**
+      * Returns a copy of the array with the given length.
+      *
+      * @param      array           the array
+      * @param      length          length of the copy
+      * @return                     the copy
+      */
+    private static double[] copyOf(double[] array, int length)
+    {
+        double[] result = new double[length];
+        System.arraycopy(array, 0, result, 0, Math.min(array.length, length));
+        return result;
+    }
+
+    /**
+      * Checks the index of a state.
+      *
+      * @param      state           index of the state
+      * @throws     ProfileException    if the state is not registered
+      */
+    private void checkState(int state) throws ProfileException
+    {
+        if ( (state < 0) || (state >= size) )
+            throw new ProfileException(channels[0] + ": State " + state + " is not registered.");
+    }
+
+    /**
+      * Sets the running cost of a state of a channel.
+      *
+      * @param      channel         index of the channel
+      * @param      state           index of the state
+      * @param      runningcost     cost per unit of time in the state
+      * @throws     ProfileException    if the state is not registered
+      */
+    public void setRunningCost(int channel, int state, double runningcost) throws ProfileException
+    {
+        checkState(state);
+        running[channel][state] = runningcost;
+    }
+
+    /**
+      * Sets the cost of the transitions to a state of a channel from any state
+      * whose transition cost has not been set by {@link #setTransitionCost}.
+      *
+      * @param      channel         index of the channel
+      * @param      state           index of the state
+      * @param      fixedcost       the one-time cost of a transition to the state
+      * @throws     ProfileException    if the state is not registered
+      */
+    public void setDefaultCost(int channel, int state, double fixedcost) throws ProfileException
+    {
+        checkState(state);
+        defaults[channel][state] = fixedcost;
+        for (int from = 0; from < size; from++)
+        {
+            if (!explicit[channel][from][state])
+                transition[channel][from][state] = fixedcost;
+        }
+    }
+
+    /**
+      * Sets the cost of the transition between two states of a channel.
+      *
+      * @param      channel         index of the channel
+      * @param      from            the state to transition from
+      * @param      to              the state to transition to
+      * @param      transitioncost  the one-time cost of the transition
+      * @throws     ProfileException    if a state is not registered
+      */
+    public void setTransitionCost(int channel, int from, int to, double transitioncost) throws ProfileException
+    {
+        checkState(from);
+        checkState(to);
+        transition[channel][from][to] = transitioncost;
+        explicit[channel][from][to] = true;
+    }
+
+    /**
+      * Sets the state a channel moves to when the machine moves to a state.
+      *
+      * @param      channel         index of the channel
+      * @param      state           the state of the machine
+      * @param      target          the state of the channel, or KEEP
+      * @throws     ProfileException    if a state is not registered
+      */
+    public void setTarget(int channel, int state, int target) throws ProfileException
+    {
+        checkState(state);
+        if (target != KEEP)
+            checkState(target);
+        targets[channel][state] = target;
+    }
+
+    /**
+      * Initializes the profile.
+      * All the channels start in the given state at the given time. This method
+      * should be called once and only once, otherwise a ProfileException is thrown.
+      *
+      * @param      state           the initial state
+      * @param      time            the initial time
+      * @throws     ProfileException    if it is called for the second time or the state is not registered
+      */
+    public void initialize(int state, double time) throws ProfileException
+    {
+        if (initialized)
+            throw new ProfileException(channels[0] + ": The profile has already been initialized");
+        checkState(state);
+
+        for (int c = 0; c < channels.length; c++)
+        {
+            current[c] = state;
+            now[c] = Time.toTicks(time);
+            if ( (timelines != null) && (timelines[c] != null) )
+                timelines[c].start(time, state, cost[c]);
+        }
+        initialized = true;
+    }
+
+    /**
+      * Moves the channels to their targets for the new state and adds the costs.
+      * For each channel that changes state, the running cost of its current
+      * state since its last change and the transition cost are added to its total.
+      * Channels that are already in their target state, or whose target is KEEP,
+      * are not changed. The time should not be before the last change of a
+      * channel that is moved, otherwise a ProfileException is thrown and no
+      * channel is changed.
+      *
+      * @param      state           the new state of the machine
+      * @param      time            the time of the transition
+      * @throws     ProfileException    if the time is in the past, the state is not registered
+      *                                 or the profile has not been initialized
+      */
+    public void changeState(int state, double time) throws ProfileException
+    {
+        checkState(state);
+        if (!initialized)
+            throw new ProfileException(channels[0] + ": Profile has not been initialized with an inital state.");
+
+        long ticks = Time.toTicks(time);
+        for (int c = 0; c < channels.length; c++)
+        {
+            if ( (targets[c][state] != KEEP) && (ticks < now[c]) )
+                throw new ProfileException(channels[c] + ": Time " + time + " has passed. it is now "
+                        + Time.toSeconds(now[c]) + ".");
+        }
+
+        for (int c = 0; c < channels.length; c++)
+        {
+            int target = targets[c][state];
+            int from = current[c];
+            if ( (target == KEEP) || (target == from) )
+                continue;
+
+            /* The running cost up to now and the transition cost are added separately, as in Profile */
+            cost[c] += running[c][from]*Time.toSeconds(ticks - now[c]);
+            cost[c] += transition[c][from][target];
+
+            if (journal != null)
+                journal.profile(time, channels[c], states[from], states[target], cost[c]);
+
+            if ( (timelines != null) && (timelines[c] != null) )
+                timelines[c].record(Time.toSeconds(now[c]), time, running[c][from], transition[c][from][target], target, cost[c]);
+
+            now[c] = ticks;
+            current[c] = target;
+        }
+    }
+
+    /**
+      * Returns the total cost of a channel.
+      *
+      * @param      channel         index of the channel
+      * @return                     the computed cost up to the last change of the channel
+      */
+    public double getCost(int channel)
+    {
+        return cost[channel];
+    }
+
+    /**
+      * Returns the current state of a channel.
+      *
+      * @param      channel         index of the channel
+      * @return                     index of the state
+      */
+    public int getState(int channel)
+    {
+        return current[channel];
+    }
+
+    /**
+      * Returns true if the profile has been initialized.
+      *
+      * @return                     true after {@link #initialize}
+      */
+    public boolean isInitialized()
+    {
+        return initialized;
+    }
+
+    /**
+      * Returns the name of a state.
+      *
+      * @param      state           index of the state
+      * @return                     name of the state
+      */
+    public String getStateName(int state)
+    {
+        return states[state];
+    }
+
+    /**
+      * Sets the journal that records the state changes of the channels.
+      *
+      * @param      journal         the journal (null for no journal)
+      */
+    public void setJournal(Journal journal)
+    {
+        this.journal = journal;
+    }
+
+    /**
+      * Starts recording the timeline of a channel.
+      * If the profile has been initialized the timeline starts at its last change.
+      * The states registered later are named by their indices in the timeline.
+      *
+      * @param      channel         index of the channel
+      * @param      resolution      the length of the buckets of the timeline in seconds
+      * @return                     the timeline of the channel
+      */
+    public ProfileTimeline createTimeline(int channel, double resolution)
+    {
+        String[] names = new String[size];
+        System.arraycopy(states, 0, names, 0, size);
+
+        if (timelines == null)
+            timelines = new ProfileTimeline[channels.length];
+        timelines[channel] = new ProfileTimeline(channels[channel], units[channel], names, resolution);
+
+        if (initialized)
+            timelines[channel].start(Time.toSeconds(now[channel]), current[channel], cost[channel]);
+
+        return timelines[channel];
+    }
+
+    /**
+      * Returns the timeline of a channel.
+      *
+      * @param      channel         index of the channel
+      * @return                     the timeline, or null if it is not recorded
+      */
+    public ProfileTimeline getTimeline(int channel)
+    {
+        return (timelines == null) ? null : timelines[channel];
+    }
+
+    /**
+      * Returns a string representation of a channel.
+      *
+      * @param      channel         index of the channel
+      * @return                     string representing the channel
+      */
+    public String toString(int channel)
+    {
+        return channels[channel] + ": " + new BigDecimal(cost[channel], mc) + " " + units[channel];
+    }
+
+    /**
+      * Returns a string representation of the profile.
+      *
+      * @return                     one line per channel
+      */
+    public String toString()
+    {
+        StringBuilder result = new StringBuilder();
+        for (int c = 0; c < channels.length; c++)
+        {
+            if (c > 0)
+                result.append("\n");
+            result.append(toString(c));
+        }
+
+        return result.toString();
+    }
+}
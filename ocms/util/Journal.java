@@ -0,0 +1,406 @@
+ /**
+  * Opportunistic Connectivity Management Simulator
+  *
+  * Copyright (C) 2007 Hossein Falaki
+  */
+
+package ocms.util;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import ocms.eventqueue.Event;
+
+
+/**
+  * A binary journal of a simulation.
+  * Records each dispatched {@link Event}, each state transition of the network
+  * interfaces and each state change of a {@link Profile} as a fixed width record.
+  * The records are written to memory-mapped segment files named <i>journal.0</i>,
+  * <i>journal.1</i>, ... of a fixed size; a new segment is started when the current
+  * one is full. The names of the consumers, interfaces, profiles and states are kept
+  * in a dictionary that is written to <i>journal.names</i> when the journal is closed.
+  * The journal can be read with {@link JournalDecoder}.
+  * <br>
+  * Each segment starts with a header of {@link #HEADER} bytes: the magic number, the
+  * version, the record size, the index of the segment and the number of records (-1
+  * while the segment is being written). Each record has {@link #RECORD} bytes, in
+  * little endian order:
+  * <pre>
+  *     offset  size    field
+  *     0       8       time
+  *     8       1       kind (EVENT, NIC or PROFILE)
+  *     9       1       type (the event type, or the NIC type)
+  *     10      1       number of arguments of the event
+  *     11      1       kinds of the first four arguments, two bits each
+  *     12      4       source (the event source, the interface or the profile)
+  *     16      4       destination of the event
+  *     20      4       first int argument, or the previous state
+  *     24      4       second int argument, or the new state
+  *     28      4       the first object argument if it is a String
+  *     32      8       first double argument, or the cost of the profile
+  * </pre>
+  * Names are given as indices into the dictionary, or {@link #NONE}.
+  * <br>
+  * A journal is used by a single simulation thread.
+  *
+  * @author     Hossein Falaki
+  */
+public class Journal
+{
+    /** The magic number of the segments and the dictionary */
+    public static final int MAGIC                           = 0x4F434D4A;
+
+    /** The version of the format */
+    public static final int VERSION                         = 1;
+
+    /** Size of the header of a segment in bytes */
+    public static final int HEADER                          = 32;
+
+    /** Size of a record in bytes */
+    public static final int RECORD                          = 40;
+
+    /** Offset of the record count in the header */
+    public static final int COUNT_OFFSET                    = 16;
+
+    /** The default size of a segment in bytes */
+    public static final long DEFAULT_SEGMENT_SIZE           = 16L*1024*1024;
+
+    /** Record kind: a dispatched event */
+    public static final int EVENT                           = 1;
+
+    /** Record kind: a state transition of a network interface */
+    public static final int NIC                             = 2;
+
+    /** Record kind: a state change of a profile */
+    public static final int PROFILE                         = 3;
+
+    /** The index of a missing name */
+    public static final int NONE                            = -1;
+
+    /** Base name of the files of the journal */
+    String basename;
+
+    /** Size of each segment in bytes */
+    long segmentsize;
+
+    /** Number of records of each segment */
+    long capacity;
+
+    /** Index of the current segment */
+    int segment;
+
+    /** The file of the current segment */
+    RandomAccessFile file;
+
+    /** The mapped buffer of the current segment */
+    MappedByteBuffer buffer;
+
+    /** Number of records in the current segment */
+    long count;
+
+    /** Number of records in the journal */
+    long total;
+
+    /** Maps names to their indices in the dictionary */
+    HashMap<String, Integer> ids;
+
+    /** The dictionary */
+    ArrayList<String> names;
+
+
+    /**
+      * Creates a journal with the default segment size.
+      *
+      * @param      basename            base name of the files of the journal
+      * @throws     IOException         if the first segment cannot be created
+      */
+    public Journal(String basename) throws IOException
+    {
+        this(basename, DEFAULT_SEGMENT_SIZE);
+    }
+
+    /**
+      * Creates a journal.
+      *
+      * @param      basename            base name of the files of the journal
+      * @param      segmentsize         size of each segment in bytes
+      * @throws     IOException         if the first segment cannot be created
+      */
+    public Journal(String basename, long segmentsize) throws IOException
+    {
+        this.basename = basename;
+        /* The segments are mapped as a whole, so they are smaller than 2 GB */
+        this.capacity = Math.max(1, Math.min( (segmentsize - HEADER)/RECORD, (Integer.MAX_VALUE - HEADER)/RECORD ));
+        this.segmentsize = HEADER + capacity*RECORD;
+        ids = new HashMap<String, Integer>();
+        names = new ArrayList<String>();
+        segment = -1;
+        total = 0;
+
+        openSegment();
+    }
+
+    /**
+      * Returns the name of a segment file.
+      *
+      * @param      basename            base name of the files of the journal
+      * @param      index               index of the segment
+      * @return                         name of the segment file
+      */
+    public static String segmentName(String basename, int index)
+    {
+        return basename + "." + index;
+    }
+
+    /**
+      * Returns the name of the dictionary file.
+      *
+      * @param      basename            base name of the files of the journal
+      * @return                         name of the dictionary file
+      */
+    public static String namesName(String basename)
+    {
+        return basename + ".names";
+    }
+
+    /**
+      * Returns the index of the name in the dictionary.
+      * The name is added to the dictionary if it is not there.
+      *
+      * @param      name                the name (may be null)
+      * @return                         index of the name, or NONE for null
+      */
+    public int id(String name)
+    {
+        if (name == null)
+            return NONE;
+
+        Integer id = ids.get(name);
+        if (id == null)
+        {
+            id = names.size();
+            names.add(name);
+            ids.put(name, id);
+        }
+
+        return id;
+    }
+
+    /**
+      * Records a dispatched event.
+      *
+      * @param      event               the event
+      */
+    public void event(Event event)
+    {
+        int argc = event.getArgCount();
+        int kinds = 0;
+        int ints = 0;
+        int first = 0;
+        int second = 0;
+        int object = NONE;
+        boolean hasobject = false;
+        boolean hasdouble = false;
+        double value = 0.0;
+
+        for (int i = 0; i < argc; i++)
+        {
+            int kind = event.getKind(i);
+            if (i < 4)
+                kinds |= kind << (2*i);
+
+            if (kind == Event.INT)
+            {
+                if (ints == 0)
+                    first = event.getInt(i);
+                else if (ints == 1)
+                    second = event.getInt(i);
+                ints++;
+            }
+            else if ( (kind == Event.DOUBLE) && !hasdouble )
+            {
+                value = event.getDouble(i);
+                hasdouble = true;
+            }
+            else if ( (kind == Event.OBJECT) && !hasobject )
+            {
+                Object item = event.getObject(i);
+                if (item instanceof String)
+                    object = id( (String)item );
+                hasobject = true;
+            }
+        }
+
+        record(event.getTime(), EVENT, event.getType(), Math.min(argc, 255), kinds
+                , (event.getSource() == null) ? NONE : id( event.getSource().getName() )
+                , (event.getDest() == null) ? NONE : id( event.getDest().getName() )
+                , first, second, object, value);
+    }
+
+    /**
+      * Records a state transition of a network interface.
+      *
+      * @param      time                time of the transition
+      * @param      type                type of the interface (see {@link ocms.nic.NIC})
+      * @param      name                name of the interface
+      * @param      from                the previous state
+      * @param      to                  the new state
+      */
+    public void transition(double time, int type, String name, int from, int to)
+    {
+        record(time, NIC, type, 0, 0, id(name), NONE, from, to, NONE, 0.0);
+    }
+
+    /**
+      * Records a state change of a profile.
+      *
+      * @param      time                time of the change
+      * @param      name                name of the profile
+      * @param      from                the previous state
+      * @param      to                  the new state
+      * @param      cost                the cost of the profile after the change
+      */
+    public void profile(double time, String name, String from, String to, double cost)
+    {
+        record(time, PROFILE, 0, 0, 0, id(name), NONE, id(from), id(to), NONE, cost);
+    }
+
+    /**
+      * Writes a record to the current segment.
+      * Starts a new segment if the current one is full.
+      */
+    private void record(double time, int kind, int type, int argc, int kinds, int source, int destination,
+            int first, int second, int object, double value)
+    {
+        if (buffer == null)
+            return;
+
+        if (count == capacity)
+        {
+            try
+            {
+                finishSegment();
+                openSegment();
+            }
+            catch (IOException ioe)
+            {
+                System.err.println("Journal: Error while starting segment " + (segment + 1) + " of "
+                        + basename + ": " + ioe.toString() + ". The journal is closed.");
+                buffer = null;
+                return;
+            }
+        }
+
+        int position = (int)(HEADER + count*RECORD);
+        buffer.putDouble(position, time);
+        buffer.put(position + 8, (byte)kind);
+        buffer.put(position + 9, (byte)type);
+        buffer.put(position + 10, (byte)argc);
+        buffer.put(position + 11, (byte)kinds);
+        buffer.putInt(position + 12, source);
+        buffer.putInt(position + 16, destination);
+        buffer.putInt(position + 20, first);
+        buffer.putInt(position + 24, second);
+        buffer.putInt(position + 28, object);
+        buffer.putDouble(position + 32, value);
+
+        count++;
+        total++;
+    }
+
+    /**
+      * Creates and maps the next segment.
+      *
+      * @throws     IOException         if the segment cannot be created
+      */
+    private void openSegment() throws IOException
+    {
+        segment++;
+        file = new RandomAccessFile( segmentName(basename, segment), "rw" );
+        file.setLength(0);
+        buffer = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, segmentsize);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, VERSION);
+        buffer.putInt(8, RECORD);
+        buffer.putInt(12, segment);
+        buffer.putLong(COUNT_OFFSET, -1);
+        count = 0;
+    }
+
+    /**
+      * Writes the record count of the current segment and closes its file.
+      * The file is cut to its used length where the platform allows it.
+      *
+      * @throws     IOException         if the file cannot be closed
+      */
+    private void finishSegment() throws IOException
+    {
+        buffer.putLong(COUNT_OFFSET, count);
+        buffer = null;
+
+        try
+        {
+            file.getChannel().truncate(HEADER + count*RECORD);
+        }
+        catch (IOException ioe)
+        {
+            /* The file is still mapped; the reader relies on the record count */
+        }
+        file.close();
+    }
+
+    /**
+      * Closes the journal and writes its dictionary.
+      *
+      */
+    public void close()
+    {
+        if (buffer == null)
+            return;
+
+        try
+        {
+            finishSegment();
+
+            DataOutputStream output = new DataOutputStream( new BufferedOutputStream(
+                        new FileOutputStream( namesName(basename) ) ) );
+            try
+            {
+                output.writeInt(MAGIC);
+                output.writeInt(names.size());
+                for (String name : names)
+                    output.writeUTF(name);
+            }
+            finally
+            {
+                output.close();
+            }
+        }
+        catch (IOException ioe)
+        {
+            System.err.println("Journal: Error while closing " + basename + ": " + ioe.toString());
+            ioe.printStackTrace();
+        }
+    }
+
+    /**
+      * Returns the number of records written to the journal.
+      *
+      * @return                         number of records
+      */
+    public long getCount()
+    {
+        return total;
+    }
+}
@@ -0,0 +1,424 @@
+ /**
+  * Opportunistic Connectivity Management Simulator
+  *
+  * Copyright (C) 2007 Hossein Falaki
+  */
+
+package ocms.util;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.TreeMap;
+
+import ocms.eventqueue.Event;
+import ocms.nic.NIC;
+
+
+/**
+  * Reads a {@link Journal} and prints or aggregates its records.
+  * The decoder is used from the command line:
+  * <pre>
+  *     java ocms.util.JournalDecoder journal [-from time] [-to time] [-name name] [-kind EVENT|NIC|PROFILE] [-summary]
+  * </pre>
+  * <ul>
+  *     <li><b>-from, -to:</b> only the records with from &lt;= time &lt; to</li>
+  *     <li><b>-name:</b> only the records whose source or destination has the given name
+  *             (an event consumer, an interface or a profile)</li>
+  *     <li><b>-kind:</b> only the records of the given kind</li>
+  *     <li><b>-summary:</b> prints the number of records of each kind and name, the number
+  *             of transitions to each interface state and the last cost of each profile,
+  *             instead of the records</li>
+  * </ul>
+  * The states of the interfaces are printed with the names of the states of
+  * {@link ocms.nic.WiFiNIC} and {@link ocms.nic.GSMNIC}.
+  *
+  * @author     Hossein Falaki
+  */
+public class JournalDecoder
+{
+    /** Names of the record kinds */
+    private static final String[] KINDS = {"", "EVENT", "NIC", "PROFILE"};
+
+    /** Names of the states of the WiFi interface */
+    private static final String[] WIFI_STATES = {"OFF", "DISCONNECTED", "CONNECTED", "DISCONNECTED_SCANNING",
+        "CONNECTED_SCANNING", "DATA_TX", "DATA_RX"};
+
+    /** Names of the states of the GSM interface */
+    private static final String[] GSM_STATES = {"OFF", "DISCONNECTED", "CONNECTED", "SCANNING"};
+
+    /** Base name of the files of the journal */
+    String basename;
+
+    /** The dictionary of the journal */
+    ArrayList<String> names;
+
+    /** Records before this time are skipped */
+    double from;
+
+    /** Records at or after this time are skipped */
+    double to;
+
+    /** Index of the name to filter on, or Journal.NONE */
+    int name;
+
+    /** Kind of the records to keep, or 0 for all */
+    int kind;
+
+    /** Number of records of each kind and source */
+    TreeMap<String, Long> counts;
+
+    /** Number of transitions to each state of each interface */
+    TreeMap<String, Long> transitions;
+
+    /** The last cost of each profile */
+    TreeMap<String, Double> costs;
+
+
+    /**
+      * The main method of the decoder.
+      *
+      * @param      argv            the journal base name followed by the options
+      */
+    public static void main(String[] argv)
+    {
+        if (argv.length < 1)
+        {
+            System.err.println("Usage: java ocms.util.JournalDecoder journal [-from time] [-to time] "
+                    + "[-name name] [-kind EVENT|NIC|PROFILE] [-summary]");
+            System.exit(1);
+        }
+
+        try
+        {
+            JournalDecoder decoder = new JournalDecoder(argv[0]);
+            boolean summary = false;
+            String filter = null;
+
+            for (int i = 1; i < argv.length; i++)
+            {
+                if (argv[i].equals("-summary"))
+                    summary = true;
+                else if ( argv[i].equals("-from") && (i + 1 < argv.length) )
+                    decoder.from = Double.parseDouble(argv[++i]);
+                else if ( argv[i].equals("-to") && (i + 1 < argv.length) )
+                    decoder.to = Double.parseDouble(argv[++i]);
+                else if ( argv[i].equals("-name") && (i + 1 < argv.length) )
+                    filter = argv[++i];
+                else if ( argv[i].equals("-kind") && (i + 1 < argv.length) )
+                    decoder.setKind(argv[++i]);
+                else
+                {
+                    System.err.println("JournalDecoder: Unknown option " + argv[i]);
+                    System.exit(1);
+                }
+            }
+
+            if (filter != null)
+            {
+                decoder.name = decoder.names.indexOf(filter);
+                if (decoder.name == Journal.NONE)
+                {
+                    System.err.println("JournalDecoder: " + filter + " does not appear in the journal");
+                    System.exit(1);
+                }
+            }
+
+            decoder.decode(summary ? null : System.out);
+            if (summary)
+                decoder.printSummary(System.out);
+        }
+        catch (IOException ioe)
+        {
+            System.err.println("JournalDecoder: Error while reading " + argv[0] + ": " + ioe.toString());
+            System.exit(1);
+        }
+        catch (NumberFormatException nfe)
+        {
+            System.err.println("JournalDecoder: Invalid time: " + nfe.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+      * Constructs a decoder for the given journal and reads its dictionary.
+      *
+      * @param      basename        base name of the files of the journal
+      * @throws     IOException     if the dictionary cannot be read
+      */
+    public JournalDecoder(String basename) throws IOException
+    {
+        this.basename = basename;
+        from = Double.NEGATIVE_INFINITY;
+        to = Double.POSITIVE_INFINITY;
+        name = Journal.NONE;
+        kind = 0;
+        counts = new TreeMap<String, Long>();
+        transitions = new TreeMap<String, Long>();
+        costs = new TreeMap<String, Double>();
+        names = new ArrayList<String>();
+
+        DataInputStream input = new DataInputStream( new BufferedInputStream(
+                    new FileInputStream( Journal.namesName(basename) ) ) );
+        try
+        {
+            if (input.readInt() != Journal.MAGIC)
+                throw new IOException(Journal.namesName(basename) + " is not a journal dictionary");
+
+            int size = input.readInt();
+            for (int i = 0; i < size; i++)
+                names.add(input.readUTF());
+        }
+        finally
+        {
+            input.close();
+        }
+    }
+
+    /**
+      * Sets the kind of the records to keep.
+      *
+      * @param      kindname        EVENT, NIC or PROFILE
+      */
+    void setKind(String kindname)
+    {
+        for (int i = 1; i < KINDS.length; i++)
+        {
+            if (KINDS[i].equals(kindname))
+                kind = i;
+        }
+
+        if (kind == 0)
+            System.err.println("JournalDecoder: Unknown record kind " + kindname + ". Keeping all the records");
+    }
+
+    /**
+      * Reads all the segments of the journal.
+      * The records that pass the filters are printed (if output is not null) and
+      * aggregated.
+      *
+      * @param      output          where the records are printed (may be null)
+      * @return                     number of records that passed the filters
+      * @throws     IOException     if a segment cannot be read
+      */
+    public long decode(PrintStream output) throws IOException
+    {
+        long result = 0;
+        StringBuilder line = new StringBuilder();
+
+        for (int segment = 0; ; segment++)
+        {
+            File file = new File( Journal.segmentName(basename, segment) );
+            if (!file.exists())
+                break;
+
+            RandomAccessFile input = new RandomAccessFile(file, "r");
+            try
+            {
+                MappedByteBuffer buffer = input.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, input.length());
+                buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+                if ( (buffer.limit() < Journal.HEADER) || (buffer.getInt(0) != Journal.MAGIC) )
+                    throw new IOException(file + " is not a journal segment");
+                if (buffer.getInt(4) != Journal.VERSION)
+                    throw new IOException(file + " has an unknown version " + buffer.getInt(4));
+
+                int recordsize = buffer.getInt(8);
+                long count = buffer.getLong(Journal.COUNT_OFFSET);
+                long available = (buffer.limit() - Journal.HEADER)/recordsize;
+
+                /* A segment that was not closed ends at the first empty record */
+                if ( (count < 0) || (count > available) )
+                    count = available;
+
+                for (long i = 0; i < count; i++)
+                {
+                    int position = (int)(Journal.HEADER + i*recordsize);
+                    int recordkind = buffer.get(position + 8);
+                    if (recordkind == 0)
+                        break;
+
+                    double time = buffer.getDouble(position);
+                    int source = buffer.getInt(position + 12);
+                    int destination = buffer.getInt(position + 16);
+
+                    if ( (time < from) || (time >= to) )
+                        continue;
+                    if ( (kind != 0) && (recordkind != kind) )
+                        continue;
+                    if ( (name != Journal.NONE) && (source != name) && (destination != name) )
+                        continue;
+
+                    result++;
+                    aggregate(buffer, position);
+
+                    if (output != null)
+                    {
+                        line.setLength(0);
+                        format(buffer, position, line);
+                        output.println(line);
+                    }
+                }
+            }
+            finally
+            {
+                input.close();
+            }
+        }
+
+        return result;
+    }
+
+    /**
+      * Returns a name of the dictionary.
+      *
+      * @param      id              index of the name
+      * @return                     the name
+      */
+    private String getName(int id)
+    {
+        if ( (id < 0) || (id >= names.size()) )
+            return "-";
+
+        return names.get(id);
+    }
+
+    /**
+      * Returns the name of a state of an interface.
+      *
+      * @param      type            type of the interface
+      * @param      state           the state
+      * @return                     name of the state
+      */
+    private String getState(int type, int state)
+    {
+        String[] states = (type == NIC.GSM) ? GSM_STATES : WIFI_STATES;
+        if ( (state < 0) || (state >= states.length) )
+            return "" + state;
+
+        return states[state];
+    }
+
+    /**
+      * Appends the text form of a record to the line.
+      *
+      * @param      buffer          the segment
+      * @param      position        offset of the record
+      * @param      line            the line
+      */
+    private void format(MappedByteBuffer buffer, int position, StringBuilder line)
+    {
+        int recordkind = buffer.get(position + 8);
+        int type = buffer.get(position + 9);
+        int first = buffer.getInt(position + 20);
+        int second = buffer.getInt(position + 24);
+
+        line.append(buffer.getDouble(position)).append('\t').append(KINDS[recordkind]).append('\t');
+
+        if (recordkind == Journal.EVENT)
+        {
+            int argc = buffer.get(position + 10) & 0xFF;
+            int kinds = buffer.get(position + 11) & 0xFF;
+            int ints = 0;
+            boolean hasdouble = false;
+            boolean hasobject = false;
+
+            line.append(type).append('\t').append(getName(buffer.getInt(position + 12)))
+                .append(" -> ").append(getName(buffer.getInt(position + 16))).append("\t[");
+
+            for (int i = 0; i < argc; i++)
+            {
+                if (i > 0)
+                    line.append(", ");
+
+                int argkind = (i < 4) ? (kinds >> (2*i)) & 3 : 0;
+                if ( (argkind == Event.INT) && (ints < 2) )
+                    line.append( (ints++ == 0) ? first : second );
+                else if ( (argkind == Event.DOUBLE) && !hasdouble )
+                {
+                    line.append(buffer.getDouble(position + 32));
+                    hasdouble = true;
+                }
+                else if ( (argkind == Event.OBJECT) && !hasobject && (buffer.getInt(position + 28) != Journal.NONE) )
+                {
+                    line.append(getName(buffer.getInt(position + 28)));
+                    hasobject = true;
+                }
+                else
+                    line.append('?');
+            }
+            line.append(']');
+        }
+        else if (recordkind == Journal.NIC)
+        {
+            line.append( (type == NIC.GSM) ? "GSM" : "WiFi" ).append('\t')
+                .append(getName(buffer.getInt(position + 12))).append('\t')
+                .append(getState(type, first)).append(" -> ").append(getState(type, second));
+        }
+        else if (recordkind == Journal.PROFILE)
+        {
+            line.append(getName(buffer.getInt(position + 12))).append('\t')
+                .append(getName(first)).append(" -> ").append(getName(second)).append('\t')
+                .append(buffer.getDouble(position + 32));
+        }
+    }
+
+    /**
+      * Adds a record to the summary.
+      *
+      * @param      buffer          the segment
+      * @param      position        offset of the record
+      */
+    private void aggregate(MappedByteBuffer buffer, int position)
+    {
+        int recordkind = buffer.get(position + 8);
+        int type = buffer.get(position + 9);
+        String source = getName(buffer.getInt(position + 12));
+        String key;
+
+        if (recordkind == Journal.EVENT)
+            key = "EVENT\t" + getName(buffer.getInt(position + 16)) + "\ttype " + type;
+        else
+            key = KINDS[recordkind] + "\t" + source;
+
+        Long count = counts.get(key);
+        counts.put(key, (count == null) ? 1 : count + 1);
+
+        if (recordkind == Journal.NIC)
+        {
+            key = source + "\t" + getState(type, buffer.getInt(position + 24));
+            count = transitions.get(key);
+            transitions.put(key, (count == null) ? 1 : count + 1);
+        }
+        else if (recordkind == Journal.PROFILE)
+            costs.put(source, buffer.getDouble(position + 32));
+    }
+
+    /**
+      * Prints the summary of the records that passed the filters.
+      *
+      * @param      output          where the summary is printed
+      */
+    public void printSummary(PrintStream output)
+    {
+        output.println("# records");
+        for (String key : counts.keySet())
+            output.println(key + "\t" + counts.get(key));
+
+        output.println("# transitions to each state");
+        for (String key : transitions.keySet())
+            output.println(key + "\t" + transitions.get(key));
+
+        output.println("# last cost of each profile");
+        for (String key : costs.keySet())
+            output.println(key + "\t" + costs.get(key));
+    }
+}
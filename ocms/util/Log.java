@@ -1,10 +1,7 @@
  /** * Opportunistic Connectivity Management Simulator * * Copyright (C) 2007 Hossein Falaki */ 
 package ocms.util;
 
-import java.util.PriorityQueue;
 import java.io.IOException;
-import java.io.PrintWriter;
-import java.io.FileWriter;
 
 /**
   * Logger utility used by all other classes of the simulator to log their events.
@@ -16,17 +13,29 @@ import java.io.FileWriter;
   * There is a seperate method per log-level. The log-levels are:
   * <i>INFO</i> and <i>DEBUG</i>
   *
+  * Besides a plain message, each method accepts a pattern with one or two
+  * arguments, e.g. <code>Log.debug(this, "Command: {}", command)</code>. Each
+  * <code>{}</code> of the pattern is replaced by the next argument, but only
+  * if the level is enabled, so disabled messages cost neither the string
+  * concatenation nor the toString of the arguments. The messages are formatted
+  * by the logging thread (their arguments may change afterwards) and written
+  * to the log file by a {@link LogWriter} on a background thread.
+  * {@link #flush} writes all the pending messages before closing the file.
+  *
+  * Each simulation has its own Log object (its own log level, log file and
+  * standard output flag). The static methods of this class log to the Log
+  * object that is bound to the calling thread through {@link #bind}, so that
+  * simulations running on different threads do not share a log file. Threads
+  * without a bound Log use a default Log that does not write to any file.
+  *
   * The class should be initialized before the simulation starts with a call to 
-  * {@link #initialize}. 
+  * {@link #initialize} (or by binding a Log object to the thread).
   *
   * @author     Hossein Falaki
   */
 public class Log
 {
 
-    /** the log level */
-    private static int loglevel;
-
     /** No logging messages */
     public static int OFF =         -1;
 
@@ -39,17 +48,57 @@ public class Log
     /** The PARANOID log level */
     public static int PARANOID =     2;
 
-    /** Enabling standard output log */
-    static boolean sto =      true;
-
     /** Log level names */
     public static String[] levels = {"INFO", "DEBUG", "PARAN"};
 
-    /** the log filw handler */
-    private static PrintWriter logfile;
+    /** The placeholder of the arguments of a message pattern */
+    private static final String ARG = "{}";
+
+    /** The Log used by the threads that have not bound a Log */
+    private static final Log DEFAULT = new Log();
+
+    /** The Log bound to each thread */
+    private static final ThreadLocal<Log> current = new ThreadLocal<Log>();
+
+    /** the log level */
+    private int loglevel;
+
+    /** Enabling standard output log */
+    private boolean sto;
+
+    /** the writer of the log file */
+    private LogWriter logfile;
+
+    /**
+      * Constructs a Log that does not write to any file and prints
+      * to the standard output.
+      */
+    public Log()
+    {
+        loglevel = OFF;
+        sto = true;
+        logfile = null;
+    }
+
+    /**
+      * Constructs a Log with the given log level and log file.
+      *
+      * @param      level               the log level
+      * @param      logfilename         name of the log file
+      * @param      sto                 true if standard output logs are enabled
+      * @throws     IOException         if the file cannot be opened
+      */
+    public Log(int level, String logfilename, boolean sto) throws IOException
+    {
+        this.logfile = new LogWriter( logfilename );
+        this.loglevel = level;
+        this.sto = sto;
+    }
 
     /**
       * Initializes the Logger.
+      * Constructs a Log object and binds it to the calling thread. The
+      * standard output flag of the previous Log of the thread is kept.
       * 
       * @param      level               the log level
       * @param      logfilename         name of the log file
@@ -57,9 +106,53 @@ public class Log
       */
     public static void initialize( int level, String logfilename) throws IOException
     {
-        logfile = new PrintWriter( new FileWriter( logfilename ) );
-        loglevel = level;
+        bind( new Log(level, logfilename, get().sto) );
+    }
+
+    /**
+      * Binds the Log object to the calling thread.
+      * All the static log methods called from this thread use this object.
+      *
+      * @param      log                 the Log object of the thread
+      */
+    public static void bind(Log log)
+    {
+        current.set(log);
+    }
 
+    /**
+      * Removes the Log object bound to the calling thread.
+      * The thread will use the default Log afterwards.
+      */
+    public static void unbind()
+    {
+        current.remove();
+    }
+
+    /**
+      * Returns the Log object bound to the calling thread, or the default
+      * Log if no object is bound.
+      *
+      * @return                         the Log object of the calling thread
+      */
+    public static Log get()
+    {
+        Log log = current.get();
+        if (log == null)
+            return DEFAULT;
+        return log;
+    }
+
+    /**
+      * Returns true if messages of the given level are written by the Log
+      * object of the calling thread.
+      *
+      * @param      level               the log level
+      * @return                         true if the level is enabled
+      */
+    public static boolean isEnabled(int level)
+    {
+        return get().enabled(level);
     }
 
     /**
@@ -70,13 +163,7 @@ public class Log
       */
     public static void info(Logger caller, String message)
     {
-        if ( loglevel >=  INFO)
-        {
-            logfile.println( new LogMessage( INFO, caller, message) );
-            logfile.flush();
-            //System.out.println( new LogMessage( INFO, caller, message) );
-        }
-
+        get().log( INFO, caller, message);
     }
 
     /**
@@ -87,12 +174,7 @@ public class Log
       */
     public static void debug(Logger caller, String message)
     {
-        if (loglevel >= DEBUG)
-        {
-            logfile.println( new LogMessage( DEBUG, caller, message) );
-            logfile.flush();
-        }
-
+        get().log( DEBUG, caller, message);
     }
 
     /**
@@ -103,11 +185,168 @@ public class Log
       */
     public static void paranoid(Logger caller, String message)
     {
-        if (loglevel >=  PARANOID)
+        get().log( PARANOID, caller, message);
+    }
+
+    /**
+      * Registers the message as an INFO level log message.
+      *
+      * @param      caller              the time of the log
+      * @param      pattern             the log message with a placeholder for the argument
+      * @param      arg                 the argument of the message
+      */
+    public static void info(Logger caller, String pattern, Object arg)
+    {
+        Log log = get();
+        if ( log.enabled(INFO) )
+            log.log( INFO, caller, format(pattern, 1, arg, null) );
+    }
+
+    /**
+      * Registers the message as an INFO level log message.
+      *
+      * @param      caller              the time of the log
+      * @param      pattern             the log message with a placeholder for each argument
+      * @param      first               the first argument of the message
+      * @param      second              the second argument of the message
+      */
+    public static void info(Logger caller, String pattern, Object first, Object second)
+    {
+        Log log = get();
+        if ( log.enabled(INFO) )
+            log.log( INFO, caller, format(pattern, 2, first, second) );
+    }
+
+    /**
+      * Registers the message as an INFO level log message.
+      * The argument is not boxed unless the level is enabled.
+      *
+      * @param      caller              the time of the log
+      * @param      pattern             the log message with a placeholder for the argument
+      * @param      arg                 the argument of the message
+      */
+    public static void info(Logger caller, String pattern, double arg)
+    {
+        Log log = get();
+        if ( log.enabled(INFO) )
+            log.log( INFO, caller, format(pattern, 1, arg, null) );
+    }
+
+    /**
+      * Registers the message as a DEBUG level log message.
+      *
+      * @param      caller              the time of the log
+      * @param      pattern             the log message with a placeholder for the argument
+      * @param      arg                 the argument of the message
+      */
+    public static void debug(Logger caller, String pattern, Object arg)
+    {
+        Log log = get();
+        if ( log.enabled(DEBUG) )
+            log.log( DEBUG, caller, format(pattern, 1, arg, null) );
+    }
+
+    /**
+      * Registers the message as a DEBUG level log message.
+      *
+      * @param      caller              the time of the log
+      * @param      pattern             the log message with a placeholder for each argument
+      * @param      first               the first argument of the message
+      * @param      second              the second argument of the message
+      */
+    public static void debug(Logger caller, String pattern, Object first, Object second)
+    {
+        Log log = get();
+        if ( log.enabled(DEBUG) )
+            log.log( DEBUG, caller, format(pattern, 2, first, second) );
+    }
+
+    /**
+      * Registers the message as a DEBUG level log message.
+      * The argument is not boxed unless the level is enabled.
+      *
+      * @param      caller              the time of the log
+      * @param      pattern             the log message with a placeholder for the argument
+      * @param      arg                 the argument of the message
+      */
+    public static void debug(Logger caller, String pattern, double arg)
+    {
+        Log log = get();
+        if ( log.enabled(DEBUG) )
+            log.log( DEBUG, caller, format(pattern, 1, arg, null) );
+    }
+
+    /**
+      * Registers the message as a PARANOID level log message.
+      *
+      * @param      caller              the time of the log
+      * @param      pattern             the log message with a placeholder for the argument
+      * @param      arg                 the argument of the message
+      */
+    public static void paranoid(Logger caller, String pattern, Object arg)
+    {
+        Log log = get();
+        if ( log.enabled(PARANOID) )
+            log.log( PARANOID, caller, format(pattern, 1, arg, null) );
+    }
+
+    /**
+      * Registers the message as a PARANOID level log message.
+      *
+      * @param      caller              the time of the log
+      * @param      pattern             the log message with a placeholder for each argument
+      * @param      first               the first argument of the message
+      * @param      second              the second argument of the message
+      */
+    public static void paranoid(Logger caller, String pattern, Object first, Object second)
+    {
+        Log log = get();
+        if ( log.enabled(PARANOID) )
+            log.log( PARANOID, caller, format(pattern, 2, first, second) );
+    }
+
+    /**
+      * Registers the message as a PARANOID level log message.
+      * The argument is not boxed unless the level is enabled.
+      *
+      * @param      caller              the time of the log
+      * @param      pattern             the log message with a placeholder for the argument
+      * @param      arg                 the argument of the message
+      */
+    public static void paranoid(Logger caller, String pattern, double arg)
+    {
+        Log log = get();
+        if ( log.enabled(PARANOID) )
+            log.log( PARANOID, caller, format(pattern, 1, arg, null) );
+    }
+
+    /**
+      * Replaces the placeholders of the pattern with the arguments.
+      * Extra arguments and extra placeholders are left out.
+      *
+      * @param      pattern             the message pattern
+      * @param      count               number of arguments
+      * @param      first               the first argument
+      * @param      second              the second argument
+      * @return                         the message
+      */
+    private static String format(String pattern, int count, Object first, Object second)
+    {
+        StringBuilder result = new StringBuilder(pattern.length() + 32);
+        int from = 0;
+
+        for (int i = 0; i < count; i++)
         {
-            logfile.println( new LogMessage( PARANOID, caller, message) );
-            logfile.flush();
+            int at = pattern.indexOf(ARG, from);
+            if (at == -1)
+                break;
+
+            result.append(pattern, from, at).append( (i == 0) ? first : second );
+            from = at + ARG.length();
         }
+        result.append(pattern, from, pattern.length());
+
+        return result.toString();
     }
 
 
@@ -118,26 +357,102 @@ public class Log
       */
     public static void stdout(Logger caller, String message)
     {
-        if ( sto )
-            System.out.println( caller.getName() + ": " + message);
+        get().print(caller, message);
     }
 
     /**
       * Disables standard output logs.
+      * Only the Log object of the calling thread is affected. A thread
+      * without a bound Log gets a new Log object.
       */
     public static void disableSto()
     {
-        sto = false;
+        Log log = current.get();
+        if (log == null)
+        {
+            log = new Log();
+            bind(log);
+        }
+        log.setSto(false);
     }
 
 
     /**
-      * Flushes the log file and closes it.
+      * Writes the pending messages to the log file and closes it.
+      * Returns after all the messages have been written. The Log object
+      * is unbound from the calling thread.
       *
       */
     public static void flush()
     {
-        logfile.flush();
-        logfile.close();
+        get().close();
+        unbind();
+    }
+
+    /**
+      * Registers the message with the given log level.
+      *
+      * @param      level               the log level of the message
+      * @param      caller              the time of the log
+      * @param      message             the log message
+      */
+    public void log(int level, Logger caller, String message)
+    {
+        if ( enabled(level) )
+            logfile.append( level, caller.getTime(), caller.getName(), message );
+    }
+
+    /**
+      * Returns true if messages of the given level are written to the log file.
+      *
+      * @param      level               the log level
+      * @return                         true if the level is enabled
+      */
+    public boolean enabled(int level)
+    {
+        return (loglevel >= level) && (logfile != null);
+    }
+
+    /**
+      * Prints to the standard output if standard output logs are enabled.
+      *
+      * @param      message             the log message
+      */
+    public void print(Logger caller, String message)
+    {
+        if ( sto )
+            System.out.println( caller.getName() + ": " + message);
+    }
+
+    /**
+      * Enables or disables standard output logs.
+      *
+      * @param      sto                 true to enable standard output logs
+      */
+    public void setSto(boolean sto)
+    {
+        this.sto = sto;
+    }
+
+    /**
+      * Returns the log level.
+      *
+      * @return                         the log level
+      */
+    public int getLevel()
+    {
+        return loglevel;
+    }
+
+    /**
+      * Writes the pending messages to the log file and closes it.
+      */
+    public void close()
+    {
+        if (logfile != null)
+        {
+            logfile.close();
+            logfile = null;
+        }
     }
 }
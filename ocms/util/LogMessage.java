@@ -43,7 +43,22 @@ public class LogMessage implements Comparable
     public LogMessage( int level, Logger source, String msg)
     {
         time = source.getTime();
-        message = new String( Log.levels[level] + ":\t" + new BigDecimal( (time/60), LogMessage.mc ) + "\t " + source.getName() + " " + msg);
+        message = format(level, time, source.getName(), msg);
+    }
+
+    /**
+      * Returns the line of the log file for the given message.
+      * The time is printed in minutes.
+      *
+      * @param      level           the log level
+      * @param      time            the time of the log message
+      * @param      name            name of the generator of the log
+      * @param      msg             the log message
+      * @return                     the line of the log file
+      */
+    public static String format( int level, double time, String name, String msg)
+    {
+        return Log.levels[level] + ":\t" + new BigDecimal( (time/60), LogMessage.mc ) + "\t " + name + " " + msg;
     }
 
     /**
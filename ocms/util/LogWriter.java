@@ -0,0 +1,225 @@
+ /**
+  * Opportunistic Connectivity Management Simulator
+  *
+  * Copyright (C) 2007 Hossein Falaki
+  */
+
+package ocms.util;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.concurrent.locks.LockSupport;
+
+
+/**
+  * Writes the messages of a {@link Log} to its log file on a background thread.
+  * The messages are put in a ring buffer by the thread that uses the Log and
+  * are taken out by the writer thread, which formats them (see {@link LogMessage})
+  * and writes them to a buffered file without flushing after each message.
+  * The writer thread sleeps while the buffer is nearly empty; the logging thread
+  * waits if the buffer is full, so no message is lost and the messages are
+  * written in the order they were logged.
+  *
+  * The buffer has a single producer: only one thread may log through the
+  * writer at a time. The thread is started by the first message, and
+  * {@link #close} writes all the pending messages before closing the file.
+  *
+  * @author     Hossein Falaki
+  */
+class LogWriter implements Runnable
+{
+    /** The default number of messages in the buffer (a power of two) */
+    static final int DEFAULT_CAPACITY                       = 8192;
+
+    /** The longest time the writer sleeps in nanoseconds */
+    private static final long SLEEP                         = 10000000L;
+
+    /** The time the logging thread waits for a full buffer in nanoseconds */
+    private static final long WAIT                          = 100000L;
+
+    /** Size of the file buffer in characters */
+    private static final int FILE_BUFFER                    = 1 << 16;
+
+    /** The mask of the indices of the buffer */
+    private final int mask;
+
+    /** Log levels of the messages in the buffer */
+    private final int[] levels;
+
+    /** Times of the messages in the buffer */
+    private final double[] times;
+
+    /** Names of the generators of the messages in the buffer */
+    private final String[] names;
+
+    /** The messages in the buffer */
+    private final String[] messages;
+
+    /** Number of messages put in the buffer, only changed by the logging thread */
+    private volatile long head;
+
+    /** Number of messages written, only changed by the writer thread */
+    private volatile long tail;
+
+    /** True while the writer thread is sleeping */
+    private volatile boolean sleeping;
+
+    /** True when no more messages will be logged */
+    private volatile boolean closed;
+
+    /** The log file */
+    private PrintWriter logfile;
+
+    /** The writer thread */
+    private Thread thread;
+
+    /** Name of the log file */
+    private String filename;
+
+
+    /**
+      * Opens the log file with a buffer of the default capacity.
+      *
+      * @param      filename            name of the log file
+      * @throws     IOException         if the file cannot be opened
+      */
+    LogWriter(String filename) throws IOException
+    {
+        this(filename, DEFAULT_CAPACITY);
+    }
+
+    /**
+      * Opens the log file.
+      *
+      * @param      filename            name of the log file
+      * @param      capacity            number of messages in the buffer, rounded up to a power of two
+      * @throws     IOException         if the file cannot be opened
+      */
+    LogWriter(String filename, int capacity) throws IOException
+    {
+        int size = Integer.highestOneBit( Math.max(2, capacity) - 1 ) << 1;
+
+        this.filename = filename;
+        logfile = new PrintWriter( new BufferedWriter( new FileWriter(filename), FILE_BUFFER ) );
+        mask = size - 1;
+        levels = new int[size];
+        times = new double[size];
+        names = new String[size];
+        messages = new String[size];
+        head = 0;
+        tail = 0;
+    }
+
+    /**
+      * Puts a message in the buffer.
+      * Waits for the writer thread if the buffer is full.
+      *
+      * @param      level               the log level of the message
+      * @param      time                the time of the message
+      * @param      name                name of the generator of the message
+      * @param      message             the message
+      */
+    void append(int level, double time, String name, String message)
+    {
+        if (closed)
+            return;
+
+        if (thread == null)
+        {
+            thread = new Thread(this, "LogWriter-" + filename);
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        long position = head;
+        while (position - tail > mask)
+        {
+            LockSupport.unpark(thread);
+            LockSupport.parkNanos(this, WAIT);
+        }
+
+        int index = (int)position & mask;
+        levels[index] = level;
+        times[index] = time;
+        names[index] = name;
+        messages[index] = message;
+        head = position + 1;
+
+        /* The writer is woken up once a quarter of the buffer is waiting */
+        if ( sleeping && (position + 1 - tail > (mask >> 2)) )
+            LockSupport.unpark(thread);
+    }
+
+    /**
+      * The loop of the writer thread.
+      * Writes the messages in the buffer until the writer is closed.
+      */
+    public void run()
+    {
+        while (true)
+        {
+            long position = tail;
+            long end = head;
+
+            if (position == end)
+            {
+                /* The head is read again after the closed flag, so no message is left behind */
+                if ( closed && (head == position) )
+                    return;
+
+                sleeping = true;
+                if ( (head == position) && !closed )
+                    LockSupport.parkNanos(this, SLEEP);
+                sleeping = false;
+                continue;
+            }
+
+            for (; position < end; position++)
+            {
+                int index = (int)position & mask;
+                logfile.println( LogMessage.format(levels[index], times[index], names[index], messages[index]) );
+                names[index] = null;
+                messages[index] = null;
+            }
+            tail = end;
+        }
+    }
+
+    /**
+      * Writes the pending messages and closes the log file.
+      * Should be called by the logging thread. Messages appended after this
+      * call are ignored.
+      */
+    void close()
+    {
+        if (closed)
+            return;
+
+        closed = true;
+        if (thread != null)
+        {
+            LockSupport.unpark(thread);
+
+            boolean interrupted = false;
+            while (thread.isAlive())
+            {
+                try
+                {
+                    thread.join();
+                }
+                catch (InterruptedException ie)
+                {
+                    interrupted = true;
+                }
+            }
+
+            if (interrupted)
+                Thread.currentThread().interrupt();
+        }
+
+        logfile.flush();
+        logfile.close();
+    }
+}
@@ -0,0 +1,236 @@
+ /**
+  * Opportunistic Connectivity Management Simulator
+  *
+  * Copyright (C) 2007 Hossein Falaki
+  */
+
+package ocms.util;
+
+import java.util.Arrays;
+
+
+/**
+  * A compressed bitmap of the samples in which something is present.
+  * The bits are kept in 64 bit words, and only the words that have a set bit are
+  * stored, together with their indices, in increasing order. An access point is
+  * usually seen in a few places of a long trace, so most of the words of its
+  * bitmap are zero and are not stored.
+  * <br>
+  * The bitmap is built by a {@link Builder} and does not change afterwards.
+  * {@link #nextSetBit} and {@link #nextClearBit} skip whole words, so runs of set
+  * bits are found without looking at each bit.
+  *
+  * @author     Hossein Falaki
+  */
+public class PresenceBitmap
+{
+    /** The indices of the stored words, in increasing order */
+    private int[] keys;
+
+    /** The stored words */
+    private long[] words;
+
+    /** Number of stored words */
+    private int size;
+
+
+    /**
+      * Constructs a bitmap from its words.
+      *
+      * @param      keys            the indices of the words, in increasing order
+      * @param      words           the words, none of them zero
+      * @param      size            number of words
+      */
+    private PresenceBitmap(int[] keys, long[] words, int size)
+    {
+        this.keys = keys;
+        this.words = words;
+        this.size = size;
+    }
+
+    /**
+      * Returns the position of a word among the stored words.
+      *
+      * @param      key             index of the word
+      * @return                     its position, or -(insertion point) - 1 if it is not stored
+      */
+    private int position(int key)
+    {
+        return Arrays.binarySearch(keys, 0, size, key);
+    }
+
+    /**
+      * Returns true if the bit is set.
+      *
+      * @param      bit             index of the bit
+      * @return                     true if the bit is set
+      */
+    public boolean get(int bit)
+    {
+        int position = position(bit >>> 6);
+        return (position >= 0) && ((words[position] & (1L << bit)) != 0);
+    }
+
+    /**
+      * Returns the first set bit at or after the given bit.
+      *
+      * @param      from            index of the bit to search from
+      * @return                     index of the set bit, or -1 if there is none
+      */
+    public int nextSetBit(int from)
+    {
+        int position = position(from >>> 6);
+        if (position >= 0)
+        {
+            long word = words[position] & (-1L << from);
+            if (word != 0)
+                return (keys[position] << 6) + Long.numberOfTrailingZeros(word);
+            position++;
+        }
+        else
+            position = -position - 1;
+
+        /* The stored words are not zero */
+        if (position < size)
+            return (keys[position] << 6) + Long.numberOfTrailingZeros(words[position]);
+
+        return -1;
+    }
+
+    /**
+      * Returns the first clear bit at or after the given bit.
+      *
+      * @param      from            index of the bit to search from
+      * @return                     index of the clear bit
+      */
+    public int nextClearBit(int from)
+    {
+        int key = from >>> 6;
+        int position = position(key);
+        if (position < 0)
+            return from;
+
+        long word = ~words[position] & (-1L << from);
+        while (word == 0)
+        {
+            /* A missing word is all clear */
+            key++;
+            position++;
+            if ( (position == size) || (keys[position] != key) )
+                return key << 6;
+            word = ~words[position];
+        }
+
+        return (key << 6) + Long.numberOfTrailingZeros(word);
+    }
+
+    /**
+      * Returns the union of this bitmap and another one.
+      *
+      * @param      other           the other bitmap
+      * @return                     a bitmap with the bits set in either of them
+      */
+    public PresenceBitmap or(PresenceBitmap other)
+    {
+        int[] newkeys = new int[size + other.size];
+        long[] newwords = new long[size + other.size];
+        int count = 0;
+        int i = 0;
+        int j = 0;
+
+        while ( (i < size) || (j < other.size) )
+        {
+            if ( (j == other.size) || ((i < size) && (keys[i] < other.keys[j])) )
+            {
+                newkeys[count] = keys[i];
+                newwords[count++] = words[i++];
+            }
+            else if ( (i == size) || (other.keys[j] < keys[i]) )
+            {
+                newkeys[count] = other.keys[j];
+                newwords[count++] = other.words[j++];
+            }
+            else
+            {
+                newkeys[count] = keys[i];
+                newwords[count++] = words[i++] | other.words[j++];
+            }
+        }
+
+        return new PresenceBitmap(newkeys, newwords, count);
+    }
+
+    /**
+      * Returns the number of set bits.
+      *
+      * @return                     number of set bits
+      */
+    public int cardinality()
+    {
+        int result = 0;
+        for (int i = 0; i < size; i++)
+            result += Long.bitCount(words[i]);
+
+        return result;
+    }
+
+    /**
+      * Returns an empty bitmap.
+      *
+      * @return                     a bitmap with no set bits
+      */
+    public static PresenceBitmap empty()
+    {
+        return new PresenceBitmap(new int[0], new long[0], 0);
+    }
+
+
+    /**
+      * Builds a bitmap from bits set in increasing order.
+      */
+    public static class Builder
+    {
+        /** The indices of the words */
+        private int[] keys = new int[4];
+
+        /** The words */
+        private long[] words = new long[4];
+
+        /** Number of words */
+        private int size = 0;
+
+        /**
+          * Sets a bit.
+          * The bits should be set in increasing order; a bit may be set more than once.
+          *
+          * @param      bit             index of the bit
+          */
+        public void set(int bit)
+        {
+            int key = bit >>> 6;
+            if ( (size > 0) && (keys[size - 1] == key) )
+            {
+                words[size - 1] |= 1L << bit;
+                return;
+            }
+
+            if (size == keys.length)
+            {
+                keys = Arrays.copyOf(keys, 2*size);
+                words = Arrays.copyOf(words, 2*size);
+            }
+            keys[size] = key;
+            words[size++] = 1L << bit;
+        }
+
+        /**
+          * Returns the bitmap, trimmed.
+          *
+          * @return                     the bitmap of the set bits
+          */
+        public PresenceBitmap build()
+        {
+            return new PresenceBitmap(Arrays.copyOf(keys, size), Arrays.copyOf(words, size), size);
+        }
+    }
+}
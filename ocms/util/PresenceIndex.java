@@ -0,0 +1,341 @@
+ /**
+  * Opportunistic Connectivity Management Simulator
+  *
+  * Copyright (C) 2007 Hossein Falaki
+  */
+
+package ocms.util;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import ocms.dataset.Identifier;
+import ocms.dataset.Tuple;
+
+
+/**
+  * The samples in which each access point is present.
+  * The samples of a trace are numbered in time order, and the index keeps a
+  * {@link PresenceBitmap} of the samples of each BSSID, and the union of them
+  * for the samples in which any access point is present.
+  * <br>
+  * The index finds the <i>availability blocks</i> of an access point, a set of
+  * access points or any access point: a block starts at a sample in which one of
+  * them is present and ends at the next sample in which none of them is present.
+  * Times without a sample neither start nor end a block. A block that has not
+  * ended at the last sample of the range ends at the end of the range. The
+  * blocks are runs of set bits in a bitmap, so they are found a word at a time
+  * without looking at the samples.
+  *
+  * @author     Hossein Falaki
+  */
+public class PresenceIndex
+{
+    /** The times of the samples in increasing order */
+    private int[] times;
+
+    /** The samples of each BSSID, by its {@link Identifier} */
+    private HashMap<Long, PresenceBitmap> bitmaps;
+
+    /** The samples in which any access point is present */
+    private PresenceBitmap any;
+
+
+    /**
+      * Builds the index of an environment.
+      * Only the times on the grid of the medium (start + k*step) are used; the
+      * others are never returned by {@link ocms.medium.WiFiMedium#indexOf}.
+      *
+      * @param      environment     the mapping from time to the visible access points
+      * @param      start           the start time of the medium
+      * @param      step            the time step of the medium
+      */
+    public PresenceIndex(Map<Integer, Set<Tuple<String, Integer>>> environment, int start, int step)
+    {
+        int count = 0;
+        int[] keys = new int[environment.size()];
+        for (Integer time : environment.keySet())
+        {
+            if ( ((long)time - start) % step == 0 )
+                keys[count++] = time;
+        }
+        int[] sorted = Arrays.copyOf(keys, count);
+        Arrays.sort(sorted);
+
+        Builder builder = new Builder();
+        for (int i = 0; i < sorted.length; i++)
+        {
+            builder.sample(sorted[i]);
+            for (Tuple<String, Integer> tuple : environment.get(sorted[i]))
+                builder.add(Identifier.encode(tuple.getKey()));
+        }
+
+        times = builder.getTimes();
+        bitmaps = builder.getBitmaps();
+        any = builder.getAny();
+    }
+
+    /**
+      * Builds the index from the observations of a builder.
+      *
+      * @param      builder         the observations of the samples
+      */
+    public PresenceIndex(Builder builder)
+    {
+        times = builder.getTimes();
+        bitmaps = builder.getBitmaps();
+        any = builder.getAny();
+    }
+
+    /**
+      * Returns the availability blocks of any access point in [start, end].
+      *
+      * @param      start           start time of the range
+      * @param      end             end time of the range
+      * @return                     the start and end times of the blocks, in pairs
+      */
+    public double[] findBlocks(double start, double end)
+    {
+        return findBlocks(any, start, end);
+    }
+
+    /**
+      * Returns the availability blocks of an access point in [start, end].
+      *
+      * @param      bssid           the BSSID of the access point
+      * @param      start           start time of the range
+      * @param      end             end time of the range
+      * @return                     the start and end times of the blocks, in pairs
+      */
+    public double[] findBlocks(String bssid, double start, double end)
+    {
+        return findBlocks(getBitmap(bssid), start, end);
+    }
+
+    /**
+      * Returns the availability blocks of a set of access points in [start, end].
+      * That is the blocks in which at least one of them is present.
+      *
+      * @param      bssids          the BSSIDs of the access points
+      * @param      start           start time of the range
+      * @param      end             end time of the range
+      * @return                     the start and end times of the blocks, in pairs
+      */
+    public double[] findBlocks(Collection<String> bssids, double start, double end)
+    {
+        PresenceBitmap present = PresenceBitmap.empty();
+        for (String bssid : bssids)
+            present = present.or( getBitmap(bssid) );
+
+        return findBlocks(present, start, end);
+    }
+
+    /**
+      * Returns the runs of set bits of a bitmap in [start, end].
+      *
+      * @param      present         the samples in which the access points are present
+      * @param      start           start time of the range
+      * @param      end             end time of the range
+      * @return                     the start and end times of the runs, in pairs
+      */
+    private double[] findBlocks(PresenceBitmap present, double start, double end)
+    {
+        /* The samples of the range are [first, last) */
+        int first = search(start);
+        int last = search(end);
+        while ( (last < times.length) && (times[last] == end) )
+            last++;
+
+        double[] result = new double[16];
+        int count = 0;
+        int bit = present.nextSetBit(first);
+        while ( (bit != -1) && (bit < last) )
+        {
+            int clear = present.nextClearBit(bit + 1);
+
+            if (count == result.length)
+                result = Arrays.copyOf(result, 2*count);
+            result[count++] = times[bit];
+
+            if (clear >= last)
+            {
+                result[count++] = end;
+                break;
+            }
+            result[count++] = times[clear];
+
+            bit = present.nextSetBit(clear + 1);
+        }
+
+        return Arrays.copyOf(result, count);
+    }
+
+    /**
+      * Returns the first sample at or after a time.
+      *
+      * @param      time            the time
+      * @return                     number of the sample, or the number of samples
+      */
+    private int search(double time)
+    {
+        int low = 0;
+        int high = times.length;
+        while (low < high)
+        {
+            int mid = (low + high) >>> 1;
+            if (times[mid] < time)
+                low = mid + 1;
+            else
+                high = mid;
+        }
+
+        return low;
+    }
+
+    /**
+      * Returns the samples in which an access point is present.
+      *
+      * @param      bssid           the BSSID of the access point
+      * @return                     the bitmap of the samples
+      */
+    public PresenceBitmap getBitmap(String bssid)
+    {
+        return getBitmap(Identifier.encode(bssid));
+    }
+
+    /**
+      * Returns the samples in which an access point is present.
+      *
+      * @param      identifier      the {@link Identifier} of the BSSID of the access point
+      * @return                     the bitmap of the samples
+      */
+    public PresenceBitmap getBitmap(long identifier)
+    {
+        PresenceBitmap bitmap = bitmaps.get(identifier);
+        if (bitmap == null)
+            return PresenceBitmap.empty();
+
+        return bitmap;
+    }
+
+    /**
+      * Returns the samples in which any access point is present.
+      *
+      * @return                     the bitmap of the samples
+      */
+    public PresenceBitmap getAny()
+    {
+        return any;
+    }
+
+    /**
+      * Returns the number of samples.
+      *
+      * @return                     number of samples
+      */
+    public int getSampleCount()
+    {
+        return times.length;
+    }
+
+    /**
+      * Returns the time of a sample.
+      *
+      * @param      sample          number of the sample
+      * @return                     time of the sample
+      */
+    public int getTime(int sample)
+    {
+        return times[sample];
+    }
+
+
+    /**
+      * Collects the observations of the samples, in increasing time order.
+      */
+    public static class Builder
+    {
+        /** The times of the samples */
+        private int[] times = new int[64];
+
+        /** Number of samples */
+        private int count = 0;
+
+        /** The bitmap builder of each BSSID */
+        private HashMap<Long, PresenceBitmap.Builder> builders = new HashMap<Long, PresenceBitmap.Builder>();
+
+        /** The bitmap builder of the samples with any access point */
+        private PresenceBitmap.Builder any = new PresenceBitmap.Builder();
+
+        /**
+          * Starts the next sample.
+          * The samples should be started in increasing time order.
+          *
+          * @param      time            time of the sample
+          */
+        public void sample(int time)
+        {
+            if (count == times.length)
+                times = Arrays.copyOf(times, 2*count);
+            times[count++] = time;
+        }
+
+        /**
+          * Records that an access point is present in the current sample.
+          *
+          * @param      bssid           the BSSID of the access point
+          */
+        public void add(String bssid)
+        {
+            add(Identifier.encode(bssid));
+        }
+
+        /**
+          * Records that an access point is present in the current sample.
+          *
+          * @param      identifier      the {@link Identifier} of the BSSID of the access point
+          */
+        public void add(long identifier)
+        {
+            PresenceBitmap.Builder builder = builders.get(identifier);
+            if (builder == null)
+            {
+                builder = new PresenceBitmap.Builder();
+                builders.put(identifier, builder);
+            }
+
+            builder.set(count - 1);
+            any.set(count - 1);
+        }
+
+        /**
+          * Returns the times of the samples, trimmed.
+          */
+        int[] getTimes()
+        {
+            return Arrays.copyOf(times, count);
+        }
+
+        /**
+          * Returns the bitmaps of the BSSIDs.
+          */
+        HashMap<Long, PresenceBitmap> getBitmaps()
+        {
+            HashMap<Long, PresenceBitmap> result = new HashMap<Long, PresenceBitmap>(2*builders.size());
+            for (Map.Entry<Long, PresenceBitmap.Builder> entry : builders.entrySet())
+                result.put(entry.getKey(), entry.getValue().build());
+            return result;
+        }
+
+        /**
+          * Returns the bitmap of the samples with any access point.
+          */
+        PresenceBitmap getAny()
+        {
+            return any.build();
+        }
+    }
+}
@@ -8,8 +8,6 @@ package ocms.util;
 
 
 import java.util.HashMap;
-import java.math.BigDecimal;
-import java.math.MathContext;
 
 
 
@@ -24,6 +22,8 @@ import java.math.MathContext;
  * The transition cost may depend on both the current and the next state, while 
  * the running time only depends on the current state and the time spent in it.
  *
+ * The states are named by strings. They are mapped to the indices of an
+ * {@link IndexedProfile}, which keeps the costs.
  *
  * @author  Hossein Falaki
  */
@@ -32,29 +32,11 @@ public class Profile
     /** name of the profile */
     private String name;
 
-    /** The total cost up to now */
-    private double cost;
+    /** The profile that keeps the costs */
+    private IndexedProfile profile;
 
-    /** The latest time */
-    private double now;
-
-    /** The current state */
-    private String state;
-
-    /** Maps state names to their running-time costs */
-    HashMap<String, Integer> runningtime;
-
-    /** Maps state names to their default one-time costs */
-    HashMap<String, Integer> defaults;
-
-    /** Maps state names to a map of all other states, used for one-time costs */
-    HashMap<String, HashMap<String, Integer>> onetime;
-
-    /** The math context object for precision */
-    MathContext mc;
-
-    /** The unit of the cost */
-    String unit;
+    /** Maps state names to their indices in the profile */
+    private HashMap<String, Integer> states;
 
     /**
       * Constructs a profile. 
@@ -65,14 +47,7 @@ public class Profile
       */
     public Profile()
     {
-        cost = 0.0;
-        now = 0.0;
-        state = null;
-        unit = null;
-        mc = new MathContext(20);
-        runningtime = new HashMap<String, Integer>();
-        defaults = new HashMap<String, Integer>();
-        onetime = new HashMap<String, HashMap<String, Integer>>();
+        this(null, null);
     }
 
     /**
@@ -86,14 +61,24 @@ public class Profile
     public Profile(String name, String unit)
     {
         this.name = name;
-        this.unit = unit;
-        cost = 0.0;
-        now = 0.0;
-        state = null;
-        mc = new MathContext(20);
-        runningtime = new HashMap<String, Integer>();
-        defaults = new HashMap<String, Integer>();
-        onetime = new HashMap<String, HashMap<String, Integer>>();
+        profile = new IndexedProfile(new String[] {name}, new String[] {unit});
+        states = new HashMap<String, Integer>();
+    }
+
+    /**
+      * Returns the index of a registered state.
+      *
+      * @param  state               name of the state
+      * @return                     index of the state
+      * @throws ProfileException    if the state has not been registered
+      */
+    private int index(String state) throws ProfileException
+    {
+        Integer index = states.get(state);
+        if (index == null)
+            throw new ProfileException(name + ": State " + state + " is not registered.");
+
+        return index;
     }
 
 
@@ -109,14 +94,16 @@ public class Profile
       */
     public void registerState(String newstate, Integer runningtime, Integer fixedcost) throws ProfileException
     {
-       if (this.runningtime.keySet().contains(newstate) )
+       if ( states.containsKey(newstate) )
        {
            throw new ProfileException(name + ": State " + newstate + " has already been registered.");
        }
        else
        {
-           this.runningtime.put(newstate, runningtime);
-           defaults.put(newstate, fixedcost);
+           int index = profile.addState(newstate);
+           states.put(newstate, index);
+           profile.setRunningCost(0, index, runningtime);
+           profile.setDefaultCost(0, index, fixedcost);
        }
 
        return;
@@ -135,31 +122,7 @@ public class Profile
       */
     public void setTransitionCost(String currentstate, String nextstate, Integer transitioncost) throws ProfileException
     {
-        if (!runningtime.keySet().contains(currentstate))
-        {
-            throw new ProfileException(name + ": State " + currentstate + " is not registered.");
-        }
-
-        if (!runningtime.keySet().contains(nextstate))
-        {
-            throw new ProfileException(name + ": State " + nextstate + " is not registered.");
-        }
-
-        HashMap<String, Integer> internalmap;
-        if ( onetime.keySet().contains(currentstate) )
-        {
-            internalmap = onetime.get(currentstate);
-            if (internalmap != null)
-            {
-                internalmap.put(nextstate, transitioncost);
-                return;
-            }
-        }
-
-        internalmap = new HashMap<String, Integer>();
-        internalmap.put(nextstate, transitioncost);
-        onetime.put(currentstate, internalmap);
-
+        profile.setTransitionCost(0, index(currentstate), index(nextstate), transitioncost);
     }
 
     /**
@@ -169,15 +132,14 @@ public class Profile
       *
       * @param  initialstate            the state to be set as the initial state
       * @param  initialtime             the time to be set as the initial time
-      * @throws ProfileException        if it is called for the second time
+      * @throws ProfileException        if it is called for the second time or the state has not been registered
       */
     public void initialize(String initialstate, double initialtime) throws ProfileException
     {
-        if (state != null )
+        if ( profile.isInitialized() )
             throw new ProfileException(name + ": The profile has already been initialized");
 
-        state = initialstate;
-        now = initialtime;
+        profile.initialize(index(initialstate), initialtime);
     }
 
 
@@ -189,6 +151,7 @@ public class Profile
       * should be already registered, otherwise a ProfileException is thrown.
       * This method should only be called after the profile has been initialized with an
       * initial state, otherwise a ProfileException is thrown.
+      * If the new state is the same as the current state nothing is changed.
       *
       * @param  newstate            the state to transition to
       * @param  time                the time of the transition
@@ -196,46 +159,28 @@ public class Profile
       */
     public void changeState(String newstate, double time) throws ProfileException
     {
-        if ( time < now )
-        {
-            throw new ProfileException(name + ": Time " + time + " has passed. it is now " + now + ".");
-        }
-
-        if (!runningtime.keySet().contains(newstate))
-        {
-            throw new ProfileException(name + ": State " + newstate + " is not registered.");
-        }
-
-        if ( state == null)
-        {
-            throw new ProfileException(name + ": Profile has not been initialized with an inital state.");
-        }
-
-        /* Try to be robust here. If the new state is the same as the current state
-         * Just return quietly.
-         */
-        if ( state.equals( newstate) )
-        {
-            return;
-        }
-
-        /* The running time of the current state up to now is first added */
-        cost += runningtime.get(state)*(time - now);
-
-        /* The transition cost is added */
-        int fixed = defaults.get(newstate);
-
-        if (onetime.keySet().contains(state))
-            if (onetime.get(state).keySet().contains(newstate) )
-                fixed = onetime.get(state).get(newstate);
-
-        cost += fixed;
+        profile.changeState(index(newstate), time);
+    }
 
-        /* The internal state and time are updated */
-        now = time;
-        state = newstate;
+    /**
+      * Sets the journal that records the state changes of the profile.
+      *
+      * @param      journal     the journal (null for no journal)
+      */
+    public void setJournal(Journal journal)
+    {
+        profile.setJournal(journal);
+    }
 
-        return;
+    /**
+      * Starts recording the timeline of the profile.
+      *
+      * @param      resolution  the length of the buckets of the timeline in seconds
+      * @return                 the timeline
+      */
+    public ProfileTimeline createTimeline(double resolution)
+    {
+        return profile.createTimeline(0, resolution);
     }
 
     /**
@@ -245,7 +190,7 @@ public class Profile
       */
     public double getCost()
     {
-        return cost;
+        return profile.getCost(0);
     }
 
     /**
@@ -255,7 +200,7 @@ public class Profile
       */
     public String toString()
     {
-        return  name + ": " + new BigDecimal(cost, mc ) + " " + unit;
+        return profile.toString(0);
     }
 
 
@@ -0,0 +1,508 @@
+ /**
+  * Opportunistic Connectivity Management Simulator
+  *
+  * Copyright (C) 2007 Hossein Falaki
+  */
+
+package ocms.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+
+
+/**
+  * The timeline of a channel of an {@link IndexedProfile}.
+  * Records the time, the new state and the total cost of each state change, and
+  * the cost spent in each bucket of <i>resolution</i> seconds since the start of
+  * the profile. The running cost of a state is spread over the buckets it spans
+  * and a transition cost is added to the bucket of the transition. The records
+  * are kept in growable primitive arrays, so recording a change does not create
+  * any objects.
+  * <br>
+  * The timelines of a simulation are written to a single file (see {@link #write})
+  * column by column, in big endian order:
+  * <pre>
+  *     int         MAGIC
+  *     int         VERSION
+  *     int         number of timelines
+  *     for each timeline:
+  *         UTF         name
+  *         UTF         unit
+  *         double      resolution
+  *         double      start time
+  *         int         number of states, followed by their names (UTF)
+  *         int         number of changes n
+  *         double[n]   times
+  *         int[n]      states
+  *         double[n]   costs
+  *         int         number of buckets m
+  *         double[m]   the cost of each bucket
+  * </pre>
+  * The first change of a timeline is its initial state. The file can be printed with
+  * the main method of this class.
+  *
+  * @author     Hossein Falaki
+  */
+public class ProfileTimeline
+{
+    /** The magic number of the timeline files */
+    public static final int MAGIC                           = 0x4F434D54;
+
+    /** The version of the format */
+    public static final int VERSION                         = 1;
+
+    /** The default resolution of the buckets in seconds */
+    public static final double DEFAULT_RESOLUTION           = 3600.0;
+
+    /** The initial capacity of the arrays */
+    private static final int CAPACITY                       = 256;
+
+    /** Name of the profile channel */
+    private String name;
+
+    /** Unit of the cost */
+    private String unit;
+
+    /** Names of the states */
+    private String[] statenames;
+
+    /** The length of a bucket in seconds, or 0 for no buckets */
+    private double resolution;
+
+    /** The start time of the profile */
+    private double start;
+
+    /** Times of the changes */
+    private double[] times;
+
+    /** The states after the changes */
+    private int[] states;
+
+    /** The total costs after the changes */
+    private double[] costs;
+
+    /** Number of changes */
+    private int count;
+
+    /** The cost of each bucket */
+    private double[] buckets;
+
+    /** Number of buckets */
+    private int bucketcount;
+
+
+    /**
+      * Constructs an empty timeline.
+      *
+      * @param      name            name of the profile channel
+      * @param      unit            unit of the cost
+      * @param      statenames      names of the states
+      * @param      resolution      the length of a bucket in seconds, or 0 for no buckets
+      */
+    public ProfileTimeline(String name, String unit, String[] statenames, double resolution)
+    {
+        this.name = name;
+        this.unit = unit;
+        this.statenames = statenames.clone();
+        this.resolution = Math.max(0.0, resolution);
+
+        times = new double[CAPACITY];
+        states = new int[CAPACITY];
+        costs = new double[CAPACITY];
+        buckets = new double[resolution > 0 ? CAPACITY : 0];
+        count = 0;
+        bucketcount = 0;
+    }
+
+    /**
+      * Starts the timeline.
+      * Records the initial state of the profile.
+      *
+      * @param      time            the start time
+      * @param      state           the initial state
+      * @param      cost            the initial cost
+      */
+    void start(double time, int state, double cost)
+    {
+        start = time;
+        count = 0;
+        bucketcount = 0;
+        append(time, state, cost);
+    }
+
+    /**
+      * Records a state change.
+      *
+      * @param      from            the time of the previous change
+      * @param      to              the time of this change
+      * @param      rate            the running cost of the previous state
+      * @param      fixed           the transition cost
+      * @param      state           the new state
+      * @param      cost            the total cost after the change
+      */
+    void record(double from, double to, double rate, double fixed, int state, double cost)
+    {
+        append(to, state, cost);
+
+        if (resolution == 0.0)
+            return;
+
+        if ( (rate != 0.0) && (to > from) )
+        {
+            int first = bucket(from);
+            int last = bucket(to);
+
+            if (first == last)
+                add(first, rate*(to - from));
+            else
+            {
+                add(first, rate*(start + (first + 1)*resolution - from));
+                for (int b = first + 1; b < last; b++)
+                    add(b, rate*resolution);
+                add(last, rate*(to - (start + last*resolution)));
+            }
+        }
+
+        if (fixed != 0.0)
+            add(bucket(to), fixed);
+    }
+
+    /**
+      * Appends a change to the arrays.
+      */
+    private void append(double time, int state, double cost)
+    {
+        if (count == times.length)
+        {
+            int capacity = 2*count;
+
+            double[] newtimes = new double[capacity];
+            System.arraycopy(times, 0, newtimes, 0, count);
+            times = newtimes;
+
+            int[] newstates = new int[capacity];
+            System.arraycopy(states, 0, newstates, 0, count);
+            states = newstates;
+
+            double[] newcosts = new double[capacity];
+            System.arraycopy(costs, 0, newcosts, 0, count);
+            costs = newcosts;
+        }
+
+        times[count] = time;
+        states[count] = state;
+        costs[count] = cost;
+        count++;
+    }
+
+    /**
+      * Returns the bucket of a time.
+      *
+      * @param      time            the time
+      * @return                     index of the bucket
+      */
+    private int bucket(double time)
+    {
+        return (int)((time - start)/resolution);
+    }
+
+    /**
+      * Adds a cost to a bucket.
+      *
+      * @param      bucket          index of the bucket
+      * @param      amount          the cost
+      */
+    private void add(int bucket, double amount)
+    {
+        if (bucket >= buckets.length)
+        {
+            double[] newbuckets = new double[Math.max(2*buckets.length, bucket + 1)];
+            System.arraycopy(buckets, 0, newbuckets, 0, bucketcount);
+            buckets = newbuckets;
+        }
+
+        buckets[bucket] += amount;
+        if (bucket >= bucketcount)
+            bucketcount = bucket + 1;
+    }
+
+    /**
+      * Returns the name of the profile channel.
+      *
+      * @return                     name of the timeline
+      */
+    public String getName()
+    {
+        return name;
+    }
+
+    /**
+      * Returns the unit of the cost.
+      *
+      * @return                     unit of the cost
+      */
+    public String getUnit()
+    {
+        return unit;
+    }
+
+    /**
+      * Returns the name of a state.
+      *
+      * @param      state           index of the state
+      * @return                     name of the state
+      */
+    public String getStateName(int state)
+    {
+        if ( (state < 0) || (state >= statenames.length) )
+            return "" + state;
+
+        return statenames[state];
+    }
+
+    /**
+      * Returns the length of a bucket.
+      *
+      * @return                     resolution in seconds, or 0 if there are no buckets
+      */
+    public double getResolution()
+    {
+        return resolution;
+    }
+
+    /**
+      * Returns the start time of the timeline.
+      *
+      * @return                     the time of the first bucket
+      */
+    public double getStart()
+    {
+        return start;
+    }
+
+    /**
+      * Returns the number of recorded changes, including the initial state.
+      *
+      * @return                     number of changes
+      */
+    public int getCount()
+    {
+        return count;
+    }
+
+    /**
+      * Returns the time of a change.
+      *
+      * @param      index           index of the change
+      * @return                     time of the change
+      */
+    public double getTime(int index)
+    {
+        return times[index];
+    }
+
+    /**
+      * Returns the state after a change.
+      *
+      * @param      index           index of the change
+      * @return                     the new state
+      */
+    public int getState(int index)
+    {
+        return states[index];
+    }
+
+    /**
+      * Returns the total cost after a change.
+      *
+      * @param      index           index of the change
+      * @return                     the total cost
+      */
+    public double getCost(int index)
+    {
+        return costs[index];
+    }
+
+    /**
+      * Returns the number of buckets.
+      *
+      * @return                     number of buckets up to the last change
+      */
+    public int getBucketCount()
+    {
+        return bucketcount;
+    }
+
+    /**
+      * Returns the cost spent in a bucket.
+      *
+      * @param      index           index of the bucket
+      * @return                     the cost of the bucket
+      */
+    public double getBucket(int index)
+    {
+        return buckets[index];
+    }
+
+    /**
+      * Writes the timeline.
+      *
+      * @param      output          the output stream
+      * @throws     IOException     if the timeline cannot be written
+      */
+    private void write(DataOutputStream output) throws IOException
+    {
+        output.writeUTF(name == null ? "" : name);
+        output.writeUTF(unit == null ? "" : unit);
+        output.writeDouble(resolution);
+        output.writeDouble(start);
+
+        output.writeInt(statenames.length);
+        for (String state : statenames)
+            output.writeUTF(state == null ? "" : state);
+
+        output.writeInt(count);
+        for (int i = 0; i < count; i++)
+            output.writeDouble(times[i]);
+        for (int i = 0; i < count; i++)
+            output.writeInt(states[i]);
+        for (int i = 0; i < count; i++)
+            output.writeDouble(costs[i]);
+
+        output.writeInt(bucketcount);
+        for (int i = 0; i < bucketcount; i++)
+            output.writeDouble(buckets[i]);
+    }
+
+    /**
+      * Writes the timelines to a file.
+      *
+      * @param      filename        name of the file
+      * @param      timelines       the timelines
+      * @throws     IOException     if the file cannot be written
+      */
+    public static void write(String filename, ArrayList<ProfileTimeline> timelines) throws IOException
+    {
+        DataOutputStream output = new DataOutputStream( new BufferedOutputStream( new FileOutputStream(filename) ) );
+        try
+        {
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            output.writeInt(timelines.size());
+            for (ProfileTimeline timeline : timelines)
+                timeline.write(output);
+        }
+        finally
+        {
+            output.close();
+        }
+    }
+
+    /**
+      * Reads the timelines of a file.
+      *
+      * @param      filename        name of the file
+      * @return                     the timelines
+      * @throws     IOException     if the file cannot be read or is not a timeline file
+      */
+    public static ArrayList<ProfileTimeline> read(String filename) throws IOException
+    {
+        ArrayList<ProfileTimeline> timelines = new ArrayList<ProfileTimeline>();
+        DataInputStream input = new DataInputStream( new BufferedInputStream( new FileInputStream(filename) ) );
+        try
+        {
+            if ( (input.readInt() != MAGIC) || (input.readInt() != VERSION) )
+                throw new IOException(filename + " is not a timeline file");
+
+            int number = input.readInt();
+            for (int t = 0; t < number; t++)
+            {
+                String name = input.readUTF();
+                String unit = input.readUTF();
+                double resolution = input.readDouble();
+                double start = input.readDouble();
+
+                String[] statenames = new String[input.readInt()];
+                for (int i = 0; i < statenames.length; i++)
+                    statenames[i] = input.readUTF();
+
+                ProfileTimeline timeline = new ProfileTimeline(name, unit, statenames, resolution);
+                timeline.start = start;
+
+                int count = input.readInt();
+                timeline.times = new double[Math.max(1, count)];
+                timeline.states = new int[Math.max(1, count)];
+                timeline.costs = new double[Math.max(1, count)];
+                for (int i = 0; i < count; i++)
+                    timeline.times[i] = input.readDouble();
+                for (int i = 0; i < count; i++)
+                    timeline.states[i] = input.readInt();
+                for (int i = 0; i < count; i++)
+                    timeline.costs[i] = input.readDouble();
+                timeline.count = count;
+
+                int bucketcount = input.readInt();
+                timeline.buckets = new double[bucketcount];
+                for (int i = 0; i < bucketcount; i++)
+                    timeline.buckets[i] = input.readDouble();
+                timeline.bucketcount = bucketcount;
+
+                timelines.add(timeline);
+            }
+        }
+        finally
+        {
+            input.close();
+        }
+
+        return timelines;
+    }
+
+    /**
+      * Prints a timeline file.
+      * Prints the changes of each timeline, one per line, or its buckets with
+      * the -buckets option.
+      *
+      * @param      argv            the timeline file and the options
+      */
+    public static void main(String[] argv)
+    {
+        if (argv.length < 1)
+        {
+            System.out.println("Usage: java ocms.util.ProfileTimeline timeline [-buckets]");
+            return;
+        }
+
+        boolean printbuckets = (argv.length > 1) && argv[1].equals("-buckets");
+        try
+        {
+            for (ProfileTimeline timeline : read(argv[0]))
+            {
+                if (printbuckets)
+                {
+                    System.out.println("# " + timeline.name + ": start\t" + timeline.unit
+                            + " per " + timeline.resolution + " s");
+                    for (int i = 0; i < timeline.bucketcount; i++)
+                        System.out.println( (timeline.start + i*timeline.resolution) + "\t" + timeline.buckets[i] );
+                }
+                else
+                {
+                    System.out.println("# " + timeline.name + ": time\tstate\t" + timeline.unit);
+                    for (int i = 0; i < timeline.count; i++)
+                        System.out.println(timeline.times[i] + "\t" + timeline.getStateName(timeline.states[i])
+                                + "\t" + timeline.costs[i]);
+                }
+            }
+        }
+        catch (IOException ioe)
+        {
+            System.err.println("ProfileTimeline: Error while reading " + argv[0] + ": " + ioe.toString());
+        }
+    }
+}
@@ -0,0 +1,90 @@
+ /**
+  * Opportunistic Connectivity Management Simulator
+  *
+  * Copyright (C) 2007 Hossein Falaki
+  */
+
+package ocms.util;
+
+
+/**
+  * The fixed-point time base of the simulator.
+  * Inside the event queue, the media, the NICs and the profiles time is a long
+  * number of <i>ticks</i>, so ordering events, finding the sample of a time and
+  * integrating costs are integer operations that do not drift. Times are
+  * converted from and to seconds only where they enter (the scenario, the
+  * commands of the schedulers) and leave (the logs and the results).
+  * <br>
+  * The resolution is the number of ticks in a second: 1000 (milliseconds) by
+  * default. It is the same for every simulation of the process, since the media
+  * are shared between them, and can be changed with the system property
+  * <code>ocms.time.resolution</code> (e.g. <code>java -Docms.time.resolution=1000000</code>
+  * for microseconds). Times that are not a whole number of ticks are rounded to
+  * the nearest tick.
+  *
+  * @author     Hossein Falaki
+  */
+public final class Time
+{
+    /** The system property of the resolution */
+    public static final String PROPERTY         = "ocms.time.resolution";
+
+    /** Number of ticks in a second */
+    public static final long RESOLUTION         = Long.getLong(PROPERTY, 1000L);
+
+    /** A time after every other time, used where the code uses Double.MAX_VALUE as seconds */
+    public static final long NEVER              = Long.MAX_VALUE;
+
+
+    /**
+      * No instances, all the methods are static.
+      */
+    private Time()
+    {
+    }
+
+    /**
+      * Converts seconds to ticks.
+      * Double.MAX_VALUE and larger times are converted to {@link #NEVER}.
+      *
+      * @param      seconds         the time in seconds
+      * @return                     the nearest number of ticks
+      */
+    public static long toTicks(double seconds)
+    {
+        if (seconds >= Double.MAX_VALUE)
+            return NEVER;
+
+        return Math.round(seconds*RESOLUTION);
+    }
+
+    /**
+      * Converts ticks to seconds.
+      * {@link #NEVER} is converted to Double.MAX_VALUE.
+      *
+      * @param      ticks           the time in ticks
+      * @return                     the time in seconds
+      */
+    public static double toSeconds(long ticks)
+    {
+        if (ticks == NEVER)
+            return Double.MAX_VALUE;
+
+        return (double)ticks / RESOLUTION;
+    }
+
+    /**
+      * Returns the start of the step that contains a time, on a grid of steps from an origin.
+      * Like the sample times of the media, a time before the origin is moved up
+      * to the next point of the grid.
+      *
+      * @param      ticks           the time
+      * @param      origin          a point of the grid
+      * @param      step            length of the steps of the grid
+      * @return                     the point of the grid
+      */
+    public static long floor(long ticks, long origin, long step)
+    {
+        return ticks - (ticks - origin) % step;
+    }
+}